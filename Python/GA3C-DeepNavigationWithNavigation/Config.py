@@ -78,6 +78,15 @@ class Config:
 
     NUM_PEDESTRIANS = 4
 
+    # Receive observations as binary float32 frames instead of text lines
+    BINARY_TRANSPORT = True
+    # Path of a memory-mapped ring file for the observations (same host only)
+    RING_FILE = None
+    # Share one batched connection between all agents (controllers started with "batched")
+    BATCHED_TRANSPORT = False
+    # Port of the batched connection (AbstractController.BATCH_PORT)
+    BATCH_PORT = 3999
+
     # Reward Clipping
     REWARD_CLIPPING = False
     REWARD_MIN = -1
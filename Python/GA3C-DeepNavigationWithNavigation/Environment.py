@@ -39,14 +39,39 @@ import numpy as np
 
 from Config import Config
 
+sys.path.append(os.path.join(os.path.dirname(os.path.abspath(__file__)), ".."))
+from binary_transport import BatchHub, FrameReader
+
+# Connection shared by all agents if the batched transport is used,
+# created by the process that creates the agents
+batch_hub = None
+
+def get_batch_hub():
+    global batch_hub
+    if batch_hub is None:
+        batch_hub = BatchHub(Config.BATCH_PORT)
+        batch_hub.start()
+    return batch_hub
+
 class connector:
 
     def __init__(self,id):
+        self.id = id
         self.total = ""
-        self.sock = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
-        self.sock.connect(("localhost", 4000 + id + Config.AGENTS))
         self.state = None
         self.lastAction = -1
+        self.reader = None
+        self.channel = None
+
+        if Config.BATCHED_TRANSPORT:
+            self.channel = get_batch_hub().channel()
+            return
+
+        self.sock = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+        self.sock.connect(("localhost", 4000 + id + Config.AGENTS))
+        self.reader = FrameReader(Config.RING_FILE) if Config.BINARY_TRANSPORT else None
+        if self.reader is not None:
+            self.reader.handshake(self.sock)
 
     def reset(self):
         self.sendMessage("RESET\n")
@@ -73,7 +98,42 @@ class connector:
 
         return None
 
+    def receiveBinaryMessage(self):
+        while True:
+            try:
+                state = self.reader.receive(self.sock)
+            except OSError as e:
+                print(e)
+                print("Try to restore connection")
+                while True:
+                    try:
+                        self.sock = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+                        self.sock.connect(("localhost", 4000 + self.id + Config.AGENTS))
+                        self.reader.handshake(self.sock)
+                        break
+                    except OSError as p:
+                        print("Timeout during connect ")
+                        time.sleep(5)
+                continue
+
+            if len(state['obs']) == 4 + Config.NUM_PEDESTRIANS*2 and len(state['map']) == Config.IMAGE_HEIGHT*Config.IMAGE_WIDTH*3:
+                self.state = state
+                return self.state
+
+    def receiveBatchedMessage(self):
+        while True:
+            state = self.channel.receive()
+            if len(state['obs']) == 4 + Config.NUM_PEDESTRIANS*2 and len(state['map']) == Config.IMAGE_HEIGHT*Config.IMAGE_WIDTH*3:
+                self.state = state
+                return self.state
+
     def receiveMessage(self):
+        if self.channel is not None:
+            return self.receiveBatchedMessage()
+
+        if self.reader is not None:
+            return self.receiveBinaryMessage()
+
         convertedBytes = ""
         while not (convertedBytes and convertedBytes[-1] == '\n'):
             try:
@@ -111,6 +171,10 @@ class connector:
         return self.state
 
     def sendMessage(self, m):
+        if self.channel is not None:
+            self.channel.send(m)
+            return
+
         while True:
             try:
                 self.sock.send(m.encode())
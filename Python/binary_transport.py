@@ -0,0 +1,242 @@
+import mmap
+import multiprocessing
+import os
+import queue
+import socket
+import struct
+import threading
+import time
+
+import numpy as np
+
+# Reader for the binary observation transport of the settings controller
+# (settingscontroller_client.src.Util.ObservationMessage).
+#
+# Frame layout (big-endian):
+#   int32   length of the payload in bytes
+#   byte    terminal
+#   float32 reward
+#   float32 planned angle
+#   int32 n, float32[n] observation
+#   int32 n, float32[n] path
+#   int32 n, float32[n] car intention (map)
+#
+# If a ring file is used, a negative length -1 - slot announces that the
+# frame was written to the given slot of the ring file instead.
+
+RING_HEADER_SIZE = 8
+
+
+class FrameReader:
+
+    def __init__(self, ring_path=None):
+        self.ring_path = ring_path
+        self.ring = None
+
+    def handshake(self, sock):
+        # Has to be sent again after every reconnect
+        if self.ring_path is not None:
+            sock.sendall(("MMAP " + os.path.abspath(self.ring_path) + "\n").encode())
+        else:
+            sock.sendall(b"BINARY\n")
+
+    def receive(self, sock):
+        length = struct.unpack('>i', self._read_exactly(sock, 4))[0]
+
+        if length >= 0:
+            return self.parse(self._read_exactly(sock, length))
+
+        return self.parse(self._read_slot(-1 - length))
+
+    def parse(self, payload):
+        terminal, reward, angle = struct.unpack_from('>?ff', payload, 0)
+        offset = 9
+
+        arrays = []
+        for _ in range(3):
+            n = struct.unpack_from('>i', payload, offset)[0]
+            offset += 4
+            arrays.append(np.frombuffer(payload, dtype='>f4', count=n, offset=offset).astype(np.float32))
+            offset += n * 4
+
+        return {'terminal': terminal, 'reward': reward, 'angle': angle,
+                'obs': arrays[0], 'path': arrays[1], 'map': arrays[2]}
+
+    def _read_slot(self, slot):
+        if self.ring is None:
+            with open(self.ring_path, 'rb') as f:
+                self.ring = mmap.mmap(f.fileno(), 0, access=mmap.ACCESS_READ)
+
+        slot_size = struct.unpack_from('>i', self.ring, 4)[0]
+        start = RING_HEADER_SIZE + slot * slot_size
+        length = struct.unpack_from('>i', self.ring, start)[0]
+
+        # Copy the slot, it is overwritten once the ring wraps around
+        return self.ring[start + 4:start + 4 + length]
+
+    @staticmethod
+    def _read_exactly(sock, n):
+        data = bytearray(n)
+        view = memoryview(data)
+        received = 0
+        while received < n:
+            count = sock.recv_into(view[received:], n - received)
+            if count == 0:
+                raise OSError("Connection closed")
+            received += count
+        return bytes(data)
+
+
+# Batched policy connection (settingscontroller_client.src.Util.BatchedPolicyServer).
+# A batch holds the frames of all environments of one tick:
+#   int32 length, int32 count, per entry: int32 id, int32 payload length, payload
+# and is answered with one line "id=answer;id=answer;...".
+
+class BatchConnection:
+
+    def __init__(self, sock):
+        self.sock = sock
+        self.reader = FrameReader()
+
+    def receive_batch(self):
+        length = struct.unpack('>i', FrameReader._read_exactly(self.sock, 4))[0]
+        data = FrameReader._read_exactly(self.sock, length)
+
+        count = struct.unpack_from('>i', data, 0)[0]
+        offset = 4
+
+        batch = []
+        for _ in range(count):
+            env_id, size = struct.unpack_from('>ii', data, offset)
+            offset += 8
+            batch.append((env_id, self.reader.parse(data[offset:offset + size])))
+            offset += size
+
+        return batch
+
+    def send_answers(self, answers):
+        # answers: dict or list of (environment id, answer)
+        pairs = answers.items() if isinstance(answers, dict) else answers
+        line = ";".join(str(env_id) + "=" + str(answer) for env_id, answer in pairs)
+        self.sock.sendall((line + "\n").encode())
+
+
+# Shares one BatchConnection between the agent processes of a policy.
+# The hub runs in the process that creates the agents; every agent gets
+# a channel before its process is started. Environments are assigned to
+# the channels in the order their first observation arrives, answers an
+# agent sends before that are held back until it has an environment.
+
+class BatchHub:
+
+    def __init__(self, port, host="localhost"):
+        self.address = (host, port)
+        self.answers = multiprocessing.Queue()
+        self.channels = []
+        self.routes = {}
+        self.env_ids = {}
+        self.backlog = {}
+        self.connection = None
+        self.lock = threading.Lock()
+        self.connected = threading.Condition(self.lock)
+
+    def start(self):
+        threading.Thread(target=self._receive, daemon=True).start()
+        threading.Thread(target=self._send, daemon=True).start()
+
+    def channel(self):
+        # Has to be called before the agent process is started
+        with self.lock:
+            channel = BatchChannel(len(self.channels), multiprocessing.Queue(), self.answers)
+            self.channels.append(channel)
+        return channel
+
+    def _connect(self):
+        while True:
+            try:
+                return BatchConnection(socket.create_connection(self.address))
+            except OSError:
+                print("Timeout during connect ")
+                time.sleep(5)
+
+    def _receive(self):
+        while True:
+            connection = self._connect()
+            with self.lock:
+                self.connection = connection
+                self.connected.notify_all()
+
+            try:
+                while True:
+                    for env_id, state in connection.receive_batch():
+                        self._route(env_id, state)
+            except OSError as e:
+                # the server resends the observations that were not answered
+                print(e)
+                print("Try to restore connection")
+
+            with self.lock:
+                self.connection = None
+            connection.sock.close()
+
+    def _route(self, env_id, state):
+        with self.lock:
+            index = self.routes.get(env_id)
+            if index is None:
+                if len(self.routes) == len(self.channels):
+                    print("No agent for environment " + str(env_id))
+                    return
+                index = len(self.routes)
+                self.routes[env_id] = index
+                self.env_ids[index] = env_id
+
+                for answer in self.backlog.pop(index, []):
+                    self.answers.put((index, answer))
+
+        self.channels[index].states.put(state)
+
+    def _send(self):
+        while True:
+            index, answer = self.answers.get()
+
+            # answers that are ready at the same time are sent in one line
+            answers = []
+            while True:
+                with self.lock:
+                    env_id = self.env_ids.get(index)
+                    if env_id is None:
+                        self.backlog.setdefault(index, []).append(answer)
+                    else:
+                        answers.append((env_id, answer))
+                try:
+                    index, answer = self.answers.get_nowait()
+                except queue.Empty:
+                    break
+
+            if not answers:
+                continue
+
+            with self.lock:
+                while self.connection is None:
+                    self.connected.wait()
+                connection = self.connection
+
+            try:
+                connection.send_answers(answers)
+            except OSError as e:
+                # the server resends the observations, the agents answer them again
+                print(e)
+
+
+class BatchChannel:
+
+    def __init__(self, index, states, answers):
+        self.index = index
+        self.states = states
+        self.answers = answers
+
+    def send(self, answer):
+        self.answers.put((self.index, answer.strip()))
+
+    def receive(self):
+        return self.states.get()
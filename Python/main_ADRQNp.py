@@ -8,6 +8,7 @@ import tensorflow.contrib.slim as slim
 import csv
 import time
 from ADRQN.helper import *
+from binary_transport import FrameReader
 import time
 from datetime import datetime
 
@@ -152,6 +153,8 @@ total = ""
 
 
 PORT = 4001
+BINARY_TRANSPORT = True  # Receive observations as binary float32 frames instead of text lines
+RING_FILE = None  # Path of a memory-mapped ring file for the observations (same host only)
 
 class connector:
 
@@ -161,6 +164,9 @@ class connector:
         self.sock.connect(("localhost", PORT))
         self.state = None
         self.lastAction = -1
+        self.reader = FrameReader(RING_FILE) if BINARY_TRANSPORT else None
+        if self.reader is not None:
+            self.reader.handshake(self.sock)
 
     def reset(self):
         self.sendMessage("RESET\n")
@@ -187,7 +193,32 @@ class connector:
 
         return None
 
+    def receiveBinaryMessage(self):
+        while True:
+            try:
+                state = self.reader.receive(self.sock)
+            except OSError as e:
+                print(e)
+                print("Try to restore connection")
+                while True:
+                    try:
+                        self.sock = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+                        self.sock.connect(("localhost", PORT))
+                        self.reader.handshake(self.sock)
+                        break
+                    except OSError as p:
+                        print("Timeout during connect ")
+                        time.sleep(5)
+                continue
+
+            if len(state['obs']) == 4 + num_pedestrians*2 and len(state['map']) == 100*100*3:
+                self.state = state
+                return self.state
+
     def receiveMessage(self):
+        if self.reader is not None:
+            return self.receiveBinaryMessage()
+
         convertedBytes = ""
         while not (convertedBytes and convertedBytes[-1] == '\n'):
             try:
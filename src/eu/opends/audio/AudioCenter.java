@@ -29,6 +29,7 @@ import com.jme3.audio.Listener;
 import com.jme3.audio.AudioSource.Status;
 import com.jme3.renderer.Camera;
 
+import eu.opends.basics.SimulationClock.ScheduledTask;
 import eu.opends.main.Simulator;
 
 /**
@@ -90,17 +91,63 @@ public class AudioCenter
 	}
 	
 	
-	public static void playSoundDelayed(String soundID, int milliSeconds)
+	public static void playSoundDelayed(final String soundID, int milliSeconds)
 	{
-		AudioDelayThread t = new AudioDelayThread(soundID, milliSeconds, "playSound");
-		t.start();
+		sim.getClock().schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				playSound(soundID);
+			}
+		}, milliSeconds);
 	}
 	
 	
 	private static void fadeOut(String soundID, int milliSeconds) 
 	{
-		AudioDelayThread t = new AudioDelayThread(soundID, milliSeconds, "fadeOut");
-		t.start();
+		FadeOutTask fadeOutTask = new FadeOutTask(soundID);
+		fadeOutTask.scheduledTask = sim.getClock().scheduleRepeated(fadeOutTask, milliSeconds, 200);
+	}
+	
+	
+	/**
+	 * Lowers the volume of a sound by 0.1 every 200 ms until it is silent, 
+	 * then stops the sound and restores its volume.
+	 */
+	private static class FadeOutTask implements Runnable
+	{
+		private String soundID;
+		private Float initialVolume = null;
+		private ScheduledTask scheduledTask;
+		
+		
+		FadeOutTask(String soundID)
+		{
+			this.soundID = soundID;
+		}
+		
+		
+		@Override
+		public void run()
+		{
+			float volume = getAudioNode(soundID).getVolume();
+			
+			if(initialVolume == null)
+				initialVolume = volume;
+			else
+			{
+				volume = Math.max(volume - 0.1f, 0);
+				setVolume(soundID, volume);
+			}
+			
+			if(volume <= 0)
+			{
+				stopSound(soundID);
+				setVolume(soundID, initialVolume);
+				scheduledTask.cancel();
+			}
+		}
 	}
 
 	
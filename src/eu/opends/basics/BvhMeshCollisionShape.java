@@ -0,0 +1,134 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.basics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import com.bulletphysics.collision.shapes.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.IndexedMesh;
+import com.bulletphysics.collision.shapes.OptimizedBvh;
+import com.bulletphysics.collision.shapes.TriangleIndexVertexArray;
+import com.jme3.bullet.collision.shapes.MeshCollisionShape;
+import com.jme3.bullet.util.Converter;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.scene.Mesh;
+
+/**
+ * Mesh collision shape that is saved together with its bounding volume
+ * hierarchy. A plain MeshCollisionShape builds its hierarchy again when
+ * it is loaded, which takes as long as creating the shape from the mesh.
+ */
+public class BvhMeshCollisionShape extends MeshCollisionShape
+{
+	private OptimizedBvh optimizedBvh = null;
+
+
+	/**
+	 * For loading only
+	 */
+	public BvhMeshCollisionShape()
+	{
+	}
+
+
+	public BvhMeshCollisionShape(Mesh mesh)
+	{
+		super(mesh);
+	}
+
+
+	@Override
+	protected void createShape()
+	{
+		if(optimizedBvh == null)
+		{
+			// build hierarchy from the triangles
+			super.createShape();
+			return;
+		}
+
+		bulletMesh = new IndexedMesh();
+		bulletMesh.numVertices = numVertices;
+		bulletMesh.numTriangles = numTriangles;
+		bulletMesh.vertexStride = vertexStride;
+		bulletMesh.triangleIndexStride = triangleIndexStride;
+		bulletMesh.triangleIndexBase = triangleIndexBase;
+		bulletMesh.vertexBase = vertexBase;
+
+		TriangleIndexVertexArray meshInterface = new TriangleIndexVertexArray(numTriangles,
+				triangleIndexBase, triangleIndexStride, numVertices, vertexBase, vertexStride);
+
+		// the saved hierarchy has been built for the saved scale
+		BvhTriangleMeshShape shape = new BvhTriangleMeshShape(meshInterface, true, false);
+		shape.setOptimizedBvh(optimizedBvh, Converter.convert(getScale()));
+		shape.setMargin(margin);
+		cShape = shape;
+	}
+
+
+	@Override
+	public void write(JmeExporter ex) throws IOException
+	{
+		super.write(ex);
+
+		OutputCapsule capsule = ex.getCapsule(this);
+		OptimizedBvh bvh = ((BvhTriangleMeshShape) cShape).getOptimizedBvh();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(bvh);
+		}
+		capsule.write(bytes.toByteArray(), "optimizedBvh", null);
+	}
+
+
+	@Override
+	public void read(JmeImporter im) throws IOException
+	{
+		// the hierarchy is needed by createShape(), which is called by super.read()
+		InputCapsule capsule = im.getCapsule(this);
+		byte[] bvhBytes = capsule.readByteArray("optimizedBvh", null);
+
+		optimizedBvh = null;
+		if(bvhBytes != null)
+		{
+			try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bvhBytes)))
+			{
+				optimizedBvh = (OptimizedBvh) in.readObject();
+			}
+			catch(ClassNotFoundException e)
+			{
+				System.err.println("Could not read bounding volume hierarchy, rebuilding it");
+			}
+		}
+
+		super.read(im);
+
+		// not needed anymore, the shape keeps the hierarchy
+		optimizedBvh = null;
+	}
+}
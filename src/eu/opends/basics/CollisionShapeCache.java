@@ -0,0 +1,309 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.basics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.terrain.geomipmap.TerrainPatch;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+
+/**
+ * Stores the mesh collision shapes of static map objects on disk, so they
+ * do not have to be created again on the next start. Shapes are created
+ * like CollisionShapeFactory.createMeshShape() does and are found by a
+ * hash of the triangles, transforms and scale of the map object.
+ *
+ * Map objects containing terrains are not cached.
+ */
+public class CollisionShapeCache
+{
+	// increase if the layout of the cached shapes changes
+	private static final int VERSION = 1;
+
+	private File directory;
+
+
+	/**
+	 * A geometry of a map object and its transform relative to the map object
+	 */
+	private static class MeshPart
+	{
+		Mesh mesh;
+		Transform transform;
+
+		MeshPart(Mesh mesh, Transform transform)
+		{
+			this.mesh = mesh;
+			this.transform = transform;
+		}
+	}
+
+
+	public CollisionShapeCache(String directory)
+	{
+		this.directory = new File(directory);
+	}
+
+
+	/**
+	 * Returns the mesh collision shape of a static map object, either from
+	 * the cache or created and written to the cache. May be called from
+	 * several threads at the same time, as long as the scene graph below
+	 * the node is not changed.
+	 *
+	 * @param node
+	 * 			Node of the map object (scale applied)
+	 *
+	 * @return
+	 * 			Compound of mesh collision shapes or null if the node
+	 * 			cannot be cached
+	 */
+	public CollisionShape getMeshShape(Node node)
+	{
+		List<MeshPart> parts = new ArrayList<MeshPart>();
+		if(!collectParts(node, node, parts))
+			return null;
+
+		File file = new File(directory, getKey(node, parts) + ".j3o");
+
+		if(file.isFile())
+		{
+			try {
+				Savable savable = BinaryImporter.getInstance().load(file);
+				if(savable instanceof CollisionShape)
+					return (CollisionShape) savable;
+
+				System.err.println("Invalid collision shape in cache: " + file);
+
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.err.println("Could not read collision shape from cache: " + file);
+			}
+		}
+
+		CollisionShape shape = createMeshShape(parts);
+		save(shape, file);
+		return shape;
+	}
+
+
+	private static CollisionShape createMeshShape(List<MeshPart> parts)
+	{
+		CompoundCollisionShape compoundShape = new CompoundCollisionShape();
+
+		for(MeshPart part : parts)
+		{
+			BvhMeshCollisionShape meshShape;
+
+			// converting the mesh moves the position of its buffers
+			synchronized(part.mesh)
+			{
+				meshShape = new BvhMeshCollisionShape(part.mesh);
+			}
+
+			meshShape.setScale(part.transform.getScale());
+			compoundShape.addChildShape(meshShape, part.transform.getTranslation(),
+					part.transform.getRotation().toRotationMatrix());
+		}
+
+		return compoundShape;
+	}
+
+
+	private void save(CollisionShape shape, File file)
+	{
+		try {
+			directory.mkdirs();
+
+			// write to temporary file first, other simulators may read the same file
+			File tempFile = File.createTempFile("shape", ".tmp", directory);
+			try {
+				BinaryExporter.getInstance().save(shape, tempFile);
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				tempFile.delete();
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Could not write collision shape to cache: " + file);
+		}
+	}
+
+
+	/**
+	 * Collects the triangle meshes below the given spatial in the order
+	 * CollisionShapeFactory visits them.
+	 *
+	 * @return
+	 * 			false, if a terrain has been found
+	 */
+	private static boolean collectParts(Node root, Node node, List<MeshPart> parts)
+	{
+		for(Spatial spatial : node.getChildren())
+		{
+			if(spatial instanceof TerrainQuad || spatial instanceof TerrainPatch)
+				return false;
+
+			if(spatial instanceof Node)
+			{
+				if(!collectParts(root, (Node) spatial, parts))
+					return false;
+			}
+			else if(spatial instanceof Geometry)
+			{
+				Boolean ignore = spatial.getUserData("JmePhysicsIgnore");
+				if(ignore != null && ignore)
+					continue;
+
+				Mesh mesh = ((Geometry) spatial).getMesh();
+				if(mesh != null && mesh.getMode() == Mesh.Mode.Triangles)
+					parts.add(new MeshPart(mesh, getTransform(spatial, root)));
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Transform of the spatial relative to the root, including the scale
+	 * of the root (same as CollisionShapeFactory)
+	 */
+	private static Transform getTransform(Spatial spatial, Spatial root)
+	{
+		Transform shapeTransform = new Transform();
+		Spatial parent = spatial.getParent() == null ? spatial : spatial.getParent();
+		Spatial currentSpatial = spatial;
+
+		while(parent != null)
+		{
+			if(root == currentSpatial)
+			{
+				Transform transform = new Transform();
+				transform.setScale(currentSpatial.getLocalScale());
+				shapeTransform.combineWithParent(transform);
+				parent = null;
+			}
+			else
+			{
+				shapeTransform.combineWithParent(currentSpatial.getLocalTransform());
+				parent = currentSpatial.getParent();
+				currentSpatial = parent;
+			}
+		}
+
+		return shapeTransform;
+	}
+
+
+	private static String getKey(Node node, List<MeshPart> parts)
+	{
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+			buffer.putInt(VERSION);
+			putVector(buffer, node.getLocalScale());
+			buffer.putInt(parts.size());
+
+			for(MeshPart part : parts)
+			{
+				putVector(buffer, part.transform.getTranslation());
+				Quaternion rotation = part.transform.getRotation();
+				buffer.putFloat(rotation.getX()).putFloat(rotation.getY())
+					.putFloat(rotation.getZ()).putFloat(rotation.getW());
+				putVector(buffer, part.transform.getScale());
+
+				// meshes shared by several map objects may be converted meanwhile
+				synchronized(part.mesh)
+				{
+					FloatBuffer positions = part.mesh.getFloatBuffer(Type.Position);
+					int numFloats = positions == null ? 0 : positions.limit();
+					buffer.putInt(numFloats);
+					for(int i=0; i<numFloats; i++)
+					{
+						if(buffer.remaining() < 4)
+							flush(buffer, digest);
+						buffer.putFloat(positions.get(i));
+					}
+
+					IndexBuffer indices = part.mesh.getIndicesAsList();
+					int numIndices = indices.size();
+					flush(buffer, digest);
+					buffer.putInt(numIndices);
+					for(int i=0; i<numIndices; i++)
+					{
+						if(buffer.remaining() < 4)
+							flush(buffer, digest);
+						buffer.putInt(indices.get(i));
+					}
+				}
+				flush(buffer, digest);
+			}
+			flush(buffer, digest);
+
+			StringBuilder key = new StringBuilder();
+			for(byte b : digest.digest())
+				key.append(String.format("%02x", b));
+			return key.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	private static void putVector(ByteBuffer buffer, Vector3f vector)
+	{
+		buffer.putFloat(vector.getX()).putFloat(vector.getY()).putFloat(vector.getZ());
+	}
+
+
+	private static void flush(ByteBuffer buffer, MessageDigest digest)
+	{
+		buffer.flip();
+		digest.update(buffer);
+		buffer.clear();
+	}
+}
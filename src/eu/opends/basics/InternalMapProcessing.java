@@ -21,6 +21,11 @@ package eu.opends.basics;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.jme3.bullet.PhysicsSpace;
 import com.jme3.bullet.collision.shapes.CollisionShape;
@@ -54,6 +59,12 @@ public class InternalMapProcessing
 	private PhysicsSpace physicsSpace;
 	private List<Spatial> triggerList = new ArrayList<Spatial>();
 	
+	/**
+	 * Directory the mesh collision shapes of static map objects are cached in,
+	 * null if they are created on every start
+	 */
+	public static String collisionShapeCacheDirectory = "collisionShapeCache";
+	
 	
 	public InternalMapProcessing(SimulationBasics sim)
 	{
@@ -106,7 +117,9 @@ public class InternalMapProcessing
 	 * 			List of spatial objects
 	 */
 	private void addMapObjectsToScene(List<MapObject> mapObjects)
-	{			
+	{
+		List<PhysicModel> physicModels = new ArrayList<PhysicModel>();
+		
 		for(MapObject mapObject : mapObjects)
 		{	
 			boolean skipPhysicModel = false;
@@ -237,16 +250,37 @@ public class InternalMapProcessing
 	        
 			if(!skipPhysicModel && (collisionShapeString.equalsIgnoreCase("boxShape") || collisionShapeString.equalsIgnoreCase("meshShape")))
 			{
-		        //node.setLocalTranslation(mapObject.getLocation());
-		        //node.setLocalRotation(mapObject.getRotation());
-				
-		        CollisionShape collisionShape;
-		        float mass = mapObject.getMass();
+				// collision shapes are created after all map objects have been added
+				physicModels.add(new PhysicModel(node, mapObject, collisionShapeString.equalsIgnoreCase("meshShape")));
+			}
+
+			
+	        // attach additional map object to scene node
+			if(mapObject.isAddToMapNode())
+				mapNode.attachChild(node);
+			else
+				sceneNode.attachChild(node);
+		}
+		
+		createStaticMeshShapes(physicModels);
+		
+		for(PhysicModel physicModel : physicModels)
+		{
+			Node node = physicModel.node;
+			MapObject mapObject = physicModel.mapObject;
+			
+	        //node.setLocalTranslation(mapObject.getLocation());
+	        //node.setLocalRotation(mapObject.getRotation());
+			
+	        CollisionShape collisionShape = physicModel.collisionShape;
+	        float mass = mapObject.getMass();
 
+	        if(collisionShape == null)
+	        {
 		        if(mass == 0)
 		        {
 		        	// mesh shape for static objects
-			        if(collisionShapeString.equalsIgnoreCase("meshShape"))
+			        if(physicModel.isMeshShape)
 			        	collisionShape = CollisionShapeFactory.createMeshShape(node);
 			        else
 			        	collisionShape = CollisionShapeFactory.createBoxShape(node);
@@ -254,30 +288,96 @@ public class InternalMapProcessing
 		        else
 		        {
 			        // set whether triangle accuracy should be applied
-			        if(collisionShapeString.equalsIgnoreCase("meshShape"))
+			        if(physicModel.isMeshShape)
 			        	collisionShape = CollisionShapeFactory.createDynamicMeshShape(node);
 			        else
 			        	collisionShape = CollisionShapeFactory.createBoxShape(node);
-		        }		        
-		        
-		        RigidBodyControl physicsControl = new RigidBodyControl(collisionShape, mass);
-		        node.addControl(physicsControl);
+		        }
+	        }
+	        
+	        RigidBodyControl physicsControl = new RigidBodyControl(collisionShape, mass);
+	        node.addControl(physicsControl);
 
-		        physicsControl.setPhysicsLocation(mapObject.getLocation());
-		        physicsControl.setPhysicsRotation(mapObject.getRotation());
-		        
-		        //physicsControl.setFriction(100);
-		        
-		        // add additional map object to physics space
-		        physicsSpace.add(physicsControl);
+	        physicsControl.setPhysicsLocation(mapObject.getLocation());
+	        physicsControl.setPhysicsRotation(mapObject.getRotation());
+	        
+	        //physicsControl.setFriction(100);
+	        
+	        // add additional map object to physics space
+	        physicsSpace.add(physicsControl);
+		}
+	}
+	
+	
+	/**
+	 * Looks up the mesh shapes of static map objects in the collision shape 
+	 * cache. Shapes not found are created in parallel and added to the cache.
+	 * Other shapes are left to the caller.
+	 * 
+	 * @param physicModels
+	 * 			Map objects with physics, already added to the scene
+	 */
+	private void createStaticMeshShapes(List<PhysicModel> physicModels)
+	{
+		if(collisionShapeCacheDirectory == null)
+			return;
+		
+		final CollisionShapeCache cache = new CollisionShapeCache(collisionShapeCacheDirectory);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		List<Future<CollisionShape>> futures = new ArrayList<Future<CollisionShape>>();
+		
+		for(final PhysicModel physicModel : physicModels)
+		{
+			if(physicModel.isMeshShape && physicModel.mapObject.getMass() == 0)
+			{
+				futures.add(executor.submit(new Callable<CollisionShape>()
+				{
+					@Override
+					public CollisionShape call()
+					{
+						return cache.getMeshShape(physicModel.node);
+					}
+				}));
 			}
-
-			
-	        // attach additional map object to scene node
-			if(mapObject.isAddToMapNode())
-				mapNode.attachChild(node);
 			else
-				sceneNode.attachChild(node);
+				futures.add(null);
+		}
+		
+		for(int i=0; i<physicModels.size(); i++)
+		{
+			if(futures.get(i) == null)
+				continue;
+			
+			try {
+				
+				// null if the shape has to be created by the factory
+				physicModels.get(i).collisionShape = futures.get(i).get();
+				
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		executor.shutdown();
+	}
+	
+	
+	/**
+	 * Map object that will be added to the physics space
+	 */
+	private static class PhysicModel
+	{
+		Node node;
+		MapObject mapObject;
+		boolean isMeshShape;
+		CollisionShape collisionShape = null;
+		
+		PhysicModel(Node node, MapObject mapObject, boolean isMeshShape)
+		{
+			this.node = node;
+			this.mapObject = mapObject;
+			this.isMeshShape = isMeshShape;
 		}
 	}
 	
@@ -23,8 +23,11 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.BulletAppState.ThreadingType;
+import com.jme3.bullet.PhysicsTickListener;
 import com.jme3.app.SimpleApplication;
 import com.jme3.asset.AssetNotFoundException;
 import com.jme3.asset.plugins.FileLocator;
@@ -50,6 +53,7 @@ import eu.opends.car.ResetPosition;
 import eu.opends.drivingTask.DrivingTask;
 import eu.opends.drivingTask.interaction.InteractionLoader;
 import eu.opends.drivingTask.scenario.ScenarioLoader;
+import eu.opends.drivingTask.scene.SceneCache;
 import eu.opends.drivingTask.scene.SceneLoader;
 import eu.opends.drivingTask.settings.SettingsLoader;
 import eu.opends.drivingTask.settings.SettingsLoader.Setting;
@@ -98,6 +102,33 @@ public class SimulationBasics extends SimpleApplication
 	protected Node coordinateSystem = new Node("coordinateSystem");
 
 	protected PhysicalTraffic physicalTraffic = new PhysicalTraffic();
+	protected SceneCache sceneCache = new SceneCache();
+	
+	/**
+	 * SEQUENTIAL steps physics on the render thread, PARALLEL on a physics 
+	 * thread while the frame is rendered. Has to be set before start().
+	 * 
+	 * PARALLEL only overlaps physics with rendering: the step is started in 
+	 * render() and joined in postRender(), so the update loop never runs 
+	 * next to it. Headless runs (and the physics-only profile) have nothing 
+	 * to overlap with and should stay SEQUENTIAL.
+	 */
+	public ThreadingType physicsThreading = ThreadingType.SEQUENTIAL;
+	
+	/**
+	 * Physics steps per second of simulated time, independent of the frame rate
+	 */
+	public int physicsTickRate = 60;
+	
+	/**
+	 * Maximum number of physics steps per frame, simulated time is lost 
+	 * if a frame takes longer
+	 */
+	public int maxPhysicsSubSteps = 4;
+	
+	private final ReentrantLock physicsLock = new ReentrantLock();
+	
+	protected SimulationClock clock = new SimulationClock();
 
 	public PhysicalTraffic getPhysicalTraffic() {
 		return physicalTraffic;
@@ -168,6 +199,26 @@ public class SimulationBasics extends SimpleApplication
     {
         return bulletAppState.getSpeed();
     }
+    
+    
+    /**
+     * Lock held by each physics step. Threads other than the render thread 
+     * hold it while reading the car and traffic, so they never see a world 
+     * that is being stepped.
+     */
+    public ReentrantLock getPhysicsLock()
+    {
+        return physicsLock;
+    }
+    
+    
+    /**
+     * Clock of the simulation time, which does not advance while paused
+     */
+    public SimulationClock getClock()
+    {
+        return clock;
+    }
 
 	private List<ResetPosition> resetPositionList = new LinkedList<>();
 
@@ -202,6 +253,16 @@ public class SimulationBasics extends SimpleApplication
 	{
 		return drivingTask;
 	}
+
+	
+	/**
+	 * Spatials of the driving tasks loaded by this simulator, shared by
+	 * all later loads of driving tasks defining the same models
+	 */
+	public SceneCache getSceneCache()
+	{
+		return sceneCache;
+	}
 	
 	
 	public SettingsLoader getSettingsLoader()
@@ -285,7 +346,28 @@ public class SimulationBasics extends SimpleApplication
     	
     	// init physics
         bulletAppState = new BulletAppState();
+        if(physicsThreading == ThreadingType.PARALLEL && Simulator.isHeadLess)
+        	System.err.println("Parallel physics only overlaps with rendering and does not speed up headless runs");
+        bulletAppState.setThreadingType(physicsThreading);
         stateManager.attach(bulletAppState);
+        
+        PhysicsSpace physicsSpace = bulletAppState.getPhysicsSpace();
+        physicsSpace.setAccuracy(1f/physicsTickRate);
+        physicsSpace.setMaxSubSteps(maxPhysicsSubSteps);
+        physicsSpace.addTickListener(new PhysicsTickListener()
+        {
+			@Override
+			public void prePhysicsTick(PhysicsSpace space, float tpf)
+			{
+				physicsLock.lock();
+			}
+
+			@Override
+			public void physicsTick(PhysicsSpace space, float tpf)
+			{
+				physicsLock.unlock();
+			}
+        });
 		
         // register loader for *.properties-files
         assetManager.registerLoader(PropertiesLoader.class, "properties");
@@ -306,6 +388,10 @@ public class SimulationBasics extends SimpleApplication
         //if (settings.getRenderer().startsWith("LWJGL")) 
         //	sceneNode.setShadowMode(ShadowMode.Receive);
         
+        // nothing below is needed if the scene is never rendered
+        if(Simulator.isPhysicsOnly)
+        	return;
+        
         // setup light settings
         lightFactory = new LightFactory(this);
         lightFactory.initLight();
@@ -0,0 +1,275 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.basics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Time of the simulation, advanced by the frame time (tpf) of each update 
+ * while the simulation is not paused. Timers and delays use this clock 
+ * instead of the system time, so they stay in line with the simulation 
+ * when it runs slower or faster than real time or is paused.
+ * 
+ * Delayed and repeated activities (trigger delays, turn signals, traffic 
+ * light programs, HMI updates, ...) are scheduled as tasks on this clock 
+ * instead of running a thread each. The tasks are kept in a hashed timer 
+ * wheel and are run by the update loop as soon as they are due.
+ */
+public class SimulationClock
+{
+	// resolution of the timer wheel (10 ms) and number of buckets
+	private static final long TICK_NANOS = 10000000L;
+	private static final int WHEEL_SIZE = 512;
+	
+	private long timeNanos = 0;
+	private boolean isClosed = false;
+	
+	private long currentTick = 0;
+	private long taskCounter = 0;
+	private List<List<ScheduledTask>> wheel = new ArrayList<List<ScheduledTask>>(WHEEL_SIZE);
+	
+	
+	/**
+	 * Handle of a task scheduled on the simulation clock
+	 */
+	public static class ScheduledTask
+	{
+		private Runnable runnable;
+		private long periodNanos;
+		private long dueTick;
+		private long sequenceNumber;
+		private volatile boolean isCancelled = false;
+		
+		
+		private ScheduledTask(Runnable runnable, long periodNanos)
+		{
+			this.runnable = runnable;
+			this.periodNanos = periodNanos;
+		}
+		
+		
+		/**
+		 * Prevents the task from running again. May be called by the task itself.
+		 */
+		public void cancel()
+		{
+			isCancelled = true;
+		}
+		
+		
+		public boolean isCancelled()
+		{
+			return isCancelled;
+		}
+	}
+	
+	
+	private static final Comparator<ScheduledTask> dueOrder = new Comparator<ScheduledTask>()
+	{
+		@Override
+		public int compare(ScheduledTask task1, ScheduledTask task2)
+		{
+			if(task1.dueTick != task2.dueTick)
+				return Long.compare(task1.dueTick, task2.dueTick);
+			
+			return Long.compare(task1.sequenceNumber, task2.sequenceNumber);
+		}
+	};
+	
+	
+	public SimulationClock()
+	{
+		for(int i=0; i<WHEEL_SIZE; i++)
+			wheel.add(new ArrayList<ScheduledTask>());
+	}
+	
+	
+	/**
+	 * Advances the clock and runs all tasks that have become due (in the 
+	 * order of their due time). Called once per frame by the simulator.
+	 * 
+	 * @param tpf
+	 * 			Time per frame in seconds
+	 */
+	public void update(float tpf)
+	{
+		List<ScheduledTask> dueTasks;
+		
+		synchronized(this)
+		{
+			timeNanos += (long) (tpf * 1000000000d);
+			dueTasks = collectDueTasks(timeNanos / TICK_NANOS);
+		}
+		
+		for(ScheduledTask task : dueTasks)
+		{
+			if(task.isCancelled)
+				continue;
+			
+			try {
+				
+				task.runnable.run();
+				
+			} catch (Exception e) {
+				
+				e.printStackTrace();
+			}
+			
+			if(task.periodNanos > 0)
+				reschedule(task, task.periodNanos);
+		}
+	}
+	
+	
+	/**
+	 * Removes the tasks due until the given tick from the wheel. Only the 
+	 * buckets of the ticks passed since the last update are visited; tasks 
+	 * due in a later round of the wheel stay in their bucket.
+	 */
+	private List<ScheduledTask> collectDueTasks(long newTick)
+	{
+		List<ScheduledTask> dueTasks = new ArrayList<ScheduledTask>();
+		
+		long numberOfTicks = Math.min(newTick - currentTick, WHEEL_SIZE);
+		for(long tick=newTick-numberOfTicks+1; tick<=newTick; tick++)
+		{
+			Iterator<ScheduledTask> iterator = wheel.get(getBucket(tick)).iterator();
+			while(iterator.hasNext())
+			{
+				ScheduledTask task = iterator.next();
+				if(task.isCancelled)
+					iterator.remove();
+				else if(task.dueTick <= newTick)
+				{
+					dueTasks.add(task);
+					iterator.remove();
+				}
+			}
+		}
+		currentTick = Math.max(currentTick, newTick);
+		
+		Collections.sort(dueTasks, dueOrder);
+		return dueTasks;
+	}
+	
+	
+	/**
+	 * Runs the given task once on the update loop after the given amount 
+	 * of simulation time has passed.
+	 * 
+	 * @param runnable
+	 * 			Task to run
+	 * 
+	 * @param delayMillis
+	 * 			Simulation time to wait in milliseconds
+	 * 
+	 * @return
+	 * 			Handle to cancel the task
+	 */
+	public ScheduledTask schedule(Runnable runnable, long delayMillis)
+	{
+		ScheduledTask task = new ScheduledTask(runnable, 0);
+		reschedule(task, delayMillis * 1000000L);
+		return task;
+	}
+	
+	
+	/**
+	 * Runs the given task repeatedly on the update loop, first after the 
+	 * given delay and then every period (measured from the end of the 
+	 * previous run) until it is cancelled.
+	 * 
+	 * @param runnable
+	 * 			Task to run
+	 * 
+	 * @param delayMillis
+	 * 			Simulation time to wait before the first run in milliseconds
+	 * 
+	 * @param periodMillis
+	 * 			Simulation time between two runs in milliseconds (&gt; 0)
+	 * 
+	 * @return
+	 * 			Handle to cancel the task
+	 */
+	public ScheduledTask scheduleRepeated(Runnable runnable, long delayMillis, long periodMillis)
+	{
+		ScheduledTask task = new ScheduledTask(runnable, Math.max(periodMillis, 1) * 1000000L);
+		reschedule(task, delayMillis * 1000000L);
+		return task;
+	}
+	
+	
+	private synchronized void reschedule(ScheduledTask task, long delayNanos)
+	{
+		if(isClosed || task.isCancelled)
+			return;
+		
+		// round up: a task never runs before its delay has passed
+		long dueNanos = timeNanos + Math.max(delayNanos, 0);
+		task.dueTick = Math.max((dueNanos + TICK_NANOS - 1) / TICK_NANOS, currentTick + 1);
+		task.sequenceNumber = taskCounter++;
+		wheel.get(getBucket(task.dueTick)).add(task);
+	}
+	
+	
+	private static int getBucket(long tick)
+	{
+		return (int) (tick % WHEEL_SIZE);
+	}
+	
+	
+	/**
+	 * Returns the simulation time.
+	 * 
+	 * @return
+	 * 			Milliseconds since the start of the simulation
+	 */
+	public synchronized long getTimeMillis()
+	{
+		return timeNanos / 1000000L;
+	}
+	
+	
+	/**
+	 * Returns the simulation time.
+	 * 
+	 * @return
+	 * 			Seconds since the start of the simulation
+	 */
+	public synchronized float getTimeSeconds()
+	{
+		return timeNanos / 1000000000f;
+	}
+	
+	
+	/**
+	 * Drops all scheduled tasks and ignores further ones, as the simulator 
+	 * is closing.
+	 */
+	public synchronized void close()
+	{
+		isClosed = true;
+		for(List<ScheduledTask> bucket : wheel)
+			bucket.clear();
+	}
+}
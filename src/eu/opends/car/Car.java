@@ -470,6 +470,72 @@ public abstract class Car
 	{
 		return carControl.getPhysicsRotation();
 	}
+
+	
+	/**
+	 * Physics body and controls of a car, see getState() and setState()
+	 */
+	public static class State
+	{
+		private Vector3f location;
+		private Quaternion rotation;
+		private Vector3f linearVelocity;
+		private Vector3f angularVelocity;
+		private float steeringWheelState;
+		private float acceleratorPedalIntensity;
+		private float brakePedalIntensity;
+		private float clutchPedalIntensity;
+		private float previousClutchPedalIntensity;
+		private float traction;
+	}
+	
+	
+	public State getState()
+	{
+		State state = new State();
+		state.location = carControl.getPhysicsLocation();
+		state.rotation = carControl.getPhysicsRotation();
+		state.linearVelocity = carControl.getLinearVelocity();
+		state.angularVelocity = carControl.getAngularVelocity();
+		state.steeringWheelState = steeringWheelState;
+		state.acceleratorPedalIntensity = acceleratorPedalIntensity;
+		state.brakePedalIntensity = brakePedalIntensity;
+		state.clutchPedalIntensity = clutchPedalIntensity;
+		state.previousClutchPedalIntensity = previousClutchPedalIntensity;
+		state.traction = traction;
+		return state;
+	}
+	
+	
+	/**
+	 * Restores the state of the car. The suspension is reset, as the
+	 * wheels of the physics engine keep no restorable state.
+	 */
+	public void setState(State state)
+	{
+		// the physics rotation is set directly, setRotation() would compensate the heading
+		carControl.setPhysicsLocation(state.location);
+		carControl.setPhysicsRotation(state.rotation);
+		carControl.resetVelocity();
+		carControl.setVelocity(state.linearVelocity, state.angularVelocity);
+		previousPosition = state.location.clone();
+		
+		if(trailerControl != null)
+		{
+			trailerControl.setPhysicsLocation(state.location);
+			trailerControl.setPhysicsRotation(state.rotation);
+			trailerControl.resetVelocity();
+			trailerControl.setVelocity(state.linearVelocity, state.angularVelocity);
+		}
+		
+		steeringWheelState = state.steeringWheelState;
+		carControl.steer(steeringWheelState + steeringInfluenceByCrosswind);
+		acceleratorPedalIntensity = state.acceleratorPedalIntensity;
+		brakePedalIntensity = state.brakePedalIntensity;
+		clutchPedalIntensity = state.clutchPedalIntensity;
+		previousClutchPedalIntensity = state.previousClutchPedalIntensity;
+		traction = state.traction;
+	}
 	
 	
 	/**
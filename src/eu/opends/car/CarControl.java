@@ -202,5 +202,30 @@ public class CarControl
 	}
 
 
+	public Vector3f getAngularVelocity()
+	{
+		if(type == PhysicsType.BULLET)
+			return bulletVehicleControl.getAngularVelocity();
+		else
+			return new Vector3f(0,0,0);
+	}
+
+
+	public synchronized void setVelocity(Vector3f linearVelocity, Vector3f angularVelocity)
+	{
+		if(type == PhysicsType.BULLET)
+		{
+			bulletVehicleControl.setLinearVelocity(linearVelocity);
+			bulletVehicleControl.setAngularVelocity(angularVelocity);
+			bulletVehicleControl.clearForces();
+			bulletVehicleControl.activate();
+		}
+		else
+		{
+			System.err.println("Cannot set velocity of Chrono vehicles");
+		}
+	}
+
+
 
 }
\ No newline at end of file
@@ -45,7 +45,7 @@ public class LightTexturesContainer
 	private Node carNode;
 	private LightState lightState;
 	private HashMap<LightState,HashMap<Spatial,Material>> lightTexturesContainer;
-	private TurnSignalThread turnSignalThread;
+	private TurnSignalTask turnSignalTask;
 	private boolean applyTexture = false;
 	
 	
@@ -75,8 +75,8 @@ public class LightTexturesContainer
 		// load lights texture file
 		processLightTexturesFile(lightTexturesPath);
 		
-		// init turn signal thread
-		turnSignalThread = new TurnSignalThread(this, sim, car);
+		// init turn signal task
+		turnSignalTask = new TurnSignalTask(this, sim, car);
 		
 		// init light state
 		//lightState = LightState.AllOff;
@@ -135,22 +135,22 @@ public class LightTexturesContainer
 	
 	public void setTurnSignal(TurnSignalState turnSignalState)
 	{
-		//start turn signal thread if not running
-		if(!turnSignalThread.isAlive())
-			turnSignalThread.start();
+		//start turn signal task if not running
+		if(!turnSignalTask.isRunning())
+			turnSignalTask.start();
 
 		// set requested turn signal
-		turnSignalThread.setTurnSignalState(turnSignalState);
+		turnSignalTask.setTurnSignalState(turnSignalState);
 	}
 
 	
 	public TurnSignalState getTurnSignal() 
 	{
 		// if not running
-		if(!turnSignalThread.isAlive())
+		if(!turnSignalTask.isRunning())
 			return TurnSignalState.OFF;
 		else
-			return turnSignalThread.getTurnSignalState();
+			return turnSignalTask.getTurnSignalState();
 	}
 	
 	
@@ -196,7 +196,7 @@ public class LightTexturesContainer
 	
 	public void close() 
 	{
-		turnSignalThread.requestStop();
+		turnSignalTask.requestStop();
 	}
 	
 	
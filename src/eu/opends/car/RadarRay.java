@@ -18,11 +18,9 @@
 
 package eu.opends.car;
 
-import com.jme3.collision.CollisionResults;
 import com.jme3.material.Material;
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.Quaternion;
-import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
@@ -32,24 +30,24 @@ import com.jme3.scene.shape.Sphere;
 import eu.opends.main.Simulator;
 
 
+/**
+ * Single beam of the {@link RadarSensor}. Holds the direction of the beam 
+ * relative to the car and, in debug mode, the geometries showing the beam 
+ * and the measured distance.
+ */
 public class RadarRay 
 {
 	private Simulator sim;
-	private Node raySourceNode;
 	private Vector3f direction;
-	private float maxRange;
 	private boolean debug;
-	private Node rayTargetNode = new Node();
 	private Node rayDistanceNode = new Node();
 	
 	
 	public RadarRay(Simulator sim, Node raySourceNode, String rayID, Vector3f direction, float maxRange, boolean debug)
 	{
 		this.sim = sim;
-		this.raySourceNode = raySourceNode;
 		direction.normalizeLocal();
 		this.direction = direction;
-		this.maxRange = maxRange;
 		this.debug = debug;
 		
 		if(debug)
@@ -67,50 +65,29 @@ public class RadarRay
 			rayDistanceNode.attachChild(rayTarget);
 			raySourceNode.attachChild(rayDistanceNode);
 		}
-		
-		rayTargetNode.setLocalTranslation(direction);
-		raySourceNode.attachChild(rayTargetNode);
 	}
 
 
-	public float getDistanceToObstacle() 
+	/**
+	 * @return
+	 * 			Normalized direction of the beam relative to the ray source
+	 */
+	public Vector3f getDirection()
 	{
-		Vector3f targetPos = rayTargetNode.getWorldTranslation();
-		Vector3f sourcePos = raySourceNode.getWorldTranslation();
-				
-		Vector3f worldDirection = targetPos.subtract(sourcePos);
-		worldDirection.normalizeLocal();
-		
-		//System.err.println(dir);
-		
-		Ray ray = new Ray(sourcePos, worldDirection);
-		CollisionResults results = new CollisionResults();
-		sim.getSceneNode().collideWith(ray, results);
+		return direction;
+	}
 
-		
-		float distance = maxRange;
-		if (results.size() > 0) 
-		{
-			for(int k=0; k< results.size(); k++)
-			{
-				String name = results.getCollision(k).getGeometry().getName();
-				if(!name.startsWith("RaySource_") && 
-				   !name.startsWith("RayTarget_") && 
-				   !name.startsWith("RayCylinder_"))
-				{
-					float d = results.getCollision(k).getDistance();
-					if(d < distance)
-						distance = d;
-					
-					//System.err.println(name + " in " + d);
-				}
-			}
-		}
-		
+
+	/**
+	 * Moves the target marker to the measured distance (debug only).
+	 * 
+	 * @param distance
+	 * 			Distance to the closest obstacle
+	 */
+	public void showDistance(float distance) 
+	{
 		if(debug)
 			rayDistanceNode.setLocalTranslation(direction.mult(distance));
-		
-		return distance;
 	}
 	
 
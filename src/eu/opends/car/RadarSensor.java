@@ -1,38 +1,112 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
 package eu.opends.car;
 
 import java.util.ArrayList;
 
-import com.jme3.collision.CollisionResults;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CollisionWorld;
+import com.bulletphysics.collision.dispatch.CollisionWorld.ClosestRayResultCallback;
+import com.bulletphysics.dynamics.RigidBody;
+import com.jme3.bullet.control.VehicleControl;
+import com.jme3.bullet.util.Converter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
 
-import com.jme3.scene.Spatial;
 import eu.opends.main.Simulator;
 
+/**
+ * Range sensor (LiDAR or radar) of the driving car. A fan of rays is cast 
+ * from the front of the car against the physics space once per update; 
+ * the distance to the closest obstacle of each ray is available as range 
+ * array, e.g. for controllers connected to the settings controller.
+ * 
+ * Rays are cast by Bullet's ray test instead of against the scene graph, 
+ * one after another while no physics step is running. Bullet's triangle 
+ * mesh shapes share temporary objects during ray tests, hence rays must 
+ * not be cast from several threads at once.
+ */
 public class RadarSensor
 {
-	private static final boolean enabled = false;
-	private static final boolean debug = true;
-	private static final float maxRange = 10.0f;
-	private Node raySourceNode = new Node();
-	private ArrayList<RadarRay> radarRayList = new ArrayList<>();
-
-	Node tmpCityNode;
-	Simulator sim;
+	// switch on to scan the scene
+	public static boolean enabled = false;
+	
+	// show rays and measured distances in the scene
+	public static boolean debug = false;
+	
+	// maximum distance (in meters) reported if a ray does not hit anything
+	public static float maxRange = 50.0f;
+	
+	// scan pattern: number of rays per layer and horizontal opening angle (in degrees, 
+	// 360 for a full circle) and number of layers and vertical opening angle (in degrees)
+	public static int horizontalRays = 37;
+	public static float horizontalFieldOfView = 180f;
+	public static int verticalLayers = 1;
+	public static float verticalFieldOfView = 0f;
+	
+	// position of the sensor relative to the car
+	public static Vector3f mountingPosition = new Vector3f(0, 0.5f, -1.6f);
+	
+	private Simulator sim;
+	private Car car;
+	private Node raySourceNode = new Node("RaySource");
+	private ArrayList<RadarRay> radarRayList = new ArrayList<RadarRay>();
+	private float[] ranges = new float[0];
 
 
-	public RadarSensor(Simulator sim, Node carNode)
+	public RadarSensor(Simulator sim, Car car)
 	{
 		if(enabled)
 		{
 			this.sim = sim;
-			Node cityNode = (Node) sim.getSceneNode().getChild(4);
-			tmpCityNode = (Node) cityNode.getChild(0);
-
-
+			this.car = car;
+			
 			// place ray source node in front of car
-			raySourceNode.setLocalTranslation(new Vector3f(0, 0.5f, -1.6f));
-			carNode.attachChild(raySourceNode);
+			raySourceNode.setLocalTranslation(mountingPosition);
+			car.getCarNode().attachChild(raySourceNode);
+			
+			// create rays from left to right, lowest layer first
+			boolean isFullCircle = horizontalFieldOfView >= 360;
+			int horizontalSteps = Math.max(isFullCircle ? horizontalRays : horizontalRays - 1, 1);
+			int verticalSteps = Math.max(verticalLayers - 1, 1);
+			
+			for(int y=0; y<verticalLayers; y++)
+			{
+				float elevation = FastMath.DEG_TO_RAD * (verticalLayers == 1 ? 0 :
+					-verticalFieldOfView/2f + y * verticalFieldOfView / verticalSteps);
+				
+				for(int x=0; x<horizontalRays; x++)
+				{
+					float azimuth = FastMath.DEG_TO_RAD * (horizontalRays == 1 ? 0 :
+						-horizontalFieldOfView/2f + x * horizontalFieldOfView / horizontalSteps);
+					
+					// forward is -z in car coordinates, right is +x
+					Vector3f direction = new Vector3f(FastMath.sin(azimuth) * FastMath.cos(elevation),
+							FastMath.sin(elevation), -FastMath.cos(azimuth) * FastMath.cos(elevation));
+					radarRayList.add(new RadarRay(sim, raySourceNode, "ray_"+x+"_"+y, direction, maxRange, debug));
+				}
+			}
+			
+			ranges = new float[radarRayList.size()];
 		}
 	}
 
@@ -41,68 +115,106 @@ public class RadarSensor
 	{
 		if(enabled)
 		{
-			int x = 0;
-			for (Spatial tmpSpatial : tmpCityNode.getChildren()) {
-				Node object = (Node) tmpSpatial;
-				Vector3f direction = object.getWorldTranslation().subtract(raySourceNode.getWorldTranslation());
-				RadarRay ray = new RadarRay(sim, raySourceNode, "ray_"+x, direction, maxRange, debug);
-				ray.getDistanceToObstacle();
-				++x;
+			VehicleControl vehicleControl = car.getCarControl().getBulletVehicleControl();
+			if(vehicleControl == null)
+				return;
+			
+			// transform rays to world coordinates
+			Vector3f sourcePos = raySourceNode.getWorldTranslation();
+			Quaternion sourceRotation = raySourceNode.getWorldRotation();
+			
+			int numberOfRays = radarRayList.size();
+			javax.vecmath.Vector3f from = Converter.convert(sourcePos);
+			javax.vecmath.Vector3f[] to = new javax.vecmath.Vector3f[numberOfRays];
+			for(int i=0; i<numberOfRays; i++)
+			{
+				Vector3f direction = sourceRotation.mult(radarRayList.get(i).getDirection());
+				to[i] = Converter.convert(direction.multLocal(maxRange).addLocal(sourcePos));
+			}
+			
+			CollisionWorld collisionWorld = sim.getBulletPhysicsSpace().getDynamicsWorld();
+			RigidBody carBody = vehicleControl.getObjectId();
+			float[] newRanges = new float[numberOfRays];
+			
+			// physics must not be stepped while rays are cast
+			sim.getPhysicsLock().lock();
+			try {
+				castRays(collisionWorld, carBody, from, to, newRanges);
+				ranges = newRanges;
+			} finally {
+				sim.getPhysicsLock().unlock();
+			}
+			
+			if(debug)
+			{
+				for(int i=0; i<numberOfRays; i++)
+					radarRayList.get(i).showDistance(newRanges[i]);
 			}
 		}
 	}
-}
-
-
-/*
-package eu.opends.car;
-
-import java.util.ArrayList;
-
-import com.jme3.math.Vector3f;
-import com.jme3.scene.Node;
-
-import eu.opends.main.Simulator;
-
-public class RadarSensor 
-{
-	private static final boolean enabled = false;
-	private static final boolean debug = true;
-	private static final float maxRange = 10.0f;
-	private Node raySourceNode = new Node();
-	private ArrayList<RadarRay> radarRayList = new ArrayList<RadarRay>();
 	
 	
-	public RadarSensor(Simulator sim, Node carNode)
-	{		
-		if(enabled)
+	/**
+	 * Casts all rays and stores the distance to the closest hit (or the 
+	 * maximum range) of each ray.
+	 */
+	private static void castRays(CollisionWorld collisionWorld, final RigidBody carBody, 
+			javax.vecmath.Vector3f from, javax.vecmath.Vector3f[] to, float[] ranges)
+	{
+		for(int i=0; i<to.length; i++)
 		{
-			// place ray source node in front of car
-			raySourceNode.setLocalTranslation(new Vector3f(0, 0.25f, -1.6f));
-			carNode.attachChild(raySourceNode);
-			
-			// create rays
-			for(float x=-0.8f; x<=0.8f; x+=0.1f)
+			ClosestRayResultCallback callback = new ClosestRayResultCallback(from, to[i])
 			{
-				for(float y=-0.12f; y<=0.12f; y+=0.04f)
+				@Override
+				public boolean needsCollision(BroadphaseProxy proxy)
 				{
-					//Vector3f direction = new Vector3f(-0.3f,0.2f,-0.8f);
-					Vector3f direction = new Vector3f(x,y,-0.8f);
-					RadarRay ray = new RadarRay(sim, raySourceNode, "ray_"+x+"_"+y, direction, maxRange, debug);
-					radarRayList.add(ray);
+					// ignore the car itself and ghost objects
+					CollisionObject collisionObject = (CollisionObject) proxy.clientObject;
+					return collisionObject != carBody && collisionObject.hasContactResponse();
 				}
-			}
+			};
+			
+			collisionWorld.rayTest(from, to[i], callback);
+			
+			if(callback.hasHit())
+				ranges[i] = callback.closestHitFraction * maxRange;
+			else
+				ranges[i] = maxRange;
 		}
 	}
-
-
-	public void update()
+	
+	
+	/**
+	 * Returns the distances (in meters) measured by the last scan, from left 
+	 * to right and lowest layer first. Rays not hitting anything report the 
+	 * maximum range.
+	 * 
+	 * @return
+	 * 			Distance per ray (empty if the sensor is disabled)
+	 */
+	public float[] getRanges()
 	{
-		if(enabled)
+		return ranges.clone();
+	}
+	
+	
+	/**
+	 * Returns the distances of the last scan as comma-separated list 
+	 * (centimeter precision).
+	 * 
+	 * @return
+	 * 			Distance per ray
+	 */
+	public String getRangesAsString()
+	{
+		float[] currentRanges = ranges;
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i<currentRanges.length; i++)
 		{
-			for(RadarRay rr : radarRayList)
-				System.err.println("Obstacle in: " + rr.getDistanceToObstacle() + " m");
+			if(i > 0)
+				builder.append(',');
+			builder.append(Math.round(currentRanges[i] * 100f) / 100f);
 		}
+		return builder.toString();
 	}
 }
-*/
\ No newline at end of file
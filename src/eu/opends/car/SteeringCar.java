@@ -24,12 +24,14 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 
+import com.jme3.bullet.objects.VehicleWheel;
 import com.jme3.collision.CollisionResults;
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.FastMath;
 import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.SceneGraphVisitorAdapter;
 
 import eu.opends.basics.SimulationBasics;
 import eu.opends.car.LightTexturesContainer.TurnSignalState;
@@ -78,7 +80,7 @@ public class SteeringCar extends Car implements TrafficObject
 	private boolean suppressDeactivationByBrake = false;
 	
 	// crosswind (will influence steering angle)
-	private Crosswind crosswind = new Crosswind("left", 0, 0);
+	private Crosswind crosswind;
 	
 	private FollowBox followBox = null;
 	
@@ -86,12 +88,29 @@ public class SteeringCar extends Car implements TrafficObject
 	
 	private HashMap<String,Float> frictionMap;
 	
+	// scene geometries with an entry in the friction map (resolved on first use)
+	private ArrayList<Geometry> frictionSurfaceList = null;
+	
+	// friction surface each wheel was found on last and its friction
+	private Geometry[] wheelSurfaces = null;
+	private float[] wheelSurfaceFrictions = null;
+	
+	// scene geometries the distance to the road surface is measured to (resolved on first use)
+	private ArrayList<Geometry> roadSurfaceList = null;
+	
+	private Ray surfaceRay = new Ray();
+	private CollisionResults surfaceResults = new CollisionResults();
+	private Vector3f wheelLocation = new Vector3f();
+	private Vector3f wheelCollisionLocation = new Vector3f();
+	private Vector3f wheelRayDirection = new Vector3f();
+	
 	private RadarSensor radarSensor;
 	
     
 	public SteeringCar(Simulator sim) 
 	{		
 		this.sim = sim;
+		crosswind = new Crosswind(sim.getClock(), "left", 0, 0);
 		
 		DrivingTask drivingTask = sim.getDrivingTask();
 		ScenarioLoader scenarioLoader = drivingTask.getScenarioLoader();
@@ -169,7 +188,7 @@ public class SteeringCar extends Car implements TrafficObject
         	followBox = new FollowBox(sim, this, followBoxSettings, isAutoPilot);
         // AutoPilot **************************************************************	
         
-        radarSensor = new RadarSensor(sim, carNode);
+        radarSensor = new RadarSensor(sim, this);
 	}
 
 
@@ -194,7 +213,7 @@ public class SteeringCar extends Car implements TrafficObject
 	// start applying crosswind and return to 0 (computed in update loop)
 	public void setupCrosswind(String direction, float force, int duration)
 	{
-		crosswind = new Crosswind(direction, force, duration);
+		crosswind = new Crosswind(sim.getClock(), direction, force, duration);
 	}
 	
 	
@@ -391,6 +410,22 @@ public class SteeringCar extends Car implements TrafficObject
 
 	private void updateFrictionSlip() 
 	{
+		if(frictionSurfaceList == null)
+			frictionSurfaceList = findSceneGeometries(new GeometryFilter()
+			{
+				@Override
+				public boolean accept(Geometry geometry)
+				{
+					return frictionMap.containsKey(geometry.getName());
+				}
+			});
+		
+		if(wheelSurfaces == null || wheelSurfaces.length != carControl.getNumWheels())
+		{
+			wheelSurfaces = new Geometry[carControl.getNumWheels()];
+			wheelSurfaceFrictions = new float[carControl.getNumWheels()];
+		}
+		
 		for(int i=0; i<carControl.getNumWheels(); i++)
 		{
 			float friction = getWheelFriction(i);
@@ -399,33 +434,56 @@ public class SteeringCar extends Car implements TrafficObject
 	}
 
 	
+	/**
+	 * Looks up the friction of the surface below the given wheel. The ray from 
+	 * the wheel to its contact point (as found by the physics engine) can only 
+	 * hit a surface of the friction map if it passes the bounds of one, so the 
+	 * scene will only be searched for the surface while the wheel is on or 
+	 * close to such a surface. Elsewhere, the default friction applies. The 
+	 * surface found is kept for the wheel and its friction is reused until 
+	 * the ray leaves the bounds of that surface.
+	 */
 	private float getWheelFriction(int wheel)
 	{		
 		float friction = carModel.getDefaultFrictionSlip();
 		
+		VehicleWheel bulletWheel = carControl.getBulletWheel(wheel);
+		if(bulletWheel == null)
+			return friction;
+		
 		// cast ray downwards to find geometry at
-		Vector3f collisionLocation = carControl.getBulletWheel(wheel).getCollisionLocation();
-		Vector3f wheelLocation = new Vector3f();
-		carControl.getBulletWheel(wheel).getWheelWorldLocation(wheelLocation);
-		Vector3f direction = collisionLocation.subtract(wheelLocation);
-		direction.normalizeLocal();
-		Ray ray = new Ray(wheelLocation, direction);
-		CollisionResults results = new CollisionResults();
-		sim.getSceneNode().collideWith(ray, results); 
-
-		if (results.size() > 0) 
+		bulletWheel.getCollisionLocation(wheelCollisionLocation);
+		bulletWheel.getWheelWorldLocation(wheelLocation);
+		wheelCollisionLocation.subtract(wheelLocation, wheelRayDirection).normalizeLocal();
+		surfaceRay.setOrigin(wheelLocation);
+		surfaceRay.setDirection(wheelRayDirection);
+		
+		// wheel still on the surface found last
+		Geometry lastSurface = wheelSurfaces[wheel];
+		if(lastSurface != null && lastSurface.getWorldBound().intersects(surfaceRay))
+			return wheelSurfaceFrictions[wheel];
+		
+		wheelSurfaces[wheel] = null;
+		
+		if(!intersectsAnyBound(surfaceRay, frictionSurfaceList))
+			return friction;
+		
+		surfaceResults.clear();
+		sim.getSceneNode().collideWith(surfaceRay, surfaceResults); 
+
+		if (surfaceResults.size() > 0) 
 		{
 			float distance = 1000;
 			Geometry geometry = null;
 			
 			// get geometry with shortest distance to wheel
-			for(int k=0; k< results.size(); k++)
+			for(int k=0; k< surfaceResults.size(); k++)
 			{			
-				if(!results.getCollision(k).getGeometry().hasAncestor(carNode) && 
-					results.getCollision(k).getDistance() < distance)
+				if(!surfaceResults.getCollision(k).getGeometry().hasAncestor(carNode) && 
+					surfaceResults.getCollision(k).getDistance() < distance)
 				{
-					distance = results.getCollision(k).getDistance();
-					geometry = results.getCollision(k).getGeometry();	
+					distance = surfaceResults.getCollision(k).getDistance();
+					geometry = surfaceResults.getCollision(k).getGeometry();	
 				}
 			}
 			
@@ -433,6 +491,8 @@ public class SteeringCar extends Car implements TrafficObject
 			if(geometry!=null && frictionMap.containsKey(geometry.getName()))
 			{
 				friction = frictionMap.get(geometry.getName());
+				wheelSurfaces[wheel] = geometry;
+				wheelSurfaceFrictions[wheel] = friction;
 				//System.err.println("Wheel" + wheel + ": " + geometry.getName() + "  -->  " + friction);
 			}
 		}
@@ -440,6 +500,45 @@ public class SteeringCar extends Car implements TrafficObject
 		return friction;
 	}
 	
+	
+	private interface GeometryFilter
+	{
+		boolean accept(Geometry geometry);
+	}
+	
+	
+	/**
+	 * Collects the geometries of the scene (except the car's) accepted by the 
+	 * given filter. Map objects are not added or removed while driving, so 
+	 * this is done once for each kind of surface.
+	 */
+	private ArrayList<Geometry> findSceneGeometries(final GeometryFilter filter)
+	{
+		final ArrayList<Geometry> geometryList = new ArrayList<Geometry>();
+		
+		sim.getSceneNode().depthFirstTraversal(new SceneGraphVisitorAdapter()
+		{
+			@Override
+			public void visit(Geometry geometry)
+			{
+				if(geometry.getName() != null && !geometry.hasAncestor(carNode) && filter.accept(geometry))
+					geometryList.add(geometry);
+			}
+		});
+		
+		return geometryList;
+	}
+	
+	
+	private static boolean intersectsAnyBound(Ray ray, ArrayList<Geometry> geometryList)
+	{
+		for(Geometry geometry : geometryList)
+			if(geometry.getWorldBound().intersects(ray))
+				return true;
+		
+		return false;
+	}
+	
 
 	private boolean hasStartedTurning = false;
 	private boolean hasFinishedTurn() 
@@ -479,8 +578,13 @@ public class SteeringCar extends Car implements TrafficObject
 	{
 		brakePedalIntensity = 0f;
 
+		// only traffic within the safety distances can be too close
+		float forwardSafetyDistance = Math.max(0.5f * getCurrentSpeedKmh(), minForwardSafetyDistance);
+		float range = FastMath.sqrt(minLateralSafetyDistance * minLateralSafetyDistance 
+				+ forwardSafetyDistance * forwardSafetyDistance);
+		
 		// check distance from traffic vehicles
-		for(TrafficObject vehicle : sim.getPhysicalTraffic().getTrafficObjectList())
+		for(TrafficObject vehicle : sim.getPhysicalTraffic().getTrafficObjectsInRange(getPosition(), range))
 		{
 			if(belowSafetyDistance(vehicle.getPosition()))
 			{
@@ -541,25 +645,30 @@ public class SteeringCar extends Car implements TrafficObject
 	
 	public float getDistanceToRoadSurface() 
 	{
+		if(roadSurfaceList == null)
+			roadSurfaceList = findSceneGeometries(new GeometryFilter()
+			{
+				@Override
+				public boolean accept(Geometry geometry)
+				{
+					return geometry.getName().contains("CityEngineTerrainMate");
+				}
+			});
+		
 		// reset collision results list
-		CollisionResults results = new CollisionResults();
+		surfaceResults.clear();
 
 		// aim a ray from the car's center downwards to the road surface
-		Ray ray = new Ray(getPosition(), Vector3f.UNIT_Y.mult(-1));
+		surfaceRay.setOrigin(getPosition());
+		surfaceRay.setDirection(Vector3f.UNIT_Y.negate());
 
-		// collect intersections between ray and scene elements in results list.
-		sim.getSceneNode().collideWith(ray, results);
+		// collect intersections between ray and road surfaces only, instead of all scene elements
+		for(Geometry geometry : roadSurfaceList)
+			geometry.collideWith(surfaceRay, surfaceResults);
 		
-		// return the result
-		for (int i = 0; i < results.size(); i++) 
-		{
-			// for each hit, we know distance, contact point, name of geometry.
-			float dist = results.getCollision(i).getDistance();
-			Geometry geometry = results.getCollision(i).getGeometry();
-
-			if(geometry.getName().contains("CityEngineTerrainMate"))
-				return dist - 0.07f;
-		}
+		// return the result (closest hit)
+		if(surfaceResults.size() > 0)
+			return surfaceResults.getClosestCollision().getDistance() - 0.07f;
 		
 		return -1;
 	}
@@ -654,7 +763,7 @@ public class SteeringCar extends Car implements TrafficObject
 		
 		// stop car in order to avoid collision with other traffic objects and driving car
 		// also for red traffic lights
-		if(obstaclesInTheWay(vehicleList))
+		if(obstaclesInTheWay())
 			targetSpeed = 0;
 		
 		float currentSpeed = getCurrentSpeedKmh();
@@ -719,14 +828,18 @@ public class SteeringCar extends Car implements TrafficObject
 	}
 
 
-	private boolean obstaclesInTheWay(ArrayList<TrafficObject> vehicleList)
+	private boolean obstaclesInTheWay()
 	{
 		// check distance from driving car
 		if(obstacleTooClose(sim.getCar().getPosition()))
 			return true;
 
+		// only traffic within the safety distances can be too close
+		float range = FastMath.sqrt(minLateralSafetyDistance * minLateralSafetyDistance 
+				+ minForwardSafetyDistance * minForwardSafetyDistance);
+		
 		// check distance from other traffic (except oneself)
-		for(TrafficObject vehicle : vehicleList)
+		for(TrafficObject vehicle : sim.getPhysicalTraffic().getTrafficObjectsInRange(getPosition(), range))
 		{
 			if(obstacleTooClose(vehicle.getPosition()))
 				return true;
@@ -838,4 +951,8 @@ public class SteeringCar extends Car implements TrafficObject
 	// AutoPilot *****************************************************************
 
 
+	public RadarSensor getRadarSensor()
+	{
+		return radarSensor;
+	}
 }
@@ -19,6 +19,7 @@
 package eu.opends.car;
 
 import eu.opends.audio.AudioCenter;
+import eu.opends.basics.SimulationClock.ScheduledTask;
 import eu.opends.camera.CameraFactory.CameraMode;
 import eu.opends.car.LightTexturesContainer.LightState;
 import eu.opends.car.LightTexturesContainer.TurnSignalState;
@@ -26,70 +27,77 @@ import eu.opends.main.Simulator;
 import eu.opends.tools.PanelCenter;
 
 /**
- * This thread changes the light textures in the given interval in order
- * to simulate flashing lights.
+ * This task changes the light textures in the given interval in order
+ * to simulate flashing lights. It is run repeatedly by the simulation 
+ * clock once started.
  * 
  * @author Rafael Math
  */
-public class TurnSignalThread extends Thread 
+public class TurnSignalTask implements Runnable 
 {
 	private int lightChangeInterval = 375;
-	private int threadUpdateInterval = 25;
+	private int taskUpdateInterval = 25;
 	private LightTexturesContainer lightTexturesContainer;
 	private Simulator sim;
 	private Car car;
 	private TurnSignalState targetState;
+	private TurnSignalState currentState;
 	private boolean targetStateHasChanged = false;
-	private boolean stopRequested = false;
+	private long previousBlinkerUpdate;
+	private ScheduledTask scheduledTask = null;
 	
 	
-	public TurnSignalThread(LightTexturesContainer lightTexturesContainer, Simulator sim, Car car)
+	public TurnSignalTask(LightTexturesContainer lightTexturesContainer, Simulator sim, Car car)
 	{
-		super("TurnSignalThread");
 		this.lightTexturesContainer = lightTexturesContainer;
 		this.sim = sim;
 		this.car = car;
 	}
 	
 	
-	public void run()
+	/**
+	 * Schedules this task on the simulation clock
+	 */
+	public synchronized void start()
 	{
-		TurnSignalState currentState = targetState;
-		long previousBlinkerUpdate = System.currentTimeMillis();
-		
-		while(!stopRequested)
+		currentState = targetState;
+		previousBlinkerUpdate = sim.getClock().getTimeMillis();
+		scheduledTask = sim.getClock().scheduleRepeated(this, 0, taskUpdateInterval);
+	}
+	
+	
+	public synchronized boolean isRunning()
+	{
+		return scheduledTask != null && !scheduledTask.isCancelled();
+	}
+	
+	
+	public synchronized void run()
+	{
+		if(targetStateHasChanged || previousBlinkerUpdate <= (sim.getClock().getTimeMillis() - lightChangeInterval))
 		{
-			if(targetStateHasChanged || previousBlinkerUpdate <= (System.currentTimeMillis() - lightChangeInterval))
+			if(targetStateHasChanged)
 			{
-				if(targetStateHasChanged)
-				{
-					currentState = targetState;
-					targetStateHasChanged = false;
-				}
-				
-				if(car instanceof SteeringCar)
-				{
-					// set current state to turn signal arrows
-					applyTurnArrows(currentState);
-				}
-				
-				// set current state to turn signal lights (change textures) if not already set
-				applyTurnSignal(currentState);
-				
-				// switch to next signal state (on-off-on-off-...)
-				if(currentState != TurnSignalState.OFF)
-					currentState = TurnSignalState.OFF;
-				else
-					currentState = targetState;
-				
-				previousBlinkerUpdate = System.currentTimeMillis();
+				currentState = targetState;
+				targetStateHasChanged = false;
 			}
 			
-			try {
-				Thread.sleep(threadUpdateInterval);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+			if(car instanceof SteeringCar)
+			{
+				// set current state to turn signal arrows
+				applyTurnArrows(currentState);
 			}
+			
+			// set current state to turn signal lights (change textures) if not already set
+			applyTurnSignal(currentState);
+			
+			// switch to next signal state (on-off-on-off-...)
+			if(currentState != TurnSignalState.OFF)
+				currentState = TurnSignalState.OFF;
+			else
+				currentState = targetState;
+			
+			previousBlinkerUpdate = sim.getClock().getTimeMillis();
 		}
 	}
 	
@@ -135,7 +143,8 @@ public class TurnSignalThread extends Thread
 	
 	public synchronized void requestStop()
 	{
-		stopRequested = true;
+		if(scheduledTask != null)
+			scheduledTask.cancel();
 	}
 	
 	
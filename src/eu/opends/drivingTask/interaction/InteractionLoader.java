@@ -306,7 +306,7 @@ public class InteractionLoader
 					{
 						InputManager inputManager = sim.getInputManager();
 						inputManager.addMapping(triggerName, new KeyTrigger(keyNumber));
-						inputManager.addListener(new KeyActionListener(triggerActionList, triggerName), triggerName);
+						inputManager.addListener(new KeyActionListener(triggerActionList, triggerName, sim.getClock()), triggerName);
 					}
 				
 				} catch (Exception e) {
@@ -336,7 +336,7 @@ public class InteractionLoader
 					{
 						InputManager inputManager = sim.getInputManager();
 						inputManager.addMapping(triggerName, new JoyButtonTrigger(0,buttonNumber));
-						inputManager.addListener(new KeyActionListener(triggerActionList, triggerName), triggerName);
+						inputManager.addListener(new KeyActionListener(triggerActionList, triggerName, sim.getClock()), triggerName);
 					}
 				
 				} catch (Exception e) {
@@ -415,7 +415,7 @@ public class InteractionLoader
 						InputManager inputManager = sim.getInputManager();
 						inputManager.addMapping(triggerName + "Up", new JoyAxisTrigger(controllerID, axis, invertAxis));
 				    	inputManager.addMapping(triggerName + "Down", new JoyAxisTrigger(controllerID, axis, !invertAxis));
-						inputManager.addListener(new AxisAnalogListener(triggerActionList, triggerName, triggeringThreshold, sensitivityFactor), 
+						inputManager.addListener(new AxisAnalogListener(triggerActionList, triggerName, triggeringThreshold, sensitivityFactor, sim.getClock()), 
 								triggerName + "Up", triggerName + "Down");
 					}
 				
@@ -0,0 +1,107 @@
+package eu.opends.drivingTask.scene;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.jme3.scene.Spatial;
+
+/**
+ * Keeps the spatials created by the {@link SceneLoader}s of one simulator,
+ * so loading a driving task again does not load models, materials and
+ * terrains again. The driving tasks of all scenarios describe the same
+ * scene, and the simulator replaces its driving task on every scenario
+ * switch and most scene resets.
+ *
+ * Entries are keyed by the complete XML definition of a model or geometry
+ * (model key, referenced geometry, material, scale, rotation, translation,
+ * ...), so a model is only shared if it is defined exactly the same way.
+ * Shared spatials must not be changed by their users.
+ */
+public class SceneCache {
+    private final Map<String, Spatial> models = new ConcurrentHashMap<String, Spatial>();
+    private final Map<String, Spatial> geometries = new ConcurrentHashMap<String, Spatial>();
+
+
+    public Spatial getModel(String key) {
+        return models.get(key);
+    }
+
+
+    public void putModel(String key, Spatial model) {
+        models.put(key, model);
+    }
+
+
+    public Spatial getGeometry(String key) {
+        return geometries.get(key);
+    }
+
+
+    public void putGeometry(String key, Spatial geometry) {
+        geometries.put(key, geometry);
+    }
+
+
+    /**
+     * Removes all spatials, e.g. after the assets have changed
+     */
+    public void clear() {
+        models.clear();
+        geometries.clear();
+    }
+
+
+    /**
+     * Creates the key of an XML definition: element names, attributes
+     * (sorted by name) and text of the element and all its descendants.
+     * Whitespace between elements is ignored.
+     *
+     * @param node
+     * 			XML element of a model or geometry
+     *
+     * @return
+     * 			Key of the definition
+     */
+    public static String getKey(Node node) {
+        StringBuilder key = new StringBuilder();
+        appendKey(node, key);
+        return key.toString();
+    }
+
+
+    private static void appendKey(Node node, StringBuilder key) {
+        if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+            String text = node.getNodeValue().trim();
+            if (!text.isEmpty())
+                key.append('"').append(text).append('"');
+            return;
+        }
+
+        if (node.getNodeType() != Node.ELEMENT_NODE)
+            return;
+
+        key.append('<').append(node.getNodeName());
+
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            TreeMap<String, String> sortedAttributes = new TreeMap<String, String>();
+            for (int i = 0; i < attributes.getLength(); i++)
+                sortedAttributes.put(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+
+            for (Map.Entry<String, String> attribute : sortedAttributes.entrySet())
+                key.append(' ').append(attribute.getKey()).append("=\"").append(attribute.getValue()).append('"');
+        }
+        key.append('>');
+
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++)
+            appendKey(children.item(i), key);
+
+        key.append("</").append(node.getNodeName()).append('>');
+    }
+}
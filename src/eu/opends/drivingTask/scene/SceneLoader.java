@@ -73,6 +73,7 @@ public class SceneLoader {
     private DrivingTaskDataQuery dtData;
     private SimulationBasics sim;
     private AssetManager assetManager;
+    private SceneCache sceneCache;
     private Map<String, Spatial> geometryMap = new HashMap<String, Spatial>();
     private Map<String, Vector3f> pointMap = new HashMap<String, Vector3f>();
     private Map<String, ResetPosition> resetPositionMap = new HashMap<String, ResetPosition>();
@@ -83,6 +84,7 @@ public class SceneLoader {
         this.dtData = dtData;
         this.sim = sim;
         this.assetManager = sim.getAssetManager();
+        this.sceneCache = sim.getSceneCache();
         assetManager.registerLocator("assets", FileLocator.class);
         getGeometries(new String[]{"box", "sphere", "cylinder", "terrain"});
         getPoints();
@@ -438,7 +440,14 @@ public class SceneLoader {
             //		"/scene:scene/scene:models/scene:model["+k+"]/@key", String.class);
             String spatialURL = currentNode.getAttributes().getNamedItem("key").getNodeValue();
 
-            if ((spatialURL != null) && (!spatialURL.equals(""))) {
+            // models defined the same way in a previously loaded driving task are reused as they are
+            String cacheKey = SceneCache.getKey(currentNode);
+            Spatial cachedSpatial = sceneCache.getModel(cacheKey);
+            boolean isCached = (cachedSpatial != null);
+
+            if (isCached) {
+                spatial = cachedSpatial;
+            } else if ((spatialURL != null) && (!spatialURL.equals(""))) {
                 spatial = assetManager.loadModel(spatialURL);
             } else {
                 //String geometryRef = dtData.getValue(Layer.SCENE,
@@ -468,7 +477,7 @@ public class SceneLoader {
                 Node currentChild = childnodes.item(j - 1);
 
                 // get material + color
-                if (currentChild.getNodeName().equals("material")) {
+                if (currentChild.getNodeName().equals("material") && !isCached) {
                     // get material
                     //String materialFile = dtData.getValue(Layer.SCENE,
                     //		"/scene:scene/scene:models/scene:model["+k+"]/scene:material/@key", String.class);
@@ -507,7 +516,7 @@ public class SceneLoader {
                     addToMapNode = Boolean.parseBoolean(currentChild.getTextContent());
                 } else if (currentChild.getNodeName().equals("collisionShape")) {
                     collisionShape = currentChild.getTextContent();
-                } else if (currentChild.getNodeName().equals("textureScale")) {
+                } else if (currentChild.getNodeName().equals("textureScale") && !isCached) {
                     Vector2f textureScale = getVector2f(currentChild);
 
                     for (Geometry g : Util.getAllGeometries(spatial)) {
@@ -522,7 +531,7 @@ public class SceneLoader {
                     translation = getVector3f(currentChild);
                 } else if (currentChild.getNodeName().equals("collisionSound")) {
                     collisionSound = currentChild.getAttributes().getNamedItem("ref").getNodeValue();
-                } else if (currentChild.getNodeName().equals("ambientLight")) {
+                } else if (currentChild.getNodeName().equals("ambientLight") && !isCached) {
                     // add ambient light to current spatial
                     if (spatial != null) {
                         NodeList lightnodes = currentChild.getChildNodes();
@@ -536,7 +545,7 @@ public class SceneLoader {
                             }
                         }
                     }
-                } else if (currentChild.getNodeName().equals("shadowMode")) {
+                } else if (currentChild.getNodeName().equals("shadowMode") && !isCached) {
                     // add shadow mode to current spatial
                     if (spatial != null) {
                         ShadowMode shadowMode = getShadowMode(currentChild);
@@ -557,6 +566,9 @@ public class SceneLoader {
             if (scale == null)
                 scale = new Vector3f(1, 1, 1);
 
+            if (!isCached && spatial != null)
+                sceneCache.putModel(cacheKey, spatial);
+
             // build map object
             if ((name != null) && (spatial != null) && (translation != null) && (rotation != null) &&
                     (collisionShape != null)) {
@@ -800,7 +812,13 @@ public class SceneLoader {
                 String geometryID = dtData.getValue(Layer.SCENE,
                         "/scene:scene/scene:geometries/scene:" + type + "[" + k + "]/@id", String.class);
 
-                if (geometryID != null) {
+                // geometries defined the same way in a previously loaded driving task are reused
+                String cacheKey = type + SceneCache.getKey(geometryNodes.item(k - 1));
+                Spatial cachedGeometry = sceneCache.getGeometry(cacheKey);
+
+                if (cachedGeometry != null) {
+                    geometry = cachedGeometry;
+                } else if (geometryID != null) {
                     String path = "/scene:scene/scene:geometries/scene:" + type + "[" + k + "]";
 
                     if (type.equals("box"))
@@ -811,6 +829,9 @@ public class SceneLoader {
                         geometry = createCylinder(path, geometryID);
                     else if (type.equals("terrain"))
                         geometry = createTerrain(path, geometryID);
+
+                    if (geometry != null)
+                        sceneCache.putGeometry(cacheKey, geometry);
                 }
 
                 if (geometry != null)
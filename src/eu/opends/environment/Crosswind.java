@@ -20,17 +20,21 @@ package eu.opends.environment;
 
 import com.jme3.math.FastMath;
 
+import eu.opends.basics.SimulationClock;
+
 public class Crosswind 
 {
+	private SimulationClock clock;
 	private long startTime;
 	private String direction;
 	private float force;
 	private int duration;
 	
 
-	public Crosswind(String direction, float force, int duration)
+	public Crosswind(SimulationClock clock, String direction, float force, int duration)
 	{
-		startTime = System.currentTimeMillis();
+		this.clock = clock;
+		startTime = clock.getTimeMillis();
 		this.direction = direction;
 		this.force = Math.max(Math.min(force, 1.0f), 0.0f);
 		this.duration = Math.abs(duration);
@@ -43,7 +47,7 @@ public class Crosswind
 		if(duration == 0)
 			return 0;
 		
-		long currentTime = System.currentTimeMillis();
+		long currentTime = clock.getTimeMillis();
 		int timeElapsed = (int) (currentTime - startTime);
 		float timeElapsedPercent = (float) (timeElapsed/(float)duration);
 		timeElapsedPercent =  Math.max(Math.min(timeElapsedPercent, 1.0f), 0.0f);
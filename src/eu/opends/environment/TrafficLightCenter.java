@@ -384,7 +384,7 @@ public class TrafficLightCenter
 	
 	
 	/**
-	 * Closes all internal threads
+	 * Stops all internal traffic light programs and closes the external connector
 	 */
 	public void close()
 	{
@@ -22,6 +22,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
+import eu.opends.basics.SimulationClock.ScheduledTask;
 import eu.opends.environment.TrafficLight.*;
 import eu.opends.environment.TrafficLightCenter.*;
 import eu.opends.environment.TrafficLightException.*;
@@ -31,7 +32,7 @@ import eu.opends.main.Simulator;
 /**
  * This class represents the internal traffic light program. It provides 
  * rules to switch traffic lights of a specific intersection. Each intersection
- * requires an individual instance which runs as thread. Before a traffic light
+ * requires an individual instance which runs as task on the simulation clock. Before a traffic light
  * will be switched to green, all traffic lights as given in the *-tlr.xml file 
  * will be switched to red first. If no rules file available, all other traffic 
  * lights will be switched to red. Traffic lights to switch green will be queued 
@@ -39,11 +40,11 @@ import eu.opends.main.Simulator;
  * 
  * @author Rafael Math
  */
-public class TrafficLightInternalProgram extends Thread
+public class TrafficLightInternalProgram implements Runnable
 {
 	private Simulator sim;
 	private TrafficLightCenter trafficLightCenter;
-	private boolean stoprequested;
+	private ScheduledTask scheduledTask = null;
 	private String intersectionID;
 	private List<TrafficLight> trafficLightsListForGreen = new LinkedList<TrafficLight>();
 	private List<TrafficLight> intersectionTrafficLightsList = new LinkedList<TrafficLight>();
@@ -54,6 +55,10 @@ public class TrafficLightInternalProgram extends Thread
 	private boolean allTrafficLightsOff;
 	private long timeOfLastBlink = 0;
 	private int blinkingIntervall = 1000;
+	private int triggerStep = 0;
+	private long nextTriggerStepTime = 0;
+	private boolean redShiftPending = false;
+	private TrafficLight redShiftTarget = null;
 
 	
 	/**
@@ -80,20 +85,18 @@ public class TrafficLightInternalProgram extends Thread
 	public TrafficLightInternalProgram(Simulator sim, TrafficLightCenter trafficLightCenter, String intersectionID, 
 			List<TrafficLight> allTrafficLightsList, LinkedList<TrafficLightPhase> intersectionPhasesList) 
 	{
-		super("TrafficLightInternalProgramThread");
 		this.sim = sim;
 		this.trafficLightCenter = trafficLightCenter;
 		this.intersectionID = intersectionID;
 		this.intersectionTrafficLightsList = filterTrafficLightsOfIntersection(intersectionID,allTrafficLightsList);
 		this.intersectionPhasesList = intersectionPhasesList;
-		stoprequested = false;
 		allTrafficLightsOff = false;
 		
 		if(intersectionPhasesList != null)
 		{
 			iterator = intersectionPhasesList.listIterator(0);
 			phase = gotoNextPhase();
-			phase.activate(System.currentTimeMillis());
+			phase.activate(sim.getClock().getTimeMillis());
 			if(trafficLightCenter.getMode() == TrafficLightMode.PROGRAM)
 				setPhaseToTrafficLights();
 		}
@@ -145,11 +148,22 @@ public class TrafficLightInternalProgram extends Thread
 	
 
 	/**
-	 * Stops the traffic light program by exiting the loop
+	 * Starts the traffic light program by scheduling it on the simulation 
+	 * clock (every 10 ms)
+	 */
+	public synchronized void start()
+	{
+		scheduledTask = sim.getClock().scheduleRepeated(this, 0, 10);
+	}
+	
+
+	/**
+	 * Stops the traffic light program by cancelling the scheduled task
 	 */
 	public synchronized void requestStop()
 	{
-		stoprequested = true;
+		if(scheduledTask != null)
+			scheduledTask.cancel();
 	}
 	
 	
@@ -190,7 +204,7 @@ public class TrafficLightInternalProgram extends Thread
 			throw new IsGreenException("Traffic light is green");
 		
 		// get remaining time (usually in seconds) for current phase
-		long remainingRed = phase.timeToExpiration(System.currentTimeMillis());
+		long remainingRed = phase.timeToExpiration(sim.getClock().getTimeMillis());
 		
 		// remember start phase to avoid cycles
 		String startPhaseID = phase.getID();
@@ -238,7 +252,7 @@ public class TrafficLightInternalProgram extends Thread
 			throw new IsNotGreenException("Traffic light is not green");
 		
 		// get remaining time (usually in seconds) for current phase
-		long remainingGreen = phase.timeToExpiration(System.currentTimeMillis());
+		long remainingGreen = phase.timeToExpiration(sim.getClock().getTimeMillis());
 		
 		// remember start phase to avoid cycles
 		String startPhaseID = phase.getID();
@@ -264,47 +278,31 @@ public class TrafficLightInternalProgram extends Thread
 	
 
 	/**
-	 * This method contains a loop with the basic rules to switch the traffic lights
-	 * of a certain intersection. Instructions will only be carried out in TRIGGER,
-	 * PROGRAMM or BLINKING mode. Each execution of this loop takes at least 1 second.
+	 * This method contains the basic rules to switch the traffic lights of a 
+	 * certain intersection. Instructions will only be carried out in TRIGGER,
+	 * PROGRAMM or BLINKING mode. It is called by the simulation clock every 
+	 * 10 ms (simulation time) until the program is stopped.
 	 */
 	@Override
-	public void run() 
+	public synchronized void run() 
 	{		
-		while (!stoprequested) 
-		{
-			TrafficLightMode currentMode = trafficLightCenter.getMode();
+		TrafficLightMode currentMode = trafficLightCenter.getMode();
 
-			if(!sim.isPause())
-			{
-				if(currentMode == TrafficLightMode.TRIGGER)
-				{
-					runTriggerMode();
-				}	
-				else if(currentMode == TrafficLightMode.BLINKING && (timeOfLastBlink + blinkingIntervall <= System.currentTimeMillis()))
-				{
-					runBlinkingMode();
-					timeOfLastBlink = System.currentTimeMillis();
-				}
-				else if(currentMode == TrafficLightMode.PROGRAM)
-				{
-					runProgramMode();
-				}
-			}
-
-			previousMode = currentMode;
-			
-			try {
-				// halt thread for 1 second to provide a clock for BLINKING mode; 
-				// otherwise prevent loop from repeating 
-				// to fast in OFF or EXTERNAL mode 
-				Thread.sleep(10);
-				
-			} catch (InterruptedException e){}
+		if(currentMode == TrafficLightMode.TRIGGER)
+		{
+			runTriggerMode();
+		}	
+		else if(currentMode == TrafficLightMode.BLINKING && (timeOfLastBlink + blinkingIntervall <= sim.getClock().getTimeMillis()))
+		{
+			runBlinkingMode();
+			timeOfLastBlink = sim.getClock().getTimeMillis();
+		}
+		else if(currentMode == TrafficLightMode.PROGRAM)
+		{
+			runProgramMode();
 		}
 
-		// if loop was left: traffic light program will be terminated
-		//System.out.println("Program terminated");
+		previousMode = currentMode;
 	}
 
 
@@ -315,6 +313,8 @@ public class TrafficLightInternalProgram extends Thread
 	 * be loaded from an external source; if not available, all other traffic lights 
 	 * will be switched to red. After this, the selected traffic light will be switched
 	 * to yellow-red and finally to green. After processing, it will be removed from queue. 
+	 * One step is carried out per call; the next step waits until the delay of the 
+	 * previous step has passed.
 	 */
 	private void runTriggerMode() 
 	{
@@ -327,40 +327,78 @@ public class TrafficLightInternalProgram extends Thread
 			
 			// switch all traffic lights of current intersection to red
 			requestIntersectionRed(null);
+			triggerStep = 0;
 		}
 		
 		
+		// wait until the delay of the previous step has passed
+		if(nextTriggerStepTime > sim.getClock().getTimeMillis())
+			return;
+		
+		// complete switching to red (remaining yellow lights to red)
+		if(redShiftPending)
+		{
+			shiftIntersectionToRed(redShiftTarget);
+			redShiftPending = false;
+		}
+		
 		// if there are traffic lights waiting to be switched to green --> process queue
 		if(!trafficLightsListForGreen.isEmpty())
 		{
 			// get first traffic light in queue
 			TrafficLight trafficLight = trafficLightsListForGreen.get(0);
-				
-			// if traffic light belongs to current intersection and is not green yet
-			if((trafficLight.getIntersectionID().equals(intersectionID)) && 
-					(trafficLight.getState() != TrafficLightState.GREEN))
+			
+			switch(triggerStep)
 			{
-				// switch all those traffic lights of the current intersection to red, 
-				// that are required to switch the selected traffic light to green and 
-				// wait a second
-				requestIntersectionRed(trafficLight);
-				wait(1);
-				
-				// if all required traffic lights are red
-				if(isIntersectionRed(trafficLight))
-				{
-					// switch selected traffic light to YELLOWRED and wait 1 second
-					trafficLight.setState(TrafficLightState.YELLOWRED);
-					wait(1);
+				case 0 :
+					// if traffic light belongs to current intersection and is not green yet
+					if((trafficLight.getIntersectionID().equals(intersectionID)) && 
+							(trafficLight.getState() != TrafficLightState.GREEN))
+					{
+						// switch all those traffic lights of the current intersection to red, 
+						// that are required to switch the selected traffic light to green
+						requestIntersectionRed(trafficLight);
+						triggerStep = 1;
+					}
+					else
+						trafficLightsListForGreen.remove(0);
+					break;
+					
+				case 1 :
+					// wait a second after switching to red
+					delayNextStep(1);
+					triggerStep = 2;
+					break;
 					
+				case 2 :
+					// if all required traffic lights are red
+					if(isIntersectionRed(trafficLight))
+					{
+						// switch selected traffic light to YELLOWRED and wait 1 second
+						trafficLight.setState(TrafficLightState.YELLOWRED);
+						delayNextStep(1);
+						triggerStep = 3;
+					}
+					else
+					{
+						trafficLightsListForGreen.remove(0);
+						triggerStep = 0;
+					}
+					break;
+					
+				case 3 :
 					// switch selected traffic light to GREEN and wait 3 seconds
 					trafficLight.setState(TrafficLightState.GREEN);
-					wait(3);
-				}
+					delayNextStep(3);
+					triggerStep = 4;
+					break;
+					
+				default :
+					// remove processed traffic light from queue
+					trafficLightsListForGreen.remove(0);
+					triggerStep = 0;
+					break;
 			}
-			
-			// remove processed traffic light from queue
-			trafficLightsListForGreen.remove(0);
 		}
 	}
 
@@ -404,7 +442,7 @@ public class TrafficLightInternalProgram extends Thread
 			setPhaseToTrafficLights();
 
 		// if current phase has expired, set next phase to traffic lights
-		long currentTime = System.currentTimeMillis();
+		long currentTime = sim.getClock().getTimeMillis();
 		if(phase.hasExpired(currentTime))
 		{
 			phase = gotoNextPhase();
@@ -487,7 +525,8 @@ public class TrafficLightInternalProgram extends Thread
 	/**
 	 * Switches all traffic lights to red which are required to switch the 
 	 * given one to green. Green traffic lights will first be switched to
-	 * yellow, after a second they will be switched to red.
+	 * yellow, after a second (next step of the TRIGGER mode program) they 
+	 * will be switched to red.
 	 * 
 	 * @param trafficLightForGreen
 	 *  		Traffic light waiting for green, while all other interfering 
@@ -506,9 +545,10 @@ public class TrafficLightInternalProgram extends Thread
 		
 		if(!isIntersectionRed(trafficLightForGreen))
 		{
-			wait(1);
-			// shift one further step (all remaining yellow lights to red)
-			shiftIntersectionToRed(trafficLightForGreen);
+			// shift one further step (all remaining yellow lights to red) after a second
+			redShiftPending = true;
+			redShiftTarget = trafficLightForGreen;
+			delayNextStep(1);
 		}
 	}
 	
@@ -595,20 +635,15 @@ public class TrafficLightInternalProgram extends Thread
 
 	
 	/**
-	 * Stops the loop for the given number of seconds (for INTERNAL mode only)
+	 * Delays the next step of the TRIGGER mode program for the given number 
+	 * of seconds
 	 * 
 	 * @param seconds
-	 * 			number of seconds to stop the thread
+	 * 			number of seconds to wait before the next step
 	 */
-	private void wait(int seconds)
+	private void delayNextStep(int seconds)
 	{
-		// wait only if INTERNAL mode is still running
-		if(sim.getTrafficLightCenter().getMode() == TrafficLightMode.TRIGGER)
-		{
-			try {
-				Thread.sleep(seconds*1000);
-			} catch (InterruptedException e){}
-		}
+		nextTriggerStepTime = sim.getClock().getTimeMillis() + seconds*1000;
 	}
 
 	
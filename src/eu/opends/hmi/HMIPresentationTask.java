@@ -20,25 +20,27 @@ package eu.opends.hmi;
 
 
 import eu.opends.basics.SimulationBasics;
+import eu.opends.basics.SimulationClock.ScheduledTask;
 import eu.opends.trigger.TriggerCenter;
 
 
 /**
- * Once activated, HMIThread sends continuously updates to the HMI 
+ * Once activated, HMIPresentationTask sends continuously updates to the HMI 
  * controller, until the approximation is below the given minimum.
  * 
  * @author Rafael Math
  */
-public class HMIThread extends Thread
+public class HMIPresentationTask implements Runnable
 {
 	private SimulationBasics sim;
 	private PresentationModel presentationModel;
 	private String triggerID;
 	private long presentationID;
+	private ScheduledTask scheduledTask;
 
 	
 	/**
-	 * Creates a new HMI update thread that updates a presentation task 
+	 * Creates a new HMI update task that updates a presentation task 
 	 * every time, a parameter has changed (at most 10 times a second).
 	 * 
 	 * @param sim
@@ -54,23 +56,20 @@ public class HMIThread extends Thread
 	 * @param presentationID
 	 * 			Presentation ID
 	 */
-	public HMIThread(SimulationBasics sim, PresentationModel presentationModel, String triggerID, long presentationID) 
+	public HMIPresentationTask(SimulationBasics sim, PresentationModel presentationModel, String triggerID, long presentationID) 
 	{
-		super("HMIThread");
 		this.sim = sim;
 		this.presentationModel = presentationModel;
 		this.triggerID = triggerID;
 		this.presentationID = presentationID;
 	}
-
-
+	
+	
 	/**
-	 * This method updates presentations to the HMI, every time a parameter
-	 * (distance, time, ...) has changed. Once activated, it will only stop
-	 * if the stop condition will be true. Loop will repeat every 100 ms.
+	 * Initializes the parameters and schedules the updates on the 
+	 * simulation clock (every 100 ms).
 	 */
-	@Override
-	public void run() 
+	public void start()
 	{
 		// initialize "previous" and "current" parameters
 		presentationModel.computePreviousParameters();
@@ -78,10 +77,22 @@ public class HMIThread extends Thread
 		
 		System.out.println(presentationModel.generateMessage());
 		
-		while(!presentationModel.stopPresentation()) 
+		scheduledTask = sim.getClock().scheduleRepeated(this, 100, 100);
+	}
+
+
+	/**
+	 * This method updates presentations to the HMI, every time a parameter
+	 * (distance, time, ...) has changed. Once activated, it will only stop
+	 * if the stop condition will be true. Called every 100 ms.
+	 */
+	@Override
+	public void run() 
+	{
+		if(!presentationModel.stopPresentation()) 
 		{
 			// if parameters have changed (difference between "previous" and "current" parameters)
-			if(presentationModel.hasChangedParameter() || sim.isPause())
+			if(presentationModel.hasChangedParameter())
 			{
 				// if no error occurred --> update presentation
 				if(presentationID >= 0)
@@ -96,12 +107,11 @@ public class HMIThread extends Thread
 			
 			// update "current" parameters
 			presentationModel.computeCurrentParameters();
-			
-			// prevent loop from running to fast
-			try {Thread.sleep(100);} 
-			catch (InterruptedException e){}
+			return;
 		}
 		
+		scheduledTask.cancel();
+		
 		// remove trigger from report list
 		if(triggerID != null)
 			TriggerCenter.removeTriggerReport(triggerID);
@@ -0,0 +1,308 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * 3D k-d tree mapping positions to values. The tree is balanced when built 
+ * from a list of entries; entries inserted later are added as leaves. Removed 
+ * entries are only marked until they outnumber the remaining ones, then the 
+ * tree is rebuilt.
+ * 
+ * @param <T>
+ * 			Type of the values
+ */
+class KdTree<T>
+{
+	private static class Node<T>
+	{
+		Vector3f position;
+		T value;
+		int axis;
+		boolean removed = false;
+		Node<T> left = null;
+		Node<T> right = null;
+		
+		Node(Vector3f position, T value, int axis)
+		{
+			this.position = position;
+			this.value = value;
+			this.axis = axis;
+		}
+	}
+	
+	
+	/**
+	 * Value found by a nearest neighbor search
+	 */
+	private static class Candidate<T>
+	{
+		T value;
+		float distanceSquared;
+		
+		Candidate(T value, float distanceSquared)
+		{
+			this.value = value;
+			this.distanceSquared = distanceSquared;
+		}
+	}
+	
+	
+	private Node<T> root = null;
+	private int size = 0;
+	private int removedCount = 0;
+	
+	
+	/**
+	 * Replaces the content of the tree by the given positions and values.
+	 * 
+	 * @param positions
+	 * 			Positions (not copied, must not be changed while in the tree)
+	 * 
+	 * @param values
+	 * 			Values, one for each position
+	 */
+	void build(List<Vector3f> positions, List<T> values)
+	{
+		List<Node<T>> nodes = new ArrayList<Node<T>>(positions.size());
+		for(int i=0; i<positions.size(); i++)
+			nodes.add(new Node<T>(positions.get(i), values.get(i), 0));
+		
+		size = nodes.size();
+		removedCount = 0;
+		root = build(nodes, 0, nodes.size(), 0);
+	}
+	
+	
+	private Node<T> build(List<Node<T>> nodes, int from, int to, final int axis)
+	{
+		if(from >= to)
+			return null;
+		
+		// median along the current axis becomes the root of the subtree
+		Collections.sort(nodes.subList(from, to), new Comparator<Node<T>>()
+		{
+			@Override
+			public int compare(Node<T> n1, Node<T> n2)
+			{
+				return Float.compare(n1.position.get(axis), n2.position.get(axis));
+			}
+		});
+		
+		int middle = (from + to) >>> 1;
+		Node<T> node = nodes.get(middle);
+		node.axis = axis;
+		node.left = build(nodes, from, middle, (axis+1) % 3);
+		node.right = build(nodes, middle+1, to, (axis+1) % 3);
+		return node;
+	}
+	
+	
+	/**
+	 * Adds a single position and value to the tree.
+	 */
+	void insert(Vector3f position, T value)
+	{
+		size++;
+		
+		if(root == null)
+		{
+			root = new Node<T>(position, value, 0);
+			return;
+		}
+		
+		Node<T> node = root;
+		while(true)
+		{
+			if(position.get(node.axis) < node.position.get(node.axis))
+			{
+				if(node.left == null)
+				{
+					node.left = new Node<T>(position, value, (node.axis+1) % 3);
+					return;
+				}
+				node = node.left;
+			}
+			else
+			{
+				if(node.right == null)
+				{
+					node.right = new Node<T>(position, value, (node.axis+1) % 3);
+					return;
+				}
+				node = node.right;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Removes all entries with the given value.
+	 */
+	void remove(T value)
+	{
+		int removedNow = remove(root, value);
+		if(removedNow == 0)
+			return;
+		
+		size -= removedNow;
+		removedCount += removedNow;
+		
+		// drop the marked nodes once they make up the larger part of the tree
+		if(removedCount > size)
+		{
+			List<Vector3f> positions = new ArrayList<Vector3f>(size);
+			List<T> values = new ArrayList<T>(size);
+			collect(root, positions, values);
+			build(positions, values);
+		}
+	}
+	
+	
+	private int remove(Node<T> node, T value)
+	{
+		if(node == null)
+			return 0;
+		
+		int removedNow = 0;
+		if(!node.removed && node.value == value)
+		{
+			node.removed = true;
+			removedNow++;
+		}
+		
+		return removedNow + remove(node.left, value) + remove(node.right, value);
+	}
+	
+	
+	private void collect(Node<T> node, List<Vector3f> positions, List<T> values)
+	{
+		if(node == null)
+			return;
+		
+		if(!node.removed)
+		{
+			positions.add(node.position);
+			values.add(node.value);
+		}
+		
+		collect(node.left, positions, values);
+		collect(node.right, positions, values);
+	}
+	
+	
+	int size()
+	{
+		return size;
+	}
+	
+	
+	/**
+	 * Returns the values of the k positions closest to the given position, 
+	 * closest first.
+	 */
+	List<T> getNearest(Vector3f position, int k)
+	{
+		List<T> result = new ArrayList<T>();
+		if(k <= 0)
+			return result;
+		
+		// farthest candidate on top
+		PriorityQueue<Candidate<T>> candidates = new PriorityQueue<Candidate<T>>(k, new Comparator<Candidate<T>>()
+		{
+			@Override
+			public int compare(Candidate<T> c1, Candidate<T> c2)
+			{
+				return Float.compare(c2.distanceSquared, c1.distanceSquared);
+			}
+		});
+		
+		getNearest(root, position, k, candidates);
+		
+		while(!candidates.isEmpty())
+			result.add(candidates.poll().value);
+		Collections.reverse(result);
+		
+		return result;
+	}
+	
+	
+	private void getNearest(Node<T> node, Vector3f position, int k, PriorityQueue<Candidate<T>> candidates)
+	{
+		if(node == null)
+			return;
+		
+		float distanceSquared = node.position.distanceSquared(position);
+		if(!node.removed)
+		{
+			if(candidates.size() < k)
+				candidates.add(new Candidate<T>(node.value, distanceSquared));
+			else if(distanceSquared < candidates.peek().distanceSquared)
+			{
+				candidates.poll();
+				candidates.add(new Candidate<T>(node.value, distanceSquared));
+			}
+		}
+		
+		float difference = position.get(node.axis) - node.position.get(node.axis);
+		Node<T> near = (difference < 0) ? node.left : node.right;
+		Node<T> far = (difference < 0) ? node.right : node.left;
+		
+		getNearest(near, position, k, candidates);
+		
+		// other side of the splitting plane can only contain closer positions if the plane is close enough
+		if(candidates.size() < k || difference*difference < candidates.peek().distanceSquared)
+			getNearest(far, position, k, candidates);
+	}
+	
+	
+	/**
+	 * Returns the values of all positions with a distance of at most radius 
+	 * to the given position.
+	 */
+	List<T> getInRange(Vector3f position, float radius)
+	{
+		List<T> result = new ArrayList<T>();
+		getInRange(root, position, radius, radius*radius, result);
+		return result;
+	}
+	
+	
+	private void getInRange(Node<T> node, Vector3f position, float radius, float radiusSquared, List<T> result)
+	{
+		if(node == null)
+			return;
+		
+		if(!node.removed && node.position.distanceSquared(position) <= radiusSquared)
+			result.add(node.value);
+		
+		float difference = position.get(node.axis) - node.position.get(node.axis);
+		if(difference - radius <= 0)
+			getInRange(node.left, position, radius, radiusSquared, result);
+		if(difference + radius >= 0)
+			getInRange(node.right, position, radius, radiusSquared, result);
+	}
+}
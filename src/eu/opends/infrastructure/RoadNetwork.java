@@ -18,9 +18,10 @@
 
 package eu.opends.infrastructure;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.HashSet;
+import java.util.List;
 
 import com.jme3.material.Material;
 import com.jme3.math.ColorRGBA;
@@ -53,6 +54,14 @@ public class RoadNetwork
     private boolean drawWaypoints;
     private boolean drawSegments;
     
+    // spatial index of way points (only those a traffic object can be placed at) 
+    // and of points along the segments
+    private KdTree<Waypoint> waypointTree = new KdTree<Waypoint>();
+    private KdTree<Segment> segmentTree = new KdTree<Segment>();
+    
+    // distance between two indexed points of a segment (in meters)
+    private static final float SEGMENT_SAMPLE_DISTANCE = 5;
+    
     
     /**
      * Creates a new instance of the road network by looking up all available way
@@ -90,6 +99,8 @@ public class RoadNetwork
 		// initialize all way points and their outgoing segments
 		for(Waypoint waypoint : waypointMap.values())
 			initWaypoint(waypoint);
+		
+		buildIndex();
 	    
 		if(drawWaypoints || drawSegments)
 			sim.getSceneNode().attachChild(debugNode);
@@ -100,7 +111,9 @@ public class RoadNetwork
 	 * Adds a way point to the way point map and visual debug node after 
 	 * the simulation has already been started. Furthermore, all outgoing 
 	 * segments will be initialized and added to visual debug node (if not 
-	 * done yet). 
+	 * done yet). A way point of the same name (e.g. a helper way point of 
+	 * a lane change created again after a reset) is replaced, also in the 
+	 * spatial index.
 	 * 
 	 * @param waypoint
 	 * 			Way point to be added.
@@ -108,10 +121,86 @@ public class RoadNetwork
 	public void addWaypoint(Waypoint waypoint)
 	{
 		// add way point to way point map
-		waypointMap.put(waypoint.getName(), waypoint);
+		Waypoint replacedWaypoint = waypointMap.put(waypoint.getName(), waypoint);
+		
+		// remove replaced way point and its outgoing segments from index
+		if(replacedWaypoint != null)
+		{
+			waypointTree.remove(replacedWaypoint);
+			for(Segment segment : replacedWaypoint.getOutgoingSegmentList())
+				segmentTree.remove(segment);
+		}
 		
 		// init way point (init all outgoing segments and add to debug mode)
 		initWaypoint(waypoint);
+		
+		// add way point and its outgoing segments to index
+		if(isPlaceable(waypoint))
+			waypointTree.insert(waypoint.getPosition(), waypoint);
+		for(Segment segment : waypoint.getOutgoingSegmentList())
+			for(Vector3f samplePosition : getSamplePositions(segment))
+				segmentTree.insert(samplePosition, segment);
+	}
+	
+	
+	/**
+	 * Builds the spatial index of all way points and segments. Way point positions 
+	 * must not change afterwards (the index refers to them).
+	 */
+	private void buildIndex()
+	{
+		List<Vector3f> waypointPositions = new ArrayList<Vector3f>();
+		List<Waypoint> waypoints = new ArrayList<Waypoint>();
+		for(Waypoint waypoint : waypointMap.values())
+		{
+			if(isPlaceable(waypoint))
+			{
+				waypointPositions.add(waypoint.getPosition());
+				waypoints.add(waypoint);
+			}
+		}
+		waypointTree.build(waypointPositions, waypoints);
+		
+		List<Vector3f> samplePositions = new ArrayList<Vector3f>();
+		List<Segment> segments = new ArrayList<Segment>();
+		for(Segment segment : segmentMap.values())
+		{
+			if(segment.isInitialized())
+			{
+				for(Vector3f samplePosition : getSamplePositions(segment))
+				{
+					samplePositions.add(samplePosition);
+					segments.add(segment);
+				}
+			}
+		}
+		segmentTree.build(samplePositions, segments);
+	}
+	
+	
+	/**
+	 * Way points with an outgoing segment, and via way points (placing a traffic 
+	 * object there will place it at the start of the parent segment)
+	 */
+	private static boolean isPlaceable(Waypoint waypoint)
+	{
+		return !waypoint.isEndPoint() || waypoint.isViaWP();
+	}
+	
+	
+	private static List<Vector3f> getSamplePositions(Segment segment)
+	{
+		List<Vector3f> samplePositions = new ArrayList<Vector3f>();
+		
+		// segment without spline
+		if(segment.getFromWaypoint() == null || segment.getToWaypoint() == null)
+			return samplePositions;
+		
+		float length = segment.getLength();
+		int numberOfSamples = Math.max(1, (int) Math.ceil(length / SEGMENT_SAMPLE_DISTANCE));
+		for(int i=0; i<=numberOfSamples; i++)
+			samplePositions.add(segment.interpolate(i / (float) numberOfSamples));
+		return samplePositions;
 	}
 
 
@@ -138,38 +227,138 @@ public class RoadNetwork
 	 * 			Random way point close to given position.
 	 */
 	public Waypoint getRandomNearbyWaypoint(Vector3f position)
-	{		
-		TreeMap<Float, Waypoint> wpByDistanceMap = new TreeMap<Float, Waypoint>();
-		
-        for(Waypoint waypoint : waypointMap.values()) 
+	{
+        // return one of the nearest 5 way points randomly
+        int random = FastMath.nextRandomInt(0, 5);
+        
+        List<Waypoint> nearbyWaypoints = new ArrayList<Waypoint>();
+        int numberOfCandidates = random+1;
+        while(true)
         {
-        	// Preselect all way points which have an outgoing segment
-        	if(!waypoint.isEndPoint())
-        	{
-        		float distance = waypoint.getPosition().distance(position);
-        		wpByDistanceMap.put(distance, waypoint);
-        	}
-        	// ... or are part of a segment (= viaWaypoint)
-        	else if(waypoint.isViaWP())
+        	nearbyWaypoints.clear();
+        	for(Waypoint waypoint : waypointTree.getNearest(position, numberOfCandidates))
         	{
-        		// in case of the way point is a viaWayPoint, select its parent instead
-        		Waypoint parentWP = waypoint.getRandomParentSegment().getFromWaypoint(); //FIXME
-        		if(!parentWP.isEndPoint())
-        		{
-        			float distance = waypoint.getPosition().distance(position);
-            		wpByDistanceMap.put(distance, parentWP);
-        		}
+	        	// Preselect all way points which have an outgoing segment
+	        	if(!waypoint.isEndPoint())
+	        		nearbyWaypoints.add(waypoint);
+	        	
+	        	// ... or are part of a segment (= viaWaypoint)
+	        	else if(waypoint.isViaWP())
+	        	{
+	        		// in case of the way point is a viaWayPoint, select its parent instead
+	        		Waypoint parentWP = waypoint.getRandomParentSegment().getFromWaypoint(); //FIXME
+	        		if(!parentWP.isEndPoint())
+	        			nearbyWaypoints.add(parentWP);
+	        	}
         	}
+        	
+        	// some via way points may have been skipped --> look further
+        	if(nearbyWaypoints.size() > random || numberOfCandidates >= waypointTree.size())
+        		break;
+        	numberOfCandidates *= 2;
         }
+        
+        if(nearbyWaypoints.isEmpty())
+        	return null;
+        
+	    return nearbyWaypoints.get(Math.min(random, nearbyWaypoints.size()-1));
+	}
+	
+	
+	/**
+	 * Returns the way points closest to the given position, closest first. 
+	 * Only way points with outgoing segments and via way points are considered.
+	 * 
+	 * @param position
+	 * 			Position to find the closest way points of.
+	 * 
+	 * @param count
+	 * 			Maximum number of way points.
+	 * 
+	 * @return
+	 * 			Closest way points.
+	 */
+	public List<Waypoint> getNearestWaypoints(Vector3f position, int count)
+	{
+		return waypointTree.getNearest(position, count);
+	}
+	
+	
+	/**
+	 * Returns all way points within the given distance of a position. Only way 
+	 * points with outgoing segments and via way points are considered.
+	 * 
+	 * @param position
+	 * 			Center of the search.
+	 * 
+	 * @param radius
+	 * 			Maximum distance in meters.
+	 * 
+	 * @return
+	 * 			Way points in range (any order).
+	 */
+	public List<Waypoint> getWaypointsInRange(Vector3f position, float radius)
+	{
+		return waypointTree.getInRange(position, radius);
+	}
+	
+	
+	/**
+	 * Returns the segment closest to the given position.
+	 * 
+	 * @param position
+	 * 			Position to find the closest segment of.
+	 * 
+	 * @return
+	 * 			Closest segment, null if no segment available.
+	 */
+	public Segment getNearestSegment(Vector3f position)
+	{
+		List<Segment> nearestSample = segmentTree.getNearest(position, 1);
+		if(nearestSample.isEmpty())
+			return null;
 		
-        // return one of the nearest 5 way points randomly
-        int random = FastMath.nextRandomInt(0, 5);
-        Waypoint returnWaypoint = null;
-        Iterator<Waypoint> it = wpByDistanceMap.values().iterator();
-        for(int i=0; i<=random && it.hasNext(); i++)
-        	 returnWaypoint = it.next();
-
-	    return returnWaypoint;
+		// the closest segment has a sample point at most half the sample distance further away 
+		// than its closest point, which is not further away than the closest sample point
+		Segment nearestSegment = nearestSample.get(0);
+		float nearestDistance = nearestSegment.distance(position, 0, nearestSegment.getLength());
+		float radius = nearestDistance + SEGMENT_SAMPLE_DISTANCE/2f;
+		
+		for(Segment segment : new HashSet<Segment>(segmentTree.getInRange(position, radius)))
+		{
+			float distance = segment.distance(position, 0, segment.getLength());
+			if(distance < nearestDistance)
+			{
+				nearestDistance = distance;
+				nearestSegment = segment;
+			}
+		}
+		
+		return nearestSegment;
+	}
+	
+	
+	/**
+	 * Returns all segments passing within the given distance of a position.
+	 * 
+	 * @param position
+	 * 			Center of the search.
+	 * 
+	 * @param radius
+	 * 			Maximum distance in meters.
+	 * 
+	 * @return
+	 * 			Segments in range (any order).
+	 */
+	public List<Segment> getSegmentsInRange(Vector3f position, float radius)
+	{
+		List<Segment> segmentsInRange = new ArrayList<Segment>();
+		for(Segment segment : new HashSet<Segment>(segmentTree.getInRange(position, radius + SEGMENT_SAMPLE_DISTANCE/2f)))
+		{
+			if(segment.distance(position, 0, segment.getLength()) <= radius)
+				segmentsInRange.add(segment);
+		}
+		return segmentsInRange;
 	}
 	
 	
@@ -20,7 +20,6 @@ package eu.opends.infrastructure;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 import com.jme3.math.FastMath;
 import com.jme3.math.Spline;
@@ -64,6 +63,11 @@ public class Segment
 	private ArrayList<Waypoint> viaWaypointList = new ArrayList<Waypoint>();
 	private float curveTension;
 	private HashMap<TrafficObject,Float> traveledDistanceMap = new HashMap<TrafficObject,Float>();
+	private SegmentPolyline polyline = null;
+	
+	// traveled distance at the end of each part between (via) way points and heading on that part
+	private float[] headingPartEnds = new float[0];
+	private float[] headingPartValues = new float[]{0};
 	
 	
 	/**
@@ -210,6 +214,9 @@ public class Segment
 				spline.addControlPoint(endPos);
 			}
 			
+			polyline = new SegmentPolyline(spline);
+			initHeadings();
+			
 			isInitialized = true;
 		}		
 	}
@@ -225,26 +232,30 @@ public class Segment
      * 			The position on the segment
      */
     public Vector3f interpolate(float progress)
+    {
+    	return interpolate(progress, new Vector3f());
+    }
+    
+    
+    /**
+     * Interpolates the path giving the progress (0.0 - 1.0) without creating
+     * a new vector.
+     * 
+     * @param progress 
+     * 			The progress (0.0 - 1.0)  
+     * 
+     * @param store
+     * 			Vector to store the position in
+     * 
+     * @return
+     * 			The position on the segment (store)
+     */
+    public Vector3f interpolate(float progress, Vector3f store)
     {
     	if(isInitialized)
-    	{
-	    	float sum = 0;
-	    	float currentPos = progress * spline.getTotalLength();
-	    	
-	    	List<Float> segmentsLengthList = spline.getSegmentsLength();
-	    	for(int i=0; i<segmentsLengthList.size(); i++)
-	    	{
-	    		float segmentLength = segmentsLengthList.get(i);
-	    		if(sum + segmentLength >= currentPos)
-	    		{
-	    			float p = (currentPos - sum)/segmentLength;
-	    			return spline.interpolate(p, i, null);
-	    		}
-	    		sum += segmentLength;
-	    	}
-    	}
-    	return new Vector3f();
-        //return spline.interpolate(progress, 0, null);
+    		return polyline.getPoint(progress * spline.getTotalLength(), store);
+    	
+    	return store.set(0, 0, 0);
     }
     
     
@@ -259,52 +270,100 @@ public class Segment
      */
 	public float getHeading(float traveledDistance) 
 	{	
-		float heading = 0;
-
-		// if segment has been initialized, compute heading towards next way point
-		if(isInitialized)
+		// if segment has not been initialized, return heading "0"
+		if(!isInitialized)
+			return 0;
+		
+		// find first part ending beyond the traveled distance (binary search)
+		int low = 0;
+		int high = headingPartEnds.length;
+		while(low < high)
 		{
-			// compute heading by looking towards next way point from current position 
-			Vector3f fromPosition = getFromViaWaypoint(traveledDistance).getPosition().clone();
-			fromPosition.setY(0);
-			
-			Vector3f toPosition = getToViaWaypoint(traveledDistance).getPosition().clone();
-			toPosition.setY(0);
-			
-			Vector3f drivingDirection = toPosition.subtract(fromPosition).normalize();
-
-			// compute heading (orientation) from driving direction vector for
-			// angle between driving direction and heading "0"
-			float angle0  = drivingDirection.angleBetween(new Vector3f(0,0,-1));
-			// angle between driving direction and heading "90"
-			float angle90 = drivingDirection.angleBetween(new Vector3f(1,0,0));
-			
-			// get all candidates for heading
-			// find the value from {heading1,heading2} which matches with one of {heading3,heading4}
-			float heading1 = (2.0f * FastMath.PI + angle0)  % FastMath.TWO_PI;
-			float heading2 = (2.0f * FastMath.PI - angle0)  % FastMath.TWO_PI;
-			float heading3 = (2.5f * FastMath.PI + angle90) % FastMath.TWO_PI;
-			float heading4 = (2.5f * FastMath.PI - angle90) % FastMath.TWO_PI;
-			
-			float diff_1_3 = FastMath.abs(heading1-heading3);
-			float diff_1_4 = FastMath.abs(heading1-heading4);
-			float diff_2_3 = FastMath.abs(heading2-heading3);
-			float diff_2_4 = FastMath.abs(heading2-heading4);
-			
-			if((diff_1_3 < diff_1_4 && diff_1_3 < diff_2_3 && diff_1_3 < diff_2_4) ||
-				(diff_1_4 < diff_1_3 && diff_1_4 < diff_2_3 && diff_1_4 < diff_2_4))
-			{
-				// if diff_1_3 or diff_1_4 are smallest --> the correct heading is heading1
-				heading = heading1;
-			}
+			int middle = (low + high) >>> 1;
+			if(headingPartEnds[middle] > traveledDistance)
+				high = middle;
 			else
-			{
-				// if diff_2_3 or diff_2_4 are smallest --> the correct heading is heading2
-				heading = heading2;
-			}
+				low = middle + 1;
 		}
 		
-		return heading;
+		return headingPartValues[low];
+	}
+	
+	
+	/**
+	 * Computes the heading of each part of the segment between (via) way points, 
+	 * i.e. the heading looking from the previous towards the next (via) way point.
+	 */
+	private void initHeadings()
+	{
+		int numberOfVias = viaWaypointList.size();
+		headingPartEnds = new float[numberOfVias];
+		headingPartValues = new float[numberOfVias+1];
+		
+		if(fromWaypoint == null || toWaypoint == null)
+			return;
+		
+		float totalLength = 0;
+		for(int i=0; i<numberOfVias; i++)
+		{
+			totalLength += spline.getSegmentsLength().get(i);
+			headingPartEnds[i] = totalLength;
+			
+			Waypoint from = (i>0) ? viaWaypointList.get(i-1) : fromWaypoint;
+			headingPartValues[i] = computeHeading(from.getPosition(), viaWaypointList.get(i).getPosition());
+		}
+		
+		// beyond the last via way point
+		headingPartValues[numberOfVias] = computeHeading(fromWaypoint.getPosition(), toWaypoint.getPosition());
+	}
+	
+	
+	/**
+	 * Computes the heading in 2D space when looking from one position towards another.
+	 * 
+	 * @return
+	 * 			Heading in radians.
+	 */
+	private static float computeHeading(Vector3f from, Vector3f to)
+	{
+		// compute heading by looking towards next way point from current position 
+		Vector3f fromPosition = from.clone();
+		fromPosition.setY(0);
+		
+		Vector3f toPosition = to.clone();
+		toPosition.setY(0);
+		
+		Vector3f drivingDirection = toPosition.subtract(fromPosition).normalize();
+
+		// compute heading (orientation) from driving direction vector for
+		// angle between driving direction and heading "0"
+		float angle0  = drivingDirection.angleBetween(new Vector3f(0,0,-1));
+		// angle between driving direction and heading "90"
+		float angle90 = drivingDirection.angleBetween(new Vector3f(1,0,0));
+		
+		// get all candidates for heading
+		// find the value from {heading1,heading2} which matches with one of {heading3,heading4}
+		float heading1 = (2.0f * FastMath.PI + angle0)  % FastMath.TWO_PI;
+		float heading2 = (2.0f * FastMath.PI - angle0)  % FastMath.TWO_PI;
+		float heading3 = (2.5f * FastMath.PI + angle90) % FastMath.TWO_PI;
+		float heading4 = (2.5f * FastMath.PI - angle90) % FastMath.TWO_PI;
+		
+		float diff_1_3 = FastMath.abs(heading1-heading3);
+		float diff_1_4 = FastMath.abs(heading1-heading4);
+		float diff_2_3 = FastMath.abs(heading2-heading3);
+		float diff_2_4 = FastMath.abs(heading2-heading4);
+		
+		if((diff_1_3 < diff_1_4 && diff_1_3 < diff_2_3 && diff_1_3 < diff_2_4) ||
+			(diff_1_4 < diff_1_3 && diff_1_4 < diff_2_3 && diff_1_4 < diff_2_4))
+		{
+			// if diff_1_3 or diff_1_4 are smallest --> the correct heading is heading1
+			return heading1;
+		}
+		else
+		{
+			// if diff_2_3 or diff_2_4 are smallest --> the correct heading is heading2
+			return heading2;
+		}
 	}
 
 	
@@ -494,60 +553,6 @@ public class Segment
 	}
 
 	
-	/**
-	 * Getter method for the previous via way point (if available)
-	 * before or exactly at the given distance
-	 * 
-	 * @return
-	 * 			The previous via way point (fromWaypoint if not available)
-	 * 			before or exactly at the given distance
-	 */
-	private Waypoint getFromViaWaypoint(float traveledDistance)
-	{
-		// Iterate over segment's via way points till the given distance has been exceeded. 
-		// Return the via way point at the previous position (index-1) or return fromWaypoint 
-		// if previous via way point is fromWaypoint.
-		float totalLenght = 0;
-		for(int i=0 ; i<viaWaypointList.size(); i++)
-		{
-			totalLenght += spline.getSegmentsLength().get(i);
-			if(totalLenght>traveledDistance)
-			{
-				if(i>0)
-					return viaWaypointList.get(i-1);
-				else
-					return fromWaypoint;							
-			}
-		}
-		
-		return fromWaypoint;
-	}
-	
-	
-	/**
-	 * Getter method for the next via way point (if available)
-	 * beyond the given distance
-	 * 
-	 * @return
-	 * 			The next via way point (toWaypoint if not available)
-	 * 			beyond the given distance
-	 */
-	private Waypoint getToViaWaypoint(float traveledDistance)
-	{
-		// Iterate over segment's via way points till the given distance has been exceeded. 
-		// Return the via way point at this position or return toWaypoint if last via way point has been passed.
-		float totalLenght = 0;
-		for(int i=0 ; i<viaWaypointList.size(); i++)
-		{
-			totalLenght += spline.getSegmentsLength().get(i);
-			if(totalLenght>traveledDistance)
-				return viaWaypointList.get(i);
-		}
-		
-		return toWaypoint;
-	}
-	
-
 	/**
 	 * Setter method for traveled distance of a given traffic object, i.e. 
 	 * the distance (in meters) the traffic object has traveled since the 
@@ -594,7 +599,7 @@ public class Segment
 	/**
 	 * Computes the closest distance from the given position to a point on the segment.
 	 * Points on the segment to be considered must be located between minTraveledDistance 
-	 * and maxTraveledDistance and have a distance of 1 meter to their neighbors.
+	 * and maxTraveledDistance.
 	 * 
 	 * @param position
 	 * 			Position to compute distance to the segment
@@ -617,7 +622,8 @@ public class Segment
 			minTraveledDistance = swap;
 		}
 		
-		float closestDistance = Float.POSITIVE_INFINITY;
+		if(!isInitialized)
+			return Float.POSITIVE_INFINITY;
 		
 		// position of the first point on the segment to be considered 
 		float lowerBound = Math.max(0, Math.min(getLength(), minTraveledDistance));
@@ -625,19 +631,7 @@ public class Segment
 		// position of the last point on the segment to be considered
 		float upperBound = Math.max(0, Math.min(getLength(), maxTraveledDistance));
 		
-		// approach lower bound in steps of 1 meter towards upper bound
-		while(lowerBound <= upperBound)
-		{
-			// compute the distance between position and the current point on the segment
-			float distance = interpolate(lowerBound/getLength()).distance(position);
-			if(distance < closestDistance)
-				closestDistance = distance;
-			
-			// add 1 meter to the lower bound
-			lowerBound += 1;
-		}
-		
-		return closestDistance;
+		return polyline.getDistance(position, lowerBound, upperBound);
 	}
 	
 	
@@ -663,7 +657,7 @@ public class Segment
     		return false;
     		
     	// check if any traffic object (car or pedestrian) is blocking the target segment
-    	for(TrafficObject otherTrafficObject : sim.getPhysicalTraffic().getTrafficObjectList())
+    	for(TrafficObject otherTrafficObject : sim.getPhysicalTraffic().getTrafficObjectsOnSegment(name))
     	{
     		// exclude requesting traffic object
     		if(!otherTrafficObject.equals(requestingTrafficObject))
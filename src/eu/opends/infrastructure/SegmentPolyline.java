@@ -0,0 +1,323 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.infrastructure;
+
+import java.util.List;
+
+import com.jme3.math.Spline;
+import com.jme3.math.Spline.SplineType;
+import com.jme3.math.Vector3f;
+
+/**
+ * Polyline approximation of the spline of a segment, parameterized by the 
+ * distance traveled along the segment (as used by Segment.interpolate()). 
+ * A bounding volume hierarchy over the lines of the polyline finds the 
+ * closest point on the segment without sampling the spline.
+ */
+class SegmentPolyline
+{
+	// maximum distance between two points of the polyline on curved splines (in meters)
+	private static final float MAX_STEP = 0.5f;
+	
+	// maximum number of lines in a leaf of the hierarchy
+	private static final int LINES_PER_LEAF = 4;
+
+	private int numberOfPoints;
+	
+	// x, y, z of each point
+	private float[] points;
+	
+	// traveled distance at each point
+	private float[] distances;
+	
+	// hierarchy: bounding box (min x, y, z, max x, y, z) and first and last line of each node;
+	// children of node i are 2i+1 and 2i+2
+	private float[] nodeBounds;
+	private int[] nodeFirstLine;
+	private int[] nodeLastLine;
+	
+	
+	SegmentPolyline(Spline spline)
+	{
+		List<Vector3f> controlPoints = spline.getControlPoints();
+		List<Float> segmentsLengthList = spline.getSegmentsLength();
+		if(controlPoints.size() < 2 || segmentsLengthList == null)
+		{
+			numberOfPoints = 0;
+			return;
+		}
+		
+		// number of points per part of the spline
+		int[] steps = new int[segmentsLengthList.size()];
+		numberOfPoints = 1;
+		for(int i=0; i<segmentsLengthList.size(); i++)
+		{
+			if(spline.getType() == SplineType.Linear)
+				steps[i] = 1;
+			else
+				steps[i] = Math.max(1, (int) Math.ceil(segmentsLengthList.get(i) / MAX_STEP));
+			numberOfPoints += steps[i];
+		}
+		
+		points = new float[3*numberOfPoints];
+		distances = new float[numberOfPoints];
+		
+		Vector3f point = new Vector3f();
+		setPoint(0, controlPoints.get(0), 0);
+		
+		int index = 1;
+		float sum = 0;
+		for(int i=0; i<segmentsLengthList.size(); i++)
+		{
+			float segmentLength = segmentsLengthList.get(i);
+			for(int k=1; k<=steps[i]; k++)
+			{
+				float p = k / (float) steps[i];
+				spline.interpolate(p, i, point);
+				setPoint(index++, point, sum + p*segmentLength);
+			}
+			sum += segmentLength;
+		}
+		
+		buildHierarchy();
+	}
+	
+	
+	private void setPoint(int index, Vector3f point, float distance)
+	{
+		points[3*index] = point.x;
+		points[3*index+1] = point.y;
+		points[3*index+2] = point.z;
+		distances[index] = distance;
+	}
+	
+	
+	/**
+	 * Computes the point at the given traveled distance.
+	 * 
+	 * @param traveledDistance
+	 * 			Distance from the start of the segment (clamped to the segment)
+	 * 
+	 * @param store
+	 * 			Vector to store the result in
+	 * 
+	 * @return
+	 * 			store, or the origin if the segment has no points
+	 */
+	Vector3f getPoint(float traveledDistance, Vector3f store)
+	{
+		if(numberOfPoints == 0)
+			return store.set(0, 0, 0);
+		
+		if(numberOfPoints == 1 || traveledDistance <= distances[0])
+			return getPoint(0, store);
+		
+		if(traveledDistance >= distances[numberOfPoints-1])
+			return getPoint(numberOfPoints-1, store);
+		
+		// binary search for the line containing the traveled distance
+		int low = 0;
+		int high = numberOfPoints-1;
+		while(high - low > 1)
+		{
+			int middle = (low + high) >>> 1;
+			if(distances[middle] <= traveledDistance)
+				low = middle;
+			else
+				high = middle;
+		}
+		
+		float length = distances[high] - distances[low];
+		float t = (length > 0) ? (traveledDistance - distances[low]) / length : 0;
+		
+		return store.set(
+				points[3*low]   + t * (points[3*high]   - points[3*low]),
+				points[3*low+1] + t * (points[3*high+1] - points[3*low+1]),
+				points[3*low+2] + t * (points[3*high+2] - points[3*low+2]));
+	}
+	
+	
+	private Vector3f getPoint(int index, Vector3f store)
+	{
+		return store.set(points[3*index], points[3*index+1], points[3*index+2]);
+	}
+	
+	
+	/**
+	 * Computes the distance from the given position to the closest point on 
+	 * the polyline between the given traveled distances.
+	 * 
+	 * @param position
+	 * 			Position to compute the distance to
+	 * 
+	 * @param minTraveledDistance
+	 * 			First point on the segment to be considered
+	 * 
+	 * @param maxTraveledDistance
+	 * 			Last point on the segment to be considered
+	 * 
+	 * @return
+	 * 			Distance to the closest point, Float.POSITIVE_INFINITY if no 
+	 * 			point is in range
+	 */
+	float getDistance(Vector3f position, float minTraveledDistance, float maxTraveledDistance)
+	{
+		if(numberOfPoints == 0)
+			return Float.POSITIVE_INFINITY;
+		
+		if(numberOfPoints == 1)
+			return (float) Math.sqrt(getDistanceSquared(0, position));
+		
+		float closest = getDistanceSquared(0, position, minTraveledDistance, maxTraveledDistance, Float.POSITIVE_INFINITY);
+		return (float) Math.sqrt(closest);
+	}
+	
+	
+	private float getDistanceSquared(int node, Vector3f position, float minTraveledDistance, 
+			float maxTraveledDistance, float closest)
+	{
+		int firstLine = nodeFirstLine[node];
+		int lastLine = nodeLastLine[node];
+		
+		// skip lines outside of the requested part of the segment
+		if(distances[lastLine+1] < minTraveledDistance || distances[firstLine] > maxTraveledDistance)
+			return closest;
+		
+		// skip lines farther away than the closest point found so far
+		if(getBoxDistanceSquared(node, position) >= closest)
+			return closest;
+		
+		if(lastLine - firstLine < LINES_PER_LEAF)
+		{
+			for(int line=firstLine; line<=lastLine; line++)
+				closest = Math.min(closest, getLineDistanceSquared(line, position, minTraveledDistance, maxTraveledDistance));
+			return closest;
+		}
+		
+		// visit the closer child first
+		int left = 2*node+1;
+		int right = 2*node+2;
+		if(getBoxDistanceSquared(right, position) < getBoxDistanceSquared(left, position))
+		{
+			int swap = left;
+			left = right;
+			right = swap;
+		}
+		
+		closest = getDistanceSquared(left, position, minTraveledDistance, maxTraveledDistance, closest);
+		return getDistanceSquared(right, position, minTraveledDistance, maxTraveledDistance, closest);
+	}
+	
+	
+	private float getLineDistanceSquared(int line, Vector3f position, float minTraveledDistance, float maxTraveledDistance)
+	{
+		float ax = points[3*line],   ay = points[3*line+1], az = points[3*line+2];
+		float dx = points[3*line+3] - ax;
+		float dy = points[3*line+4] - ay;
+		float dz = points[3*line+5] - az;
+		
+		// only the part of the line between the requested traveled distances
+		float fromT = 0;
+		float toT = 1;
+		float length = distances[line+1] - distances[line];
+		if(length > 0)
+		{
+			fromT = Math.max(0, (minTraveledDistance - distances[line]) / length);
+			toT = Math.min(1, (maxTraveledDistance - distances[line]) / length);
+			if(fromT > toT)
+				return Float.POSITIVE_INFINITY;
+		}
+		
+		float t = 0;
+		float lengthSquared = dx*dx + dy*dy + dz*dz;
+		if(lengthSquared > 0)
+			t = ((position.x - ax)*dx + (position.y - ay)*dy + (position.z - az)*dz) / lengthSquared;
+		t = Math.max(fromT, Math.min(toT, t));
+		
+		float x = ax + t*dx - position.x;
+		float y = ay + t*dy - position.y;
+		float z = az + t*dz - position.z;
+		return x*x + y*y + z*z;
+	}
+	
+	
+	private float getDistanceSquared(int index, Vector3f position)
+	{
+		float x = points[3*index] - position.x;
+		float y = points[3*index+1] - position.y;
+		float z = points[3*index+2] - position.z;
+		return x*x + y*y + z*z;
+	}
+	
+	
+	private float getBoxDistanceSquared(int node, Vector3f position)
+	{
+		float x = Math.max(0, Math.max(nodeBounds[6*node]   - position.x, position.x - nodeBounds[6*node+3]));
+		float y = Math.max(0, Math.max(nodeBounds[6*node+1] - position.y, position.y - nodeBounds[6*node+4]));
+		float z = Math.max(0, Math.max(nodeBounds[6*node+2] - position.z, position.z - nodeBounds[6*node+5]));
+		return x*x + y*y + z*z;
+	}
+	
+	
+	private void buildHierarchy()
+	{
+		int numberOfLines = numberOfPoints-1;
+		if(numberOfLines < 1)
+			return;
+		
+		// complete binary tree deep enough for leaves of at most LINES_PER_LEAF lines
+		int numberOfLeaves = 1;
+		while(numberOfLeaves * LINES_PER_LEAF < numberOfLines)
+			numberOfLeaves *= 2;
+		int numberOfNodes = 2*numberOfLeaves - 1;
+		
+		nodeBounds = new float[6*numberOfNodes];
+		nodeFirstLine = new int[numberOfNodes];
+		nodeLastLine = new int[numberOfNodes];
+		
+		buildNode(0, 0, numberOfLines-1);
+	}
+	
+	
+	private void buildNode(int node, int firstLine, int lastLine)
+	{
+		nodeFirstLine[node] = firstLine;
+		nodeLastLine[node] = lastLine;
+		
+		for(int i=0; i<3; i++)
+		{
+			nodeBounds[6*node+i] = Float.POSITIVE_INFINITY;
+			nodeBounds[6*node+3+i] = Float.NEGATIVE_INFINITY;
+		}
+		
+		for(int index=firstLine; index<=lastLine+1; index++)
+			for(int i=0; i<3; i++)
+			{
+				nodeBounds[6*node+i] = Math.min(nodeBounds[6*node+i], points[3*index+i]);
+				nodeBounds[6*node+3+i] = Math.max(nodeBounds[6*node+3+i], points[3*index+i]);
+			}
+		
+		if(lastLine - firstLine >= LINES_PER_LEAF)
+		{
+			int middle = (firstLine + lastLine) >>> 1;
+			buildNode(2*node+1, firstLine, middle);
+			buildNode(2*node+2, middle+1, lastLine);
+		}
+	}
+}
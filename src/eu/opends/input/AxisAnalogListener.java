@@ -22,6 +22,7 @@ import java.util.List;
 
 import com.jme3.input.controls.AnalogListener;
 
+import eu.opends.basics.SimulationClock;
 import eu.opends.trigger.TriggerAction;
 
 /**
@@ -31,14 +32,17 @@ import eu.opends.trigger.TriggerAction;
 public class AxisAnalogListener implements AnalogListener 
 {
 	private List<TriggerAction> triggerActionList;
+	private SimulationClock clock;
 	private String triggerName;
 	private float triggeringThreshold;
 	private float sensitivityFactor;
 	private boolean triggerAvailable = true;
 	
 	
-	public AxisAnalogListener(List<TriggerAction> triggerActionList, String triggerName, float triggeringThreshold, float sensitivityFactor)
+	public AxisAnalogListener(List<TriggerAction> triggerActionList, String triggerName, float triggeringThreshold, float sensitivityFactor, 
+			SimulationClock clock)
 	{
+		this.clock = clock;
 		this.triggerActionList = triggerActionList;
 		this.triggerName = triggerName;
 		this.triggeringThreshold = triggeringThreshold;
@@ -67,7 +71,7 @@ public class AxisAnalogListener implements AnalogListener
 			{
 				for(TriggerAction triggerAction : triggerActionList)
 				{
-					triggerAction.performAction();
+					triggerAction.performAction(clock);
 				}
 				
 				triggerAvailable = false;
@@ -22,6 +22,7 @@ import java.util.List;
 
 import com.jme3.input.controls.ActionListener;
 
+import eu.opends.basics.SimulationClock;
 import eu.opends.trigger.TriggerAction;
 
 /**
@@ -31,11 +32,13 @@ import eu.opends.trigger.TriggerAction;
 public class KeyActionListener implements ActionListener 
 {
 	private List<TriggerAction> triggerActionList;
+	private SimulationClock clock;
 	private String triggerName;
 	
 	
-	public KeyActionListener(List<TriggerAction> triggerActionList, String triggerName)
+	public KeyActionListener(List<TriggerAction> triggerActionList, String triggerName, SimulationClock clock)
 	{
+		this.clock = clock;
 		this.triggerActionList = triggerActionList;
 		this.triggerName = triggerName;
 	}
@@ -50,7 +53,7 @@ public class KeyActionListener implements ActionListener
 			{
 				for(TriggerAction triggerAction : triggerActionList)
 				{
-					triggerAction.performAction();
+					triggerAction.performAction(clock);
 				}
 			}
 		}
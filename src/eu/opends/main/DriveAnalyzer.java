@@ -623,6 +623,9 @@ public class DriveAnalyzer extends SimulationBasics
 			// updates camera
 			super.simpleUpdate(tpf);
 			
+			if(!isPause())
+				clock.update(tpf);
+			
 			if(updateMessageBox)
 				PanelCenter.getMessageBox().update();
 			
@@ -692,6 +695,8 @@ public class DriveAnalyzer extends SimulationBasics
 	@Override
 	public void destroy()
     {
+		clock.close();
+		
 		if(initializationFinished)
 		{
 			KnowledgeBase.KB.disconnect();
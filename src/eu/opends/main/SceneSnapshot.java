@@ -0,0 +1,88 @@
+package eu.opends.main;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import eu.opends.car.Car;
+import eu.opends.drivingTask.DrivingTask;
+import eu.opends.drivingTask.scenario.ScenarioLoader;
+import eu.opends.drivingTask.scene.SceneLoader;
+import eu.opends.infrastructure.RoadNetwork;
+import eu.opends.infrastructure.Waypoint;
+import eu.opends.traffic.FollowBox;
+import eu.opends.traffic.Pedestrian;
+import eu.opends.traffic.TrafficObject;
+
+import java.io.*;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Dynamic state of a scene after it has been set up, see
+ * {@link Simulator#captureScene()} and {@link Simulator#restoreScene(SceneSnapshot)}.
+ *
+ * The loaded driving task and road network are kept by reference. The
+ * simulator replaces them instead of changing them while an episode runs,
+ * so restoring a snapshot does not have to load the scene again.
+ */
+public class SceneSnapshot {
+
+    /* Scene as set up */
+    DrivingTask drivingTask;
+    SceneLoader sceneLoader;
+    ScenarioLoader scenarioLoader;
+    RoadNetwork roadNetwork;
+    Map<Waypoint, Vector3f> waypointPositions = new IdentityHashMap<>();
+
+    /* Obstacle */
+    Spatial obstacle;
+    Vector3f obstacleTranslation;
+    Quaternion obstacleRotation;
+
+    /* Car and traffic */
+    Car.State carState;
+    Map<TrafficObject, Pedestrian.State> pedestrianStates = new IdentityHashMap<>();
+    Map<TrafficObject, Car.State> trafficCarStates = new IdentityHashMap<>();
+    Map<TrafficObject, FollowBox.State> trafficCarFollowBoxStates = new IdentityHashMap<>();
+
+    /* Scenario state of the simulator */
+    boolean isCrossing;
+    boolean doNotCross;
+    float crossingDistance;
+    int obstacleDistance;
+    byte[] randomState;
+
+    /**
+     * Serializes the state of a random number generator, so the same
+     * numbers are drawn after each restore
+     */
+    static byte[] saveRandom(Random random) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(random);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @return The random number generator in the saved state, null if it could not be read
+     */
+    static Random loadRandom(byte[] state) {
+        if (state == null) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            return (Random) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -21,11 +21,13 @@ package eu.opends.main;
 
 import com.jme3.app.StatsAppState;
 import com.jme3.bounding.BoundingBox;
+import com.jme3.bullet.BulletAppState;
 import com.jme3.input.Joystick;
 import com.jme3.math.Line;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.niftygui.NiftyJmeDisplay;
+import com.jme3.renderer.ViewPort;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.Spatial.CullHint;
@@ -42,6 +44,7 @@ import eu.opends.camera.SimulatorCam;
 import eu.opends.cameraFlight.CameraFlight;
 import eu.opends.cameraFlight.NotEnoughWaypointsException;
 import eu.opends.canbus.CANClient;
+import eu.opends.car.RadarSensor;
 import eu.opends.car.ResetPosition;
 import eu.opends.car.SteeringCar;
 import eu.opends.chrono.ChronoPhysicsSpace;
@@ -61,6 +64,7 @@ import eu.opends.multiDriver.MultiDriverClient;
 import eu.opends.niftyGui.DrivingTaskSelectionGUIController;
 import eu.opends.profiler.BasicProfilerState;
 import eu.opends.reactionCenter.ReactionCenter;
+import eu.opends.settingsController.DirectConnection;
 import eu.opends.settingsController.SettingsControllerServer;
 import eu.opends.taskDescription.contreTask.SteeringTask;
 import eu.opends.taskDescription.tvpTask.MotorwayTask;
@@ -68,6 +72,7 @@ import eu.opends.taskDescription.tvpTask.ThreeVehiclePlatoonTask;
 import eu.opends.tools.*;
 import eu.opends.traffic.Pedestrian;
 import eu.opends.traffic.PhysicalTraffic;
+import eu.opends.traffic.TrafficCar;
 import eu.opends.traffic.TrafficObject;
 import eu.opends.trigger.TriggerCenter;
 import eu.opends.visualization.LightningClient;
@@ -84,6 +89,7 @@ import java.nio.file.*;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import static eu.opends.main.DataSet.MULTIPLE_PEDESTRIAN_SETS;
 import static eu.opends.main.DataSet.NUM_SETS;
@@ -226,6 +232,21 @@ public class Simulator extends SimulationBasics {
 
     public List<ResetPosition> trainingResetPoisitions = new LinkedList<>();
     public static boolean isHeadLess = false;
+
+    /**
+     * Headless profile that only simulates what the settings controller and
+     * the evaluation read: no sky, lights, GUIs, camera, effects, skeletal
+     * animation or rendering of the scene
+     */
+    public static boolean isPhysicsOnly = false;
+
+    /**
+     * Whether repeated resets of the same scene restore a snapshot taken
+     * after the first reset instead of setting the scene up again
+     */
+    public static boolean useSceneSnapshots = true;
+
+    private Thread renderThread = null;
     private final static Logger logger = Logger.getLogger(Simulator.class);
     private int serverPort = -1;
     public String drivingTaskFileName;
@@ -393,6 +414,8 @@ public class Simulator extends SimulationBasics {
 
     @Override
     public void simpleInitApp() {
+        renderThread = Thread.currentThread();
+
         showStats(false);
 
         if (drivingTaskGiven)
@@ -433,6 +456,12 @@ public class Simulator extends SimulationBasics {
      * @param initDrivingTask
      */
     public void switchScenario(boolean initDrivingTask) {
+        if (isPhysicsConcurrent()) {
+            runBetweenPhysicsSteps(() -> switchScenario(initDrivingTask), true);
+            return;
+        }
+
+        resetSnapshot = null;
         trainingResetPoisitions.clear();
 
         if (mode == TESTING) {
@@ -593,7 +622,8 @@ public class Simulator extends SimulationBasics {
 
         chronoPhysicsSpace = new ChronoPhysicsSpace();
 
-        stateManager.attach(new BasicProfilerState(false));
+        if (!isPhysicsOnly)
+            stateManager.attach(new BasicProfilerState(false));
 
         physicalTraffic = new PhysicalTraffic();
 
@@ -694,7 +724,10 @@ public class Simulator extends SimulationBasics {
         try {
 
             // attach camera to camera flight
-            cameraFlight = new CameraFlight(this);
+            if (!isPhysicsOnly)
+                cameraFlight = new CameraFlight(this);
+            else
+                car.getCarNode().attachChild(cameraFactory.getMainCameraNode());
 
         } catch (NotEnoughWaypointsException e) {
 
@@ -713,7 +746,8 @@ public class Simulator extends SimulationBasics {
         //moviePlayer = new MoviePlayer(this);
 
         // start effect center
-        effectCenter = new EffectCenter(this);
+        if (!isPhysicsOnly)
+            effectCenter = new EffectCenter(this);
 
         objectManipulationCenter = new ObjectManipulationCenter(this);
 
@@ -724,6 +758,10 @@ public class Simulator extends SimulationBasics {
                 settingsControllerServer = new SettingsControllerServer(this);
             }
             settingsControllerServer.start();
+
+            if (serverPort != -1) {
+                DirectConnection.register(this, serverPort);
+            }
         }
 
         StatsAppState statsAppState = stateManager.getState(StatsAppState.class);
@@ -899,6 +937,16 @@ public class Simulator extends SimulationBasics {
             car.carControl.resetVelocity();
         }
 
+        // the scene graph is still updated, but never culled or rendered
+        if (isPhysicsOnly) {
+            for (ViewPort view : renderManager.getPreViews())
+                view.setEnabled(false);
+            for (ViewPort view : renderManager.getMainViews())
+                view.setEnabled(false);
+            for (ViewPort view : renderManager.getPostViews())
+                view.setEnabled(false);
+        }
+
         initializationFinished = true;
     }
 
@@ -1043,12 +1091,28 @@ public class Simulator extends SimulationBasics {
 
     int obstacleDistance = 0;
 
+    /**
+     * State of the current scene after its first reset, null if the scene
+     * has to be set up again on the next reset
+     */
+    private SceneSnapshot resetSnapshot = null;
+
     /**
      * Resets the current scene
      */
     public void resetScene() {
         // (-311.94266, -0.46226686, -24.452269)
 
+        if (isPhysicsConcurrent()) {
+            runBetweenPhysicsSteps(this::resetScene, true);
+            return;
+        }
+
+        if (resetSnapshot != null) {
+            restoreScene(resetSnapshot);
+            return;
+        }
+
         setPause(true);
 
         Vector3f location = trainingResetPoisitions.get(0).getLocation();
@@ -1194,6 +1258,153 @@ public class Simulator extends SimulationBasics {
         }
 
         isCrossing = false;
+
+        if (useSceneSnapshots && isResetDeterministic()) {
+            resetSnapshot = captureScene();
+        }
+    }
+
+    /**
+     * Whether resetScene() sets up the same scene every time. Obstacles
+     * move further on every reset and multiple pedestrians draw a new
+     * crossing distance in training.
+     */
+    private boolean isResetDeterministic() {
+        return obstaclePosition == NONE && !(type == MULTIPLE_PEDESTRIANS && mode == Config.SimulationMode.TRAINING);
+    }
+
+    /**
+     * Captures the dynamic state of the current scene: car, pedestrians,
+     * traffic cars and their follow boxes, obstacle, way points and the
+     * random number generator. The state is taken between two updates.
+     */
+    public SceneSnapshot captureScene() {
+        return runOnRenderThread(() -> {
+            SceneSnapshot snapshot = new SceneSnapshot();
+
+            snapshot.drivingTask = drivingTask;
+            snapshot.sceneLoader = sceneLoader;
+            snapshot.scenarioLoader = scenarioLoader;
+            snapshot.roadNetwork = roadNetwork;
+            for (Waypoint waypoint : scenarioLoader.getWaypointMap().values()) {
+                snapshot.waypointPositions.put(waypoint, waypoint.getPosition().clone());
+            }
+
+            if (obstacle != null) {
+                snapshot.obstacle = obstacle;
+                snapshot.obstacleTranslation = obstacle.getLocalTranslation().clone();
+                snapshot.obstacleRotation = obstacle.getLocalRotation().clone();
+            }
+
+            snapshot.carState = car.getState();
+            for (TrafficObject obj : getPhysicalTraffic().getTrafficObjectList()) {
+                if (obj instanceof Pedestrian) {
+                    snapshot.pedestrianStates.put(obj, ((Pedestrian) obj).getState());
+                } else if (obj instanceof TrafficCar) {
+                    TrafficCar trafficCar = (TrafficCar) obj;
+                    snapshot.trafficCarStates.put(obj, trafficCar.getState());
+                    snapshot.trafficCarFollowBoxStates.put(obj, trafficCar.getFollowBox().getState());
+                }
+            }
+
+            snapshot.isCrossing = isCrossing;
+            snapshot.doNotCross = doNotCross;
+            snapshot.crossingDistance = crossingDistance;
+            snapshot.obstacleDistance = obstacleDistance;
+            snapshot.randomState = SceneSnapshot.saveRandom(rand);
+
+            return snapshot;
+        });
+    }
+
+    /**
+     * Restores a snapshot of the scene within a single update. The
+     * simulator is running afterwards, like after resetScene().
+     */
+    public void restoreScene(SceneSnapshot snapshot) {
+        runOnRenderThread(() -> {
+            drivingTask = snapshot.drivingTask;
+            sceneLoader = snapshot.sceneLoader;
+            scenarioLoader = snapshot.scenarioLoader;
+            roadNetwork = snapshot.roadNetwork;
+            for (Map.Entry<Waypoint, Vector3f> entry : snapshot.waypointPositions.entrySet()) {
+                entry.getKey().setPosition(entry.getValue().clone());
+            }
+
+            if (snapshot.obstacle != null) {
+                obstacle = snapshot.obstacle;
+                obstacle.setLocalTranslation(snapshot.obstacleTranslation);
+                obstacle.setLocalRotation(snapshot.obstacleRotation);
+            }
+
+            car.setState(snapshot.carState);
+            for (TrafficObject obj : getPhysicalTraffic().getTrafficObjectList()) {
+                if (obj instanceof Pedestrian) {
+                    ((Pedestrian) obj).setState(snapshot.pedestrianStates.get(obj));
+                } else if (obj instanceof TrafficCar && snapshot.trafficCarStates.containsKey(obj)) {
+                    TrafficCar trafficCar = (TrafficCar) obj;
+                    trafficCar.setState(snapshot.trafficCarStates.get(obj));
+                    trafficCar.getFollowBox().setState(snapshot.trafficCarFollowBoxStates.get(obj));
+                }
+            }
+
+            isCrossing = snapshot.isCrossing;
+            doNotCross = snapshot.doNotCross;
+            crossingDistance = snapshot.crossingDistance;
+            obstacleDistance = snapshot.obstacleDistance;
+            Random random = SceneSnapshot.loadRandom(snapshot.randomState);
+            if (random != null) {
+                rand = random;
+            }
+
+            setPause(false);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the task on the render thread and waits for it, or runs it
+     * directly if called from the render thread
+     * @return The result of the task, null if it failed
+     */
+    private <V> V runOnRenderThread(Callable<V> task) {
+        try {
+            if (renderThread == null || Thread.currentThread() == renderThread) {
+                return task.call();
+            }
+            return enqueue(task).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Whether physics may be stepped by the physics thread while the
+     * calling thread runs
+     */
+    private boolean isPhysicsConcurrent() {
+        return physicsThreading == BulletAppState.ThreadingType.PARALLEL
+                && renderThread != null && Thread.currentThread() != renderThread;
+    }
+
+    /**
+     * Applies a change to the car, the traffic or the scene where it cannot
+     * overlap a physics step. With parallel physics the change is handed to
+     * the update loop of the render thread, otherwise it is applied directly.
+     * @param wait Whether to wait until the change has been applied
+     */
+    public void runBetweenPhysicsSteps(Runnable change, boolean wait) {
+        if (!isPhysicsConcurrent()) {
+            change.run();
+        } else if (wait) {
+            runOnRenderThread(() -> {
+                change.run();
+                return null;
+            });
+        } else {
+            enqueue(change);
+        }
     }
 
 
@@ -1201,12 +1412,38 @@ public class Simulator extends SimulationBasics {
 
     private int sceneNumber = 0;
 
+    /**
+     * Parameters of the scene set by setScene, null if the next scene of the grid is used
+     */
+    private float[] sceneParameters = null;
+
+    /**
+     * Switches to the scene with the given parameters instead of the next
+     * scene of the grid. The parameters are interpreted like the first
+     * two command line arguments.
+     */
+    public void setScene(float param1, float param2) {
+        sceneParameters = new float[]{param1, param2};
+        try {
+            nextScene();
+        } finally {
+            sceneParameters = null;
+        }
+    }
+
     /**
      * Switches to the next scene
      */
     public void nextScene() {
         // (-311.94266, -0.46226686, -24.452269)
 
+        if (isPhysicsConcurrent()) {
+            runBetweenPhysicsSteps(this::nextScene, true);
+            return;
+        }
+
+        resetSnapshot = null;
+
         setPause(true);
 
         Vector3f location = trainingResetPoisitions.get(0).getLocation();
@@ -1219,10 +1456,15 @@ public class Simulator extends SimulationBasics {
         setPause(false);
 
         if (type == ZIGZAG_FOLLOW) {
-            zigZagAngle += angleInterval;
-            if (zigZagAngle >= 180 - angleInterval) {
-                zigZagAngle = 30;
-                zigZagLength += lengthInterval;
+            if (sceneParameters != null) {
+                zigZagLength = sceneParameters[0];
+                zigZagAngle = sceneParameters[1];
+            } else {
+                zigZagAngle += angleInterval;
+                if (zigZagAngle >= 180 - angleInterval) {
+                    zigZagAngle = 30;
+                    zigZagLength += lengthInterval;
+                }
             }
 
             if (mode == TESTING) {
@@ -1232,7 +1474,12 @@ public class Simulator extends SimulationBasics {
             makeZigZag();
         }
 
-        if (type == MULTIPLE_PEDESTRIANS) {
+        if (type == MULTIPLE_PEDESTRIANS && sceneParameters != null) {
+            distanceToFirstPed = sceneParameters[0];
+            delay = sceneParameters[1];
+
+            System.out.println("Changed pattern: " + delay + ", " + distanceToFirstPed);
+        } else if (type == MULTIPLE_PEDESTRIANS) {
             if (delay >= maxDelay) {
                 delay = 0;
                 distanceToFirstPed += distanceToFirstPedInterval;
@@ -1253,7 +1500,10 @@ public class Simulator extends SimulationBasics {
 
         if (type == SPEED_DISTANCE) {
 
-            if (mode == TESTING) {
+            if (sceneParameters != null) {
+                speedIndex = Math.round(sceneParameters[0]);
+                distanceIndex = Math.round(sceneParameters[1]);
+            } else if (mode == TESTING) {
                 distanceIndex++;
                 if (distanceIndex >= distances.size()) {
                     distanceIndex = 0;
@@ -1417,6 +1667,8 @@ public class Simulator extends SimulationBasics {
             throw new RuntimeException("Random training should be disabled");
         }
 
+        resetSnapshot = null;
+
         scenarioLoader = drivingTask.getScenarioLoader();
         HashMap<String, Waypoint> waypointMap = scenarioLoader.getWaypointMap();
         Waypoint startCrossWaypointTmp = waypointMap.get("WP_StartCross");
@@ -1522,10 +1774,13 @@ public class Simulator extends SimulationBasics {
                 return;
             }
 
+            clock.update(tpf);
+
             chronoPhysicsSpace.update(tpf);
 
             // updates camera
-            cameraFactory.updateCamera();
+            if (!isPhysicsOnly)
+                cameraFactory.updateCamera();
 
             if (!isPause())
                 car.getTransmission().updateRPM(tpf);
@@ -1538,6 +1793,9 @@ public class Simulator extends SimulationBasics {
 
             updateDataWriter();
 
+            // positions of the traffic for this frame's proximity queries
+            physicalTraffic.updateIndex();
+
             if (!isPause())
                 car.update(tpf, getPhysicalTraffic().getTrafficObjectList());
 
@@ -1553,11 +1811,13 @@ public class Simulator extends SimulationBasics {
                 cameraFlight.update();
 
             // update effects
-            effectCenter.update(tpf);
+            if (effectCenter != null)
+                effectCenter.update(tpf);
 
             // forward instruction screen if available
             if (instructionScreenID != null) {
-                instructionScreenGUI.showDialog(instructionScreenID);
+                if (instructionScreenGUI != null)
+                    instructionScreenGUI.showDialog(instructionScreenID);
                 instructionScreenID = null;
             }
 
@@ -1685,7 +1945,8 @@ public class Simulator extends SimulationBasics {
                 }
             }
 
-            updateCoordinateSystem();
+            if (!isPhysicsOnly)
+                updateCoordinateSystem();
         }
     }
 
@@ -1752,6 +2013,9 @@ public class Simulator extends SimulationBasics {
     public void destroy() {
         logger.info("started destroy()");
 
+        // wake up threads waiting for simulation time, so they can be stopped
+        clock.close();
+
         if (initializationFinished) {
             chronoPhysicsSpace.destroy();
 
@@ -1792,6 +2056,14 @@ public class Simulator extends SimulationBasics {
             //initDrivingTaskSelectionGUI();
         }
 
+        // free the port also if the simulator failed during initialization,
+        // so it can be restarted
+        if (!initializationFinished && settingsControllerServer != null)
+            settingsControllerServer.close();
+
+        if (serverPort != -1)
+            DirectConnection.unregister(this, serverPort);
+
         super.destroy();
         logger.info("finished destroy()");
 
@@ -1801,6 +2073,19 @@ public class Simulator extends SimulationBasics {
 
 
     public static void main(String[] args) {
+        launch(args);
+    }
+
+
+    /**
+     * Creates and starts a simulator like main() does. Writes static
+     * configuration of the simulator class, so simulators in the same
+     * JVM must not be launched at the same time.
+     *
+     * @param args Same arguments as main()
+     * @return The started simulator or null if it could not be started
+     */
+    public static Simulator launch(String[] args) {
         try {
             // copy native files of force feedback joystick driver
             boolean isWindows = System.getProperty("os.name").toLowerCase().contains("win");
@@ -1830,6 +2115,9 @@ public class Simulator extends SimulationBasics {
             // only show sev214.63ere jme3-logs
             java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.SEVERE);
 
+            if (isPhysicsOnly)
+                isHeadLess = true;
+
             if (!isHeadLess) {
                 PlatformImpl.startup(() -> {
                 });
@@ -1860,6 +2148,11 @@ public class Simulator extends SimulationBasics {
             if (!startPropertiesReader.getDriverName().isEmpty())
                 SimulationDefaults.driverName = startPropertiesReader.getDriverName();
 
+            sim.physicsThreading = startPropertiesReader.getPhysicsThreading();
+            sim.physicsTickRate = startPropertiesReader.getPhysicsTickRate();
+            sim.maxPhysicsSubSteps = startPropertiesReader.getMaxPhysicsSubSteps();
+            RadarSensor.enabled = startPropertiesReader.isRangeSensorEnabled();
+
 
             float param1 = -1;
             float param2 = -1;
@@ -1920,6 +2213,10 @@ public class Simulator extends SimulationBasics {
                 sim.obstaclePosition = ScenarioConfig.ObstaclePositions.valueOf(args[4]);
             }
 
+            if(args.length >= 8){
+                sim.physicsThreading = BulletAppState.ThreadingType.valueOf(args[7]);
+            }
+
             sim.setPauseOnLostFocus(false);
 
             if (isHeadLess) {
@@ -1927,8 +2224,11 @@ public class Simulator extends SimulationBasics {
                 sim.start(Type.Headless);
             } else
                 sim.start();
+
+            return sim;
         } catch (Exception e1) {
             logger.fatal("Could not run main method:", e1);
+            return null;
         }
     }
 
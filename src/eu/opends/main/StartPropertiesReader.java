@@ -24,6 +24,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Properties;
 
+import com.jme3.bullet.BulletAppState.ThreadingType;
 import com.jme3.system.AppSettings;
 
 public class StartPropertiesReader
@@ -34,6 +35,10 @@ public class StartPropertiesReader
 	private boolean showBorderlessWindow = false;
 	private String drivingTaskPath = "";
 	private String driverName = "";
+	private ThreadingType physicsThreading = ThreadingType.SEQUENTIAL;
+	private int physicsTickRate = 60;
+	private int maxPhysicsSubSteps = 4;
+	private boolean rangeSensorEnabled = false;
 	
 	
 	public AppSettings getSettings() 
@@ -81,6 +86,18 @@ public class StartPropertiesReader
 	        drivingTaskPath = getStringProperty("drivingtask", "");
 	        
 	        driverName = getStringProperty("drivername", "");
+	        
+	        String threading = getStringProperty("physicsthreading", "sequential");
+	        try {
+	        	physicsThreading = ThreadingType.valueOf(threading.toUpperCase());
+	        } catch (IllegalArgumentException e) {
+	        	System.err.println("physicsthreading: '" + threading + "' is not a valid threading type. Using default: sequential");
+	        }
+	        
+	        physicsTickRate = getIntegerProperty("physicstickrate", 60);
+	        maxPhysicsSubSteps = getIntegerProperty("maxphysicssubsteps", 4);
+	        
+	        rangeSensorEnabled = getBooleanProperty("rangesensor", false);
         }
         
 		return settings;
@@ -161,4 +178,28 @@ public class StartPropertiesReader
 	{
 		return showBorderlessWindow;
 	}
+
+
+	public ThreadingType getPhysicsThreading()
+	{
+		return physicsThreading;
+	}
+
+
+	public int getPhysicsTickRate()
+	{
+		return physicsTickRate;
+	}
+
+
+	public int getMaxPhysicsSubSteps()
+	{
+		return maxPhysicsSubSteps;
+	}
+
+
+	public boolean isRangeSensorEnabled()
+	{
+		return rangeSensorEnabled;
+	}
 }
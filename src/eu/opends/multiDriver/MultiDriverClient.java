@@ -23,8 +23,6 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.io.*;
 
 import com.jme3.math.Quaternion;
@@ -55,7 +53,7 @@ public class MultiDriverClient extends Thread
 	private int framerate;
 	private boolean stoprequested;
 	private boolean errorOccurred;
-	private Calendar timeOfLastFire;
+	private long timeOfLastFire;
 	private PrintWriter printWriter;
 	private Socket socket;
 	private String id;
@@ -79,7 +77,7 @@ public class MultiDriverClient extends Thread
 		this.car = sim.getCar();
 		stoprequested = false;
 		errorOccurred = false;
-		timeOfLastFire = new GregorianCalendar();
+		timeOfLastFire = sim.getClock().getTimeMillis();
 		registeredVehiclesList = new ArrayList<String>();
 		
 		ScenarioLoader scenarioLoader = sim.getDrivingTask().getScenarioLoader();
@@ -194,7 +192,7 @@ public class MultiDriverClient extends Thread
 			return;
 		
 		// generate time stamp
-		Calendar currentTime = new GregorianCalendar();
+		long currentTime = sim.getClock().getTimeMillis();
 		
 		// if enough time has passed by since last fire, the event will be forwarded
 		if(forwardEvent(currentTime))
@@ -310,22 +308,22 @@ public class MultiDriverClient extends Thread
 	 * frame rate
 	 * 
 	 * @param now
-	 * 			The current time stamp
+	 * 			The current simulation time in milliseconds
 	 * 
 	 * @return true if enough time has passed by since last fire, false otherwise
 	 */
-    private boolean forwardEvent(Calendar now)
+    private boolean forwardEvent(long now)
     {
         // fire an event every x milliseconds
     	int fireInterval = 1000 / framerate;
 
         // subtract time of last event from current time to get time elapsed since last fire
-        long elapsedMillisecs = timeDiff(now,timeOfLastFire);
+        long elapsedMillisecs = Math.abs(now - timeOfLastFire);
         
         if (elapsedMillisecs >= fireInterval)
         {
             // update time of last fire
-            timeOfLastFire.add(Calendar.MILLISECOND, fireInterval);
+            timeOfLastFire += fireInterval;
 
             // fire
             return true;
@@ -336,23 +334,6 @@ public class MultiDriverClient extends Thread
     }
     
     
-	/**
-	 * This method computes the difference between two given time stamps
-	 * 
-	 * @param timestamp1
-	 * 			First time stamp value to compare
-	 * 
-	 * @param timestamp2
-	 * 			Second time stamp value to compare
-	 * 
-	 * @return difference between the given time stamps in milliseconds (long)
-	 */
-    private static long timeDiff(Calendar timestamp1, Calendar timestamp2)
-    {
-        return Math.abs(timestamp1.getTimeInMillis() - timestamp2.getTimeInMillis());
-    }
-
-
 	public void addVehicle(String vehicleID, String modelPath, String driverName)
 	{
 		updateList.add(new AddUpdate(sim, vehicleID, modelPath, driverName));
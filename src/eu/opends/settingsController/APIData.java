@@ -22,6 +22,7 @@ import com.jme3.math.FastMath;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import eu.opends.car.Car;
+import eu.opends.car.RadarSensor;
 import eu.opends.drivingTask.settings.SettingsLoader.Setting;
 import eu.opends.main.SimulationDefaults;
 import eu.opends.main.Simulator;
@@ -115,6 +116,7 @@ public class APIData {
 					"<accelerationRotation></accelerationRotation>"+
 					"<acceleration></acceleration>"+
 				"</Properties></physicalAttributes>"+
+				(RadarSensor.enabled ? "<sensors><rangeSensor><Properties><ranges></ranges></Properties></rangeSensor></sensors>" : "")+
 			"</thisVehicle>"+
 		"</root>";
 		
@@ -148,6 +150,10 @@ public class APIData {
 		dataMap.put("/root/thisVehicle/physicalAttributes/Properties/accelerationRotation", init);
 		dataMap.put("/root/thisVehicle/physicalAttributes/Properties/acceleration", init);
 		dataMap.put("/root/thisVehicle/physicalAttributes/Properties/isCrossing", init);
+		
+		//sensors
+		if(RadarSensor.enabled)
+			dataMap.put("/root/thisVehicle/sensors/rangeSensor/Properties/ranges", init);
 
 		dataMap.put("/root/obstacles/obstacle1/props",init);
 
@@ -340,6 +346,11 @@ public class APIData {
 			//TODO how to calc?			
 		}
 		
+		//sensors
+		else if(var.equals("/root/thisVehicle/sensors/rangeSensor/Properties/ranges")){
+			value = sim.getCar().getRadarSensor().getRangesAsString();  // meters, comma-separated
+		}
+		
 		return value;
 	}
 	
@@ -388,7 +399,14 @@ public class APIData {
 					}
 					
 					if(!nameOnly)
-						e.setTextContent(getValue(path));				
+					{
+						sim.getPhysicsLock().lock();
+						try {
+							e.setTextContent(getValue(path));
+						} finally {
+							sim.getPhysicsLock().unlock();
+						}
+					}
 			}				
 	
 					
@@ -24,6 +24,7 @@ import java.io.OutputStream;
 import java.io.StringReader;
 import java.net.SocketException;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -53,11 +54,17 @@ public class ConnectionHandler extends Thread
 	private DataInputStream in;
 	private UpdateSender updateSender;
 	private APIData data;
+	private DirectConnection control;
 
 	private int updateInterval = 1000; //in ms
 
 	private Lock intervalLock = new ReentrantLock();
 
+	/**
+	 * Id of the last control command (reset, next scene, ...) that has been applied
+	 */
+	private AtomicInteger lastAppliedRequestId = new AtomicInteger(0);
+
 
 	public static int byteArrToInt(byte[] b){
 		int value = 0;
@@ -92,6 +99,7 @@ public class ConnectionHandler extends Thread
 		in = i;
 
 		data = new APIData(sim.getCar(),sim);
+		control = new DirectConnection(sim);
 		updateSender = new UpdateSender(data, this, sim);
 	}
 
@@ -173,40 +181,47 @@ public class ConnectionHandler extends Thread
 		}
 	}
 
+	public int getLastAppliedRequestId(){
+		return lastAppliedRequestId.get();
+	}
+
 	public void setVehicleControl(String val)
+	{
+		setVehicleControl(val, null);
+	}
+
+	/**
+	 * Applies a vehicle control command. Control commands sent with a request id
+	 * are acknowledged by the response and by all subscribed values sampled after
+	 * they have been applied, so the client does not need to wait a fixed time.
+	 */
+	public void setVehicleControl(String val, Integer requestId)
 	{
 		try{
 			if(val.startsWith("NEXT_SCENARIO")){
-				sim.TRAINING_SET = Integer.parseInt(val.split(" ")[1]);
+				control.nextScenario(Integer.parseInt(val.split(" ")[1]));
 
-				sim.switchScenario(true);
-
-				if(sim.TRAINING_SET > 9){
-					sim.nextScene();
-				}else{
-					sim.getCar().setToRandomResetPosition();
-				}
-
-				Thread.sleep(25);
+				acknowledge(requestId);
 				updateSender.messageReceived.set(true);
 			}else if(val.equals("RESET_CAR")){
-				if(sim.TRAINING_SET > 9){
-					sim.nextScene();
-				}else{
-					sim.getCar().setToRandomResetPosition();
-				}
+				control.resetCar();
 
-				Thread.sleep(25);
+				acknowledge(requestId);
 				updateSender.messageReceived.set(true);
 				//System.out.println("[INFO] Reset car.");
 			}else if (val.equals("RESET_SCENE")){
-				sim.resetScene();
-				Thread.sleep(25);
+				control.resetScene();
+				acknowledge(requestId);
 				updateSender.messageReceived.set(true);
 				//System.out.println("[INFO] Reset scene.");
+			}else if(val.startsWith("SET_SCENE")){
+				String[] parameters = val.split(" ");
+				control.setScene(Float.parseFloat(parameters[1]), Float.parseFloat(parameters[2]));
+				acknowledge(requestId);
+				updateSender.messageReceived.set(true);
 			}else if(val.equals("NEXT_SCENE")){
-				sim.nextScene();
-				Thread.sleep(25);
+				control.nextScene();
+				acknowledge(requestId);
 				updateSender.messageReceived.set(true);
 				//System.out.println("[INFO] Next scene.");
 			}else{
@@ -222,9 +237,7 @@ public class ConnectionHandler extends Thread
 				TrafficObject trafficObject = sim.getPhysicalTraffic().getTrafficObject(ID);
 
 				if ("drivingCar".equalsIgnoreCase(ID)) {
-					sim.getCar().steer(steering);
-					sim.getCar().setAcceleratorPedalIntensity(-acceleration);
-					sim.getCar().setBrakePedalIntensity(brake);
+					control.drive(steering, acceleration, brake);
 
 					if(stringArray.length > 4){
 						float targetSpeed = Float.parseFloat(stringArray[4]);
@@ -232,10 +245,12 @@ public class ConnectionHandler extends Thread
 					}
 				} else if (trafficObject != null && trafficObject instanceof TrafficCar) {
 					TrafficCar car = (TrafficCar) trafficObject;
-					car.useExternalControl();
-					car.getCarControl().steer(steering);
-					car.setAcceleratorPedalIntensity(-acceleration);
-					car.setBrakePedalIntensity(brake);
+					sim.runBetweenPhysicsSteps(() -> {
+						car.useExternalControl();
+						car.getCarControl().steer(steering);
+						car.setAcceleratorPedalIntensity(-acceleration);
+						car.setBrakePedalIntensity(brake);
+					}, false);
 				}
 
 				updateSender.messageReceived.set(true);
@@ -246,6 +261,12 @@ public class ConnectionHandler extends Thread
 		}
 	}
 
+	private void acknowledge(Integer requestId)
+	{
+		if(requestId != null)
+			lastAppliedRequestId.set(requestId);
+	}
+
 	public void setPedestrianControl(String val)
 	{
 		try{
@@ -337,8 +358,16 @@ public class ConnectionHandler extends Thread
 				}
 				else if(eventName.equals("SetVehicleControl")){
 					String val = nodes.item(i).getTextContent();
-					setVehicleControl(val);
-					response += "<Event Name=\"UpdateVehicleControl\">\n" + val + "\n</Event>";
+					String requestIdAttribute = ((Element) nodes.item(i)).getAttribute("RequestID");
+
+					if(requestIdAttribute.isEmpty()){
+						setVehicleControl(val);
+						response += "<Event Name=\"UpdateVehicleControl\">\n" + val + "\n</Event>";
+					}else{
+						int requestId = Integer.parseInt(requestIdAttribute);
+						setVehicleControl(val, requestId);
+						response += "<Event Name=\"UpdateVehicleControl\" RequestID=\"" + requestId + "\">\n" + val + "\n</Event>";
+					}
 				}
 				else if(eventName.equals("SetPedestrianControl")){
 					String val = nodes.item(i).getTextContent();
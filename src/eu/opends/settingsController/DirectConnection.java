@@ -0,0 +1,299 @@
+package eu.opends.settingsController;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.jme3.math.Vector3f;
+
+import eu.opends.basics.SimulationClock.ScheduledTask;
+import eu.opends.car.RadarSensor;
+import eu.opends.main.SceneSnapshot;
+import eu.opends.main.Simulator;
+import eu.opends.traffic.Pedestrian;
+import eu.opends.traffic.TrafficObject;
+import settingscontroller_client.src.Controllers.OpenDSConnection.SubscribedValues;
+import settingscontroller_client.src.Parameters;
+import settingscontroller_client.src.TrafficObject.Obstacle;
+
+import static settingscontroller_client.src.Evaluation.ScenarioConfig.ObstaclePositions.NONE;
+import static settingscontroller_client.src.Parameters.mapResolution;
+import static settingscontroller_client.src.Parameters.map_height;
+import static settingscontroller_client.src.Parameters.map_width;
+
+/**
+ * In-process access to a simulator running in the same JVM. Offers the
+ * commands of the settings controller protocol without a socket and
+ * without XML, so controllers can step the simulator directly.
+ */
+public class DirectConnection
+{
+	/**
+	 * Connections of the simulators in this JVM by settings controller port
+	 */
+	private static final Map<Integer, DirectConnection> connections = new HashMap<Integer, DirectConnection>();
+
+	private Simulator sim;
+	private APIData data;
+	private int port;
+
+	public DirectConnection(Simulator sim)
+	{
+		this(sim, -1);
+	}
+
+	public DirectConnection(Simulator sim, int port)
+	{
+		this.sim = sim;
+		this.port = port;
+	}
+
+	/**
+	 * Makes the simulator available for in-process connections
+	 * @param sim The simulator
+	 * @param port Settings controller port of the simulator
+	 */
+	public static void register(Simulator sim, int port)
+	{
+		synchronized (connections) {
+			connections.put(port, new DirectConnection(sim, port));
+			connections.notifyAll();
+		}
+	}
+
+	/**
+	 * Removes the simulator when it is shut down, e.g. after an error
+	 * in its update loop
+	 * @param sim The simulator
+	 * @param port Settings controller port of the simulator
+	 */
+	public static void unregister(Simulator sim, int port)
+	{
+		synchronized (connections) {
+			DirectConnection connection = connections.get(port);
+			if (connection != null && connection.sim == sim) {
+				connections.remove(port);
+				connections.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until the simulator with the given settings controller port is registered
+	 * @param port Settings controller port of the simulator
+	 * @return The connection to the simulator
+	 */
+	public static DirectConnection await(int port) throws InterruptedException
+	{
+		synchronized (connections) {
+			while (!connections.containsKey(port)) {
+				connections.wait();
+			}
+			return connections.get(port);
+		}
+	}
+
+	/**
+	 * Waits until the simulator with the given settings controller port is registered
+	 * @param port Settings controller port of the simulator
+	 * @param timeout Maximum time to wait in ms
+	 * @return The connection to the simulator or null if the time elapsed
+	 */
+	public static DirectConnection await(int port, long timeout) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + timeout;
+
+		synchronized (connections) {
+			while (!connections.containsKey(port)) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return null;
+				}
+				connections.wait(remaining);
+			}
+			return connections.get(port);
+		}
+	}
+
+	/**
+	 * Waits until the simulator of this connection is shut down
+	 */
+	public void awaitShutdown() throws InterruptedException
+	{
+		synchronized (connections) {
+			while (connections.get(port) == this) {
+				connections.wait();
+			}
+		}
+	}
+
+	/**
+	 * @return Whether the simulator of this connection is still running
+	 */
+	public boolean isAlive()
+	{
+		synchronized (connections) {
+			return connections.get(port) == this;
+		}
+	}
+
+	/**
+	 * Shuts the simulator down
+	 */
+	public void stop()
+	{
+		sim.stop();
+	}
+
+	public void nextScenario(int trainingSet)
+	{
+		sim.TRAINING_SET = trainingSet;
+
+		sim.switchScenario(true);
+
+		resetCar();
+	}
+
+	public void resetCar()
+	{
+		if(sim.TRAINING_SET > 9){
+			sim.nextScene();
+		}else{
+			sim.runBetweenPhysicsSteps(() -> sim.getCar().setToRandomResetPosition(), true);
+		}
+	}
+
+	public void resetScene()
+	{
+		sim.resetScene();
+	}
+
+	public void nextScene()
+	{
+		sim.nextScene();
+	}
+
+	public void setScene(float param1, float param2)
+	{
+		sim.setScene(param1, param2);
+	}
+
+	public SceneSnapshot captureScene()
+	{
+		return sim.captureScene();
+	}
+
+	public void restoreScene(SceneSnapshot snapshot)
+	{
+		sim.restoreScene(snapshot);
+	}
+
+	public void drive(float steering, float acceleration, float brake)
+	{
+		sim.runBetweenPhysicsSteps(() -> {
+			sim.getCar().steer(steering);
+			sim.getCar().setAcceleratorPedalIntensity(-acceleration);
+			sim.getCar().setBrakePedalIntensity(brake);
+		}, false);
+	}
+
+	/**
+	 * Runs the simulator until the simulation clock has moved by the given
+	 * time and pauses it again. The pause is applied before the physics step
+	 * of the next frame, so a step covers the same simulation time however
+	 * fast the frames are computed.
+	 * @param interval Simulation time to run in ms
+	 */
+	public void advance(int interval) throws InterruptedException
+	{
+		CountDownLatch paused = new CountDownLatch(1);
+		ScheduledTask pauseTask = sim.getClock().schedule(() -> sim.enqueue(() -> {
+			sim.setPause(true);
+			paused.countDown();
+			return null;
+		}), interval);
+
+		sim.setPause(false);
+		try {
+			while (!paused.await(100, TimeUnit.MILLISECONDS)) {
+				if (!isAlive()) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			pauseTask.cancel();
+			sim.setPause(true);
+			throw e;
+		}
+	}
+
+	/**
+	 * Samples the current state in the format of the subscribed values
+	 * @return The current state in map coordinates
+	 */
+	public SubscribedValues sample()
+	{
+		if(data == null){
+			data = new APIData(sim.getCar(), sim);
+		}
+
+		sim.getPhysicsLock().lock();
+		try {
+			return sampleLocked();
+		} finally {
+			sim.getPhysicsLock().unlock();
+		}
+	}
+
+	private SubscribedValues sampleLocked()
+	{
+		Vector3f carPosition = sim.getCar().getPosition();
+		double x = map_width - (carPosition.getX() - Simulator.minX) / mapResolution;
+		double z = map_height - (carPosition.getZ() - Simulator.minZ) / mapResolution;
+		double speed = -sim.getCar().getCarControl().getCurrentVehicleSpeedKmHour();
+
+		List<settingscontroller_client.src.TrafficObject.Pedestrian> pedestrians = new LinkedList<>();
+		if (Parameters.NUM_PEDESTRIAN > 0) {
+			Map<String, Pedestrian> pedestriansByName = new HashMap<String, Pedestrian>();
+			for(TrafficObject child : sim.getPhysicalTraffic().getTrafficObjectList()){
+				if(child instanceof Pedestrian){
+					pedestriansByName.put(child.getName(), (Pedestrian) child);
+				}
+			}
+
+			for (int i = 1; pedestriansByName.containsKey("ped" + i); ++i) {
+				Pedestrian pedestrian = pedestriansByName.get("ped" + i);
+
+				double pedestrianX = 0;
+				double pedestrianZ = 0;
+				if(pedestrian.visible){
+					Vector3f position = pedestrian.getPosition();
+					pedestrianX = map_width - (position.getX() - Simulator.minX) / mapResolution;
+					pedestrianZ = map_height - (position.getZ() - Simulator.minZ) / mapResolution;
+				}
+
+				pedestrians.add(new settingscontroller_client.src.TrafficObject.Pedestrian(pedestrianX, pedestrianZ, pedestrian.getCurrentSpeedKmh()));
+			}
+		}
+
+		Obstacle obstacle = null;
+		if(sim.obstacle != null && sim.obstaclePosition != NONE){
+			Vector3f position = sim.obstacle.getLocalTranslation();
+			obstacle = new Obstacle();
+			obstacle.x = map_width - (float) ((position.getX() - Simulator.minX) / mapResolution);
+			obstacle.z = map_height - (float) ((position.getZ() - Simulator.minZ) / mapResolution);
+			obstacle.theta = (float) Math.toRadians((data.getObstacleHeading(sim.obstacle.getLocalRotation()) + 90) % 360);
+		}
+
+		SubscribedValues subscribedValues = new SubscribedValues(sim.getCar().getHeadingDegree(), x, z, speed, pedestrians, obstacle, sim.isCrossing);
+
+		if(RadarSensor.enabled){
+			subscribedValues.ranges = sim.getCar().getRadarSensor().getRanges();
+		}
+
+		return subscribedValues;
+	}
+}
@@ -78,7 +78,9 @@ public class UpdateSender extends Thread
 					//long estimatedTime = System.nanoTime() - startTime;
 					//System.out.println("Executed simulator for " + (estimatedTime / 1000000.0) + "ms");
 
-					String response = "<Message><Event Name=\"SubscribedValues\">\n" + data.getAllSubscribedValues(false) + "\n</Event></Message>\n";
+					// read the request id first: the values below are at least as new as this command
+					int requestId = connectionHandler.getLastAppliedRequestId();
+					String response = "<Message><Event Name=\"SubscribedValues\" RequestID=\"" + requestId + "\">\n" + data.getAllSubscribedValues(false) + "\n</Event></Message>\n";
 					try {
 						connectionHandler.sendResponse(response);
 					} catch (IOException e) {
@@ -67,6 +67,7 @@ public class FollowBox
     private int helperSegmentCounter = 1;
     private boolean obstacleInTheWay = false;
 	public Waypoint startWayPoint;
+	private Vector3f interpolatedPosition = new Vector3f();
 
 
 	public FollowBox(Simulator sim, TrafficObject trafficObject, FollowBoxSettings settings, boolean setToStartWayPoint)
@@ -167,7 +168,7 @@ public class FollowBox
 		float progress = Math.max(0, Math.min(1, traveledDistance/currentSegment.getLength()));
 		
 
-		followBox.setLocalTranslation(currentSegment.interpolate(progress));
+		followBox.setLocalTranslation(currentSegment.interpolate(progress, interpolatedPosition));
 
 
 		boolean isRightHandTraffic = sim.getRoadNetwork().isRightHandTraffic();
@@ -353,7 +354,7 @@ public class FollowBox
 			return false;
 		
 		// check every 3 seconds
-		if(System.currentTimeMillis() - lastCrashCheck > 1000)
+		if(sim.getClock().getTimeMillis() - lastCrashCheck > 1000)
 		{
 			
 			//add traveled distance on current segment to storage
@@ -409,7 +410,7 @@ public class FollowBox
 				}
 			}
 
-			lastCrashCheck = System.currentTimeMillis();
+			lastCrashCheck = sim.getClock().getTimeMillis();
 		}
 
 		return false;
@@ -436,14 +437,14 @@ public class FollowBox
 			if(!isSetWaitTimer)
 			{
 				// waiting timer not yet set --> set timer to current time stamp and wait
-				waitTimer = System.currentTimeMillis();
+				waitTimer = sim.getClock().getTimeMillis();
 				isSetWaitTimer = true;
 				return true;
 			}
 			else
 			{
 				// waiting timer already set --> check if elapsed
-				if(System.currentTimeMillis()-waitTimer > waitingTime)
+				if(sim.getClock().getTimeMillis()-waitTimer > waitingTime)
 				{
 					// waiting timer elapsed --> stop waiting and resume motion					
 					isSetWaitTimer = false;
@@ -519,6 +520,87 @@ public class FollowBox
 	}
 
 
+	/**
+	 * Progress of a follow box, see getState() and setState(). Time stamps
+	 * are kept as ages, so waiting and crash checks continue where they 
+	 * were when the state is restored later.
+	 */
+	public static class State
+	{
+		private Vector3f position;
+		private Waypoint currentFromWaypoint;
+		private Segment currentSegment;
+		private Segment nextSegment;
+		private float traveledDistance;
+		private Waypoint resetWaypoint;
+		private float distanceToNextWP;
+		private int helperSegmentCounter;
+		private boolean obstacleInTheWay;
+		private boolean trafficObjectInitialized;
+		private boolean stopTrafficObject;
+		private boolean isSetWaitTimer;
+		private long waitTimerAge;
+		private long lastCrashCheckAge;
+		private Vector3f[] distanceStorage;
+		private float crashThreshold;
+		private float maxSpeed;
+	}
+	
+	
+	public State getState()
+	{
+		long now = sim.getClock().getTimeMillis();
+		
+		State state = new State();
+		state.position = followBox.getLocalTranslation().clone();
+		state.currentFromWaypoint = currentFromWaypoint;
+		state.currentSegment = currentSegment;
+		state.nextSegment = nextSegment;
+		state.traveledDistance = traveledDistance;
+		state.resetWaypoint = resetWaypoint;
+		state.distanceToNextWP = distanceToNextWP;
+		state.helperSegmentCounter = helperSegmentCounter;
+		state.obstacleInTheWay = obstacleInTheWay;
+		state.trafficObjectInitialized = trafficObjectInitialized;
+		state.stopTrafficObject = stopTrafficObject;
+		state.isSetWaitTimer = isSetWaitTimer;
+		state.waitTimerAge = now - waitTimer;
+		state.lastCrashCheckAge = now - lastCrashCheck;
+		state.distanceStorage = new Vector3f[distanceStorage.size()];
+		for(int i=0; i<state.distanceStorage.length; i++)
+			state.distanceStorage[i] = distanceStorage.get(i).clone();
+		state.crashThreshold = CRASH_THRESHOLD;
+		state.maxSpeed = settings.getMaxSpeed();
+		return state;
+	}
+	
+	
+	public void setState(State state)
+	{
+		long now = sim.getClock().getTimeMillis();
+		
+		followBox.setLocalTranslation(state.position);
+		currentFromWaypoint = state.currentFromWaypoint;
+		currentSegment = state.currentSegment;
+		nextSegment = state.nextSegment;
+		traveledDistance = state.traveledDistance;
+		resetWaypoint = state.resetWaypoint;
+		distanceToNextWP = state.distanceToNextWP;
+		helperSegmentCounter = state.helperSegmentCounter;
+		obstacleInTheWay = state.obstacleInTheWay;
+		trafficObjectInitialized = state.trafficObjectInitialized;
+		stopTrafficObject = state.stopTrafficObject;
+		isSetWaitTimer = state.isSetWaitTimer;
+		waitTimer = now - state.waitTimerAge;
+		lastCrashCheck = now - state.lastCrashCheckAge;
+		distanceStorage.clear();
+		for(Vector3f position : state.distanceStorage)
+			distanceStorage.addLast(position.clone());
+		CRASH_THRESHOLD = state.crashThreshold;
+		settings.setMaxSpeed(state.maxSpeed);
+	}
+	
+	
 	public Vector3f getPosition()
 	{
 		return followBox.getWorldTranslation();
@@ -644,9 +726,10 @@ public class FollowBox
 		if(!prioritizedSegments.isEmpty() && distanceToNextWP < ownSafetyDistanceToIntersection)
 		{
 			// check if any traffic object (car + pedestrian) is using a prioritized segment (except oneself)
-			for(TrafficObject otherTrafficObject : sim.getPhysicalTraffic().getTrafficObjectList())
-				if(hasPriority(otherTrafficObject))
-					prioritizedTrafficAhead = true;
+			for(String prioritizedSegment : prioritizedSegments)
+				for(TrafficObject otherTrafficObject : sim.getPhysicalTraffic().getTrafficObjectsOnSegment(prioritizedSegment))
+					if(hasPriority(otherTrafficObject))
+						prioritizedTrafficAhead = true;
 				
 			// check if human-controlled car is using a prioritized segment (except oneself)
 			if(hasPriority(sim.getCar()))
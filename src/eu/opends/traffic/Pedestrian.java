@@ -19,8 +19,11 @@
 
 package eu.opends.traffic;
 
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.SkeletonControl;
 import com.jme3.asset.AssetManager;
 import com.jme3.bullet.control.BetterCharacterControl;
+import com.jme3.bullet.objects.PhysicsRigidBody;
 import com.jme3.light.AmbientLight;
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.FastMath;
@@ -28,6 +31,8 @@ import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.RenderQueue.ShadowMode;
 import com.jme3.scene.Node;
+import com.jme3.scene.SceneGraphVisitor;
+import com.jme3.scene.Spatial;
 import static settingscontroller_client.src.Evaluation.ScenarioConfig.ObstaclePositions.NONE;
 import eu.opends.environment.TrafficLightCenter;
 import eu.opends.infrastructure.Segment;
@@ -42,7 +47,7 @@ import static settingscontroller_client.src.Evaluation.Config.ExperimentType.ZIG
 /**
  * @author Tommi S.E. Laukkanen, Rafael Math
  */
-public class Pedestrian implements AnimationListener, TrafficObject
+public class Pedestrian implements AnimationListener, PhasedTrafficObject
 {
 	private Simulator sim;
 	public Node personNode = new Node();
@@ -72,6 +77,13 @@ public class Pedestrian implements AnimationListener, TrafficObject
 	
 	PedestrianData pedestrianData;
 	boolean initialized = false;
+	
+	// input and result of the decision phase
+	private Vector3f position = new Vector3f();
+	private Vector3f followBoxPosition = new Vector3f();
+	private boolean hasDecision = false;
+	private Vector3f decidedViewDirection = new Vector3f();
+	private boolean decidedToStop = false;
 
 	public boolean visible = true;
 	
@@ -104,12 +116,31 @@ public class Pedestrian implements AnimationListener, TrafficObject
 		// construct character (if character bounces, try increasing height and weight)
 		mass = pedestrianData.getMass();
 
-		characterControl = new BetterCharacterControl(0.3f, 1.8f, mass); // TODO get from scenario.xml
+		characterControl = new PedestrianControl(0.3f, 1.8f, mass); // TODO get from scenario.xml
 
 		personNode.addControl(characterControl);
     }
     
     
+    /**
+     * Character control that gives access to its rigid body, so the velocity 
+     * can be restored with the state of the pedestrian
+     */
+    private static class PedestrianControl extends BetterCharacterControl
+    {
+		public PedestrianControl(float radius, float height, float mass)
+		{
+			super(radius, height, mass);
+		}
+		
+		
+		PhysicsRigidBody getRigidBody()
+		{
+			return rigidBody;
+		}
+    }
+    
+    
     private void init()
     {
 		// add to physics state
@@ -117,6 +148,10 @@ public class Pedestrian implements AnimationListener, TrafficObject
 		sim.getBulletAppState().getPhysicsSpace().addAll(personNode); 
 		sim.getSceneNode().attachChild(personNode);
 		
+		// without animation controls the animation controller has nothing to animate
+		if(Simulator.isPhysicsOnly)
+			removeAnimation(personNode);
+		
 		animationController = new AnimationController(personNode);
 		animationController.setAnimationListener(this);
 		
@@ -128,76 +163,136 @@ public class Pedestrian implements AnimationListener, TrafficObject
     }
     
     
+    /**
+     * Removes skeletal animation from the model, it does not affect physics
+     */
+    private static void removeAnimation(Spatial spatial)
+    {
+    	spatial.depthFirstTraversal(new SceneGraphVisitor()
+		{
+			@Override
+			public void visit(Spatial child)
+			{
+				while(child.getControl(AnimControl.class) != null)
+					child.removeControl(AnimControl.class);
+				
+				while(child.getControl(SkeletonControl.class) != null)
+					child.removeControl(SkeletonControl.class);
+			}
+		});
+    }
+    
+    
     @Override
 	public void update(float tpf, ArrayList<TrafficObject> vehicleList) 
+    {
+    	prepareUpdate(tpf);
+    	decide(tpf);
+    	applyDecision(tpf);
+    }
+    
+    
+    @Override
+    public void prepareUpdate(float tpf)
     {
     	// prevent pedestrians from high jump when adding to the physics engine
     	if(tpf < 1.0f && !initialized)
     		init();
     	
+    	// read by the decisions of all traffic objects
+    	position.set(personNode.getWorldTranslation());
+    	
+    	if(!externalControl && initialized)
+    	{
+			// update movement of follow box according to pedestrians's position (not affected by sim.isPause())
+			followBox.update(tpf, position);
+			
+			followBoxPosition.set(followBox.getPosition());
+    	}
+    }
+    
+    
+    @Override
+    public Vector3f getRecordedPosition()
+    {
+    	return position;
+    }
+    
+    
+    @Override
+    public void decide(float tpf)
+    {
+    	hasDecision = !externalControl && initialized && !sim.isPause();
+    	if(hasDecision)
+    	{
+	        // compute view direction (towards car) in upright walking position (y = 0)
+	        decidedViewDirection.set(followBoxPosition).subtractLocal(position);
+	        decidedViewDirection.setY(0);
+	        
+	        float distance = decidedViewDirection.length();
+	        decidedToStop = (distance < 0.1f || obstaclesInTheWay(decidedViewDirection));
+    	}
+    }
+    
+    
+    @Override
+    public void applyDecision(float tpf)
+    {
         if(!externalControl)
         {
-	    	if(initialized)
+	    	if(hasDecision)
 	    	{
-				// update movement of follow box according to pedestrians's position (not affected by sim.isPause())
-				followBox.update(tpf, personNode.getWorldTranslation());
-				
-				if(!sim.isPause())
-				{
-					// maximum speed for current way point segment
-					float nextWalkingSpeedKmh = followBox.getSpeed();
-			    	
-			    	if(!enabled)
-			    		nextWalkingSpeedKmh = 0;
-			    	
-			    	if(nextWalkingSpeedKmh != walkingSpeedKmh)
-			    	{
-			    		walkingSpeedKmh = nextWalkingSpeedKmh;
-			    		walkingSpeedChanged = true;
-			    	}
-			    	
-			        if (!characterControl.isOnGround()) 
-			            airTime += tpf;
-			        else
-			            airTime = 0;
-			        
-			        // compute view direction (towards car) in upright walking position (y = 0)
-			        Vector3f viewDirection = followBox.getPosition().subtract(personNode.getWorldTranslation());
-			        viewDirection.setY(0);
-			        
-			        float distance = viewDirection.length();
-			        if (distance != 0)
-			        	characterControl.setViewDirection(viewDirection);
-			       
-			        
-			        if (distance < 0.1f || obstaclesInTheWay(vehicleList))
-			        { 
-			        	if (!animationStandCommand.equals(animationController.getAnimationName())) 
-			        		animationController.animate(animationStandCommand, 1f, 1f, 0);
-			
-			        	characterControl.setWalkDirection(new Vector3f(0,0,0)); // stop walking
-			        } 
-			        else 
-			        {
-			            if (airTime > 0.3f)
-			            {
-			            	if (!animationStandCommand.equals(animationController.getAnimationName()))
-			            		animationController.animate(animationStandCommand, 1f, 1f, 0);
-			            }
-			            else if (!animationWalkCommand.equals(animationController.getAnimationName()) || walkingSpeedChanged)
-			            {
-			            		animationController.animate(animationWalkCommand, (walkingSpeedKmh/3.6f)*2.0f, 0.7f, 0);
-			            		walkingSpeedChanged = false;
-			            }
-			            
-			            // the use of the multiplier is to control the rate of movement for character walk speed (in m/s)
-			            characterControl.setWalkDirection(viewDirection.normalize().multLocal((walkingSpeedKmh/3.6f)));
-			        }
-			
-			        //System.err.println("Current speed of character '" + name + "': " + getCurrentSpeedKmh());
-			        
-			    	animationController.update(tpf);   	
-			    }
+				// maximum speed for current way point segment
+				float nextWalkingSpeedKmh = followBox.getSpeed();
+		    	
+		    	if(!enabled)
+		    		nextWalkingSpeedKmh = 0;
+		    	
+		    	if(nextWalkingSpeedKmh != walkingSpeedKmh)
+		    	{
+		    		walkingSpeedKmh = nextWalkingSpeedKmh;
+		    		walkingSpeedChanged = true;
+		    	}
+		    	
+		        if (!characterControl.isOnGround()) 
+		            airTime += tpf;
+		        else
+		            airTime = 0;
+		        
+		        Vector3f viewDirection = decidedViewDirection.clone();
+		        
+		        float distance = viewDirection.length();
+		        if (distance != 0)
+		        	characterControl.setViewDirection(viewDirection);
+		       
+		        
+		        if (decidedToStop)
+		        { 
+		        	if (!animationStandCommand.equals(animationController.getAnimationName())) 
+		        		animationController.animate(animationStandCommand, 1f, 1f, 0);
+		
+		        	characterControl.setWalkDirection(new Vector3f(0,0,0)); // stop walking
+		        } 
+		        else 
+		        {
+		            if (airTime > 0.3f)
+		            {
+		            	if (!animationStandCommand.equals(animationController.getAnimationName()))
+		            		animationController.animate(animationStandCommand, 1f, 1f, 0);
+		            }
+		            else if (!animationWalkCommand.equals(animationController.getAnimationName()) || walkingSpeedChanged)
+		            {
+		            		animationController.animate(animationWalkCommand, (walkingSpeedKmh/3.6f)*2.0f, 0.7f, 0);
+		            		walkingSpeedChanged = false;
+		            }
+		            
+		            // the use of the multiplier is to control the rate of movement for character walk speed (in m/s)
+		            characterControl.setWalkDirection(viewDirection.normalize().multLocal((walkingSpeedKmh/3.6f)));
+		        }
+		
+		        //System.err.println("Current speed of character '" + name + "': " + getCurrentSpeedKmh());
+		        
+		    	animationController.update(tpf);   	
 	    	}
         }
         else
@@ -276,6 +371,75 @@ public class Pedestrian implements AnimationListener, TrafficObject
     */
     
 	
+	/**
+	 * Dynamic state of a pedestrian and its follow box, see getState() and 
+	 * setState(). Animations are not part of the state, they follow the 
+	 * walking speed in the next update.
+	 */
+	public static class State
+	{
+		private Vector3f location;
+		private Vector3f linearVelocity;
+		private Vector3f viewDirection;
+		private Vector3f walkDirection;
+		private float walkingSpeedKmh;
+		private boolean walkingSpeedChanged;
+		private float airTime;
+		private boolean enabled;
+		private boolean visible;
+		private FollowBox.State followBoxState;
+	}
+	
+	
+	/**
+	 * @return
+	 * 			The state of the pedestrian or null if it has not been 
+	 * 			added to the scene yet
+	 */
+	public State getState()
+	{
+		if(!initialized)
+			return null;
+		
+		PhysicsRigidBody rigidBody = ((PedestrianControl) characterControl).getRigidBody();
+		
+		State state = new State();
+		state.location = rigidBody.getPhysicsLocation();
+		state.linearVelocity = rigidBody.getLinearVelocity();
+		state.viewDirection = characterControl.getViewDirection().clone();
+		state.walkDirection = characterControl.getWalkDirection().clone();
+		state.walkingSpeedKmh = walkingSpeedKmh;
+		state.walkingSpeedChanged = walkingSpeedChanged;
+		state.airTime = airTime;
+		state.enabled = enabled;
+		state.visible = visible;
+		state.followBoxState = followBox.getState();
+		return state;
+	}
+	
+	
+	public void setState(State state)
+	{
+		if(!initialized || state == null)
+			return;
+		
+		PhysicsRigidBody rigidBody = ((PedestrianControl) characterControl).getRigidBody();
+		
+		characterControl.warp(state.location);
+		rigidBody.setLinearVelocity(state.linearVelocity);
+		rigidBody.clearForces();
+		rigidBody.activate();
+		characterControl.setViewDirection(state.viewDirection);
+		characterControl.setWalkDirection(state.walkDirection);
+		walkingSpeedKmh = state.walkingSpeedKmh;
+		walkingSpeedChanged = state.walkingSpeedChanged;
+		airTime = state.airTime;
+		enabled = state.enabled;
+		visible = state.visible;
+		followBox.setState(state.followBoxState);
+	}
+	
+	
 	public void setToWayPoint(String wayPointID) 
 	{
     	if(initialized)
@@ -334,17 +498,29 @@ public class Pedestrian implements AnimationListener, TrafficObject
 	}
 	
 	
-	private boolean obstaclesInTheWay(ArrayList<TrafficObject> trafficObjectList)
-	{		
+	private boolean obstaclesInTheWay(Vector3f viewDirection)
+	{
+		if(sim.type == ZIGZAG_FOLLOW){
+			minLateralSafetyDistance = 1f;
+		}else if(sim.obstaclePosition != NONE){
+			minLateralSafetyDistance = 0.5f;
+		}else{
+			minLateralSafetyDistance = 1.5f;
+		}
+		
 		// check distance from user-controlled car
-		if(obstacleTooClose(sim.getCar().getPosition(),true))
+		if(obstacleTooClose(sim.getPhysicalTraffic().getRecordedSteeringCarPosition(),viewDirection,true))
 			return true;
 
+		// only cars within the safety distances can be too close
+		float range = FastMath.sqrt(minLateralSafetyDistance * minLateralSafetyDistance 
+				+ minForwardSafetyDistance * minForwardSafetyDistance);
+		
 		// check distance from other cars (exclude pedestrians)
-		for(TrafficObject vehicle : trafficObjectList)
+		for(TrafficObject vehicle : sim.getPhysicalTraffic().getTrafficObjectsInRange(position, range))
 		{
 			if(!vehicle.getName().equals(name) && vehicle instanceof TrafficCar)		
-				if(obstacleTooClose(vehicle.getPosition(),false))
+				if(obstacleTooClose(PhysicalTraffic.getRecordedPosition(vehicle),viewDirection,false))
 					return true;
 		}
 		
@@ -352,23 +528,22 @@ public class Pedestrian implements AnimationListener, TrafficObject
 		// check if red traffic light ahead
 		Waypoint nextWayPoint = followBox.getNextWayPoint();
 		if(TrafficLightCenter.hasRedTrafficLight(nextWayPoint))
-			if(obstacleTooClose(nextWayPoint.getPosition(),false))
+			if(obstacleTooClose(nextWayPoint.getPosition(),viewDirection,false))
 				return true;
 
 		return false;
 	}
 
 
-	private boolean obstacleTooClose(Vector3f obstaclePos, boolean isCar)
+	private boolean obstacleTooClose(Vector3f obstaclePos, Vector3f viewDirection, boolean isCar)
 	{
-		float distanceToObstacle = obstaclePos.distance(getPosition());
+		float distanceToObstacle = obstaclePos.distance(position);
 		
 		// angle between view direction of pedestrian and direction towards obstacle
 		// (consider 3D space, because obstacle could be located on a bridge above pedestrian)
-		Vector3f viewDirection = characterControl.getViewDirection().normalize();
-		Vector3f obstacleDirection = obstaclePos.subtract(this.getPosition()).normalize();
+		Vector3f obstacleDirection = obstaclePos.subtract(position).normalize();
 		
-		float angle = viewDirection.angleBetween(obstacleDirection);
+		float angle = viewDirection.normalize().angleBetween(obstacleDirection);
 			
 		//if(name.equals("pedestrian01"))
 		//	System.out.println(angle * FastMath.RAD_TO_DEG);
@@ -391,7 +566,7 @@ public class Pedestrian implements AnimationListener, TrafficObject
 		{
 			// angle between direction towards next WP and direction towards obstacle
 			// (consider 3D space, because obstacle could be located on a bridge above pedestrian)
-			angle = Util.getAngleBetweenPoints(nextWP.getPosition(), this.getPosition(), obstaclePos, false);			
+			angle = Util.getAngleBetweenPoints(nextWP.getPosition(), position, obstaclePos, false);			
 			if(belowSafetyDistance(angle, distanceToObstacle))
 				return true;
 		}
@@ -408,14 +583,6 @@ public class Pedestrian implements AnimationListener, TrafficObject
 		//if(name.equals("pedestrian02"))
 		//	System.out.println(lateralDistance + " *** " + forwardDistance);
 
-		if(sim.type == ZIGZAG_FOLLOW){
-			minLateralSafetyDistance = 1f;
-		}else if(sim.obstaclePosition != NONE){
-			minLateralSafetyDistance = 0.5f;
-		}else{
-			minLateralSafetyDistance = 1.5f;
-		}
-		
 		if((lateralDistance < minLateralSafetyDistance) && (forwardDistance > 0) && (forwardDistance < minForwardSafetyDistance))
 		{
 			return true;
@@ -0,0 +1,55 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.traffic;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Traffic object whose update is split into three phases, so the decisions 
+ * of all traffic objects can be computed in parallel (see PhysicalTraffic). 
+ * update() runs the three phases one after another.
+ */
+interface PhasedTrafficObject extends TrafficObject
+{
+	/**
+	 * Moves the follow box and records the positions needed by decide(). 
+	 * Runs on the render thread; may change the road network and scene graph.
+	 */
+	public void prepareUpdate(float tpf);
+
+	/**
+	 * Returns the position recorded by prepareUpdate(). decide() reads the 
+	 * positions of other traffic objects from here instead of the scene graph, 
+	 * which must only be accessed by the render thread.
+	 */
+	public Vector3f getRecordedPosition();
+
+	/**
+	 * Computes steering, speed and stop decisions from the recorded positions 
+	 * and the traffic index. Runs in parallel to the decide() calls of the 
+	 * other traffic objects, so it must only change fields of this object.
+	 */
+	public void decide(float tpf);
+
+	/**
+	 * Applies the decisions to the scene graph and physics. Runs on the 
+	 * render thread.
+	 */
+	public void applyDecision(float tpf);
+}
@@ -19,7 +19,18 @@
 package eu.opends.traffic;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import com.jme3.math.Vector3f;
+
+import eu.opends.car.SteeringCar;
+import eu.opends.infrastructure.Segment;
 import eu.opends.main.Simulator;
 
 /**
@@ -34,6 +45,25 @@ public class PhysicalTraffic extends Thread
 	private boolean isRunning = true;
 	private int updateIntervalMsec = 30;
 	private long lastUpdate = 0;
+	
+	// lookup of traffic objects by name, position and segment
+	private HashMap<String, TrafficObject> trafficObjectMap = new HashMap<String, TrafficObject>();
+	private TrafficGrid trafficGrid = new TrafficGrid(10);
+	private HashMap<String, List<TrafficObject>> segmentMap = new HashMap<String, List<TrafficObject>>();
+	private boolean isIndexed = false;
+	
+	// number of threads computing the decisions of the traffic objects (1: render thread only);
+	// the pool is shared by all simulators running in this JVM
+	public static int decisionThreads = 1;
+	private static ForkJoinPool decisionPool = null;
+	
+	// minimum number of traffic objects whose decisions are worth distributing to the pool
+	public static int minParallelDecisions = 16;
+	
+	// steering car as of the start of the decision phase
+	private Simulator sim;
+	private Vector3f steeringCarPosition = new Vector3f();
+	private float steeringCarSpeedKmh = 0;
 
        
 	public PhysicalTraffic()
@@ -42,6 +72,8 @@ public class PhysicalTraffic extends Thread
 	}
 
 	public void init(Simulator sim){
+		this.sim = sim;
+		
 		for(TrafficCarData vehicleData : vehicleDataList)
 		{
 			// build and add traffic cars
@@ -53,6 +85,10 @@ public class PhysicalTraffic extends Thread
 			// build and add pedestrians
 			trafficObjectList.add(new Pedestrian(sim, pedestrianData));
 		}
+		
+		for(TrafficObject trafficObject : trafficObjectList)
+			if(!trafficObjectMap.containsKey(trafficObject.getName()))
+				trafficObjectMap.put(trafficObject.getName(), trafficObject);
 	}
 	
 	
@@ -76,13 +112,161 @@ public class PhysicalTraffic extends Thread
 	
 	public TrafficObject getTrafficObject(String trafficObjectName) 
 	{
+		return trafficObjectMap.get(trafficObjectName);
+	}
+	
+	
+	/**
+	 * Records the current position and segment of all traffic objects for the 
+	 * queries below. Positions only change while physics is stepped, so the 
+	 * simulator updates the index once per frame, before the traffic is updated.
+	 */
+	public void updateIndex()
+	{
+		trafficGrid.rebuild(trafficObjectList);
+		
+		segmentMap.clear();
 		for(TrafficObject trafficObject : trafficObjectList)
 		{
-			if(trafficObject.getName().equals(trafficObjectName))
-				return trafficObject;
+			Segment segment = trafficObject.getCurrentSegment();
+			if(segment != null)
+			{
+				List<TrafficObject> segmentObjects = segmentMap.get(segment.getName());
+				if(segmentObjects == null)
+				{
+					segmentObjects = new ArrayList<TrafficObject>();
+					segmentMap.put(segment.getName(), segmentObjects);
+				}
+				segmentObjects.add(trafficObject);
+			}
 		}
 		
-		return null;
+		isIndexed = true;
+	}
+	
+	
+	/**
+	 * Returns all traffic objects within the given distance of a position 
+	 * (as of the last index update).
+	 * 
+	 * @param position
+	 * 			Center of the search
+	 * 
+	 * @param radius
+	 * 			Maximum distance in meters
+	 * 
+	 * @return
+	 * 			Traffic objects in range
+	 */
+	public List<TrafficObject> getTrafficObjectsInRange(Vector3f position, float radius)
+	{
+		if(!isIndexed)
+			updateIndex();
+		
+		return trafficGrid.getInRange(position, radius);
+	}
+	
+	
+	/**
+	 * Returns the k traffic objects closest to a position (as of the last 
+	 * index update), closest first.
+	 * 
+	 * @param position
+	 * 			Center of the search
+	 * 
+	 * @param k
+	 * 			Maximum number of traffic objects
+	 * 
+	 * @return
+	 * 			Closest traffic objects
+	 */
+	public List<TrafficObject> getNearestTrafficObjects(Vector3f position, int k)
+	{
+		if(!isIndexed)
+			updateIndex();
+		
+		return trafficGrid.getNearest(position, k);
+	}
+	
+	
+	/**
+	 * Returns the traffic objects whose current segment had the given name 
+	 * at the last index update.
+	 * 
+	 * @param segmentName
+	 * 			Name of the segment
+	 * 
+	 * @return
+	 * 			Traffic objects on the segment
+	 */
+	public List<TrafficObject> getTrafficObjectsOnSegment(String segmentName)
+	{
+		if(!isIndexed)
+			updateIndex();
+		
+		List<TrafficObject> segmentObjects = segmentMap.get(segmentName);
+		if(segmentObjects == null)
+			return Collections.emptyList();
+		
+		return segmentObjects;
+	}
+	
+	
+	/**
+	 * Returns the position of a traffic object for the decision phase: the 
+	 * position recorded by prepareUpdate() for phased traffic objects, the 
+	 * physics location otherwise.
+	 */
+	static Vector3f getRecordedPosition(TrafficObject trafficObject)
+	{
+		if(trafficObject instanceof PhasedTrafficObject)
+			return ((PhasedTrafficObject) trafficObject).getRecordedPosition();
+		
+		return trafficObject.getPosition();
+	}
+	
+	
+	/**
+	 * Records position and speed of the steering car for the decision phase. 
+	 * Reading the physics location of the car writes temporary fields of its 
+	 * rigid body, hence decisions computed in parallel must not read it.
+	 */
+	private void recordSteeringCar()
+	{
+		SteeringCar car = sim.getCar();
+		if(car != null)
+		{
+			steeringCarPosition.set(car.getPosition());
+			steeringCarSpeedKmh = car.getCurrentSpeedKmh();
+		}
+	}
+	
+	
+	/**
+	 * Returns the position of the steering car recorded before the decision phase.
+	 */
+	public Vector3f getRecordedSteeringCarPosition()
+	{
+		return steeringCarPosition;
+	}
+	
+	
+	/**
+	 * Returns the speed (in km/h) of the steering car recorded before the decision phase.
+	 */
+	public float getRecordedSteeringCarSpeedKmh()
+	{
+		return steeringCarSpeedKmh;
+	}
+	
+	
+	private static synchronized ForkJoinPool getDecisionPool()
+	{
+		// idle workers of a ForkJoinPool terminate by themselves, so the pool is never shut down
+		if(decisionPool == null)
+			decisionPool = new ForkJoinPool(decisionThreads);
+		
+		return decisionPool;
 	}
 	
 	
@@ -104,6 +288,8 @@ public class PhysicalTraffic extends Thread
 					lastUpdate = System.currentTimeMillis();
 					
 					float tpf = elapsedTime/1000f;
+					recordSteeringCar();
+					
 					// update every traffic object
 					for(TrafficObject trafficObject : trafficObjectList)
 						trafficObject.update(tpf, trafficObjectList);
@@ -123,11 +309,69 @@ public class PhysicalTraffic extends Thread
 	}
 	
 	
-	// TODO use thread instead
-	public void update(float tpf)
+	/**
+	 * Updates all traffic objects in three phases: follow boxes are moved one 
+	 * after another, then the decisions (steering, speed, stop) of all traffic 
+	 * objects are computed in parallel against the positions of this frame, 
+	 * and finally applied to scene graph and physics on the render thread.
+	 */
+	public void update(final float tpf)
 	{
+		if(!isIndexed)
+			updateIndex();
+		
+		recordSteeringCar();
+		
+		List<PhasedTrafficObject> phasedTrafficObjects = new ArrayList<PhasedTrafficObject>();
+		for(TrafficObject trafficObject : trafficObjectList)
+		{
+			if(trafficObject instanceof PhasedTrafficObject)
+			{
+				((PhasedTrafficObject) trafficObject).prepareUpdate(tpf);
+				phasedTrafficObjects.add((PhasedTrafficObject) trafficObject);
+			}
+		}
+		
+		if(decisionThreads > 1 && phasedTrafficObjects.size() >= minParallelDecisions)
+		{
+			List<Callable<Void>> decisions = new ArrayList<Callable<Void>>();
+			for(final PhasedTrafficObject phasedTrafficObject : phasedTrafficObjects)
+			{
+				decisions.add(new Callable<Void>()
+				{
+					@Override
+					public Void call()
+					{
+						phasedTrafficObject.decide(tpf);
+						return null;
+					}
+				});
+			}
+			
+			for(Future<Void> decision : getDecisionPool().invokeAll(decisions))
+			{
+				try {
+					decision.get();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+				}
+			}
+		}
+		else
+		{
+			for(PhasedTrafficObject phasedTrafficObject : phasedTrafficObjects)
+				phasedTrafficObject.decide(tpf);
+		}
+		
 		for(TrafficObject trafficObject : trafficObjectList)
-			trafficObject.update(tpf, trafficObjectList);	
+		{
+			if(trafficObject instanceof PhasedTrafficObject)
+				((PhasedTrafficObject) trafficObject).applyDecision(tpf);
+			else
+				trafficObject.update(tpf, trafficObjectList);
+		}
 	}
 
 
@@ -46,7 +46,7 @@ import eu.opends.tools.Util;
  * 
  * @author Rafael Math
  */
-public class TrafficCar extends Car implements TrafficObject
+public class TrafficCar extends Car implements PhasedTrafficObject
 {
 	private String name;
 	private FollowBox followBox;
@@ -58,6 +58,17 @@ public class TrafficCar extends Car implements TrafficObject
 	private boolean loseCargo = false;
 	private boolean externalControl = false;
 	private boolean isSpeedLimitedToSteeringCar = false;
+	
+	// input and result of the decision phase
+	private Vector3f frontPosition = new Vector3f();
+	private Vector3f centerPosition = new Vector3f();
+	private Vector3f recordedPosition = new Vector3f();
+	private Vector3f followBoxPosition = new Vector3f();
+	private boolean hasDecision = false;
+	private float decidedSteering = 0;
+	private boolean decidedObstacleInTheWay = false;
+	private float decidedAcceleratorIntensity = 0;
+	private float decidedBrakeIntensity = 0;
 
 	
 	public TrafficCar(Simulator sim, TrafficCarData trafficCarData)
@@ -148,6 +159,12 @@ public class TrafficCar extends Car implements TrafficObject
 	{
 		followBox.setToWayPoint(wayPointID);
 	}
+
+	
+	public FollowBox getFollowBox()
+	{
+		return followBox;
+	}
 	
 
 	public void loseCargo()
@@ -165,20 +182,65 @@ public class TrafficCar extends Car implements TrafficObject
 	@Override
 	public void update(float tpf, ArrayList<TrafficObject> vehicleList) 
 	{
+		prepareUpdate(tpf);
+		decide(tpf);
+		applyDecision(tpf);
+	}
+	
+	
+	@Override
+	public void prepareUpdate(float tpf)
+	{
+		// read by the decisions of all traffic objects
+		recordedPosition.set(getPosition());
+		
 		if(!externalControl)
 		{
 			// update movement of follow box according to vehicle's position
 			Vector3f vehicleCenterPos = centerGeometry.getWorldTranslation();
 			followBox.update(tpf, vehicleCenterPos);
 			
-			if(!sim.isPause())
+			frontPosition.set(frontGeometry.getWorldTranslation());
+			centerPosition.set(centerGeometry.getWorldTranslation());
+			followBoxPosition.set(followBox.getPosition());
+		}
+	}
+	
+	
+	@Override
+	public Vector3f getRecordedPosition()
+	{
+		return recordedPosition;
+	}
+	
+	
+	@Override
+	public void decide(float tpf)
+	{
+		hasDecision = !externalControl && !sim.isPause();
+		if(hasDecision)
+		{
+			// steering
+			decidedSteering = getSteeringTowardsPosition(followBoxPosition);
+			
+			// speed
+			computePedalIntensities();
+		}
+	}
+	
+	
+	@Override
+	public void applyDecision(float tpf)
+	{
+		if(!externalControl)
+		{
+			if(hasDecision)
 			{
 				// update steering
-				Vector3f wayPoint = followBox.getPosition();
-				steerTowardsPosition(wayPoint);
+				steer(decidedSteering);
 				
 				// update speed
-				updateSpeed(vehicleList);
+				updateSpeed();
 				
 				// update lights
 				updateLightState();
@@ -248,7 +310,7 @@ public class TrafficCar extends Car implements TrafficObject
 	}
 
 
-	private void steerTowardsPosition(Vector3f wayPoint) 
+	private float getSteeringTowardsPosition(Vector3f wayPoint) 
 	{
 		// get relative position of way point --> steering direction
 		// -1: way point is located on the left side of the vehicle
@@ -258,9 +320,7 @@ public class TrafficCar extends Car implements TrafficObject
 		
 		// get angle between driving direction and way point direction --> steering intensity
 		// only consider 2D space (projection of WPs to xz-plane)
-		Vector3f carFrontPos = frontGeometry.getWorldTranslation();
-		Vector3f carCenterPos = centerGeometry.getWorldTranslation();
-		float steeringAngle = Util.getAngleBetweenPoints(carFrontPos, carCenterPos, wayPoint, true);
+		float steeringAngle = Util.getAngleBetweenPoints(frontPosition, centerPosition, wayPoint, true);
 		
 		// compute steering intensity in percent
 		//  0     degree =   0%
@@ -269,19 +329,14 @@ public class TrafficCar extends Car implements TrafficObject
 		// >22.5  degree = 100%
 		float steeringIntensity = Math.max(Math.min(4*steeringAngle/FastMath.PI,1f),0f);
 		
-		// apply steering instruction
-		steer(steeringDirection*steeringIntensity);
-		
 		//System.out.println(steeringDirection*steeringIntensity);
+		
+		return steeringDirection*steeringIntensity;
 	}
 
 	
 	private int getRelativePosition(Vector3f wayPoint)
 	{
-		// get vehicles center point and point in driving direction
-		Vector3f frontPosition = frontGeometry.getWorldTranslation();
-		Vector3f centerPosition = centerGeometry.getWorldTranslation();
-		
 		// convert Vector3f to Point2D.Float, as needed for Line2D.Float
 		Point2D.Float centerPoint = new Point2D.Float(centerPosition.getX(),centerPosition.getZ());
 		Point2D.Float frontPoint = new Point2D.Float(frontPosition.getX(),frontPosition.getZ());
@@ -311,7 +366,7 @@ public class TrafficCar extends Car implements TrafficObject
 	}
 
 	
-	private void updateSpeed(ArrayList<TrafficObject> vehicleList) 
+	private void computePedalIntensities() 
 	{
 		float targetSpeed = getTargetSpeed();
 		
@@ -320,13 +375,10 @@ public class TrafficCar extends Car implements TrafficObject
 		
 		// stop car in order to avoid collision with other traffic objects and driving car
 		// also for red traffic lights
-		boolean obstacleInTheWay = obstaclesInTheWay(vehicleList);
-		if(obstacleInTheWay)
+		decidedObstacleInTheWay = obstaclesInTheWay();
+		if(decidedObstacleInTheWay)
 			targetSpeed = 0;
 		
-		// forward information to follow box in order to find an empty neighbor lane
-		followBox.setObstacleInTheWay(obstacleInTheWay);
-		
 		
 		float currentSpeed = getCurrentSpeedKmh();
 		
@@ -337,8 +389,8 @@ public class TrafficCar extends Car implements TrafficObject
 		if(currentSpeed < targetSpeed)
 		{
 			// too slow --> accelerate
-			setAcceleratorPedalIntensity(-1);
-			setBrakePedalIntensity(0);
+			decidedAcceleratorIntensity = -1;
+			decidedBrakeIntensity = 0;
 			//System.out.println("gas");
 			//System.out.print(" *** gas");
 		}
@@ -355,8 +407,8 @@ public class TrafficCar extends Car implements TrafficObject
 			// formerly use
 			//brakeIntensity = 1.0f;
 			
-			setBrakePedalIntensity(brakeIntensity);
-			setAcceleratorPedalIntensity(0);
+			decidedBrakeIntensity = brakeIntensity;
+			decidedAcceleratorIntensity = 0;
 			
 			//System.out.println("brake: " + brakeIntensity);
 			//System.out.print(" *** brake");
@@ -364,11 +416,21 @@ public class TrafficCar extends Car implements TrafficObject
 		else
 		{
 			// else release pedals
-			setAcceleratorPedalIntensity(0);
-			setBrakePedalIntensity(0);
+			decidedAcceleratorIntensity = 0;
+			decidedBrakeIntensity = 0;
 			//System.out.print(" *** free");
 		}
+	}
+	
+	
+	private void updateSpeed() 
+	{
+		// forward information to follow box in order to find an empty neighbor lane
+		followBox.setObstacleInTheWay(decidedObstacleInTheWay);
 		
+		// set pedal positions
+		setAcceleratorPedalIntensity(decidedAcceleratorIntensity);
+		setBrakePedalIntensity(decidedBrakeIntensity);
 		
 		
 		// accelerate
@@ -395,23 +457,30 @@ public class TrafficCar extends Car implements TrafficObject
 		
 		// limit maximum speed to speed of steering car 
 		if(isSpeedLimitedToSteeringCar)
-			targetSpeed = Math.min(sim.getCar().getCurrentSpeedKmh(), targetSpeed);
+			targetSpeed = Math.min(sim.getPhysicalTraffic().getRecordedSteeringCarSpeedKmh(), targetSpeed);
 		
 		return targetSpeed;
 	}
 
 
-	private boolean obstaclesInTheWay(ArrayList<TrafficObject> vehicleList)
+	private boolean obstaclesInTheWay()
 	{
 		// check distance from driving car
-		if(obstacleTooClose(sim.getCar().getPosition()))
+		if(obstacleTooClose(sim.getPhysicalTraffic().getRecordedSteeringCarPosition()))
 			return true;
 
+		// only traffic within the safety distances can be too close
+		float forwardSafetyDistance = minForwardSafetyDistance;
+		if(useSpeedDependentForwardSafetyDistance)
+			forwardSafetyDistance = Math.max(0.5f * getCurrentSpeedKmh(), forwardSafetyDistance);
+		float range = FastMath.sqrt(minLateralSafetyDistance * minLateralSafetyDistance 
+				+ forwardSafetyDistance * forwardSafetyDistance);
+		
 		// check distance from other traffic (except oneself)
-		for(TrafficObject vehicle : vehicleList)
+		for(TrafficObject vehicle : sim.getPhysicalTraffic().getTrafficObjectsInRange(getPosition(), range))
 		{
 			if(!vehicle.getName().equals(name))		
-				if(obstacleTooClose(vehicle.getPosition()))
+				if(obstacleTooClose(PhysicalTraffic.getRecordedPosition(vehicle)))
 					return true;
 		}
 		
@@ -431,9 +500,7 @@ public class TrafficCar extends Car implements TrafficObject
 		
 		// angle between driving direction of traffic car and direction towards obstacle
 		// (consider 3D space, because obstacle could be located on a bridge above traffic car)
-		Vector3f carFrontPos = frontGeometry.getWorldTranslation();
-		Vector3f carCenterPos = centerGeometry.getWorldTranslation();
-		float angle = Util.getAngleBetweenPoints(carFrontPos, carCenterPos, obstaclePos, false);
+		float angle = Util.getAngleBetweenPoints(frontPosition, centerPosition, obstaclePos, false);
 		if(belowSafetyDistance(angle, distanceToObstacle))
 			return true;
 
@@ -443,7 +510,7 @@ public class TrafficCar extends Car implements TrafficObject
 		{
 			// angle between direction towards next WP and direction towards obstacle
 			// (consider 3D space, because obstacle could be located on a bridge above traffic car)
-			angle = Util.getAngleBetweenPoints(nextWP.getPosition(), carCenterPos, obstaclePos, false);
+			angle = Util.getAngleBetweenPoints(nextWP.getPosition(), centerPosition, obstaclePos, false);
 			if(belowSafetyDistance(angle, distanceToObstacle))
 				return true;
 		}
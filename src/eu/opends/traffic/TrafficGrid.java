@@ -0,0 +1,195 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.traffic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Uniform grid over the ground plane (x/z) holding the positions of the
+ * traffic objects at the time of the last rebuild. Objects are found in
+ * the cells around the query position only, instead of comparing every
+ * pair of traffic objects.
+ */
+class TrafficGrid
+{
+	private static class Entry
+	{
+		TrafficObject trafficObject;
+		Vector3f position;
+
+		Entry(TrafficObject trafficObject, Vector3f position)
+		{
+			this.trafficObject = trafficObject;
+			this.position = position;
+		}
+	}
+
+
+	private float cellSize;
+	private HashMap<Long, ArrayList<Entry>> cells = new HashMap<Long, ArrayList<Entry>>();
+	private int numberOfEntries = 0;
+	private int minCellX, maxCellX, minCellZ, maxCellZ;
+
+
+	TrafficGrid(float cellSize)
+	{
+		this.cellSize = cellSize;
+	}
+
+
+	/**
+	 * Replaces all positions by the current positions of the given objects.
+	 */
+	void rebuild(List<TrafficObject> trafficObjectList)
+	{
+		cells.clear();
+		numberOfEntries = 0;
+		minCellX = minCellZ = Integer.MAX_VALUE;
+		maxCellX = maxCellZ = Integer.MIN_VALUE;
+
+		for(TrafficObject trafficObject : trafficObjectList)
+		{
+			Vector3f position = trafficObject.getPosition().clone();
+			int cellX = getCell(position.x);
+			int cellZ = getCell(position.z);
+
+			Long key = getKey(cellX, cellZ);
+			ArrayList<Entry> cell = cells.get(key);
+			if(cell == null)
+			{
+				cell = new ArrayList<Entry>();
+				cells.put(key, cell);
+			}
+			cell.add(new Entry(trafficObject, position));
+			numberOfEntries++;
+
+			minCellX = Math.min(minCellX, cellX);
+			maxCellX = Math.max(maxCellX, cellX);
+			minCellZ = Math.min(minCellZ, cellZ);
+			maxCellZ = Math.max(maxCellZ, cellZ);
+		}
+	}
+
+
+	/**
+	 * Returns all objects with a distance (3D) to the given position of at
+	 * most radius.
+	 */
+	List<TrafficObject> getInRange(Vector3f position, float radius)
+	{
+		List<TrafficObject> result = new ArrayList<TrafficObject>();
+		if(numberOfEntries == 0)
+			return result;
+
+		int fromX = Math.max(getCell(position.x - radius), minCellX);
+		int toX = Math.min(getCell(position.x + radius), maxCellX);
+		int fromZ = Math.max(getCell(position.z - radius), minCellZ);
+		int toZ = Math.min(getCell(position.z + radius), maxCellZ);
+		float radiusSquared = radius * radius;
+
+		for(int x=fromX; x<=toX; x++)
+			for(int z=fromZ; z<=toZ; z++)
+			{
+				ArrayList<Entry> cell = cells.get(getKey(x, z));
+				if(cell != null)
+					for(Entry entry : cell)
+						if(entry.position.distanceSquared(position) <= radiusSquared)
+							result.add(entry.trafficObject);
+			}
+
+		return result;
+	}
+
+
+	/**
+	 * Returns the k objects closest (3D) to the given position, closest first.
+	 */
+	List<TrafficObject> getNearest(final Vector3f position, int k)
+	{
+		List<Entry> candidates = new ArrayList<Entry>();
+		if(numberOfEntries == 0 || k <= 0)
+			return new ArrayList<TrafficObject>();
+
+		k = Math.min(k, numberOfEntries);
+
+		int centerX = getCell(position.x);
+		int centerZ = getCell(position.z);
+		int maxRing = Math.max(Math.max(Math.abs(centerX - minCellX), Math.abs(maxCellX - centerX)),
+				Math.max(Math.abs(centerZ - minCellZ), Math.abs(maxCellZ - centerZ)));
+
+		Comparator<Entry> byDistance = new Comparator<Entry>()
+		{
+			@Override
+			public int compare(Entry e1, Entry e2)
+			{
+				return Float.compare(e1.position.distanceSquared(position), e2.position.distanceSquared(position));
+			}
+		};
+
+		for(int ring=0; ring<=maxRing; ring++)
+		{
+			// cells with a Chebyshev distance of exactly ring from the center cell
+			for(int x=centerX-ring; x<=centerX+ring; x++)
+				for(int z=centerZ-ring; z<=centerZ+ring; z++)
+				{
+					if(Math.abs(x - centerX) != ring && Math.abs(z - centerZ) != ring)
+						continue;
+
+					ArrayList<Entry> cell = cells.get(getKey(x, z));
+					if(cell != null)
+						candidates.addAll(cell);
+				}
+
+			// objects in further rings are at least ring * cellSize away
+			if(candidates.size() >= k)
+			{
+				Collections.sort(candidates, byDistance);
+				float reach = ring * cellSize;
+				if(candidates.get(k-1).position.distanceSquared(position) <= reach * reach)
+					break;
+			}
+		}
+
+		Collections.sort(candidates, byDistance);
+
+		List<TrafficObject> result = new ArrayList<TrafficObject>();
+		for(int i=0; i<k && i<candidates.size(); i++)
+			result.add(candidates.get(i).trafficObject);
+
+		return result;
+	}
+
+
+	private int getCell(float coordinate)
+	{
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+
+	private static Long getKey(int cellX, int cellZ)
+	{
+		return (((long) cellX) << 32) | (cellZ & 0xffffffffL);
+	}
+}
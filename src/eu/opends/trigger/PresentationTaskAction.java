@@ -19,7 +19,7 @@
 package eu.opends.trigger;
 
 import eu.opends.car.Car;
-import eu.opends.hmi.HMIThread;
+import eu.opends.hmi.HMIPresentationTask;
 import eu.opends.hmi.PresentationModel;
 import eu.opends.main.Simulator;
 
@@ -57,8 +57,8 @@ public class PresentationTaskAction extends TriggerAction
 			long presentationID = presentationModel.createPresentation();
 			
 			// send permanent messages with distance to HMI GUI and screen
-			HMIThread thread = new HMIThread(sim, presentationModel, null, presentationID);
-			thread.start();
+			HMIPresentationTask task = new HMIPresentationTask(sim, presentationModel, null, presentationID);
+			task.start();
 			
 			updateCounter();
 		}
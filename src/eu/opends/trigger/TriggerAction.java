@@ -18,6 +18,7 @@
 
 package eu.opends.trigger;
 
+import eu.opends.basics.SimulationClock;
 
 /**
  * This abstract class represents a trigger action, which will be 
@@ -49,13 +50,22 @@ public abstract class TriggerAction
 	
 	/**
 	 * Method will be called on trigger collision, await delay and perform some action.
+	 * 
+	 * @param clock
+	 * 			Simulation clock the delayed action is scheduled on
 	 */
-	public void performAction()
+	public void performAction(SimulationClock clock)
 	{
 		if(delay > 0)
 		{
-			TriggerActionDelayThread triggerActionDelayThread = new TriggerActionDelayThread(this, delay);
-			triggerActionDelayThread.start();
+			clock.schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					execute();
+				}
+			}, (long)(delay*1000));
 		}
 		else
 			execute();
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.CollisionResults;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Transform;
@@ -51,12 +52,38 @@ public class TriggerCenter
 {
 	private Simulator sim;
 
-	private String triggerName;
-
 	private static Map<String,Spatial> trafficLightTriggerList, trafficLightPhaseTriggerList;
 
 	private LinkedList<Spatial> roadObjectsTriggerList;
 	public static ArrayList<String> triggerReportList = new ArrayList<String>(5);
+	
+	// edge length (in meters) of the cells of the trigger index
+	private static final float TRIGGER_GRID_CELL_SIZE = 20f;
+	private TriggerGrid<IndexedTrigger> triggerIndex = null;
+	
+	
+	private enum TriggerKind
+	{
+		TRAFFIC_LIGHT, TRAFFIC_LIGHT_PHASE, ROAD_OBJECT
+	}
+	
+	
+	/**
+	 * A trigger object resolved from the trigger node and the name it is reported by
+	 */
+	private static class IndexedTrigger
+	{
+		TriggerKind kind;
+		String name;
+		Spatial triggerObject;
+		
+		IndexedTrigger(TriggerKind kind, String name, Spatial triggerObject)
+		{
+			this.kind = kind;
+			this.name = name;
+			this.triggerObject = triggerObject;
+		}
+	}
 
 	
 	public static void addToTrafficLightTriggerList(String trafficLightName, Spatial trafficLightTriggerObject)
@@ -104,14 +131,57 @@ public class TriggerCenter
 			}
 
 		}
+		
+		buildTriggerIndex();
+	}
+	
+	
+	/**
+	 * Resolves all triggers from the trigger node and adds them to the trigger 
+	 * index by their world bounds. Triggers do not move once the scene has been 
+	 * set up, so the index is built only once.
+	 */
+	private void buildTriggerIndex()
+	{
+		triggerIndex = new TriggerGrid<IndexedTrigger>(TRIGGER_GRID_CELL_SIZE);
+		
+		for (Entry<String, Spatial> trigger : trafficLightTriggerList.entrySet())
+			addToTriggerIndex(TriggerKind.TRAFFIC_LIGHT, trigger.getKey(), trigger.getValue().getName());
+		
+		for (Entry<String, Spatial> trigger : trafficLightPhaseTriggerList.entrySet())
+			addToTriggerIndex(TriggerKind.TRAFFIC_LIGHT_PHASE, trigger.getKey(), trigger.getValue().getName());
+		
+		for (Spatial trigger : roadObjectsTriggerList)
+			addToTriggerIndex(TriggerKind.ROAD_OBJECT, trigger.getName(), trigger.getName());
+	}
+	
+	
+	private void addToTriggerIndex(TriggerKind kind, String name, String triggerName)
+	{
+		Spatial triggerObject = sim.getTriggerNode().getChild(triggerName);
+		if(triggerObject != null)
+			triggerIndex.add(new IndexedTrigger(kind, name, triggerObject), triggerObject.getWorldBound());
+		else
+			System.err.println("Trigger object '" + triggerName + "' not found");
 	}
 
 	
 	public void doTriggerChecks() 
 	{
-		handleTrafficLightCollision(trafficLightTriggerList);
-		handleTrafficLightPhaseCollision(trafficLightPhaseTriggerList);
-		handleRoadObjectsCollision(roadObjectsTriggerList);
+		if(triggerIndex == null)
+			buildTriggerIndex();
+		
+		// only triggers close to the car's bounds are checked
+		BoundingVolume carBound = sim.getCar().getCarNode().getWorldBound();
+		for(IndexedTrigger trigger : triggerIndex.getCandidates(carBound))
+		{
+			switch(trigger.kind)
+			{
+				case TRAFFIC_LIGHT : handleTrafficLightCollision(trigger.name, trigger.triggerObject); break;
+				case TRAFFIC_LIGHT_PHASE : handleTrafficLightPhaseCollision(trigger.name, trigger.triggerObject); break;
+				case ROAD_OBJECT : handleRoadObjectsCollision(trigger.triggerObject); break;
+			}
+		}
 		//computeContactWithCar();
 	}
 
@@ -122,24 +192,19 @@ public class TriggerCenter
 	 * light (up to 40 meters) and requests green light.
 	 * A collision will be forwarded to the traffic light center.
 	 * 
-	 * @param triggerList
-	 * 			list of all traffic light triggers in order to monitor approximation 
-	 * 			to traffic lights
+	 * @param trafficLightName
+	 * 			name of the traffic light the trigger belongs to
+	 * 
+	 * @param triggerObject
+	 * 			traffic light trigger close to the car
 	 */
-	private void handleTrafficLightCollision(Map<String,Spatial> triggerList)
+	private void handleTrafficLightCollision(String trafficLightName, Spatial triggerObject)
 	{
-		for (Entry<String, Spatial> trigger : triggerList.entrySet())
+		// calculate intersection of the car with a traffic light trigger
+		if(sim.getCar().getCarNode().getWorldBound().intersects(triggerObject.getWorldBound())) 
 		{
-			triggerName = trigger.getValue().getName();
-			
-			// calculate intersection of the car with a road object trigger
-			Spatial triggerObject = sim.getTriggerNode().getChild(triggerName);		
-			
-			if(sim.getCar().getCarNode().getWorldBound().intersects(triggerObject.getWorldBound())) 
-			{
-				sim.getTrafficLightCenter().reportCollision(trigger.getKey(), TriggerType.REQUEST);
-				//System.err.println("Trigger: " + System.currentTimeMillis());
-			}
+			sim.getTrafficLightCenter().reportCollision(trafficLightName, TriggerType.REQUEST);
+			//System.err.println("Trigger: " + System.currentTimeMillis());
 		}
 	}
 	
@@ -150,23 +215,18 @@ public class TriggerCenter
 	 * which controls the SIM-TD traffic light phase assistant</p>
 	 * A collision will be forwarded to the traffic light center.
 	 * 
-	 * @param triggerList
-	 * 			list of all traffic light triggers in order to monitor approximation 
-	 * 			to traffic lights
+	 * @param trafficLightName
+	 * 			name of the traffic light the trigger belongs to
+	 * 
+	 * @param triggerObject
+	 * 			traffic light phase trigger close to the car
 	 */
-	private void handleTrafficLightPhaseCollision(Map<String,Spatial> triggerList)
+	private void handleTrafficLightPhaseCollision(String trafficLightName, Spatial triggerObject)
 	{
-		for (Entry<String, Spatial> trigger : triggerList.entrySet())
+		// calculate intersection of the car with a traffic light phase trigger
+		if(sim.getCar().getCarNode().getWorldBound().intersects(triggerObject.getWorldBound())) 
 		{
-			triggerName = trigger.getValue().getName();
-			
-			// calculate intersection of the car with a road object trigger
-			Spatial triggerObject = sim.getTriggerNode().getChild(triggerName);
-			
-			if(sim.getCar().getCarNode().getWorldBound().intersects(triggerObject.getWorldBound())) 
-			{
-				sim.getTrafficLightCenter().reportCollision(trigger.getKey(), TriggerType.PHASE);
-			}
+			sim.getTrafficLightCenter().reportCollision(trafficLightName, TriggerType.PHASE);
 		}
 	}
 	
@@ -176,35 +236,23 @@ public class TriggerCenter
 	 * SpeedLimitTrigger, CautionSignTrigger or BlindTrigger. A collision will be forwarded 
 	 * to the HMI center.
 	 * 
-	 * @param triggerList
-	 * 			list of all road object triggers in order to monitor approximation 
-	 * 			to such an object
+	 * @param triggerObject
+	 * 			road object trigger close to the car
 	 */
-	private void handleRoadObjectsCollision(LinkedList<Spatial> triggerList)
+	private void handleRoadObjectsCollision(Spatial triggerObject)
 	{
 		Car car = sim.getCar();
-
-		for (Spatial trigger : triggerList) 
-		{	
-			// TODO: caution! trigger center may be farther away than 1000 meters when hitting
-			if(trigger.getWorldTranslation().distance(car.getCarNode().getWorldTranslation()) < 1000)
-			{
-				String triggerName = trigger.getName();
-					
-				// calculate collision of the car with a road object trigger
-
-				Spatial triggerObject = sim.getTriggerNode().getChild(triggerName);
-				
-				// if car intersects with a trigger --> report trigger to HMI Center
-				CollisionResults results = new CollisionResults();
-				car.getCarNode().collideWith(triggerObject.getWorldBound(), results);
-				if (results.size() > 0)				
-				//if(car.getCarNode().getWorldBound().intersects(triggerObject.getWorldBound()))
-				{
-					if(sim.getTriggerActionListMap().containsKey(triggerName))
-						TriggerCenter.performTriggerAction(triggerName,sim);
-				}
-			}
+		String triggerName = triggerObject.getName();
+		
+		// calculate collision of the car with a road object trigger
+		// if car intersects with a trigger --> report trigger to HMI Center
+		CollisionResults results = new CollisionResults();
+		car.getCarNode().collideWith(triggerObject.getWorldBound(), results);
+		if (results.size() > 0)				
+		//if(car.getCarNode().getWorldBound().intersects(triggerObject.getWorldBound()))
+		{
+			if(sim.getTriggerActionListMap().containsKey(triggerName))
+				TriggerCenter.performTriggerAction(triggerName,sim);
 		}
 	}
 
@@ -325,7 +373,7 @@ public class TriggerCenter
 	 * @param triggerID
 	 * 			name of the trigger (needed to look up action)
 	 */
-	public static void performTriggerAction(String triggerID, SimulationBasics sim)
+	public static void performTriggerAction(final String triggerID, SimulationBasics sim)
 	{
 		if(!triggerReportList.contains(triggerID))
 		{
@@ -338,16 +386,18 @@ public class TriggerCenter
 		
 			List<TriggerAction> triggerActionList = sim.getTriggerActionListMap().get(triggerID);
 			for(TriggerAction triggerAction : triggerActionList)
-			{
-				triggerAction.performAction();
-				
-				// extend two seconds by time of pause duration, if pause trigger was contained in list
-				if(triggerAction instanceof PauseTriggerAction)
-					seconds += ((PauseTriggerAction)triggerAction).getDuration();
-			}
+				triggerAction.performAction(sim.getClock());
 			
-			RemoveFromReportListThread removeThread = new RemoveFromReportListThread(triggerID, seconds);
-			removeThread.start();
+			// simulation time does not pass during a pause (pause trigger), 
+			// so the pause does not need to be added to the two seconds
+			sim.getClock().schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					removeTriggerReport(triggerID);
+				}
+			}, 1000*seconds);
 		}
 	}
 	
@@ -367,7 +417,7 @@ public class TriggerCenter
 		
 			List<TriggerAction> triggerActionList = sim.getRemoteTriggerActionListMap().get(triggerID);
 			for(TriggerAction triggerAction : triggerActionList)
-				triggerAction.performAction();
+				triggerAction.performAction(sim.getClock());
 		}
 	}
 
@@ -387,7 +437,7 @@ public class TriggerCenter
 		
 			List<TriggerAction> triggerActionList = sim.getCameraWaypointTriggerActionListMap().get(triggerID);
 			for(TriggerAction triggerAction : triggerActionList)
-				triggerAction.performAction();
+				triggerAction.performAction(sim.getClock());
 		}
 	}
 	
@@ -0,0 +1,208 @@
+/*
+*  This file is part of OpenDS (Open Source Driving Simulator).
+*  Copyright (C) 2016 Rafael Math
+*
+*  OpenDS is free software: you can redistribute it and/or modify
+*  it under the terms of the GNU General Public License as published by
+*  the Free Software Foundation, either version 3 of the License, or
+*  (at your option) any later version.
+*
+*  OpenDS is distributed in the hope that it will be useful,
+*  but WITHOUT ANY WARRANTY; without even the implied warranty of
+*  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*  GNU General Public License for more details.
+*
+*  You should have received a copy of the GNU General Public License
+*  along with OpenDS. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package eu.opends.trigger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+
+/**
+ * Uniform grid over the ground plane (x/z) holding static triggers by their 
+ * world bounds. A trigger is added to every cell its bounds overlap, so a 
+ * query only has to look at the cells overlapped by the queried bounds 
+ * instead of at all triggers. Triggers covering too many cells (or without 
+ * box or sphere bounds) are returned by every query.
+ */
+class TriggerGrid<T>
+{
+	// triggers spanning more cells per axis are kept in a separate list
+	private static final int MAX_CELLS_PER_AXIS = 32;
+	
+	private float cellSize;
+	private HashMap<Long, ArrayList<Entry<T>>> cells = new HashMap<Long, ArrayList<Entry<T>>>();
+	private ArrayList<Entry<T>> largeEntries = new ArrayList<Entry<T>>();
+	private int numberOfEntries = 0;
+	
+	
+	private static class Entry<T>
+	{
+		T value;
+		int index;
+		
+		Entry(T value, int index)
+		{
+			this.value = value;
+			this.index = index;
+		}
+	}
+	
+	
+	TriggerGrid(float cellSize)
+	{
+		this.cellSize = cellSize;
+	}
+	
+	
+	/**
+	 * Adds a value with the given world bounds.
+	 */
+	void add(T value, BoundingVolume bound)
+	{
+		Entry<T> entry = new Entry<T>(value, numberOfEntries++);
+		
+		Vector3f extent = getExtent(bound);
+		if(extent == null)
+		{
+			largeEntries.add(entry);
+			return;
+		}
+		
+		Vector3f center = bound.getCenter();
+		int fromX = getCell(center.x - extent.x);
+		int toX = getCell(center.x + extent.x);
+		int fromZ = getCell(center.z - extent.z);
+		int toZ = getCell(center.z + extent.z);
+		
+		if(toX - fromX >= MAX_CELLS_PER_AXIS || toZ - fromZ >= MAX_CELLS_PER_AXIS)
+		{
+			largeEntries.add(entry);
+			return;
+		}
+		
+		for(int x=fromX; x<=toX; x++)
+			for(int z=fromZ; z<=toZ; z++)
+			{
+				Long key = getKey(x, z);
+				ArrayList<Entry<T>> cell = cells.get(key);
+				if(cell == null)
+				{
+					cell = new ArrayList<Entry<T>>();
+					cells.put(key, cell);
+				}
+				cell.add(entry);
+			}
+	}
+	
+	
+	/**
+	 * Returns all values whose cells overlap the given bounds (on the ground 
+	 * plane), each value once and in the order they have been added. The 
+	 * result may contain values not intersecting the bounds.
+	 */
+	List<T> getCandidates(BoundingVolume bound)
+	{
+		Vector3f extent = getExtent(bound);
+		if(extent == null)
+			return getAll();
+		
+		Vector3f center = bound.getCenter();
+		int fromX = getCell(center.x - extent.x);
+		int toX = getCell(center.x + extent.x);
+		int fromZ = getCell(center.z - extent.z);
+		int toZ = getCell(center.z + extent.z);
+		
+		// entries spanning several cells must be reported only once
+		IdentityHashMap<Entry<T>, Boolean> found = new IdentityHashMap<Entry<T>, Boolean>();
+		List<Entry<T>> candidates = new ArrayList<Entry<T>>(largeEntries);
+		
+		for(int x=fromX; x<=toX; x++)
+			for(int z=fromZ; z<=toZ; z++)
+			{
+				ArrayList<Entry<T>> cell = cells.get(getKey(x, z));
+				if(cell != null)
+					for(Entry<T> entry : cell)
+						if(found.put(entry, Boolean.TRUE) == null)
+							candidates.add(entry);
+			}
+		
+		return toValues(candidates);
+	}
+	
+	
+	private List<T> getAll()
+	{
+		IdentityHashMap<Entry<T>, Boolean> found = new IdentityHashMap<Entry<T>, Boolean>();
+		List<Entry<T>> candidates = new ArrayList<Entry<T>>(largeEntries);
+		
+		for(ArrayList<Entry<T>> cell : cells.values())
+			for(Entry<T> entry : cell)
+				if(found.put(entry, Boolean.TRUE) == null)
+					candidates.add(entry);
+		
+		return toValues(candidates);
+	}
+	
+	
+	private List<T> toValues(List<Entry<T>> entries)
+	{
+		// keep the order the values have been added in
+		Collections.sort(entries, new Comparator<Entry<T>>()
+		{
+			@Override
+			public int compare(Entry<T> entry1, Entry<T> entry2)
+			{
+				return Integer.compare(entry1.index, entry2.index);
+			}
+		});
+		
+		List<T> values = new ArrayList<T>(entries.size());
+		for(Entry<T> entry : entries)
+			values.add(entry.value);
+		
+		return values;
+	}
+	
+	
+	/**
+	 * Half size of the given bounds per axis, or null if unknown
+	 */
+	private static Vector3f getExtent(BoundingVolume bound)
+	{
+		if(bound instanceof BoundingBox)
+			return ((BoundingBox) bound).getExtent(null);
+		
+		if(bound instanceof BoundingSphere)
+		{
+			float radius = ((BoundingSphere) bound).getRadius();
+			return new Vector3f(radius, radius, radius);
+		}
+		
+		return null;
+	}
+	
+	
+	private int getCell(float coordinate)
+	{
+		return (int) Math.floor(coordinate / cellSize);
+	}
+	
+	
+	private static Long getKey(int cellX, int cellZ)
+	{
+		return (((long) cellX) << 32) | (cellZ & 0xffffffffL);
+	}
+}
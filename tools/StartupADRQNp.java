@@ -1,15 +1,11 @@
 import eu.opends.main.Simulator;
 import settingscontroller_client.src.Actions.DRLAction;
+import settingscontroller_client.src.Controllers.AbstractController;
 import settingscontroller_client.src.Controllers.DiscretizedController;
+import settingscontroller_client.src.Controllers.InstanceOrchestrator;
 import settingscontroller_client.src.Evaluation.Config;
 import settingscontroller_client.src.Evaluation.ScenarioConfig;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.PrintStream;
-
-import static eu.opends.main.DataSet.NUM_SETS;
-
 public class StartupADRQNp {
 
     static Config.ExperimentType type = Config.ExperimentType.SPEED_DISTANCE;
@@ -18,16 +14,17 @@ public class StartupADRQNp {
     static ScenarioConfig.ObstaclePositions obstaclePosition = ScenarioConfig.ObstaclePositions.NONE;
 
     static boolean headless = false;
-    static Process[] openDSProcesses = new Process[1];
     static int startingInstance = 0;
     static int START_PORT = 4000;
+    static boolean SWEEP = false;
+    static String SWEEP_CHECKPOINT = "sweep_checkpoint.txt";
     static boolean setSimple = true;
 
+    static InstanceOrchestrator orchestrator = null;
+
     public void destroy(){
-        for(Process p : openDSProcesses){
-            if(p != null){
-                p.destroy();
-            }
+        if(orchestrator != null){
+            orchestrator.stop();
         }
     }
 
@@ -38,6 +35,9 @@ public class StartupADRQNp {
         if(args.length >= 1){
             if (args[0].equals("headless")){
                 headless = true;
+            } else if (args[0].equals("physicsonly")){
+                headless = true;
+                Simulator.isPhysicsOnly = true;
             }
         }
 
@@ -46,63 +46,56 @@ public class StartupADRQNp {
             param2 = Integer.parseInt(args[4]);
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PrintStream ps = new PrintStream(baos);
-        PrintStream original = System.out;
-
-        System.setOut(ps);
-
-        for(int i = 0; i < 1; ++i){
-            original.print("Starting instance " + (i+1) + "...\n");
-
-            int startingSet = ((i + startingInstance) % (NUM_SETS));
-            if(mode == Config.SimulationMode.TESTING){
-                startingSet = TRAINING_SET;
-            }
-            Simulator.main(new String[]{String.valueOf(param1),String.valueOf(param2),String.valueOf(START_PORT + i), String.valueOf(startingSet), obstaclePosition.name(), mode.name(), type.name()});
-
-            while(!baos.toString().contains("SettingsControllerServer")){
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-            baos = new ByteArrayOutputStream();
-            ps = new PrintStream(baos);
-            System.setOut(ps);
-
-            original.println("Done. Process " + (i+1) + " started.");
+        if(args.length >= 6){
+            AbstractController.resultsDirectory = args[5];
         }
 
-        System.setOut(original);
-
-        System.out.print("Start Path planner ...\n");
+        if(args.length >= 7){
+            AbstractController.resultsFormat = args[6];
+        }
 
         if(setSimple){
             System.out.println("Set action type to simple");
             DRLAction.type = DRLAction.SteeringType.SIMPLE;
         }
 
-        DiscretizedController[] controllers = new DiscretizedController[1];
+        orchestrator = new InstanceOrchestrator(DiscretizedController::new);
+        orchestrator.instances = 1;
+        orchestrator.startPort = START_PORT;
+        orchestrator.startingInstance = startingInstance;
+        orchestrator.mode = mode;
+        orchestrator.type = type;
+        orchestrator.trainingSet = TRAINING_SET;
+        orchestrator.obstaclePosition = obstaclePosition;
+        orchestrator.param1 = param1;
+        orchestrator.param2 = param2;
+        orchestrator.headless = headless;
+        orchestrator.sweep = SWEEP;
+        orchestrator.sweepCheckpoint = SWEEP_CHECKPOINT;
+
+        // write the pending results when the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(orchestrator::stop));
+
+        try {
+            orchestrator.start();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return;
+        }
 
-        for(int i = 0; i < 1; ++i){
-            System.out.println("Start controller " + (i+1));
-            controllers[i] = new DiscretizedController();
+        System.out.println("... Controllers started");
+
+        if(SWEEP){
             try {
-                boolean isHeadless = headless || (i > 5);
-                int startingSet = ((i + startingInstance) % (NUM_SETS));
-                if(mode == Config.SimulationMode.TESTING){
-                    startingSet = TRAINING_SET;
-                }
-                controllers[i].initController(param1,param2, START_PORT + i,START_PORT + 1 + i, mode, type, startingSet, isHeadless);
-            } catch (IOException e) {
+                orchestrator.awaitSweep();
+            } catch (InterruptedException e) {
                 e.printStackTrace();
             }
+            System.out.println("... Sweep finished");
+            orchestrator.stop();
+            System.exit(0);
         }
 
-        System.out.println("... Controllers started");
-
         while(true){
             try {
                 Thread.sleep(100);
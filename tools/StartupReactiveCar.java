@@ -1,12 +1,10 @@
 import eu.opends.main.Simulator;
+import settingscontroller_client.src.Controllers.AbstractController;
 import settingscontroller_client.src.Controllers.ReactiveController;
+import settingscontroller_client.src.Controllers.InstanceOrchestrator;
 import settingscontroller_client.src.Evaluation.Config;
 import settingscontroller_client.src.Evaluation.ScenarioConfig;
 
-import java.io.*;
-
-import static eu.opends.main.DataSet.NUM_SETS;
-
 public class StartupReactiveCar {
 
     static int MAX_INSTANCES = 1;
@@ -17,15 +15,16 @@ public class StartupReactiveCar {
 
 
     static boolean headless = false;
-    static Process[] openDSProcesses = new Process[MAX_INSTANCES];
     static int startingInstance = 0;
     static int START_PORT = 5000;
+    static boolean SWEEP = false;
+    static String SWEEP_CHECKPOINT = "sweep_checkpoint.txt";
+
+    static InstanceOrchestrator orchestrator = null;
 
     public void destroy(){
-        for(Process p : openDSProcesses){
-            if(p != null){
-                p.destroy();
-            }
+        if(orchestrator != null){
+            orchestrator.stop();
         }
     }
 
@@ -36,6 +35,9 @@ public class StartupReactiveCar {
         if(args.length >= 1){
             if (args[0].equals("headless")){
                 headless = true;
+            } else if (args[0].equals("physicsonly")){
+                headless = true;
+                Simulator.isPhysicsOnly = true;
             }
         }
 
@@ -52,104 +54,59 @@ public class StartupReactiveCar {
             param2 = Integer.parseInt(args[4]);
         }
 
-        if (MAX_INSTANCES > 1 || headless){
-            Simulator.isHeadLess = true;
+        if(args.length >= 6){
+            AbstractController.resultsDirectory = args[5];
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PrintStream ps = new PrintStream(baos);
-        PrintStream original = System.out;
-
-        System.setOut(ps);
-
-        for(int i = 0; i < MAX_INSTANCES; ++i){
-            original.print("Starting instance " + (i+1) + "...\n");
-
-            int startingSet = ((i + startingInstance) % (NUM_SETS));
-            if(mode == Config.SimulationMode.TESTING){
-                startingSet = TRAINING_SET;
-            }
-            Simulator.main(new String[]{String.valueOf(param1),String.valueOf(param2),String.valueOf(START_PORT + i), String.valueOf(startingSet), obstaclePosition.name(), mode.name(), type.name()});
-
-            while(!baos.toString().contains("SettingsControllerServer")){
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-            baos = new ByteArrayOutputStream();
-            ps = new PrintStream(baos);
-            System.setOut(ps);
-
-            original.println("Done. Process " + (i+1) + " started.");
+        if(args.length >= 7){
+            AbstractController.resultsFormat = args[6];
         }
 
-        System.setOut(original);
-
-        System.out.print("Start Path planner ...\n");
+        if (MAX_INSTANCES > 1 || headless){
+            Simulator.isHeadLess = true;
+        }
 
-        ReactiveController[] controllers = new ReactiveController[MAX_INSTANCES];
         ReactiveController.init();
 
-        for(int i = 0; i < MAX_INSTANCES; ++i){
-            System.out.println("Start controller " + (i+1));
-            controllers[i] = new ReactiveController();
-            try {
-                boolean isHeadless = headless || (i > 5);
-                int startingSet = ((i + startingInstance) % (NUM_SETS));
-                if(mode == Config.SimulationMode.TESTING){
-                    startingSet = TRAINING_SET;
-                }
-                controllers[i].initController(param1,param2, START_PORT + i,START_PORT + MAX_INSTANCES + i, mode, type, startingSet, isHeadless);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        orchestrator = new InstanceOrchestrator(ReactiveController::new);
+        orchestrator.instances = MAX_INSTANCES;
+        orchestrator.startPort = START_PORT;
+        orchestrator.startingInstance = startingInstance;
+        orchestrator.mode = mode;
+        orchestrator.type = type;
+        orchestrator.trainingSet = TRAINING_SET;
+        orchestrator.obstaclePosition = obstaclePosition;
+        orchestrator.param1 = param1;
+        orchestrator.param2 = param2;
+        orchestrator.headless = headless;
+        orchestrator.sweep = SWEEP;
+        orchestrator.sweepCheckpoint = SWEEP_CHECKPOINT;
+        orchestrator.plannerCommand = "ISDESPOT/reactive-smart/is-despot/problems/reactive_car/car";
+
+        // write the pending results when the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(orchestrator::stop));
+
+        try {
+            orchestrator.start();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return;
         }
 
         System.out.println("... Controllers started");
+        System.out.println("... ISDESPOT started");
 
-        for(int i = 0; i < MAX_INSTANCES; ++i){
+        if(SWEEP){
             try {
-
-                ProcessBuilder pb = new ProcessBuilder("ISDESPOT/reactive-smart/is-despot/problems/reactive_car/car",String.valueOf(START_PORT + MAX_INSTANCES + i));
-                Process process = pb.start();
-
-                Thread outThread = new Thread(() -> {
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                        char[] buf = new char[1024];
-                        int read = 0;
-
-                        while (read != -1) {
-                            read = reader.read(buf);
-                            if(read == 0){
-                                Thread.sleep(50);
-                            }
-                        }
-                    } catch (Exception e) {
-                    }
-                });
-                outThread.start();
-
-
-                Thread outThread1 = new Thread(() -> {
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                        String line;
-
-                        while ((line = reader.readLine()) != null) {
-                            System.err.println(line);
-                        }
-                    } catch (Exception e) {
-                    }
-                });
-                outThread1.start();
-            } catch (IOException e) {
+                orchestrator.awaitSweep();
+            } catch (InterruptedException e) {
                 e.printStackTrace();
             }
+            System.out.println("... Sweep finished");
+            orchestrator.stop();
+            System.exit(0);
         }
 
-        System.out.println("... ISDESPOT started");
-
         while(true){
             try {
                 Thread.sleep(100);
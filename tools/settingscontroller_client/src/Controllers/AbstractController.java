@@ -2,22 +2,33 @@ package settingscontroller_client.src.Controllers;
 
 import com.jme3.math.Vector2f;
 import eu.opends.main.Simulator;
+import eu.opends.settingsController.DirectConnection;
 import org.imgscalr.Scalr;
 import settingscontroller_client.src.AccelerationType;
 import settingscontroller_client.src.Actions.AbstractAction;
 import settingscontroller_client.src.Actions.SimpleAction;
+import settingscontroller_client.src.Controllers.OpenDSConnection.ControlAcknowledgements;
+import settingscontroller_client.src.Controllers.OpenDSConnection.DirectLink;
 import settingscontroller_client.src.Controllers.OpenDSConnection.MessageReceiver;
+import settingscontroller_client.src.Controllers.OpenDSConnection.OpenDSLink;
+import settingscontroller_client.src.Controllers.OpenDSConnection.SocketLink;
 import settingscontroller_client.src.Controllers.OpenDSConnection.SubscribedValues;
 import settingscontroller_client.src.Controllers.Visualization.DrawPane;
 import settingscontroller_client.src.Evaluation.Config;
+import settingscontroller_client.src.Evaluation.EpisodeRecord;
+import settingscontroller_client.src.Evaluation.ResultsSink;
 import settingscontroller_client.src.Evaluation.ScenarioConfig;
 import settingscontroller_client.src.Evaluation.SimulationSequence;
+import settingscontroller_client.src.Evaluation.SweepScheduler;
 import settingscontroller_client.src.Parameters;
 import settingscontroller_client.src.PathPlanning.ApproximatePositionEntry;
 import settingscontroller_client.src.PathPlanning.Dijkstra;
 import settingscontroller_client.src.PathPlanning.HybridAStarPhysical;
 import settingscontroller_client.src.TrafficObject.Obstacle;
 import settingscontroller_client.src.TrafficObject.Pedestrian;
+import settingscontroller_client.src.Util.BatchedPolicyServer;
+import settingscontroller_client.src.Util.ObservationMessage;
+import settingscontroller_client.src.Util.PolicyConnection;
 import settingscontroller_client.src.Util.PythonConnector;
 
 import javax.swing.*;
@@ -30,17 +41,20 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
 
 import static eu.opends.main.DataSet.NUM_SETS;
 import static settingscontroller_client.src.AccelerationType.ACCELERATE;
 import static settingscontroller_client.src.AccelerationType.DECELLERATE;
 import static settingscontroller_client.src.AccelerationType.MAINTAIN;
-import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageBuilder.*;
-import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageSender.*;
 import static settingscontroller_client.src.Evaluation.Config.ExperimentType.MULTIPLE_PEDESTRIANS;
 import static settingscontroller_client.src.Evaluation.Config.ExperimentType.SPEED_DISTANCE;
 import static settingscontroller_client.src.Evaluation.Config.ExperimentType.ZIGZAG_FOLLOW;
@@ -173,6 +187,12 @@ public abstract class AbstractController {
      */
     public String observationDelimiter = ",";
 
+    /**
+     * Plan the next tick from a predicted pose while waiting for the
+     * answer of the outside controller
+     */
+    public boolean speculativePlanning = true;
+
 
 
     /* Things starting from here are not used for configuration of scenarios */
@@ -201,7 +221,51 @@ public abstract class AbstractController {
     /**
      * Connection to the outside world
      */
-    PythonConnector pythonConnector;
+    PolicyConnection pythonConnector;
+
+    /**
+     * Whether all controllers of this JVM share one batched policy connection
+     * instead of listening on their own port
+     */
+    public static boolean batchedPolicy = false;
+
+    /**
+     * Port that is listened on for the batched policy connection
+     */
+    public static int BATCH_PORT = 3999;
+
+    /**
+     * Directory the evaluated episodes are written to, one results file
+     * per controller. If null the evaluation is printed to stdout.
+     */
+    public static String resultsDirectory = null;
+
+    /**
+     * Format of the results files, "csv" or "bin"
+     */
+    public static String resultsFormat = "csv";
+
+    /**
+     * Connection to OpenDS
+     */
+    OpenDSLink openDS;
+
+    /**
+     * In-process connection to OpenDS, if the simulator runs in this JVM
+     * and is stepped without the settings controller socket
+     */
+    DirectConnection directConnection = null;
+
+    /**
+     * Receives the messages of the settings controller socket
+     */
+    MessageReceiver messageReceiver = null;
+
+    /**
+     * Whether the current episode is not evaluated, because the
+     * simulator was restarted while it was running
+     */
+    volatile boolean discardEpisode = false;
 
     /**
      * Outside world connection
@@ -254,6 +318,11 @@ public abstract class AbstractController {
      */
     List<HybridAStarPhysical.ContinuousSearchState> currentPath = null;
 
+    /**
+     * Densified current path sent to the outside controller, computed once per plan
+     */
+    float[] currentDensePath = null;
+
     /**
      * Costmap to use for path planning
      */
@@ -264,12 +333,33 @@ public abstract class AbstractController {
      */
     HybridAStarPhysical planner;
 
+    /**
+     * Path planner used for speculative planning of the next tick
+     */
+    HybridAStarPhysical speculativePlanner;
+
+    /**
+     * Executes the speculative planning while the outside controller
+     * decides on the current tick
+     */
+    ExecutorService speculationExecutor;
+
+    /**
+     * Speculatively planned path for the next tick
+     */
+    SpeculativePlan speculativePlan = null;
+
     /**
      * If we already sent a reset to OpenDS and wait for the car
      * to be reset
      */
     boolean resetSent = false;
 
+    /**
+     * Control commands sent to OpenDS and their acknowledgements
+     */
+    public final ControlAcknowledgements acknowledgements = new ControlAcknowledgements();
+
     /**
      * If we reached a terminal state and wait for the car
      * to be reset
@@ -284,13 +374,23 @@ public abstract class AbstractController {
     /**
      * Message sent the first time when terminal message was reached
      */
-    String terminalMessage = null;
+    ObservationMessage terminalMessage = null;
 
     /**
      * Visual representation of car belief
      */
     BufferedImage beliefImage = new BufferedImage((int) Parameters.map_width, (int) Parameters.map_height, BufferedImage.TYPE_BYTE_GRAY);
 
+    /**
+     * Shapes currently drawn in the belief image
+     */
+    double[] beliefGeometry = new double[0];
+
+    /**
+     * Incremented whenever the belief image changes
+     */
+    int beliefRevision = 0;
+
     /**
      * Number of run of current scene in scenario in TRAINING
      */
@@ -317,11 +417,42 @@ public abstract class AbstractController {
      */
     int MAX_TRIALS = 8;
 
+    /**
+     * Scheduler of the sweep the controller takes its scenes from in
+     * TESTING. If null the simulator walks the grid by itself.
+     */
+    public SweepScheduler sweep = null;
+
+    /**
+     * Index of the instance in the sweep
+     */
+    public int sweepWorker = 0;
+
+    /**
+     * Scene of the sweep that is currently tested
+     */
+    SweepScheduler.Job sweepJob = null;
+
+    /**
+     * Whether no scenes of the sweep are left
+     */
+    boolean sweepFinished = false;
+
     /**
      * Currently stored simulation sequence of POMDP
      */
     SimulationSequence simulationSequence = new SimulationSequence();
 
+    /**
+     * Writes the evaluated episodes if a results directory is set
+     */
+    ResultsSink resultsSink = null;
+
+    /**
+     * Position of the obstacle the simulator was started with
+     */
+    public ScenarioConfig.ObstaclePositions obstaclePosition = ScenarioConfig.ObstaclePositions.NONE;
+
     /**
      * Maximum speed of the car
      */
@@ -472,26 +603,78 @@ public abstract class AbstractController {
 
         planner = new HybridAStarPhysical();
 
+        if (speculativePlanning) {
+            speculativePlanner = new HybridAStarPhysical();
+            speculationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Speculative planning");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
         Graphics2D g2 = beliefImage.createGraphics();
         g2.setPaint(Color.WHITE);
         g2.fillRect(0, 0, beliefImage.getWidth(), beliefImage.getHeight());
 
-        ServerSocket echoSocket = new ServerSocket(CONTROLLER_PORT);
-        pythonConnector = new PythonConnector(echoSocket);
+        // the policy connection may have been set up before, e.g. by a VectorEnvironment
+        if (pythonConnector == null && batchedPolicy) {
+            pythonConnector = BatchedPolicyServer.getInstance(BATCH_PORT).register();
+        } else if (pythonConnector == null) {
+            ServerSocket echoSocket = new ServerSocket(CONTROLLER_PORT);
+            PythonConnector connector = new PythonConnector(echoSocket);
+            pythonConnector = connector;
 
-        Thread t = new Thread(pythonConnector);
-        t.start();
+            Thread t = new Thread(connector);
+            t.start();
+        }
 
-        resetConnection(false);
+        if (directConnection != null) {
+            openDS = new DirectLink(directConnection, this);
+        } else {
+            resetConnection(false);
 
-        Thread t1 = new Thread(new MessageReceiver(in, this));
-        t1.start();
+            messageReceiver = new MessageReceiver(in, this);
+            Thread t1 = new Thread(messageReceiver);
+            t1.start();
+        }
+
+        if (resultsDirectory != null) {
+            resultsSink = new ResultsSink(new File(resultsDirectory, "results_" + OPENDS_PORT + "." + resultsFormat));
+        }
 
         carController = new CarController();
         Thread t2 = new Thread(carController);
         t2.start();
 
-        sendInitMessage(out, (int) interval);
+        openDS.sendInit((int) interval);
+    }
+
+    /**
+     * Converts the planned path into the point list sent to the controller
+     * @param planner The planner that planned the path
+     * @param path The planned path
+     * @return x, z and theta of the densified path points followed by the last state
+     */
+    float[] convertPath(HybridAStarPhysical planner, List<HybridAStarPhysical.ContinuousSearchState> path) {
+        int pointsPerEntry = Math.max(planner.getPathStep() / 2, 1); // distance per step
+        int pathLength = path.size();
+
+        float[] convertedPath = new float[3 * pointsPerEntry * (pathLength - 1) + 3];
+        int offset = 0;
+
+        for (int i = 0; i < pathLength - 1; ++i) {
+            HybridAStarPhysical.ContinuousSearchState current = path.get(i);
+            HybridAStarPhysical.ContinuousSearchState next = path.get(i + 1);
+
+            offset = planner.simpleStep(current.x, current.z, current.theta, next.parentAngleIndex, 0.2f / mapResolution, pointsPerEntry, convertedPath, offset);
+        }
+
+        HybridAStarPhysical.ContinuousSearchState last = path.get(pathLength - 1);
+        convertedPath[offset++] = last.x * mapResolution;
+        convertedPath[offset++] = last.z * mapResolution;
+        convertedPath[offset] = last.theta * mapResolution;
+
+        return convertedPath;
     }
 
     /**
@@ -566,14 +749,61 @@ public abstract class AbstractController {
 
         float startTheta = (float) parsedValue.orientation;
 
-        float delta_t = (float) ((interval * speedUp) + 70) / 1000f;
-        float speed;
+        float speed = planningSpeed();
+
+        PlannedPath plannedPath = takeSpeculativePath(startX, startZ, startTheta, speed);
+
+        if (plannedPath == null) {
+            plannedPath = planPath(planner, startX, startZ, startTheta, speed, goalX, goalZ);
+        }
+
+        if (plannedPath == null) {
+            return null;
+        }
 
+        List<HybridAStarPhysical.ContinuousSearchState> path = plannedPath.states;
+        pane.updatePath(path, parsedValue);
+        currentPath = path;
+        currentDensePath = plannedPath.densePath;
+
+        return new int[]{path.get(1).parentAngle, path.get(1).reverse ? -1 : 1};
+    }
+
+    /**
+     * Speed the path planner assumes for the car
+     */
+    float planningSpeed() {
         if (targetSpeed <= 5) {
-            speed = 5f;
+            return 5f;
         } else {
-            speed = targetSpeed;
+            return targetSpeed;
         }
+    }
+
+    /**
+     * A planned path together with its densified form
+     */
+    static class PlannedPath {
+        final List<HybridAStarPhysical.ContinuousSearchState> states;
+
+        /**
+         * Densified path or null if the path is not sent to the outside controller
+         */
+        final float[] densePath;
+
+        PlannedPath(List<HybridAStarPhysical.ContinuousSearchState> states, float[] densePath) {
+            this.states = states;
+            this.densePath = densePath;
+        }
+    }
+
+    /**
+     * Plans a path from the given pose to the goal
+     * @return The planned path or null if no path was found
+     */
+    PlannedPath planPath(HybridAStarPhysical planner, float startX, float startZ, float startTheta,
+                         float speed, float goalX, float goalZ) {
+        float delta_t = (float) ((interval * speedUp) + 70) / 1000f;
 
         planner.changeSettings(speed * 0.278f, delta_t);
 
@@ -585,10 +815,118 @@ public abstract class AbstractController {
 
         List<HybridAStarPhysical.ContinuousSearchState> path = planner.getPath(goal);
 
-        pane.updatePath(path, parsedValue);
-        currentPath = path;
+        if (path == null) {
+            return null;
+        }
 
-        return new int[]{path.get(1).parentAngle, path.get(1).reverse ? -1 : 1};
+        return new PlannedPath(path, usePath ? convertPath(planner, path) : null);
+    }
+
+    /**
+     * Starts planning the next tick from the pose predicted by the current path.
+     * Runs while the outside controller decides on the current tick.
+     */
+    void speculateNextPath() {
+        if (speculationExecutor == null || speculationExecutor.isShutdown() || currentPath == null || currentPath.size() < 2) {
+            return;
+        }
+
+        discardSpeculativePlan();
+
+        HybridAStarPhysical.ContinuousSearchState predicted = currentPath.get(1);
+        final float x = predicted.x;
+        final float z = predicted.z;
+        final float theta = predicted.theta;
+        final float speed = planningSpeed();
+        final float plannedGoalX = goalX;
+        final float plannedGoalZ = goalZ;
+
+        Future<PlannedPath> path = speculationExecutor.submit(
+                () -> planPath(speculativePlanner, x, z, theta, speed, plannedGoalX, plannedGoalZ));
+
+        speculativePlan = new SpeculativePlan(x, z, theta, speed, plannedGoalX, plannedGoalZ, beliefRevision, path);
+    }
+
+    /**
+     * Returns the speculatively planned path if it was planned for the given pose.
+     * Otherwise the speculation is discarded.
+     */
+    PlannedPath takeSpeculativePath(float x, float z, float theta, float speed) {
+        SpeculativePlan plan = speculativePlan;
+        speculativePlan = null;
+
+        if (plan == null) {
+            return null;
+        }
+
+        if (!plan.matches(x, z, theta, speed)) {
+            plan.path.cancel(true);
+            return null;
+        }
+
+        try {
+            return plan.path.get();
+        } catch (CancellationException e) {
+            // the controller was closed
+            return null;
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the speculative planning that is still running, so the
+     * executor is free for the next speculation
+     */
+    void discardSpeculativePlan() {
+        SpeculativePlan plan = speculativePlan;
+        speculativePlan = null;
+
+        if (plan != null) {
+            plan.path.cancel(true);
+        }
+    }
+
+    /**
+     * A path planned from a predicted pose of the car
+     */
+    class SpeculativePlan {
+        final float x;
+        final float z;
+        final float theta;
+        final float speed;
+        final float goalX;
+        final float goalZ;
+        final int beliefRevision;
+        final Future<PlannedPath> path;
+
+        SpeculativePlan(float x, float z, float theta, float speed, float goalX, float goalZ, int beliefRevision,
+                        Future<PlannedPath> path) {
+            this.x = x;
+            this.z = z;
+            this.theta = theta;
+            this.speed = speed;
+            this.goalX = goalX;
+            this.goalZ = goalZ;
+            this.beliefRevision = beliefRevision;
+            this.path = path;
+        }
+
+        /**
+         * Whether the prediction hit the actual pose closer than the planner
+         * discretization and nothing else the planner depends on has changed
+         */
+        boolean matches(float x, float z, float theta, float speed) {
+            double distance = Math.sqrt(Math.pow(x - this.x, 2) + Math.pow(z - this.z, 2)) * mapResolution;
+
+            double angleDifference = Math.abs(theta - this.theta) % (2 * Math.PI);
+            angleDifference = Math.min(angleDifference, 2 * Math.PI - angleDifference);
+
+            return distance <= discretization / 2 && angleDifference <= orientationDiscretization / 2
+                    && speed == this.speed && goalX == AbstractController.this.goalX && goalZ == AbstractController.this.goalZ
+                    && beliefRevision == AbstractController.this.beliefRevision;
+        }
     }
 
     /**
@@ -636,9 +974,10 @@ public abstract class AbstractController {
                 out = socket.getOutputStream();
                 in = new DataInputStream(socket.getInputStream());
                 r = new BufferedReader(new InputStreamReader(in));
+                openDS = new SocketLink(out, acknowledgements);
 
                 if (sendInit) {
-                    sendInitMessage(out, (int) interval);
+                    openDS.sendInit((int) interval);
                 }
 
                 System.out.println("Connected.");
@@ -668,6 +1007,39 @@ public abstract class AbstractController {
         }
     }
 
+    /**
+     * Connects the controller to its restarted simulator. The episode
+     * that was running when the simulator stopped is not evaluated.
+     * @param connection In-process connection to the restarted simulator,
+     *                   only used if the controller steps it directly
+     */
+    public void reconnect(DirectConnection connection) {
+        discardEpisode = true;
+
+        if (directConnection != null) {
+            directConnection = connection;
+            openDS = new DirectLink(connection, this);
+            openDS.sendInit((int) interval);
+            return;
+        }
+
+        if (messageReceiver != null) {
+            messageReceiver.stop();
+        }
+
+        resetConnection(true);
+
+        messageReceiver = new MessageReceiver(in, this);
+        Thread t = new Thread(messageReceiver);
+        t.start();
+
+        // the restarted simulator starts with its initial scene
+        SweepScheduler.Job job = sweepJob;
+        if (job != null) {
+            openDS.sendScene(job.param1, job.param2);
+        }
+    }
+
     Random randomTicker = new Random();
 
     /**
@@ -682,6 +1054,7 @@ public abstract class AbstractController {
         pane.reset();
 
         simulationSequence.reset();
+        discardSpeculativePlan();
         stuckPos = null;
         stuckSteps = 0;
         lastAcceleration = -1;
@@ -738,18 +1111,21 @@ public abstract class AbstractController {
     }
 
     /**
-     * Draws the current belief of the car
+     * Shape types stored in the belief geometry
+     */
+    private static final double BELIEF_CIRCLE = 0;
+    private static final double BELIEF_LINE = 1;
+    private static final double OBSTACLE_INCREASED = 2;
+    private static final double OBSTACLE = 3;
+
+    /**
+     * Draws the current belief of the car. The belief image is only redrawn
+     * if its shapes changed, so planning on it stays valid otherwise.
      */
     public void drawBelief(List<Pedestrian> pedestrians, SubscribedValues currVal) {
-        Graphics2D g2 = beliefImage.createGraphics();
-        g2.setPaint(Color.WHITE);
-        g2.fillRect(0, 0, beliefImage.getWidth(), beliefImage.getHeight());
+        DoubleStream.Builder geometry = DoubleStream.builder();
 
         if (pedestrians != null && currentBelief != null) {
-            g2.setStroke(new BasicStroke(6));
-            g2.setPaint(new Color(50, 50, 50));
-            g2.setColor(new Color(50, 50, 50));
-
             double brakingDist = ((currVal.speed * currVal.speed) / (250 * 0.8)) * 1.5f;
 
             if(planAroundPedestrian) {
@@ -761,19 +1137,19 @@ public abstract class AbstractController {
                     if (pedDistance <= 17 && pedDistance < brakingDist) {
                         double maxBelief = 0;
 
-                        drawCenteredCircle(g2, (float) p.x, (float) p.z, 20);
+                        geometry.add(BELIEF_CIRCLE).add(p.x).add(p.z).add(20);
 
                         for (int angleIndex = 0; angleIndex < currentBelief.get(i).size() - 1; ++angleIndex) {
                             double belief = currentBelief.get(i).get(angleIndex);
                             Vector2f direction = toAngle(angleIndex * BELIEF_ANGLE_DISCRETIZATION, belief * p.speed * 2);
-                            g2.draw(new Line2D.Double(p.x, p.z, (p.x + direction.x), (p.z + direction.y)));
+                            geometry.add(BELIEF_LINE).add(p.x).add(p.z).add(p.x + direction.x).add(p.z + direction.y);
                             if (belief > maxBelief) {
                                 maxBelief = belief;
                             }
                         }
 
                         if (maxBelief < 0.3) {
-                            drawCenteredCircle(g2, (float) p.x, (float) p.z, 25);
+                            geometry.add(BELIEF_CIRCLE).add(p.x).add(p.z).add(25);
                         }
                     }
                     ++i;
@@ -783,21 +1159,57 @@ public abstract class AbstractController {
         }
 
         if (obstacle != null) {
-            g2.setStroke(new BasicStroke(4));
-
-            g2.setColor(Color.GRAY);
             List<float[]> f = planner.getCornerPositionsIncreased(obstacle.x, obstacle.z, obstacle.theta);
-            g2.draw(new Line2D.Float(f.get(0)[0], f.get(0)[1], f.get(1)[0], f.get(1)[1]));
-            g2.draw(new Line2D.Float(f.get(1)[0], f.get(1)[1], f.get(2)[0], f.get(2)[1]));
-            g2.draw(new Line2D.Float(f.get(2)[0], f.get(2)[1], f.get(3)[0], f.get(3)[1]));
-            g2.draw(new Line2D.Float(f.get(3)[0], f.get(3)[1], f.get(0)[0], f.get(0)[1]));
+            geometry.add(OBSTACLE_INCREASED);
+            for (int corner = 0; corner < 4; ++corner) {
+                geometry.add(f.get(corner)[0]).add(f.get(corner)[1]);
+            }
 
-            g2.setColor(Color.DARK_GRAY);
             f = planner.getCornerPositions(obstacle.x, obstacle.z, obstacle.theta);
-            g2.draw(new Line2D.Float(f.get(0)[0], f.get(0)[1], f.get(1)[0], f.get(1)[1]));
-            g2.draw(new Line2D.Float(f.get(1)[0], f.get(1)[1], f.get(2)[0], f.get(2)[1]));
-            g2.draw(new Line2D.Float(f.get(2)[0], f.get(2)[1], f.get(3)[0], f.get(3)[1]));
-            g2.draw(new Line2D.Float(f.get(3)[0], f.get(3)[1], f.get(0)[0], f.get(0)[1]));
+            geometry.add(OBSTACLE);
+            for (int corner = 0; corner < 4; ++corner) {
+                geometry.add(f.get(corner)[0]).add(f.get(corner)[1]);
+            }
+        }
+
+        double[] newGeometry = geometry.build().toArray();
+        if (Arrays.equals(newGeometry, beliefGeometry)) {
+            return;
+        }
+        beliefGeometry = newGeometry;
+        beliefRevision++;
+
+        Graphics2D g2 = beliefImage.createGraphics();
+        g2.setPaint(Color.WHITE);
+        g2.fillRect(0, 0, beliefImage.getWidth(), beliefImage.getHeight());
+
+        int i = 0;
+        while (i < newGeometry.length) {
+            double type = newGeometry[i];
+
+            if (type == BELIEF_CIRCLE || type == BELIEF_LINE) {
+                g2.setStroke(new BasicStroke(6));
+                g2.setPaint(new Color(50, 50, 50));
+                g2.setColor(new Color(50, 50, 50));
+
+                if (type == BELIEF_CIRCLE) {
+                    drawCenteredCircle(g2, (float) newGeometry[i + 1], (float) newGeometry[i + 2], (float) newGeometry[i + 3]);
+                    i += 4;
+                } else {
+                    g2.draw(new Line2D.Double(newGeometry[i + 1], newGeometry[i + 2], newGeometry[i + 3], newGeometry[i + 4]));
+                    i += 5;
+                }
+            } else {
+                g2.setStroke(new BasicStroke(4));
+                g2.setColor(type == OBSTACLE_INCREASED ? Color.GRAY : Color.DARK_GRAY);
+
+                for (int corner = 0; corner < 4; ++corner) {
+                    int next = (corner + 1) % 4;
+                    g2.draw(new Line2D.Double(newGeometry[i + 1 + corner * 2], newGeometry[i + 2 + corner * 2],
+                            newGeometry[i + 1 + next * 2], newGeometry[i + 2 + next * 2]));
+                }
+                i += 9;
+            }
         }
     }
 
@@ -863,10 +1275,74 @@ public abstract class AbstractController {
         return obs;
     }
 
+    /**
+     * Stops the speculative planning and writes the pending results of the
+     * controller, e.g. before the JVM exits
+     */
+    public void close() {
+        if (speculationExecutor != null) {
+            // plannings that never started are cancelled, so nobody waits for them
+            for (Runnable planning : speculationExecutor.shutdownNow()) {
+                ((Future<?>) planning).cancel(false);
+            }
+        }
+
+        ResultsSink sink = resultsSink;
+        if (sink != null) {
+            try {
+                sink.close();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Evaluates the current simulation sequence, either into the results
+     * file or to stdout
+     * @param message The message printed in front of the output
+     */
+    void evaluateEpisode(String message) {
+        if (sweepFinished) {
+            return;
+        }
+
+        if (discardEpisode) {
+            discardEpisode = false;
+            return;
+        }
+
+        if (resultsSink == null) {
+            simulationSequence.evaluate(message);
+            return;
+        }
+
+        EpisodeRecord record = new EpisodeRecord();
+        record.port = OPENDS_PORT;
+        record.mode = mode;
+        record.type = type;
+        record.trainingSet = TRAINING_SET;
+        record.obstaclePosition = obstaclePosition;
+        Obstacle currentObstacle = obstacle;
+        if (currentObstacle != null) {
+            record.obstacleX = currentObstacle.x;
+            record.obstacleZ = currentObstacle.z;
+        }
+        record.speedIndex = speedIndex;
+        record.distanceIndex = distanceIndex;
+        record.zigZagLength = zigZagLength;
+        record.zigZagAngle = zigZagAngle;
+        record.distanceToFirstPed = distanceToFirstPed;
+        record.delay = delay;
+        record.setMeasures(simulationSequence);
+
+        resultsSink.write(record);
+    }
+
     private class CarController implements Runnable {
         void reset(){
             if (mode == TRAINING) {
-                simulationSequence.evaluate("");
+                evaluateEpisode("");
 
                 int NUM_SETS = 16;
 
@@ -875,18 +1351,18 @@ public abstract class AbstractController {
                     TRAINING_SET = (TRAINING_SET + 1) % (NUM_SETS);
 
                     changeGoal();
-                    sendNextScenarioMessage(out, TRAINING_SET);
+                    openDS.sendNextScenario(TRAINING_SET);
                 } else {
                     ++runs;
                     changeGoal();
-                    sendResetMessage(out);
+                    openDS.sendReset();
                 }
                 resetProperties();
             } else if (mode == TESTING) {
                 changeGoal();
 
                 if(!pythonConnector.connected() && onlyEvaluateConnected){
-                    sendSceneResetMessage(out);
+                    openDS.sendSceneReset();
                     resetProperties();
                     simulationSequence.reset();
                     return;
@@ -894,20 +1370,25 @@ public abstract class AbstractController {
 
                 if (sceneTrials >= 0 && !simulationSequence.emptySequence()) {
                     if (type == ZIGZAG_FOLLOW) {
-                        simulationSequence.evaluate("Length: " + zigZagLength + "\tAngle: " + zigZagAngle);
+                        evaluateEpisode("Length: " + zigZagLength + "\tAngle: " + zigZagAngle);
                     }
                     if (type == MULTIPLE_PEDESTRIANS) {
-                        simulationSequence.evaluate("Dist: " + distanceToFirstPed + "\tDelay: " + delay);
+                        evaluateEpisode("Dist: " + distanceToFirstPed + "\tDelay: " + delay);
                     }
                     if (type == SPEED_DISTANCE) {
-                        simulationSequence.evaluate("Dist: " + distances.get(distanceIndex) + "\tSpeed: " + pedSpeeds.get(speedIndex));
+                        evaluateEpisode("Dist: " + distances.get(distanceIndex) + "\tSpeed: " + pedSpeeds.get(speedIndex));
                     }
 
-                    if (sceneTrials == MAX_TRIALS) {
+                    if (sceneTrials == MAX_TRIALS && sweep != null) {
                         sceneTrials = 1;
                         sceneNumber++;
 
-                        sendNextSceneMessage(out);
+                        nextSweepJob();
+                    } else if (sceneTrials == MAX_TRIALS) {
+                        sceneTrials = 1;
+                        sceneNumber++;
+
+                        openDS.sendNextScene();
                         resetProperties();
 
                         if (type == ZIGZAG_FOLLOW) {
@@ -935,22 +1416,59 @@ public abstract class AbstractController {
                         }
                     } else {
                         sceneTrials++;
-                        sendSceneResetMessage(out);
+                        openDS.sendSceneReset();
                         resetProperties();
                     }
                 }
                 simulationSequence.reset();
 
-                if (sceneTrials == -1) {
+                if (sceneTrials == -1 && sweep != null) {
+                    sceneTrials = 1;
+                    nextSweepJob();
+                } else if (sceneTrials == -1) {
                     sceneTrials = 0;
                 }
             }
         }
 
+        /**
+         * Completes the current scene of the sweep and switches to the next one
+         */
+        void nextSweepJob() {
+            if (sweepJob != null) {
+                sweep.complete(sweepJob);
+            }
+
+            sweepJob = sweep.next(sweepWorker);
+            if (sweepJob == null) {
+                if (!sweepFinished) {
+                    System.out.println("Sweep finished on instance " + (sweepWorker + 1));
+                }
+                sweepFinished = true;
+                openDS.sendSceneReset();
+                resetProperties();
+                return;
+            }
+
+            if (type == ZIGZAG_FOLLOW) {
+                zigZagLength = sweepJob.param1;
+                zigZagAngle = sweepJob.param2;
+            }
+            if (type == MULTIPLE_PEDESTRIANS) {
+                distanceToFirstPed = sweepJob.param1;
+                delay = sweepJob.param2;
+            }
+            if (type == SPEED_DISTANCE) {
+                speedIndex = Math.round(sweepJob.param1);
+                distanceIndex = Math.round(sweepJob.param2);
+            }
+
+            openDS.sendScene(sweepJob.param1, sweepJob.param2);
+            resetProperties();
+        }
+
         @Override
         public void run() {
-            byte[] msg;
-
             SubscribedValues thisValue = null;
             SubscribedValues lastState = null;
 
@@ -969,77 +1487,20 @@ public abstract class AbstractController {
                 valueLock.unlock();
 
                 if (resetSent) {
-                    // we now are reset
-                    float startX = -1;
-                    float startZ = -1;
-
-                    if (mode == TRAINING) {
-                        startX = 1873;
-                        startZ = 104;
-                    }
-                    if (mode == TESTING) {
-                        if (TRAINING_SET >= 9 && TRAINING_SET <= 11 || TRAINING_SET == 16 || TRAINING_SET == 17 || TRAINING_SET == 21 || TRAINING_SET == 22) {
-                            startX = 1828.5f;
-                            startZ = 309;
-                        } else if ((TRAINING_SET >= 12 && TRAINING_SET <= 13) || TRAINING_SET == 15) {
-                            startX = 1607;
-                            startZ = 967.4f;
-                        } else if (TRAINING_SET == 14) {
-                            startX = 1700.7f;
-                            startZ = 650.4f;
-                        } else if (TRAINING_SET == 18 || TRAINING_SET == 19){
-                            startX = 1793.05f;
-                            startZ = 407.48f;
-                        } else if (TRAINING_SET == 20) {
-                            startX = 1379.7f;
-                            startZ = 1498.9f;
-                        } else {
-                            switch (TRAINING_SET % 3) {
-                                case 0:
-                                    startX = 1828.5f;
-                                    startZ = 309;
-                                    break;
-                                case 1:
-                                    startX = 1607;
-                                    startZ = 967.4f;
-                                    break;
-                                case 2:
-                                    startX = 0;
-                                    startZ = 0;
-                                    break;
-                                default:
-                                    throw new RuntimeException("Something is wrong here");
-
-                            }
-                        }
-                    }
-
-                    if (Math.sqrt(Math.pow(thisValue.x - startX, 2)
-                            + Math.pow(thisValue.z - startZ, 2)) < (12 / mapResolution)) {
-                        resetSent = false;
-                    } else {
-                        if (mode == TRAINING) {
-                            resetSent = false;
-                        } else if (mode == TESTING) {
-                            sendSceneResetMessage(out);
-                            resetProperties();
-                            try {
-                                Thread.sleep(5);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                            continue;
-                        }
+                    if (acknowledgements.isStale(thisValue.acknowledgedRequestId)) {
+                        // state was sampled before OpenDS applied the reset
+                        continue;
                     }
+                    resetSent = false;
                 }
 
                 int angle = 0;
                 try {
                     if (thisValue.x < 0 || thisValue.z < 0 || thisValue.x >= map_width || thisValue.z >= map_height) {
                         if (mode == TRAINING) {
-                            sendResetMessage(out);
+                            openDS.sendReset();
                         } else if (mode == TESTING) {
-                            sendSceneResetMessage(out);
+                            openDS.sendSceneReset();
                         }
                         resetProperties();
                         continue;
@@ -1052,9 +1513,9 @@ public abstract class AbstractController {
                             stuckSteps = 0;
                             stuckPos = approxPos;
                             if (mode == TRAINING) {
-                                sendResetMessage(out);
+                                openDS.sendReset();
                             } else if (mode == TESTING) {
-                                sendSceneResetMessage(out);
+                                openDS.sendSceneReset();
                             }
                             resetProperties();
                             continue;
@@ -1074,9 +1535,9 @@ public abstract class AbstractController {
                             angle = tmp[0];
                         } else {
                             if (mode == TRAINING) {
-                                sendResetMessage(out);
+                                openDS.sendReset();
                             } else if (mode == TESTING) {
-                                sendSceneResetMessage(out);
+                                openDS.sendSceneReset();
                             }
                             resetProperties();
                             System.out.println("Could not plan path or received illegal position value.");
@@ -1102,64 +1563,27 @@ public abstract class AbstractController {
                     lastAcceleration = 0;
 
                     double[] observation = observation(thisValue, targetSpeed);
-                    String cast_obs = Arrays.stream(observation)
-                            .mapToObj(String::valueOf)
-                            .collect(Collectors.joining(observationDelimiter));
-
-                    String cast_map = null;
+                    double[] carIntention = null;
                     if(useCarIntention){
                         try {
-                            cast_map = Arrays.stream(getMapExtract(thisValue))
-                                    .mapToObj(String::valueOf)
-                                    .collect(Collectors.joining(","));
+                            carIntention = getMapExtract(thisValue);
                         } catch (ArrayIndexOutOfBoundsException e) {
                             e.printStackTrace();
                             if (mode == TRAINING) {
-                                sendResetMessage(out);
+                                openDS.sendReset();
                             } else if (mode == TESTING) {
-                                sendSceneResetMessage(out);
+                                openDS.sendSceneReset();
                             }
                             resetProperties();
                             continue;
                         }
                     }
 
-                    String convertedPathString = null;
-                    if(usePath){
-                        List<String> convertedPath = new LinkedList<>();
-
-                        int pointsPerEntry = planner.getPathStep() / 2; // distance per step
-                        int pathLength = currentPath.size();
-
-                        for (int i = 0; i < pathLength - 1; ++i) {
-                            HybridAStarPhysical.ContinuousSearchState current = currentPath.get(i);
-                            HybridAStarPhysical.ContinuousSearchState next = currentPath.get(i + 1);
-
-                            int parAngle = next.parentAngle;
-
-                            List<Float> tmpPath = planner.simpleStep(current.x, current.z, current.theta, Arrays.asList(possibleSteeringAngles).indexOf(parAngle), 0.2f / mapResolution, pointsPerEntry);
-
-                            for (Float f : tmpPath) {
-                                convertedPath.add(String.valueOf(f));
-                            }
-                        }
-
-                        HybridAStarPhysical.ContinuousSearchState last = currentPath.get(pathLength - 1);
-                        convertedPath.add(String.valueOf(last.x * mapResolution));
-                        convertedPath.add(String.valueOf(last.z * mapResolution));
-                        convertedPath.add(String.valueOf(last.theta * mapResolution));
-
-                        convertedPathString = String.join(",", convertedPath);
-                    }
+                    // the dense path is computed once per plan, ticks that do not replan reuse it
+                    float[] convertedPath = usePath ? currentDensePath : null;
 
-                    String totalMessage = r.terminal + ";" + reward + ";" + converted_angle + ";" + cast_obs;
-                    if(usePath){
-                        totalMessage += ";" + convertedPathString;
-                    }
-                    if(useCarIntention){
-                        totalMessage += ";" + cast_map;
-                    }
-                    totalMessage += "\n";
+                    ObservationMessage totalMessage = new ObservationMessage(r.terminal, reward, converted_angle,
+                            observation, observationDelimiter, convertedPath, carIntention);
 
                     if(r.terminal && (!pythonConnector.connected())){
                         reset();
@@ -1175,9 +1599,7 @@ public abstract class AbstractController {
 
                     if (startTick > 0) {
                         startTick--;
-                        msg = buildMessage("drivingCar", (float) 0, 0f, 0f, targetSpeed).getBytes("UTF-8");
-                        out.write(msg);
-                        out.flush();
+                        openDS.drive((float) 0, 0f, 0f, targetSpeed);
                     } else if (pythonConnector.connected()) {
                         if (terminalReached) {
                             pythonConnector.sendMessage(terminalMessage);
@@ -1185,12 +1607,13 @@ public abstract class AbstractController {
                             pythonConnector.sendMessage(totalMessage);
                         }
 
+                        speculateNextPath();
+
                         String answer = pythonConnector.receiveMessage();
 
                         switch (answer) {
                             case "START":
-                                msg = buildMessage("drivingCar", (float) converted_angle, 0f, 0f, targetSpeed).getBytes("UTF-8");
-                                out.write(msg);
+                                openDS.drive((float) converted_angle, 0f, 0f, targetSpeed);
                                 break;
                             case "RESET":
                                 reset();
@@ -1239,28 +1662,26 @@ public abstract class AbstractController {
                                 double speedDifference = Math.min(targetSpeed, MAX_SPEED) - thisValue.speed;
                                 // we are basically correct speed. Don't do anything
                                 if (Math.abs(speedDifference) < 0.5) {
-                                    msg = buildMessage("drivingCar", (float) converted_angle, 0f, 0f, targetSpeed).getBytes("UTF-8");
+                                    openDS.drive((float) converted_angle, 0f, 0f, targetSpeed);
                                 } else if (speedDifference > 0) {
                                     double percentageOfSpeed = thisValue.speed / targetSpeed;
                                     if (percentageOfSpeed < 0.9) {
-                                        msg = buildMessage("drivingCar", (float) converted_angle, 1f, 0f, targetSpeed).getBytes("UTF-8");
+                                        openDS.drive((float) converted_angle, 1f, 0f, targetSpeed);
                                     } else {
-                                        msg = buildMessage("drivingCar", (float) converted_angle, 0.1f, 0f, targetSpeed).getBytes("UTF-8");
+                                        openDS.drive((float) converted_angle, 0.1f, 0f, targetSpeed);
                                     }
                                 } else {
                                     double percentageOfSpeed = (thisValue.speed - targetSpeed) / targetSpeed;
                                     if (percentageOfSpeed < 0.1) {
                                         if (targetSpeed == 0) {
-                                            msg = buildMessage("drivingCar", (float) converted_angle, 0f, 1f, targetSpeed).getBytes("UTF-8");
+                                            openDS.drive((float) converted_angle, 0f, 1f, targetSpeed);
                                         } else {
-                                            msg = buildMessage("drivingCar", (float) converted_angle, 0f, 0.2f, targetSpeed).getBytes("UTF-8");
+                                            openDS.drive((float) converted_angle, 0f, 0.2f, targetSpeed);
                                         }
                                     } else {
-                                        msg = buildMessage("drivingCar", (float) converted_angle, 0f, 1f, targetSpeed).getBytes("UTF-8");
+                                        openDS.drive((float) converted_angle, 0f, 1f, targetSpeed);
                                     }
                                 }
-                                out.write(msg);
-                                out.flush();
                         }
                     } else {
                         drawBelief(thisValue.pedestrians, thisValue);
@@ -1303,33 +1724,28 @@ public abstract class AbstractController {
                         double speedDifference = Math.min(targetSpeed, MAX_SPEED) - thisValue.speed;
                         // we are basically correct speed. Don't do anything
                         if (Math.abs(speedDifference) < 0.5) {
-                            msg = buildMessage("drivingCar", (float) converted_angle, 0f, 0f, targetSpeed).getBytes("UTF-8");
+                            openDS.drive((float) converted_angle, 0f, 0f, targetSpeed);
                         } else if (speedDifference > 0) {
                             double percentageOfSpeed = thisValue.speed / targetSpeed;
                             if (percentageOfSpeed < 0.9) {
-                                msg = buildMessage("drivingCar", (float) converted_angle, 1f, 0f, targetSpeed).getBytes("UTF-8");
+                                openDS.drive((float) converted_angle, 1f, 0f, targetSpeed);
                             } else {
-                                msg = buildMessage("drivingCar", (float) converted_angle, 0.1f, 0f, targetSpeed).getBytes("UTF-8");
+                                openDS.drive((float) converted_angle, 0.1f, 0f, targetSpeed);
                             }
                         } else {
                             double percentageOfSpeed = (thisValue.speed - targetSpeed) / targetSpeed;
                             if (percentageOfSpeed < 0.1) {
                                 if (targetSpeed == 0) {
-                                    msg = buildMessage("drivingCar", (float) converted_angle, 0f, 1f, targetSpeed).getBytes("UTF-8");
+                                    openDS.drive((float) converted_angle, 0f, 1f, targetSpeed);
                                 } else {
-                                    msg = buildMessage("drivingCar", (float) converted_angle, 0f, 0.2f, targetSpeed).getBytes("UTF-8");
+                                    openDS.drive((float) converted_angle, 0f, 0.2f, targetSpeed);
                                 }
                             } else {
-                                msg = buildMessage("drivingCar", (float) converted_angle, 0f, 1f, targetSpeed).getBytes("UTF-8");
+                                openDS.drive((float) converted_angle, 0f, 1f, targetSpeed);
                             }
                         }
-                        out.write(msg);
-                        out.flush();
                     }
 
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
-                    return;
                 } catch (IOException e) {
                     resetConnection(true);
                 }
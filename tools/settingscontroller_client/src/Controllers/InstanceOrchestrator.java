@@ -0,0 +1,347 @@
+package settingscontroller_client.src.Controllers;
+
+import com.jme3.bullet.BulletAppState;
+import eu.opends.main.Simulator;
+import eu.opends.settingsController.DirectConnection;
+import settingscontroller_client.src.Evaluation.Config;
+import settingscontroller_client.src.Evaluation.ScenarioConfig;
+import settingscontroller_client.src.Evaluation.SweepScheduler;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static eu.opends.main.DataSet.NUM_SETS;
+
+/**
+ * Starts the simulators, car controllers and external planners of
+ * several instances in this JVM and keeps them running.
+ *
+ * Simulators are booted in parallel. They are launched one after another,
+ * because launching writes static configuration of the simulator class,
+ * and then wait for their connections at the same time. An instance
+ * counts as started once its simulator registered its in-process
+ * connection, which happens right after its settings controller server
+ * is listening. Simulators
+ * that shut down and planner processes that exit are restarted and
+ * reconnected, the other instances keep running.
+ *
+ * Ports: the simulator of instance i listens on startPort + i, its
+ * controller accepts the planner on startPort + instances + i.
+ */
+public class InstanceOrchestrator {
+
+    /**
+     * Creates the controller of an instance
+     */
+    public interface ControllerFactory {
+        AbstractController create();
+    }
+
+    /**
+     * Number of simulators that are booted at the same time
+     */
+    public static int BOOT_PARALLELISM = 4;
+
+    /**
+     * Time a simulator has to start its settings controller server in ms
+     */
+    public static long BOOT_TIMEOUT = 120000;
+
+    /**
+     * Time to wait before a stopped simulator or planner is restarted in ms
+     */
+    public static long RESTART_DELAY = 5000;
+
+    /* Configuration, has to be set before start() */
+    public int instances = 1;
+    public int startPort = 4000;
+    public int startingInstance = 0;
+    public Config.SimulationMode mode = Config.SimulationMode.TESTING;
+    public Config.ExperimentType type = Config.ExperimentType.SPEED_DISTANCE;
+    public int trainingSet = ScenarioConfig.toTrainingSet(ScenarioConfig.PedestrianSide.RIGHT, ScenarioConfig.Intersection.NONE, false);
+    public ScenarioConfig.ObstaclePositions obstaclePosition = ScenarioConfig.ObstaclePositions.NONE;
+    public float param1 = 0;
+    public float param2 = 0;
+    public boolean headless = false;
+
+    /**
+     * Physics threading of the simulators, null to use the start properties.
+     * PARALLEL only overlaps physics with rendering, so headless sweeps
+     * should leave it SEQUENTIAL.
+     */
+    public BulletAppState.ThreadingType physicsThreading = null;
+
+    /**
+     * Executable of the external planner, started with the controller port
+     * as argument. Null if the policy connects to the controllers by itself.
+     */
+    public String plannerCommand = null;
+
+    /**
+     * Whether the instances share the scenes of the TESTING grid instead
+     * of each walking the whole grid
+     */
+    public boolean sweep = false;
+
+    /**
+     * File the completed scenes of the sweep are recorded in, null if
+     * the sweep cannot be resumed
+     */
+    public String sweepCheckpoint = null;
+
+    private SweepScheduler sweepScheduler = null;
+
+    /**
+     * Guards launching simulators, see {@link Simulator#launch(String[])}
+     */
+    private static final Object LAUNCH_LOCK = new Object();
+
+    private final ControllerFactory factory;
+    private final List<Instance> instanceList = new ArrayList<>();
+    private volatile boolean running = false;
+
+    /**
+     * Simulator, controller and planner of one instance
+     */
+    private class Instance {
+        final int index;
+        final int simulatorPort;
+        final int controllerPort;
+        final int startingSet;
+
+        AbstractController controller;
+        volatile DirectConnection simulator;
+        volatile Process planner;
+
+        Instance(int index) {
+            this.index = index;
+            this.simulatorPort = startPort + index;
+            this.controllerPort = startPort + instances + index;
+
+            if (mode == Config.SimulationMode.TESTING) {
+                startingSet = trainingSet;
+            } else {
+                startingSet = (index + startingInstance) % NUM_SETS;
+            }
+        }
+    }
+
+    public InstanceOrchestrator(ControllerFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Boots all instances and starts supervising them
+     */
+    public void start() throws InterruptedException {
+        running = true;
+
+        for (int i = 0; i < instances; ++i) {
+            instanceList.add(new Instance(i));
+        }
+
+        ExecutorService bootExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(BOOT_PARALLELISM, instances)));
+        List<Future<Boolean>> boots = new ArrayList<>();
+        for (Instance instance : instanceList) {
+            boots.add(bootExecutor.submit(() -> bootSimulator(instance, instance.startingSet)));
+        }
+        for (Future<Boolean> boot : boots) {
+            try {
+                boot.get();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        bootExecutor.shutdown();
+
+        if (sweep && mode == Config.SimulationMode.TESTING) {
+            sweepScheduler = new SweepScheduler(type, instances, sweepCheckpoint == null ? null : new File(sweepCheckpoint));
+        }
+
+        System.out.print("Start Path planner ...\n");
+
+        for (Instance instance : instanceList) {
+            System.out.println("Start controller " + (instance.index + 1));
+            instance.controller = factory.create();
+            instance.controller.obstaclePosition = obstaclePosition;
+            instance.controller.sweep = sweepScheduler;
+            instance.controller.sweepWorker = instance.index;
+            try {
+                boolean isHeadless = headless || (instance.index > 5);
+                instance.controller.initController(param1, param2, instance.simulatorPort, instance.controllerPort, mode, type, instance.startingSet, isHeadless);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        for (Instance instance : instanceList) {
+            Thread t = new Thread(() -> superviseSimulator(instance), "Simulator supervisor " + (instance.index + 1));
+            t.setDaemon(true);
+            t.start();
+
+            if (plannerCommand != null) {
+                t = new Thread(() -> supervisePlanner(instance), "Planner supervisor " + (instance.index + 1));
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+    }
+
+    /**
+     * Waits until all scenes of the sweep are completed
+     */
+    public void awaitSweep() throws InterruptedException {
+        if (sweepScheduler != null) {
+            sweepScheduler.awaitCompletion();
+        }
+    }
+
+    /**
+     * Stops supervising, terminates the simulators and planners and
+     * writes the pending results of the controllers
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        for (Instance instance : instanceList) {
+            Process planner = instance.planner;
+            if (planner != null) {
+                planner.destroy();
+            }
+
+            DirectConnection simulator = instance.simulator;
+            if (simulator != null) {
+                simulator.stop();
+            }
+
+            if (instance.controller != null) {
+                instance.controller.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the simulator of the instance and waits until it is ready.
+     * Retries if it does not get ready in time, after the simulator that
+     * was too slow has been shut down.
+     * @param trainingSet Scenario the simulator starts with
+     * @return Whether the simulator was started
+     */
+    boolean bootSimulator(Instance instance, int trainingSet) throws InterruptedException {
+        while (running) {
+            System.out.println("Starting instance " + (instance.index + 1) + " ...");
+
+            List<String> args = new ArrayList<>(Arrays.asList(String.valueOf(param1), String.valueOf(param2),
+                    String.valueOf(instance.simulatorPort), String.valueOf(trainingSet), obstaclePosition.name(), mode.name(), type.name()));
+            if (physicsThreading != null) {
+                args.add(physicsThreading.name());
+            }
+            Simulator simulator;
+            synchronized (LAUNCH_LOCK) {
+                simulator = Simulator.launch(args.toArray(new String[0]));
+            }
+
+            if (simulator != null) {
+                DirectConnection connection = DirectConnection.await(instance.simulatorPort, BOOT_TIMEOUT);
+                if (connection != null) {
+                    instance.simulator = connection;
+                    System.out.println("Done. Instance " + (instance.index + 1) + " started.");
+                    return true;
+                }
+
+                // the slow simulator must not bind the port after the new one
+                System.err.println("Instance " + (instance.index + 1) + " did not start within " + BOOT_TIMEOUT + " ms, shutting it down");
+                simulator.stop(true);
+            }
+
+            System.err.println("Retrying instance " + (instance.index + 1));
+            Thread.sleep(RESTART_DELAY);
+        }
+        return false;
+    }
+
+    /**
+     * Restarts the simulator of the instance whenever it shuts down and
+     * reconnects the controller to it
+     */
+    void superviseSimulator(Instance instance) {
+        try {
+            while (running) {
+                instance.simulator.awaitShutdown();
+                if (!running) {
+                    return;
+                }
+
+                System.err.println("Simulator of instance " + (instance.index + 1) + " stopped, restarting");
+                Thread.sleep(RESTART_DELAY);
+
+                // continue with the scenario the controller is in
+                if (bootSimulator(instance, instance.controller.TRAINING_SET)) {
+                    instance.controller.reconnect(instance.simulator);
+                }
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts the planner of the instance and restarts it whenever it exits
+     */
+    void supervisePlanner(Instance instance) {
+        try {
+            while (running) {
+                try {
+                    ProcessBuilder pb = new ProcessBuilder(plannerCommand, String.valueOf(instance.controllerPort));
+                    Process process = pb.start();
+                    instance.planner = process;
+
+                    forward(process.getInputStream(), null);
+                    forward(process.getErrorStream(), System.err);
+
+                    int exitValue = process.waitFor();
+                    if (!running) {
+                        return;
+                    }
+                    System.err.println("Planner of instance " + (instance.index + 1) + " exited with " + exitValue + ", restarting");
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+
+                Thread.sleep(RESTART_DELAY);
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the output of a planner, so it never blocks on a full pipe
+     * @param stream Output of the planner
+     * @param target Where the lines are printed to, null to discard them
+     */
+    static void forward(InputStream stream, PrintStream target) {
+        Thread t = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (target != null) {
+                        target.println(line);
+                    }
+                }
+            } catch (IOException e) {
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+}
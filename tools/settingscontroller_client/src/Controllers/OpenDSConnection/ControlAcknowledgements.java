@@ -0,0 +1,112 @@
+package settingscontroller_client.src.Controllers.OpenDSConnection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Keeps track of the control commands sent to OpenDS and their acknowledgements **/
+public class ControlAcknowledgements {
+
+    /**
+     * Maximum time to wait for OpenDS to acknowledge a control command
+     */
+    public static final long ACK_TIMEOUT = 5000;
+
+    /**
+     * Id of the last control command sent to OpenDS
+     */
+    private int lastRequestId = 0;
+
+    /**
+     * Id of the last control command OpenDS has applied
+     */
+    private int lastAcknowledgedId = 0;
+
+    /**
+     * Lock to guard the request ids
+     */
+    private final ReentrantLock idLock = new ReentrantLock();
+
+    /**
+     * Condition that is signaled if a control command was acknowledged
+     */
+    private final Condition acknowledgedCondition = idLock.newCondition();
+
+    /**
+     * Reserves the id for the next control command
+     * @return The id to send along with the command
+     */
+    public int nextRequestId() {
+        idLock.lock();
+        try {
+            return ++lastRequestId;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    /**
+     * @return The id of the last control command sent to OpenDS
+     */
+    public int getLastRequestId() {
+        idLock.lock();
+        try {
+            return lastRequestId;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    /**
+     * Marks the given control command (and all commands sent before it)
+     * as applied by OpenDS
+     * @param requestId Id of the acknowledged command
+     */
+    public void acknowledge(int requestId) {
+        idLock.lock();
+        try {
+            if (requestId > lastAcknowledgedId) {
+                lastAcknowledgedId = requestId;
+                acknowledgedCondition.signalAll();
+            }
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether state information was sampled before OpenDS applied
+     * the last control command
+     * @param acknowledgedRequestId Id of the last command applied when the state was sampled
+     * @return Whether the state is outdated
+     */
+    public boolean isStale(int acknowledgedRequestId) {
+        return acknowledgedRequestId < getLastRequestId();
+    }
+
+    /**
+     * Waits until OpenDS acknowledged the given control command
+     * @param requestId Id of the command to wait for
+     * @param timeout Maximum time to wait in ms
+     * @return Whether the command was acknowledged in time
+     */
+    public boolean await(int requestId, long timeout) {
+        long nanosLeft = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        idLock.lock();
+        try {
+            while (lastAcknowledgedId < requestId) {
+                if (nanosLeft <= 0) {
+                    return false;
+                }
+                nanosLeft = acknowledgedCondition.awaitNanos(nanosLeft);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            idLock.unlock();
+        }
+    }
+}
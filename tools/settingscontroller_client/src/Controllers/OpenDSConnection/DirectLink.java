@@ -0,0 +1,101 @@
+package settingscontroller_client.src.Controllers.OpenDSConnection;
+
+import eu.opends.settingsController.DirectConnection;
+import settingscontroller_client.src.Controllers.AbstractController;
+
+/**
+ * In-process connection to an OpenDS instance running in the same JVM.
+ * Every command is applied directly, then the simulator is run for one
+ * interval and the new state is handed to the controller, like the
+ * synchronous mode of the settings controller does over the socket.
+ */
+public class DirectLink implements OpenDSLink {
+
+    private final DirectConnection connection;
+    private final AbstractController abstractController;
+
+    /**
+     * Interval to run the simulator for after each command in ms
+     */
+    private int interval = 0;
+
+    public DirectLink(DirectConnection connection, AbstractController abstractController) {
+        this.connection = connection;
+        this.abstractController = abstractController;
+    }
+
+    @Override
+    public void sendInit(int interval) {
+        this.interval = interval;
+        connection.drive(0, 0f, 0f);
+        step();
+    }
+
+    @Override
+    public void drive(float steering, float acceleration, float braking, float targetSpeed) {
+        connection.drive(steering, acceleration, braking);
+        step();
+    }
+
+    @Override
+    public void sendReset() {
+        acknowledge();
+        connection.resetCar();
+        step();
+    }
+
+    @Override
+    public void sendSceneReset() {
+        acknowledge();
+        connection.resetScene();
+        step();
+    }
+
+    @Override
+    public void sendNextScene() {
+        acknowledge();
+        connection.nextScene();
+        step();
+    }
+
+    @Override
+    public void sendScene(float param1, float param2) {
+        acknowledge();
+        connection.setScene(param1, param2);
+        step();
+    }
+
+    @Override
+    public void sendNextScenario(int trainingSet) {
+        acknowledge();
+        connection.nextScenario(trainingSet);
+        step();
+    }
+
+    /**
+     * Commands are applied synchronously, so they are acknowledged right away
+     */
+    private void acknowledge() {
+        abstractController.acknowledgements.acknowledge(abstractController.acknowledgements.nextRequestId());
+    }
+
+    /**
+     * Runs the simulator for one interval and hands the new state to the controller
+     */
+    private void step() {
+        try {
+            connection.advance(interval);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        SubscribedValues values = connection.sample();
+        values.acknowledgedRequestId = abstractController.acknowledgements.getLastRequestId();
+        abstractController.obstacle = values.obstacle;
+
+        // states outside of the map are delivered as well, nobody would step the
+        // simulator otherwise. The controller resets the car in that case.
+        abstractController.setSubscribedValues(values);
+    }
+}
@@ -23,6 +23,7 @@ public class MessageBuilder {
                         "  <Event Name=\"Subscribe\">/root/thisVehicle/physicalAttributes/Properties/speed</Event>\n" +
                         "  <Event Name=\"Subscribe\">/root/thisVehicle/physicalAttributes/Properties/isCrossing</Event>\n" +
                         "  <Event Name=\"Subscribe\">/root/obstacles/obstacle1/props</Event>\n" +
+                        "  <Event Name=\"Subscribe\">/root/thisVehicle/sensors/rangeSensor/Properties/ranges</Event>\n" +
                         "  <Event Name=\"SetUpdateInterval\">" + interval + "</Event>\n" +
                         "  <Event Name=\"EstablishConnection\"/>\n" +
                         "</Message>\n";
@@ -50,34 +51,34 @@ public class MessageBuilder {
                 "</Message>\n";
     }
 
-    public static String buildResetMessage() {
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "<Message>\n" +
-                "  <Event Name=\"SetVehicleControl\">RESET_CAR</Event>\n" +
-                "  <Event Name=\"EstablishConnection\"/>\n" +
-                "</Message>\n";
+    public static String buildResetMessage(int requestId) {
+        return buildControlMessage("RESET_CAR", requestId);
     }
 
-    public static String buildSceneResetMessage() {
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "<Message>\n" +
-                "  <Event Name=\"SetVehicleControl\">RESET_SCENE</Event>\n" +
-                "  <Event Name=\"EstablishConnection\"/>\n" +
-                "</Message>\n";
+    public static String buildSceneResetMessage(int requestId) {
+        return buildControlMessage("RESET_SCENE", requestId);
     }
 
-    public static String buildNextSceneMessage() {
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "<Message>\n" +
-                "  <Event Name=\"SetVehicleControl\">NEXT_SCENE</Event>\n" +
-                "  <Event Name=\"EstablishConnection\"/>\n" +
-                "</Message>\n";
+    public static String buildNextSceneMessage(int requestId) {
+        return buildControlMessage("NEXT_SCENE", requestId);
+    }
+
+    public static String buildSetSceneMessage(float param1, float param2, int requestId) {
+        return buildControlMessage("SET_SCENE " + param1 + " " + param2, requestId);
+    }
+
+    public static String buildNextScenarioMessage(int id, int requestId) {
+        return buildControlMessage("NEXT_SCENARIO " + id, requestId);
     }
 
-    public static String buildNextScenarioMessage(int id) {
+    /**
+     * Builds a control command that is acknowledged by OpenDS with the given
+     * request id once it has been applied
+     */
+    static String buildControlMessage(String command, int requestId) {
         return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
                 "<Message>\n" +
-                "  <Event Name=\"SetVehicleControl\">NEXT_SCENARIO " + id +  "</Event>\n" +
+                "  <Event Name=\"SetVehicleControl\" RequestID=\"" + requestId + "\">" + command + "</Event>\n" +
                 "  <Event Name=\"EstablishConnection\"/>\n" +
                 "</Message>\n";
     }
@@ -5,13 +5,14 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import settingscontroller_client.src.Controllers.AbstractController;
-import settingscontroller_client.src.Controllers.HybridController;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.DataInputStream;
 import java.io.StringReader;
 import java.net.SocketException;
+import java.util.LinkedList;
+import java.util.List;
 
 import static settingscontroller_client.src.Controllers.OpenDSConnection.SubscribedValues.parseSubscribedValues;
 import static settingscontroller_client.src.Parameters.map_height;
@@ -26,19 +27,28 @@ public class MessageReceiver implements Runnable {
     byte[] buf = new byte[1024];
     String bufferedString = "";
 
+    volatile boolean running = true;
+
     public MessageReceiver(DataInputStream in, AbstractController abstractController){
         this.in = in;
         this.abstractController = abstractController;
     }
 
+    /**
+     * Stops receiving, e.g. after the controller was connected to a restarted simulator
+     */
+    public void stop() {
+        running = false;
+    }
+
     @Override
     public void run() {
-        while (true) {
+        while (running) {
             try {
-                String messageValue = "";
+                List<String> messageValues = new LinkedList<>();
 
                 try {
-                    while (true) {
+                    while (running) {
                         int nAvailable = in.available();
 
                         if (nAvailable > 0) {
@@ -52,9 +62,20 @@ public class MessageReceiver implements Runnable {
                             String contentRead = new String(buf, 0, nRead);
                             bufferedString += contentRead;
                         } else {
-                            if (bufferedString.trim().endsWith("</Message>")) {
-                                messageValue = bufferedString.substring(bufferedString.lastIndexOf("<Message>"));
-                                bufferedString = "";
+                            // acknowledgements must not be dropped, so every complete message is processed
+                            int messageEnd;
+                            while ((messageEnd = bufferedString.indexOf("</Message>")) != -1) {
+                                messageEnd += "</Message>".length();
+                                String message = bufferedString.substring(0, messageEnd);
+                                bufferedString = bufferedString.substring(messageEnd);
+
+                                int messageStart = message.lastIndexOf("<Message>");
+                                if (messageStart != -1) {
+                                    messageValues.add(message.substring(messageStart));
+                                }
+                            }
+
+                            if (!messageValues.isEmpty()) {
                                 break;
                             }
                             Thread.sleep(50);
@@ -65,26 +86,8 @@ public class MessageReceiver implements Runnable {
                     break;
                 }
 
-                if (!messageValue.equals("")) {
-                    Document document = loadXMLFromString(messageValue);
-                    document.getDocumentElement().normalize();
-
-                    Element rootElement = document.getDocumentElement();
-                    if (rootElement.getTagName().equals("Message")) {
-                        NodeList eventList = rootElement.getElementsByTagName("Event");
-                        if (eventList.getLength() > 0) {
-                            Element event = (Element) eventList.item(0);
-                            if (event.getAttribute("Name").equals("SubscribedValues")) {
-                                SubscribedValues parsedValue = parseSubscribedValues(event);
-                                abstractController.obstacle = parsedValue.obstacle;
-
-                                if (parsedValue != null && (parsedValue.x > 0 && parsedValue.z > 0 && parsedValue.x < map_width && parsedValue.z < map_height)) {
-                                    abstractController.setSubscribedValues(parsedValue);
-                                }
-                            }
-                        }
-
-                    }
+                for (String messageValue : messageValues) {
+                    processMessage(messageValue);
                 }
 
             } catch (Exception e) {
@@ -93,6 +96,36 @@ public class MessageReceiver implements Runnable {
         }
     }
 
+    /**
+     * Processes a single message sent by OpenDS
+     */
+    void processMessage(String messageValue) throws Exception {
+        Document document = loadXMLFromString(messageValue);
+        document.getDocumentElement().normalize();
+
+        Element rootElement = document.getDocumentElement();
+        if (!rootElement.getTagName().equals("Message")) {
+            return;
+        }
+
+        NodeList eventList = rootElement.getElementsByTagName("Event");
+        for (int i = 0; i < eventList.getLength(); ++i) {
+            Element event = (Element) eventList.item(i);
+            String eventName = event.getAttribute("Name");
+
+            if (eventName.equals("UpdateVehicleControl") && !event.getAttribute("RequestID").isEmpty()) {
+                abstractController.acknowledgements.acknowledge(Integer.parseInt(event.getAttribute("RequestID")));
+            } else if (i == 0 && eventName.equals("SubscribedValues")) {
+                SubscribedValues parsedValue = parseSubscribedValues(event);
+                abstractController.obstacle = parsedValue.obstacle;
+
+                if (parsedValue != null && (parsedValue.x > 0 && parsedValue.z > 0 && parsedValue.x < map_width && parsedValue.z < map_height)) {
+                    abstractController.setSubscribedValues(parsedValue);
+                }
+            }
+        }
+    }
+
     static Document loadXMLFromString(String xml) throws Exception {
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         DocumentBuilder builder = factory.newDocumentBuilder();
@@ -3,11 +3,8 @@ package settingscontroller_client.src.Controllers.OpenDSConnection;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.Random;
 
 import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageBuilder.*;
-import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageBuilder.buildNextScenarioMessage;
-import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageBuilder.buildSceneResetMessage;
 
 /** Sends messages to Opends **/
 public class MessageSender {
@@ -34,79 +31,51 @@ public class MessageSender {
     /**
      * Continues to the next scene
      */
-    public static void sendNextSceneMessage(OutputStream out) {
-        byte[] msg;
-        try {
-            msg = buildNextSceneMessage().getBytes("UTF-8");
-            out.write(msg);
-            out.flush();
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return;
-        }
-        try {
-            Thread.sleep(50);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    public static void sendNextSceneMessage(OutputStream out, ControlAcknowledgements acknowledgements) {
+        int requestId = acknowledgements.nextRequestId();
+        sendControlMessage(out, buildNextSceneMessage(requestId), requestId, acknowledgements);
+    }
+
+    /**
+     * Switch to the scene with the given parameters
+     */
+    public static void sendSetSceneMessage(OutputStream out, float param1, float param2, ControlAcknowledgements acknowledgements) {
+        int requestId = acknowledgements.nextRequestId();
+        sendControlMessage(out, buildSetSceneMessage(param1, param2, requestId), requestId, acknowledgements);
     }
 
     /**
      * Resets the car position
      */
-    public static void sendResetMessage(OutputStream out) {
-        byte[] msg;
-        try {
-            msg = buildResetMessage().getBytes("UTF-8");
-            out.write(msg);
-            out.flush();
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return;
-        }
-        try {
-            Thread.sleep(50);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    public static void sendResetMessage(OutputStream out, ControlAcknowledgements acknowledgements) {
+        int requestId = acknowledgements.nextRequestId();
+        sendControlMessage(out, buildResetMessage(requestId), requestId, acknowledgements);
     }
 
     /**
      * Resets the current scene
      */
-    public static void sendSceneResetMessage(OutputStream out) {
-        byte[] msg;
-        try {
-            msg = buildSceneResetMessage().getBytes("UTF-8");
-            out.write(msg);
-            out.flush();
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return;
-        }
-        try {
-            Thread.sleep(50);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    public static void sendSceneResetMessage(OutputStream out, ControlAcknowledgements acknowledgements) {
+        int requestId = acknowledgements.nextRequestId();
+        sendControlMessage(out, buildSceneResetMessage(requestId), requestId, acknowledgements);
     }
 
     /**
      * Switch to the next scenario represented by TRAINING_SET
      */
-    public static void sendNextScenarioMessage(OutputStream out, int TRAINING_SET) {
+    public static void sendNextScenarioMessage(OutputStream out, int TRAINING_SET, ControlAcknowledgements acknowledgements) {
+        int requestId = acknowledgements.nextRequestId();
+        sendControlMessage(out, buildNextScenarioMessage(TRAINING_SET, requestId), requestId, acknowledgements);
+    }
+
+    /**
+     * Sends a control command and waits until OpenDS acknowledges
+     * that it has been applied
+     */
+    static void sendControlMessage(OutputStream out, String message, int requestId, ControlAcknowledgements acknowledgements) {
         byte[] msg;
         try {
-            msg = buildNextScenarioMessage(TRAINING_SET).getBytes("UTF-8");
+            msg = message.getBytes("UTF-8");
             out.write(msg);
             out.flush();
         } catch (UnsupportedEncodingException e) {
@@ -116,10 +85,9 @@ public class MessageSender {
             e.printStackTrace();
             return;
         }
-        try {
-            Thread.sleep(10);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+
+        if (!acknowledgements.await(requestId, ControlAcknowledgements.ACK_TIMEOUT)) {
+            System.err.println("Control command " + requestId + " was not acknowledged by OpenDS.");
         }
     }
 
@@ -0,0 +1,31 @@
+package settingscontroller_client.src.Controllers.OpenDSConnection;
+
+import java.io.IOException;
+
+/** Connection of a car controller to its OpenDS instance **/
+public interface OpenDSLink {
+
+    /**
+     * Starts the simulation
+     * @param interval Interval to send the state in ms
+     */
+    void sendInit(int interval);
+
+    /**
+     * Sets the controls of the car
+     */
+    void drive(float steering, float acceleration, float braking, float targetSpeed) throws IOException;
+
+    void sendReset();
+
+    void sendSceneReset();
+
+    void sendNextScene();
+
+    /**
+     * Switches to the scene with the given parameters instead of the next scene of the grid
+     */
+    void sendScene(float param1, float param2);
+
+    void sendNextScenario(int trainingSet);
+}
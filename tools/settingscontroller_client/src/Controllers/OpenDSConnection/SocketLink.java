@@ -0,0 +1,55 @@
+package settingscontroller_client.src.Controllers.OpenDSConnection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageBuilder.buildMessage;
+import static settingscontroller_client.src.Controllers.OpenDSConnection.MessageSender.*;
+
+/** Connection to OpenDS through the XML protocol of the settings controller **/
+public class SocketLink implements OpenDSLink {
+
+    private final OutputStream out;
+    private final ControlAcknowledgements acknowledgements;
+
+    public SocketLink(OutputStream out, ControlAcknowledgements acknowledgements) {
+        this.out = out;
+        this.acknowledgements = acknowledgements;
+    }
+
+    @Override
+    public void sendInit(int interval) {
+        sendInitMessage(out, interval);
+    }
+
+    @Override
+    public void drive(float steering, float acceleration, float braking, float targetSpeed) throws IOException {
+        out.write(buildMessage("drivingCar", steering, acceleration, braking, targetSpeed).getBytes("UTF-8"));
+        out.flush();
+    }
+
+    @Override
+    public void sendReset() {
+        sendResetMessage(out, acknowledgements);
+    }
+
+    @Override
+    public void sendSceneReset() {
+        sendSceneResetMessage(out, acknowledgements);
+    }
+
+    @Override
+    public void sendNextScene() {
+        sendNextSceneMessage(out, acknowledgements);
+    }
+
+    @Override
+    public void sendScene(float param1, float param2) {
+        sendSetSceneMessage(out, param1, param2, acknowledgements);
+    }
+
+    @Override
+    public void sendNextScenario(int trainingSet) {
+        sendNextScenarioMessage(out, trainingSet, acknowledgements);
+    }
+}
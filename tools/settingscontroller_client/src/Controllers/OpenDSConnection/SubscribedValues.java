@@ -50,6 +50,16 @@ public class SubscribedValues {
      */
     public boolean isCrossing = true;
 
+    /**
+     * Id of the last control command OpenDS had applied when sampling this state
+     */
+    public int acknowledgedRequestId = 0;
+
+    /**
+     * Distances (in meters) measured by the range sensor of the car, null if the sensor is disabled
+     */
+    public float[] ranges = null;
+
     /** Creates the state objects manually from partial information **/
     public SubscribedValues(double orientation, double x, double z, double speed) {
         float adjustedAngle = (float) (orientation + 90) % 360;
@@ -133,7 +143,23 @@ public class SubscribedValues {
             }
         }
 
-        return new SubscribedValues(orientation, x, z, speed, pedestrians, obstacle, isCrossing);
+        SubscribedValues subscribedValues = new SubscribedValues(orientation, x, z, speed, pedestrians, obstacle, isCrossing);
+
+        Element rangesElement = (Element) vehicleNode.getElementsByTagName("ranges").item(0);
+        if (rangesElement != null && !rangesElement.getTextContent().isEmpty()) {
+            String[] rangeValues = rangesElement.getTextContent().split(",");
+            subscribedValues.ranges = new float[rangeValues.length];
+            for (int j = 0; j < rangeValues.length; ++j) {
+                subscribedValues.ranges[j] = Float.parseFloat(rangeValues[j]);
+            }
+        }
+
+        String requestId = eventNode.getAttribute("RequestID");
+        if (!requestId.isEmpty()) {
+            subscribedValues.acknowledgedRequestId = Integer.parseInt(requestId);
+        }
+
+        return subscribedValues;
     }
 
     @Override
@@ -0,0 +1,164 @@
+package settingscontroller_client.src.Controllers;
+
+import eu.opends.settingsController.DirectConnection;
+import settingscontroller_client.src.Util.ObservationMessage;
+import settingscontroller_client.src.Util.PolicyConnection;
+import settingscontroller_client.src.Util.SpscHandoff;
+
+/**
+ * Vectorized environment over several OpenDS instances running in this JVM.
+ * Each controller steps its simulator in-process (see {@link DirectConnection})
+ * and exchanges observations and actions with this class instead of a
+ * policy socket. All environments are stepped in lockstep: every
+ * controller works on its own action in parallel and {@link #step(String[])}
+ * returns once all of them delivered their next observation.
+ *
+ * Usage: create the environment with the controllers and the settings
+ * controller ports of their simulators, call initController on every
+ * controller, then reset all environments once before stepping them.
+ * reset and step must always be called from the same thread.
+ */
+public class VectorEnvironment {
+
+    /**
+     * Observations of the environments after a reset or step
+     */
+    public static class Step {
+        /**
+         * Environments the results belong to
+         */
+        public final int[] ids;
+        public final ObservationMessage[] messages;
+        public final double[][] observations;
+        public final double[] rewards;
+        public final boolean[] dones;
+
+        Step(int[] ids) {
+            this.ids = ids;
+            messages = new ObservationMessage[ids.length];
+            observations = new double[ids.length][];
+            rewards = new double[ids.length];
+            dones = new boolean[ids.length];
+        }
+
+        void set(int index, ObservationMessage message) {
+            messages[index] = message;
+            observations[index] = message.getObservation();
+            rewards[index] = message.getReward();
+            dones[index] = message.isTerminal();
+        }
+    }
+
+    /**
+     * Policy connection of a single environment
+     */
+    private static class Channel implements PolicyConnection {
+        final SpscHandoff<ObservationMessage> observations = new SpscHandoff<>(SpscHandoff.Mode.QUEUE, 4);
+        final SpscHandoff<String> actions = new SpscHandoff<>(SpscHandoff.Mode.QUEUE, 4);
+
+        /**
+         * Whether the first observation of the environment was received
+         */
+        boolean started = false;
+
+        @Override
+        public void sendMessage(ObservationMessage message) {
+            observations.offer(message);
+        }
+
+        @Override
+        public String receiveMessage() {
+            return actions.take();
+        }
+
+        @Override
+        public boolean connected() {
+            return true;
+        }
+    }
+
+    private final Channel[] channels;
+
+    /**
+     * Attaches the controllers to their simulators and to this environment.
+     * Waits until all simulators are started.
+     * @param controllers Controllers that are not initialized yet
+     * @param simulatorPorts Settings controller ports of the simulators of the controllers
+     */
+    public VectorEnvironment(AbstractController[] controllers, int[] simulatorPorts) throws InterruptedException {
+        channels = new Channel[controllers.length];
+
+        for (int i = 0; i < controllers.length; ++i) {
+            channels[i] = new Channel();
+            controllers[i].pythonConnector = channels[i];
+            controllers[i].directConnection = DirectConnection.await(simulatorPorts[i]);
+        }
+    }
+
+    /**
+     * @return Number of environments
+     */
+    public int size() {
+        return channels.length;
+    }
+
+    /**
+     * Resets the given environments
+     * @param ids Environments to reset
+     * @return The first observations after the reset
+     */
+    public Step reset(int... ids) {
+        for (int id : ids) {
+            Channel channel = channels[id];
+            if (!channel.started) {
+                // the controller waits for an answer to its first observation
+                channel.observations.take();
+                channel.started = true;
+            }
+            channel.actions.offer("RESET");
+        }
+
+        Step step = new Step(ids);
+        for (int i = 0; i < ids.length; ++i) {
+            step.set(i, channels[ids[i]].observations.take());
+        }
+        return step;
+    }
+
+    /**
+     * Resets all environments
+     */
+    public Step resetAll() {
+        int[] ids = new int[channels.length];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = i;
+        }
+        return reset(ids);
+    }
+
+    /**
+     * Executes one action in every environment
+     * @param actions Actions in the format the controllers expect from the policy
+     * @return The observations after the actions were executed
+     */
+    public Step step(String[] actions) {
+        if (actions.length != channels.length) {
+            throw new IllegalArgumentException("Expected " + channels.length + " actions, got " + actions.length);
+        }
+
+        int[] ids = new int[channels.length];
+        for (int i = 0; i < channels.length; ++i) {
+            if (!channels[i].started) {
+                throw new IllegalStateException("Environment " + i + " has to be reset first");
+            }
+            ids[i] = i;
+            channels[i].actions.offer(actions[i]);
+        }
+
+        Step step = new Step(ids);
+        for (int i = 0; i < channels.length; ++i) {
+            step.set(i, channels[i].observations.take());
+        }
+        return step;
+    }
+}
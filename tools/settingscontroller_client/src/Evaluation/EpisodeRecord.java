@@ -0,0 +1,175 @@
+package settingscontroller_client.src.Evaluation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Result of one evaluated episode together with the parameters of the
+ * scenario it was run in. Written by the {@link ResultsSink} and read
+ * by the {@link ResultsAggregator}.
+ */
+public class EpisodeRecord {
+
+    /**
+     * Column names of the CSV format
+     */
+    public static final String HEADER = "port,mode,type,trainingSet,obstaclePosition,obstacleX,obstacleZ,"
+            + "speedIndex,distanceIndex,zigZagLength,zigZagAngle,distanceToFirstPed,delay,"
+            + "crashes,nearMisses,accelerations,totalAngle,timeTaken,maxImpactSpeed";
+
+    /* Scenario */
+    public int port;
+    public Config.SimulationMode mode;
+    public Config.ExperimentType type;
+    public int trainingSet;
+    public ScenarioConfig.ObstaclePositions obstaclePosition = ScenarioConfig.ObstaclePositions.NONE;
+
+    /**
+     * Position of the obstacle in map coordinates, NaN without obstacle
+     */
+    public float obstacleX = Float.NaN;
+    public float obstacleZ = Float.NaN;
+
+    public int speedIndex;
+    public int distanceIndex;
+    public float zigZagLength;
+    public float zigZagAngle;
+    public float distanceToFirstPed;
+    public float delay;
+
+    /* Evaluation measures */
+    public int crashes;
+    public int nearMisses;
+    public int accelerations;
+    public long totalAngle;
+    public int timeTaken;
+    public double maxImpactSpeed;
+
+    /**
+     * Copies the evaluation measures of the sequence into the record
+     * @param sequence The evaluated sequence
+     */
+    public void setMeasures(SimulationSequence sequence) {
+        crashes = sequence.getCrashes();
+        nearMisses = sequence.getNearMisses();
+        accelerations = sequence.getAccelerations();
+        totalAngle = sequence.getTotalAngle();
+        timeTaken = sequence.getTimeTaken();
+        maxImpactSpeed = sequence.getMaxImpactSpeed();
+    }
+
+    /**
+     * @return The record as one line of the CSV format
+     */
+    public String toCSV() {
+        return port + "," + mode + "," + type + "," + trainingSet + "," + obstaclePosition + ","
+                + obstacleX + "," + obstacleZ + ","
+                + speedIndex + "," + distanceIndex + "," + zigZagLength + "," + zigZagAngle + ","
+                + distanceToFirstPed + "," + delay + ","
+                + crashes + "," + nearMisses + "," + accelerations + "," + totalAngle + ","
+                + timeTaken + "," + maxImpactSpeed;
+    }
+
+    /**
+     * Parses a line of the CSV format
+     * @param line The line without the line break
+     * @return The record
+     */
+    public static EpisodeRecord fromCSV(String line) {
+        String[] columns = line.split(",");
+        if (columns.length != 19) {
+            throw new IllegalArgumentException("Expected 19 columns: " + line);
+        }
+
+        EpisodeRecord record = new EpisodeRecord();
+        record.port = Integer.parseInt(columns[0]);
+        record.mode = Config.SimulationMode.valueOf(columns[1]);
+        record.type = Config.ExperimentType.valueOf(columns[2]);
+        record.trainingSet = Integer.parseInt(columns[3]);
+        record.obstaclePosition = ScenarioConfig.ObstaclePositions.valueOf(columns[4]);
+        record.obstacleX = Float.parseFloat(columns[5]);
+        record.obstacleZ = Float.parseFloat(columns[6]);
+        record.speedIndex = Integer.parseInt(columns[7]);
+        record.distanceIndex = Integer.parseInt(columns[8]);
+        record.zigZagLength = Float.parseFloat(columns[9]);
+        record.zigZagAngle = Float.parseFloat(columns[10]);
+        record.distanceToFirstPed = Float.parseFloat(columns[11]);
+        record.delay = Float.parseFloat(columns[12]);
+        record.crashes = Integer.parseInt(columns[13]);
+        record.nearMisses = Integer.parseInt(columns[14]);
+        record.accelerations = Integer.parseInt(columns[15]);
+        record.totalAngle = Long.parseLong(columns[16]);
+        record.timeTaken = Integer.parseInt(columns[17]);
+        record.maxImpactSpeed = Double.parseDouble(columns[18]);
+        return record;
+    }
+
+    /**
+     * Writes the record in the binary format (fixed size, enums by ordinal)
+     */
+    public void writeBinary(DataOutput out) throws IOException {
+        out.writeInt(port);
+        out.writeByte(mode.ordinal());
+        out.writeByte(type.ordinal());
+        out.writeInt(trainingSet);
+        out.writeByte(obstaclePosition.ordinal());
+        out.writeFloat(obstacleX);
+        out.writeFloat(obstacleZ);
+        out.writeInt(speedIndex);
+        out.writeInt(distanceIndex);
+        out.writeFloat(zigZagLength);
+        out.writeFloat(zigZagAngle);
+        out.writeFloat(distanceToFirstPed);
+        out.writeFloat(delay);
+        out.writeInt(crashes);
+        out.writeInt(nearMisses);
+        out.writeInt(accelerations);
+        out.writeLong(totalAngle);
+        out.writeInt(timeTaken);
+        out.writeDouble(maxImpactSpeed);
+    }
+
+    /**
+     * Reads a record of the binary format
+     */
+    public static EpisodeRecord readBinary(DataInput in) throws IOException {
+        EpisodeRecord record = new EpisodeRecord();
+        record.port = in.readInt();
+        record.mode = Config.SimulationMode.values()[in.readByte()];
+        record.type = Config.ExperimentType.values()[in.readByte()];
+        record.trainingSet = in.readInt();
+        record.obstaclePosition = ScenarioConfig.ObstaclePositions.values()[in.readByte()];
+        record.obstacleX = in.readFloat();
+        record.obstacleZ = in.readFloat();
+        record.speedIndex = in.readInt();
+        record.distanceIndex = in.readInt();
+        record.zigZagLength = in.readFloat();
+        record.zigZagAngle = in.readFloat();
+        record.distanceToFirstPed = in.readFloat();
+        record.delay = in.readFloat();
+        record.crashes = in.readInt();
+        record.nearMisses = in.readInt();
+        record.accelerations = in.readInt();
+        record.totalAngle = in.readLong();
+        record.timeTaken = in.readInt();
+        record.maxImpactSpeed = in.readDouble();
+        return record;
+    }
+
+    /**
+     * Key of the scenario the episode was run in. Episodes of different
+     * instances and trials of the same scenario share the key.
+     */
+    public String scenarioKey() {
+        String key = mode + "," + type + "," + trainingSet + "," + obstaclePosition + ",";
+        switch (type) {
+            case ZIGZAG_FOLLOW:
+                return key + "length=" + zigZagLength + " angle=" + zigZagAngle;
+            case MULTIPLE_PEDESTRIANS:
+                return key + "dist=" + distanceToFirstPed + " delay=" + delay;
+            default:
+                return key + "speedIndex=" + speedIndex + " distanceIndex=" + distanceIndex;
+        }
+    }
+}
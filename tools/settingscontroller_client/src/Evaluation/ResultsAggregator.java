@@ -0,0 +1,166 @@
+package settingscontroller_client.src.Evaluation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Merges the results files written by the {@link ResultsSink}s of all
+ * instances and summarizes the episodes per scenario. Files are read
+ * and aggregated in parallel.
+ *
+ * Usage: ResultsAggregator [-o output.csv] file-or-directory...
+ */
+public class ResultsAggregator {
+
+    /**
+     * Aggregated measures of the episodes of one scenario
+     */
+    public static class Summary {
+        long episodes = 0;
+        long crashEpisodes = 0;
+        long crashes = 0;
+        long nearMisses = 0;
+        long accelerations = 0;
+        long totalAngle = 0;
+        long timeTaken = 0;
+        double maxImpactSpeed = 0;
+
+        void add(EpisodeRecord record) {
+            ++episodes;
+            if (record.crashes > 0) {
+                ++crashEpisodes;
+            }
+            crashes += record.crashes;
+            nearMisses += record.nearMisses;
+            accelerations += record.accelerations;
+            totalAngle += record.totalAngle;
+            timeTaken += record.timeTaken;
+            maxImpactSpeed = Math.max(maxImpactSpeed, record.maxImpactSpeed);
+        }
+
+        Summary combine(Summary other) {
+            episodes += other.episodes;
+            crashEpisodes += other.crashEpisodes;
+            crashes += other.crashes;
+            nearMisses += other.nearMisses;
+            accelerations += other.accelerations;
+            totalAngle += other.totalAngle;
+            timeTaken += other.timeTaken;
+            maxImpactSpeed = Math.max(maxImpactSpeed, other.maxImpactSpeed);
+            return this;
+        }
+
+        static final String HEADER = "episodes,crashRate,crashes,nearMisses,accelerations,totalAngle,timeTaken,maxImpactSpeed";
+
+        String toCSV() {
+            return episodes + "," + (double) crashEpisodes / episodes + "," + (double) crashes / episodes + ","
+                    + (double) nearMisses / episodes + "," + (double) accelerations / episodes + ","
+                    + (double) totalAngle / episodes + "," + (double) timeTaken / episodes + "," + maxImpactSpeed;
+        }
+    }
+
+    /**
+     * Reads all records of a results file
+     * @param file CSV or binary results file
+     * @return The records of the file
+     */
+    public static List<EpisodeRecord> read(File file) {
+        List<EpisodeRecord> records = new ArrayList<>();
+
+        try {
+            if (file.getName().endsWith(".bin")) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                    while (true) {
+                        records.add(EpisodeRecord.readBinary(in));
+                    }
+                } catch (EOFException e) {
+                    // end of file, a record cut off by a crashed instance is dropped
+                }
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty() || line.startsWith("port,")) {
+                            continue;
+                        }
+                        try {
+                            records.add(EpisodeRecord.fromCSV(line));
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Skipping malformed line in " + file + ": " + line);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read " + file);
+            e.printStackTrace();
+        }
+
+        return records;
+    }
+
+    /**
+     * Summarizes the episodes of the given results files per scenario
+     * @param files Results files
+     * @return Summaries sorted by scenario key
+     */
+    public static SortedMap<String, Summary> aggregate(List<File> files) {
+        ConcurrentMap<String, Summary> summaries = files.parallelStream()
+                .flatMap(file -> read(file).stream())
+                .collect(Collectors.groupingByConcurrent(EpisodeRecord::scenarioKey,
+                        Collector.of(Summary::new, Summary::add, Summary::combine)));
+
+        return new TreeMap<>(summaries);
+    }
+
+    /**
+     * Collects the results files of the given files and directories
+     */
+    static List<File> collect(List<String> paths) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles((dir, name) -> name.endsWith(".csv") || name.endsWith(".bin"));
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                }
+            } else {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String output = null;
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else {
+                paths.add(args[i]);
+            }
+        }
+
+        if (paths.isEmpty()) {
+            System.err.println("Usage: ResultsAggregator [-o output.csv] file-or-directory...");
+            return;
+        }
+
+        SortedMap<String, Summary> summaries = aggregate(collect(paths));
+
+        try (PrintStream out = output == null ? new PrintStream(new FileOutputStream(FileDescriptor.out)) : new PrintStream(new FileOutputStream(output))) {
+            out.println("mode,type,trainingSet,obstaclePosition,scenario," + Summary.HEADER);
+            for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+                out.println(entry.getKey() + "," + entry.getValue().toCSV());
+            }
+        }
+    }
+}
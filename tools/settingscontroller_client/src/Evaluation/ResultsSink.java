@@ -0,0 +1,111 @@
+package settingscontroller_client.src.Evaluation;
+
+import settingscontroller_client.src.Util.SpscHandoff;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends the evaluated episodes of one controller to a results file.
+ * Records are handed to a writer thread, so the controller never waits
+ * for the disk. The file is flushed whenever no records are pending.
+ *
+ * Files with the extension ".bin" are written in the binary format of
+ * {@link EpisodeRecord}, all others as CSV with a header line.
+ */
+public class ResultsSink implements Runnable {
+
+    /**
+     * Marks the end of the records
+     */
+    private static final EpisodeRecord END = new EpisodeRecord();
+
+    private final SpscHandoff<EpisodeRecord> records = new SpscHandoff<>(SpscHandoff.Mode.QUEUE, 1024);
+    private final File file;
+    private final boolean binary;
+    private final Thread writerThread;
+
+    /**
+     * Whether the writer thread stopped because of an error
+     */
+    private volatile boolean failed = false;
+
+    /**
+     * Whether close() was called
+     */
+    private boolean closed = false;
+
+    /**
+     * Opens the results file for appending and starts the writer thread
+     * @param file The results file, created if it does not exist
+     */
+    public ResultsSink(File file) throws IOException {
+        this.file = file;
+        this.binary = file.getName().endsWith(".bin");
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        writerThread = new Thread(this, "ResultsSink " + file.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a record for writing. Records written after close() are dropped.
+     */
+    public synchronized void write(EpisodeRecord record) {
+        if (failed || closed) {
+            return;
+        }
+        records.offer(record);
+    }
+
+    /**
+     * Writes the pending records and stops the writer thread. May be called
+     * from another thread than write() and more than once.
+     */
+    public synchronized void close() throws InterruptedException {
+        if (!failed && !closed) {
+            records.offer(END);
+        }
+        closed = true;
+        writerThread.join();
+    }
+
+    @Override
+    public void run() {
+        boolean header = !binary && file.length() == 0;
+
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16)) {
+            DataOutputStream out = new DataOutputStream(stream);
+
+            if (header) {
+                stream.write((EpisodeRecord.HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            while (true) {
+                EpisodeRecord record = records.poll();
+                if (record == null) {
+                    stream.flush();
+                    record = records.take();
+                }
+                if (record == END) {
+                    break;
+                }
+
+                if (binary) {
+                    record.writeBinary(out);
+                } else {
+                    stream.write((record.toCSV() + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("Could not write results to " + file);
+            e.printStackTrace();
+        }
+    }
+}
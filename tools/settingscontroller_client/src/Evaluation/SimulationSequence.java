@@ -2,16 +2,12 @@ package settingscontroller_client.src.Evaluation;
 import settingscontroller_client.src.AccelerationType;
 import settingscontroller_client.src.TrafficObject.Pedestrian;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
 
 
 import static settingscontroller_client.src.AccelerationType.ACCELERATE;
 import static settingscontroller_client.src.AccelerationType.DECELLERATE;
-import static settingscontroller_client.src.AccelerationType.MAINTAIN;
 import static settingscontroller_client.src.Parameters.*;
 import static settingscontroller_client.src.Util.RectangleHITArea.isHIT;
 import static settingscontroller_client.src.Util.RectangleHITArea.isNearMiss;
@@ -19,52 +15,148 @@ import static settingscontroller_client.src.Util.RectangleHITArea.isNearMiss;
 /**
  * Represents the sequence of the POMDP created by the
  * car controllers in one scene. Captures relevant information of the
- * states and the actions.
+ * states and the actions column by column and updates the evaluation
+ * measures whenever a state or action is added.
  */
 public class SimulationSequence {
+
+    /**
+     * Growable column of primitive values
+     */
+    static class Column {
+        double[] values = new double[256];
+        int size = 0;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        double get(int i) {
+            return values[i];
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
     /**
-     * Sequence of states of the POMDP created by the controller
+     * Columns of the states of the POMDP created by the controller
      */
-    List<State> stateSequence = new LinkedList<>();
+    final Column orientations = new Column();
+    final Column xs = new Column();
+    final Column zs = new Column();
+    final Column speeds = new Column();
+    final Column targetSpeeds = new Column();
 
     /**
-     * Sequence of actions of the POMDP created by the controller
+     * Columns of the actions of the POMDP created by the controller
      */
-    List<Action> actionSequence = new LinkedList<>();
+    final Column angles = new Column();
+    final Column accelerationTypes = new Column();
 
     /**
      * A message to be added when evaluation the simulation sequnce
      */
     String message = null;
 
+    /**
+     * Number of state/action pairs in which the speed was changed
+     */
+    int accelerations = 0;
+
+    /**
+     * Sum of the absolute steering angles
+     */
+    long totalAngle = 0;
+
+    /**
+     * Which pedestrians have been hit
+     */
+    boolean[] crashes = new boolean[0];
+
+    /**
+     * Which pedestrians have been in the near-miss area
+     */
+    boolean[] nearMisses = new boolean[0];
+
+    /**
+     * Highest speed the car hit a pedestrian with
+     */
+    double maxImpactSpeed = 0;
+
     /**
      * Returns whether the state sequence has already been filled
      * to a significant amount
      * @return Whether the sequence has been filled enough or not
      */
     public boolean emptySequence(){
-        return stateSequence.size() <= 10;
+        return xs.size <= 10;
     }
 
     /**
      * Resets the sequence, i.e. deletes saved states and actions
      */
     public void reset(){
-        stateSequence = new LinkedList<>();
-        actionSequence = new LinkedList<>();
+        orientations.clear();
+        xs.clear();
+        zs.clear();
+        speeds.clear();
+        targetSpeeds.clear();
+        angles.clear();
+        accelerationTypes.clear();
+
+        accelerations = 0;
+        totalAngle = 0;
+        crashes = new boolean[0];
+        nearMisses = new boolean[0];
+        maxImpactSpeed = 0;
     }
 
     /**
-     * Creates a new state by manually adding the relevant state information to the simulation sequence
+     * Adds the relevant state information to the simulation sequence
      * @param orientation
      * @param x
      * @param z
      * @param speed
      * @param targetSpeed
-     * @param pedestrians
+     * @param pedestrians Pedestrians in the state, only used to update the measures
      */
     public void add(double orientation, double x, double z, double speed, double targetSpeed, List<Pedestrian> pedestrians){
-        stateSequence.add(new State(orientation,x,z,speed,targetSpeed,pedestrians));
+        orientations.add(orientation);
+        xs.add(x);
+        zs.add(z);
+        speeds.add(speed);
+        targetSpeeds.add(targetSpeed);
+
+        if(pedestrians.size() > crashes.length){
+            crashes = Arrays.copyOf(crashes, pedestrians.size());
+            nearMisses = Arrays.copyOf(nearMisses, pedestrians.size());
+        }
+
+        if(speed > 0.5){
+            int i = 0;
+            for(Pedestrian p : pedestrians){
+                if(isHIT(x, z, orientation, p)){
+                    crashes[i] = true;
+                    if(speed > maxImpactSpeed){
+                        maxImpactSpeed = speed;
+                    }
+                }
+                if(isNearMiss(x, z, orientation, speed, p)){
+                    nearMisses[i] = true;
+                }
+                ++i;
+            }
+        }
+
+        int index = xs.size - 1;
+        if(index < angles.size){
+            addPair(index);
+        }
     }
 
     /**
@@ -73,7 +165,28 @@ public class SimulationSequence {
      * @param accType
      */
     public void addAction(double angle, int accType){
-        actionSequence.add(new Action(angle, AccelerationType.values()[accType]));
+        angles.add(angle);
+        accelerationTypes.add(accType);
+
+        int index = angles.size - 1;
+        if(index < xs.size){
+            addPair(index);
+        }
+    }
+
+    /**
+     * Updates the measures that depend on the state and the action of a step
+     * @param i Index of the step
+     */
+    void addPair(int i){
+        AccelerationType accelerationType = AccelerationType.values()[(int) accelerationTypes.get(i)];
+
+        if(accelerationType == ACCELERATE && targetSpeeds.get(i) < MAX_SPEED
+                || accelerationType == DECELLERATE && speeds.get(i) > 0){
+            ++accelerations;
+        }
+
+        totalAngle += Math.abs(angles.get(i));
     }
 
     Double crossingDistance = null;
@@ -88,65 +201,60 @@ public class SimulationSequence {
     }
 
     /**
-     * Evaluates the simulation sequence for the given evaluation measures.
+     * @return Number of pedestrians that have been hit
      */
-    public void evaluate(){
-
-        // time taken to reach goal (or crash)
-        int timeTaken = stateSequence.size();
-
-        int accelerations = 0;
-        long totalAngle = 0;
-
-        for(int i = 0; i < Math.min(stateSequence.size(),actionSequence.size()); ++i){
-            State s = stateSequence.get(i);
-            Action a  = actionSequence.get(i);
-
-            if(a.accelerationType == ACCELERATE && s.targetSpeed < MAX_SPEED
-                    || a.accelerationType == DECELLERATE && s.speed > 0){
-                ++accelerations;
-            }
-
-            totalAngle += Math.abs(a.angle);
-        }
-
-        boolean[] nearMisses = new boolean[stateSequence.get(0).pedestrians.size()];
-        boolean[] crashes = new boolean[stateSequence.get(0).pedestrians.size()];
-
-        double maxImpactSpeed = 0;
-
-        for(State s : stateSequence){
-            double speed = s.speed;
-
-            if(speed > 0.5){
-                int i = 0;
-                for(Pedestrian p : s.pedestrians){
-                    if(isHIT(s,p)){
-                        crashes[i] = true;
-                        if(speed > maxImpactSpeed){
-                            maxImpactSpeed = speed;
-                        }
-                    }
-                    if(isNearMiss(s,p)){
-                        nearMisses[i] = true;
-                    }
-                    ++i;
-                }
+    public int getCrashes(){
+        int nrCrashes = 0;
+        for(boolean b : crashes){
+            if(b){
+                nrCrashes++;
             }
         }
+        return nrCrashes;
+    }
 
+    /**
+     * @return Number of pedestrians that have been in the near-miss area
+     */
+    public int getNearMisses(){
         int nrNearMisses = 0;
         for(boolean b : nearMisses){
             if(b){
                 nrNearMisses++;
             }
         }
-        int nrCrashes = 0;
-        for(boolean b : crashes){
-            if(b){
-                nrCrashes++;
-            }
-        }
+        return nrNearMisses;
+    }
+
+    public int getAccelerations(){
+        return accelerations;
+    }
+
+    public long getTotalAngle(){
+        return totalAngle;
+    }
+
+    /**
+     * @return Time taken to reach goal (or crash) in steps
+     */
+    public int getTimeTaken(){
+        return xs.size;
+    }
+
+    public double getMaxImpactSpeed(){
+        return maxImpactSpeed;
+    }
+
+    /**
+     * Prints the evaluation measures of the simulation sequence.
+     */
+    public void evaluate(){
+
+        // time taken to reach goal (or crash)
+        int timeTaken = getTimeTaken();
+
+        int nrNearMisses = getNearMisses();
+        int nrCrashes = getCrashes();
 
         if(message != null){
             System.out.println(message + "\tCrashes: " + nrCrashes + "\tNear misses: " + nrNearMisses + "\tAccelerations: " + accelerations + "\tTotal angle: "  + totalAngle +  "\tTime taken: " + timeTaken + "\tImpact Speed: " + maxImpactSpeed);
@@ -0,0 +1,205 @@
+package settingscontroller_client.src.Evaluation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Distributes the scenes of a TESTING grid over the instances of a sweep.
+ * Every instance works on its own share of the grid and steals jobs from
+ * the instance with the most remaining jobs once its share is done, so
+ * no instance idles while scenes are left.
+ *
+ * Completed jobs are appended to a checkpoint file. A sweep that is
+ * started again with the same checkpoint file skips them. Jobs that were
+ * running when the sweep was interrupted are run again.
+ */
+public class SweepScheduler {
+
+    /**
+     * Scene of the grid, the parameters are interpreted like the first
+     * two command line arguments of the simulator
+     */
+    public static class Job {
+        public final Config.ExperimentType type;
+        public final float param1;
+        public final float param2;
+
+        public Job(Config.ExperimentType type, float param1, float param2) {
+            this.type = type;
+            this.param1 = param1;
+            this.param2 = param2;
+        }
+
+        String key() {
+            return type + " " + param1 + " " + param2;
+        }
+
+        @Override
+        public String toString() {
+            return key();
+        }
+    }
+
+    /**
+     * Upper bound of the zig-zag length in the ZIGZAG_FOLLOW grid, the
+     * grid walked by the simulator itself has none
+     */
+    public static float MAX_ZIGZAG_LENGTH = 3f;
+
+    private final File checkpoint;
+    private final List<ArrayDeque<Job>> queues = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition completedCondition = lock.newCondition();
+    private int remaining = 0;
+    private Writer checkpointWriter = null;
+
+    /**
+     * @param type Experiment whose TESTING grid is swept
+     * @param workers Number of instances
+     * @param checkpoint File of the completed jobs, null if the sweep is not checkpointed
+     */
+    public SweepScheduler(Config.ExperimentType type, int workers, File checkpoint) {
+        this.checkpoint = checkpoint;
+
+        Set<String> completed = new HashSet<>();
+        if (checkpoint != null && checkpoint.exists()) {
+            try {
+                completed.addAll(Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.err.println("Could not read sweep checkpoint " + checkpoint + ", sweeping the whole grid");
+            }
+        }
+
+        List<Job> grid = grid(type);
+        List<Job> jobs = new ArrayList<>();
+        for (Job job : grid) {
+            if (!completed.contains(job.key())) {
+                jobs.add(job);
+            }
+        }
+        remaining = jobs.size();
+
+        // neighbouring scenes go to the same instance
+        for (int i = 0; i < workers; ++i) {
+            queues.add(new ArrayDeque<>());
+        }
+        for (int i = 0; i < jobs.size(); ++i) {
+            queues.get((int) ((long) i * workers / jobs.size())).add(jobs.get(i));
+        }
+
+        if (checkpoint != null) {
+            try {
+                checkpointWriter = new OutputStreamWriter(new FileOutputStream(checkpoint, true), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.err.println("Could not open sweep checkpoint " + checkpoint + ", the sweep cannot be resumed");
+            }
+        }
+
+        System.out.println("Sweep: " + remaining + " of " + grid.size() + " scenes left");
+    }
+
+    /**
+     * Creates the TESTING grid of the experiment in the order the
+     * simulator walks it
+     */
+    public static List<Job> grid(Config.ExperimentType type) {
+        List<Job> jobs = new ArrayList<>();
+
+        switch (type) {
+            case SPEED_DISTANCE:
+                int speeds = Config.sampleMarginSpeeds(Config.SimulationMode.TESTING).size();
+                int distances = Config.sampleDistance(Config.SimulationMode.TESTING).size();
+                for (int speedIndex = 0; speedIndex < speeds; ++speedIndex) {
+                    for (int distanceIndex = 0; distanceIndex < distances; ++distanceIndex) {
+                        jobs.add(new Job(type, speedIndex, distanceIndex));
+                    }
+                }
+                break;
+            case ZIGZAG_FOLLOW:
+                for (float length = 0.5f; length <= MAX_ZIGZAG_LENGTH; length += 0.25f) {
+                    for (float angle = 30; angle < 180 - 10; angle += 10) {
+                        jobs.add(new Job(type, length, angle));
+                    }
+                }
+                break;
+            case MULTIPLE_PEDESTRIANS:
+                for (float distance = 1; distance <= 30; distance += 1) {
+                    for (float delay = 0; delay <= 4; delay += 0.5f) {
+                        jobs.add(new Job(type, distance, delay));
+                    }
+                }
+                break;
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Takes the next job of the instance, stealing one if its share is done
+     * @param worker Index of the instance
+     * @return The job or null if no jobs are left
+     */
+    public Job next(int worker) {
+        lock.lock();
+        try {
+            Job job = queues.get(worker % queues.size()).pollFirst();
+            if (job != null) {
+                return job;
+            }
+
+            ArrayDeque<Job> victim = null;
+            for (ArrayDeque<Job> queue : queues) {
+                if (victim == null || queue.size() > victim.size()) {
+                    victim = queue;
+                }
+            }
+            return victim == null ? null : victim.pollLast();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the job as completed and records it in the checkpoint file
+     */
+    public void complete(Job job) {
+        lock.lock();
+        try {
+            if (checkpointWriter != null) {
+                try {
+                    checkpointWriter.write(job.key() + "\n");
+                    checkpointWriter.flush();
+                } catch (IOException e) {
+                    System.err.println("Could not write sweep checkpoint " + checkpoint);
+                }
+            }
+
+            --remaining;
+            if (remaining <= 0) {
+                completedCondition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all jobs are completed
+     */
+    public void awaitCompletion() throws InterruptedException {
+        lock.lock();
+        try {
+            while (remaining > 0) {
+                completedCondition.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
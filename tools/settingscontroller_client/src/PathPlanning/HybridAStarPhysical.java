@@ -398,6 +398,7 @@ public class HybridAStarPhysical {
 
         ContinuousSearchState parent = null;
         public int parentAngle;
+        public int parentAngleIndex; // index of parentAngle in possibleSteeringAngles
         public boolean reverse = false;
 
         public ContinuousSearchState(float x, float z, float theta) {
@@ -552,6 +553,7 @@ public class HybridAStarPhysical {
                     if (cst.samePosition(goal)) {
                         cst.parent = this;
                         cst.parentAngle = angle;
+                        cst.parentAngleIndex = angleIndex;
                         DiscreteSearchState discreteTmp = new DiscreteSearchState(cst);
                         if (!aggregatedResults.containsKey(discreteTmp)) {
                             aggregatedResults.put(discreteTmp, cst);
@@ -617,12 +619,14 @@ public class HybridAStarPhysical {
                     if (!aggregatedResults.containsKey(discreteSucc)) {
                         succ.parent = this;
                         succ.parentAngle = angle;
+                        succ.parentAngleIndex = i;
                         aggregatedResults.put(discreteSucc, succ);
                     } else {
                         ContinuousSearchState stored = aggregatedResults.get(discreteSucc);
                         if (succ.g + succ.h < stored.g + stored.h) {
                             succ.parent = this;
                             succ.parentAngle = angle;
+                            succ.parentAngleIndex = i;
                             aggregatedResults.put(discreteSucc, succ);
                         }
                     }
@@ -659,6 +663,7 @@ public class HybridAStarPhysical {
                         if (!aggregatedResults.containsKey(discreteSucc)) {
                             succ.parent = this;
                             succ.parentAngle = angle;
+                            succ.parentAngleIndex = i;
                             succ.reverse = true;
                             aggregatedResults.put(discreteSucc, succ);
                         } else {
@@ -666,6 +671,7 @@ public class HybridAStarPhysical {
                             if (succ.g + succ.h < stored.g + stored.h) {
                                 succ.parent = this;
                                 succ.parentAngle = angle;
+                                succ.parentAngleIndex = i;
                                 succ.reverse = true;
                                 aggregatedResults.put(discreteSucc, succ);
                             }
@@ -712,14 +718,28 @@ public class HybridAStarPhysical {
     }
 
     public List<Float> simpleStep(float x, float z, float theta, int angleIndex, float d, int repetitions){
+        float[] path = new float[3 * Math.max(repetitions, 1)];
+        simpleStep(x, z, theta, angleIndex, d, repetitions, path, 0);
+
+        List<Float> res = new LinkedList<>();
+        for (float value : path) {
+            res.add(value);
+        }
+        return res;
+    }
+
+    /**
+     * Same as simpleStep, but writes x, z and theta of the points into the given array
+     * @return Offset behind the last value written
+     */
+    public int simpleStep(float x, float z, float theta, int angleIndex, float d, int repetitions, float[] res, int offset){
         float x_prime;
         float z_prime;
         float theta_prime;
 
-        List<Float> res = new LinkedList<>();
-        res.add(x*mapResolution);
-        res.add(z*mapResolution);
-        res.add(theta);
+        res[offset++] = x*mapResolution;
+        res[offset++] = z*mapResolution;
+        res[offset++] = theta;
 
         float[] rotatedCarPosition = rotatePosition(x,z,theta,x - (1.5218339f/mapResolution),z);
         x = rotatedCarPosition[0];
@@ -734,12 +754,12 @@ public class HybridAStarPhysical {
             theta_prime = s[2];
 
             float[] rotateBack = rotateBack(x_prime,z_prime,theta_prime,(1.5218339f/mapResolution));
-            res.add(rotateBack[0]*mapResolution);
-            res.add(rotateBack[1]*mapResolution);
-            res.add(theta_prime);
+            res[offset++] = rotateBack[0]*mapResolution;
+            res[offset++] = rotateBack[1]*mapResolution;
+            res[offset++] = theta_prime;
         }
 
-        return res;
+        return offset;
     }
 
     BufferedImage beliefImage = null;
@@ -762,7 +782,8 @@ public class HybridAStarPhysical {
 
     /**
      * Searches a path from (startX,startZ,startTheta) to (goalX,goalZ,goalTheta).
-     * If allowBackward, the path can also contain backward parts
+     * If allowBackward, the path can also contain backward parts.
+     * Gives up (returns null) if the searching thread is interrupted
      */
     public ContinuousSearchState search(float startX, float startZ, float startTheta, float goalX, float goalZ, float goalTheta, boolean allowBackward) {
         this.allowBackward = allowBackward;
@@ -783,7 +804,7 @@ public class HybridAStarPhysical {
         PriorityQueue<ContinuousSearchState> openList = new PriorityQueue<>();
         openList.add(start);
 
-        while (!openList.isEmpty() && closedSet.size() < 400000) {
+        while (!openList.isEmpty() && closedSet.size() < 400000 && !Thread.currentThread().isInterrupted()) {
             ContinuousSearchState current = openList.poll();
             PositionEntry currPosition = new PositionEntry(new DiscreteSearchState(current));
             openSet.remove(currPosition);
@@ -826,19 +847,20 @@ public class HybridAStarPhysical {
     }
 
     public List<ContinuousSearchState> getPath(ContinuousSearchState goal) {
-        List<ContinuousSearchState> path = new LinkedList<>();
+        List<ContinuousSearchState> path = new ArrayList<>();
 
         ContinuousSearchState current = goal;
 
         while (current != start) {
-            path.add(0, current);
+            path.add(current);
             if(current.parent == null){
                 return null;
             }
             current = current.parent;
         }
 
-        path.add(0, start);
+        path.add(start);
+        Collections.reverse(path);
 
         return path;
     }
@@ -17,6 +17,15 @@ public class Pedestrian {
     public double z;
     public double speed;
 
+    /**
+     * Creates a pedestrian from a position in map coordinates
+     */
+    public Pedestrian(double x, double z, double speed) {
+        this.x = x;
+        this.z = z;
+        this.speed = speed;
+    }
+
     /**
      * Creates a pedestrian from an XML element sent by OpenDS
      * @param pedestrianNode The XML element sent by OpenDS
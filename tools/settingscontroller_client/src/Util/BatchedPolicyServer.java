@@ -0,0 +1,326 @@
+package settingscontroller_client.src.Util;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single policy socket shared by all car controllers in this JVM. The
+ * observations of the controllers are gathered into one batch, so the
+ * policy can decide the actions of all environments in one pass.
+ *
+ * A batch is sent once every registered environment submitted its
+ * observation or the batch window has passed since the first one:
+ *
+ * <pre>
+ * int32 length of the batch in bytes
+ * int32 number of entries
+ * per entry: int32 environment id, int32 payload length, ObservationMessage payload
+ * </pre>
+ *
+ * The policy answers with one line "id=answer;id=answer;...", the
+ * answers are scattered back to the waiting controllers.
+ *
+ * Observations are kept until they are answered. They wait for a policy
+ * to connect and are sent again if the policy reconnects before
+ * answering them.
+ */
+public class BatchedPolicyServer implements Runnable {
+
+    /**
+     * Servers by port
+     */
+    private static final Map<Integer, BatchedPolicyServer> servers = new HashMap<>();
+
+    /**
+     * Time to wait for the remaining environments after the first
+     * observation of a batch was submitted in ms
+     */
+    public static long BATCH_WINDOW = 5;
+
+    ServerSocket serverSocket;
+    boolean running = true;
+
+    /**
+     * Connected policy or null
+     */
+    volatile Socket client = null;
+
+    /**
+     * Channels of the registered environments
+     */
+    final List<Channel> channels = new ArrayList<>();
+
+    /**
+     * Observations submitted for the next batch
+     */
+    List<Submission> pending = new ArrayList<>();
+
+    /**
+     * Observations sent to the policy but not answered yet by environment id
+     */
+    final Map<Integer, Submission> unanswered = new HashMap<>();
+
+    /**
+     * Lock to guard the pending batch, the unanswered observations,
+     * the connected policy and the channels
+     */
+    final ReentrantLock batchLock = new ReentrantLock();
+
+    /**
+     * Condition that is signaled if an observation was submitted or
+     * a policy connected
+     */
+    final Condition submittedCondition = batchLock.newCondition();
+
+    private static class Submission {
+        final int id;
+        final ObservationMessage message;
+
+        Submission(int id, ObservationMessage message) {
+            this.id = id;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Connection of a single environment to the shared policy
+     */
+    public class Channel implements PolicyConnection {
+        final int id;
+        final SpscHandoff<String> answers = new SpscHandoff<>(SpscHandoff.Mode.QUEUE, 4);
+
+        Channel(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void sendMessage(ObservationMessage message) {
+            submit(new Submission(id, message));
+        }
+
+        @Override
+        public String receiveMessage() {
+            return answers.take();
+        }
+
+        @Override
+        public boolean connected() {
+            return client != null;
+        }
+    }
+
+    private BatchedPolicyServer(ServerSocket socket) {
+        this.serverSocket = socket;
+    }
+
+    /**
+     * Returns the server listening on the given port and starts it if necessary
+     * @param port Port the policy connects to
+     * @return The shared server
+     */
+    public static synchronized BatchedPolicyServer getInstance(int port) throws IOException {
+        BatchedPolicyServer server = servers.get(port);
+        if (server == null) {
+            server = new BatchedPolicyServer(new ServerSocket(port));
+            servers.put(port, server);
+
+            Thread t = new Thread(server);
+            t.start();
+            t = new Thread(server::dispatch);
+            t.start();
+        }
+        return server;
+    }
+
+    /**
+     * Registers a new environment
+     * @return The connection of the environment to the policy
+     */
+    public Channel register() {
+        batchLock.lock();
+        try {
+            Channel channel = new Channel(channels.size());
+            channels.add(channel);
+            return channel;
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    void submit(Submission submission) {
+        batchLock.lock();
+        try {
+            pending.add(submission);
+            submittedCondition.signal();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Accepts policy connections and scatters the received answers
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Socket newClient = serverSocket.accept();
+                connect(newClient);
+                Util.LineReader reader = new Util.LineReader(newClient.getInputStream());
+
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    scatter(line);
+                }
+                System.err.println("Batched policy connection closed");
+            } catch (IOException e) {
+                System.err.println("Batched policy connection broken");
+            }
+
+            batchLock.lock();
+            try {
+                client = null;
+            } finally {
+                batchLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Makes the socket the connected policy. Observations the previous
+     * policy did not answer are sent again with the next batch.
+     * @param newClient Newly connected policy
+     */
+    void connect(Socket newClient) {
+        batchLock.lock();
+        try {
+            if (!unanswered.isEmpty()) {
+                System.err.println("Batched policy connected, resending " + unanswered.size() + " unanswered observations");
+                pending.addAll(0, unanswered.values());
+                unanswered.clear();
+            }
+
+            client = newClient;
+            submittedCondition.signal();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Hands the answers of a batch to the waiting controllers
+     * @param line Answers of the policy
+     */
+    void scatter(String line) {
+        for (String answer : line.split(";")) {
+            int separator = answer.indexOf('=');
+            if (separator == -1) {
+                continue;
+            }
+
+            int id = Integer.parseInt(answer.substring(0, separator).trim());
+            Channel channel;
+            batchLock.lock();
+            try {
+                channel = id < channels.size() ? channels.get(id) : null;
+
+                // the observation must not be sent again, even if it was queued for resending
+                unanswered.remove(id);
+                pending.removeIf(submission -> submission.id == id);
+            } finally {
+                batchLock.unlock();
+            }
+
+            if (channel != null) {
+                channel.answers.offer(answer.substring(separator + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * Gathers submitted observations into batches and sends them to the policy
+     */
+    void dispatch() {
+        while (running) {
+            List<Submission> batch;
+            Socket socket;
+
+            batchLock.lock();
+            try {
+                while (pending.isEmpty() || client == null) {
+                    submittedCondition.await();
+                }
+
+                long nanosLeft = TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW);
+                while (pending.size() < channels.size() && nanosLeft > 0) {
+                    nanosLeft = submittedCondition.awaitNanos(nanosLeft);
+                }
+
+                if (client == null) {
+                    continue;
+                }
+
+                batch = pending;
+                pending = new ArrayList<>();
+                socket = client;
+
+                // kept until answered, resent if the policy reconnects
+                for (Submission submission : batch) {
+                    unanswered.put(submission.id, submission);
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                continue;
+            } finally {
+                batchLock.unlock();
+            }
+
+            try {
+                OutputStream out = socket.getOutputStream();
+                out.write(toFrame(batch));
+                out.flush();
+            } catch (IOException e) {
+                // the observations are resent once the policy reconnected
+                System.err.println("Batched policy connection broken");
+                try {
+                    socket.close();
+                } catch (IOException closeException) {
+                    closeException.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a batch to a length-prefixed binary frame
+     */
+    static byte[] toFrame(List<Submission> batch) {
+        int size = 4;
+        for (Submission submission : batch) {
+            size += 8 + submission.message.binarySize();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ObservationMessage.LENGTH_PREFIX + size);
+        buffer.putInt(size);
+        buffer.putInt(batch.size());
+        for (Submission submission : batch) {
+            buffer.putInt(submission.id);
+            buffer.putInt(submission.message.binarySize());
+            submission.message.writeBinary(buffer);
+        }
+        return buffer.array();
+    }
+}
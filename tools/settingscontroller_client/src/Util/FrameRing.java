@@ -0,0 +1,85 @@
+package settingscontroller_client.src.Util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped ring file for sending observations to a controller on the
+ * same host. The file starts with the number of slots and the slot size
+ * (both int32), followed by the slots. Each slot holds the int32 payload
+ * length and the binary payload of an {@link ObservationMessage}.
+ * The socket only carries the index of the slot that was written.
+ */
+public class FrameRing {
+
+    /**
+     * Number of slots in the ring
+     */
+    public static final int SLOTS = 4;
+
+    /**
+     * Size of a single slot in bytes
+     */
+    public static final int SLOT_SIZE = 1 << 19;
+
+    /**
+     * Size of the file header in bytes
+     */
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * The mapped file
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Slot to write the next message to
+     */
+    private int nextSlot = 0;
+
+    /**
+     * Creates (or overwrites) the ring file at the given path
+     */
+    public FrameRing(String path) throws IOException {
+        int size = HEADER_SIZE + SLOTS * SLOT_SIZE;
+
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.setLength(size);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        buffer.putInt(0, SLOTS);
+        buffer.putInt(4, SLOT_SIZE);
+    }
+
+    /**
+     * Writes the message to the next slot
+     * @return The slot written to or -1 if the message does not fit into a slot
+     */
+    public int write(ObservationMessage message) {
+        int size = message.binarySize();
+        if (size + ObservationMessage.LENGTH_PREFIX > SLOT_SIZE) {
+            return -1;
+        }
+
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % SLOTS;
+
+        ByteBuffer slotBuffer = buffer.duplicate();
+        slotBuffer.position(HEADER_SIZE + slot * SLOT_SIZE);
+        slotBuffer.putInt(size);
+        message.writeBinary(slotBuffer);
+
+        return slot;
+    }
+
+    /**
+     * Builds the frame sent over the socket to announce a written slot
+     */
+    public static byte[] slotFrame(int slot) {
+        return ByteBuffer.allocate(ObservationMessage.LENGTH_PREFIX).putInt(-1 - slot).array();
+    }
+}
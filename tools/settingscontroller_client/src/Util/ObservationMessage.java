@@ -0,0 +1,173 @@
+package settingscontroller_client.src.Util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Message sent to the outside controller every tick. Can be sent as
+ * text line or as length-prefixed binary frame of big-endian float32 values:
+ *
+ * <pre>
+ * int32   length of the payload in bytes
+ * byte    terminal (0 or 1)
+ * float32 reward
+ * float32 planned angle
+ * int32   n, float32[n] observation
+ * int32   n, float32[n] path (n = 0 if not used)
+ * int32   n, float32[n] car intention (n = 0 if not used)
+ * </pre>
+ */
+public class ObservationMessage {
+
+    /**
+     * Size of the length prefix of a binary frame
+     */
+    public static final int LENGTH_PREFIX = 4;
+
+    final boolean terminal;
+    final double reward;
+    final double angle;
+    final double[] observation;
+    final String observationDelimiter;
+    final float[] path;
+    final double[] carIntention;
+
+    /**
+     * @param terminal Whether a terminal state was reached
+     * @param reward Reward of the last action
+     * @param angle Angle planned by the path planner
+     * @param observation The observation
+     * @param observationDelimiter Delimiter of the observation values in text messages
+     * @param path The planned path or null if not used
+     * @param carIntention The car intention or null if not used
+     */
+    public ObservationMessage(boolean terminal, double reward, double angle, double[] observation, String observationDelimiter,
+                              float[] path, double[] carIntention) {
+        this.terminal = terminal;
+        this.reward = reward;
+        this.angle = angle;
+        this.observation = observation;
+        this.observationDelimiter = observationDelimiter;
+        this.path = path;
+        this.carIntention = carIntention;
+    }
+
+    public boolean isTerminal() {
+        return terminal;
+    }
+
+    public double getReward() {
+        return reward;
+    }
+
+    public double getAngle() {
+        return angle;
+    }
+
+    public double[] getObservation() {
+        return observation;
+    }
+
+    /**
+     * @return The planned path or null if not used
+     */
+    public float[] getPath() {
+        return path;
+    }
+
+    /**
+     * @return The car intention or null if not used
+     */
+    public double[] getCarIntention() {
+        return carIntention;
+    }
+
+    /**
+     * Converts the message to a text line
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(terminal).append(';').append(reward).append(';').append(angle).append(';');
+
+        for (int i = 0; i < observation.length; ++i) {
+            if (i > 0) {
+                builder.append(observationDelimiter);
+            }
+            builder.append(observation[i]);
+        }
+
+        if (path != null) {
+            builder.append(';');
+            for (int i = 0; i < path.length; ++i) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(path[i]);
+            }
+        }
+
+        if (carIntention != null) {
+            builder.append(';');
+            for (int i = 0; i < carIntention.length; ++i) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(carIntention[i]);
+            }
+        }
+
+        return builder.append('\n').toString();
+    }
+
+    /**
+     * Size of the binary payload in bytes, without length prefix
+     */
+    public int binarySize() {
+        return 1 + 4 + 4
+                + 4 + observation.length * 4
+                + 4 + (path != null ? path.length * 4 : 0)
+                + 4 + (carIntention != null ? carIntention.length * 4 : 0);
+    }
+
+    /**
+     * Writes the binary payload, without length prefix, to the buffer
+     */
+    public void writeBinary(ByteBuffer buffer) {
+        buffer.put((byte) (terminal ? 1 : 0));
+        buffer.putFloat((float) reward);
+        buffer.putFloat((float) angle);
+
+        buffer.putInt(observation.length);
+        for (double value : observation) {
+            buffer.putFloat((float) value);
+        }
+
+        if (path != null) {
+            buffer.putInt(path.length);
+            for (float value : path) {
+                buffer.putFloat(value);
+            }
+        } else {
+            buffer.putInt(0);
+        }
+
+        if (carIntention != null) {
+            buffer.putInt(carIntention.length);
+            for (double value : carIntention) {
+                buffer.putFloat((float) value);
+            }
+        } else {
+            buffer.putInt(0);
+        }
+    }
+
+    /**
+     * Converts the message to a length-prefixed binary frame
+     */
+    public byte[] toFrame() {
+        int size = binarySize();
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_PREFIX + size);
+        buffer.putInt(size);
+        writeBinary(buffer);
+        return buffer.array();
+    }
+}
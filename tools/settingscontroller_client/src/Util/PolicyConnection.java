@@ -0,0 +1,24 @@
+package settingscontroller_client.src.Util;
+
+/**
+ * Connection of a car controller to the policy deciding its actions
+ */
+public interface PolicyConnection {
+
+    /**
+     * Sends the observation of the current tick to the policy
+     * @param message Message to send
+     */
+    void sendMessage(ObservationMessage message);
+
+    /**
+     * Waits for the answer of the policy
+     * @return The received answer
+     */
+    String receiveMessage();
+
+    /**
+     * @return Whether a policy is currently connected
+     */
+    boolean connected();
+}
@@ -5,17 +5,41 @@ import settingscontroller_client.src.Util.Util;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Connects the car controller to the outside world
  */
-public class PythonConnector implements Runnable{
+public class PythonConnector implements Runnable, PolicyConnection{
 
     ServerSocket serverSocket;
     boolean running = true;
 
+    /**
+     * How observations are transported to the connected socket
+     */
+    public enum Transport {
+        /** One text line per message **/
+        TEXT,
+        /** Length-prefixed binary float32 frames **/
+        BINARY,
+        /** Binary frames in a memory-mapped ring file, announced over the socket **/
+        RING
+    }
+
+    /**
+     * Transport requested by the connected socket. Text unless the socket
+     * sends "BINARY" or "MMAP &lt;path&gt;" as first line, which is awaited
+     * before the connection is used.
+     */
+    volatile Transport transport = Transport.TEXT;
+
+    /**
+     * Ring file used by the RING transport
+     */
+    FrameRing ring = null;
+
     /**
      * Sends messages to the connected socket
      */
@@ -26,44 +50,75 @@ public class PythonConnector implements Runnable{
      */
     Receiver receiver = null;
 
+    /**
+     * Threads of the current connection, stopped before the next
+     * connection is used
+     */
+    Thread senderThread = null;
+    Thread receiverThread = null;
+
+    /**
+     * Messages received from the connected sockets. Shared by all
+     * connections, so a controller waiting for an answer receives it
+     * from a reconnected policy as well. Only the receiver of the
+     * current connection offers to it.
+     */
+    final SpscHandoff<String> answers;
+
+    /**
+     * Last observation sent to the policy
+     */
+    volatile ObservationMessage lastObservation = null;
+
+    /**
+     * Whether the controller is waiting for an answer
+     */
+    volatile boolean awaitingAnswer = false;
+
+    /**
+     * Time a newly connected policy has to request a transport before
+     * text is used in ms
+     */
+    static final int HANDSHAKE_TIMEOUT = 200;
+
     /**
      * Connects the controller to the socket and sends messages
      * to it.
      */
     private class Sender implements Runnable{
-        String message = null;
-        ReentrantLock messageLock = new ReentrantLock();
-        Condition messageSetCondition = messageLock.newCondition();
+        SpscHandoff<byte[]> messages = new SpscHandoff<>(handoffMode, QUEUE_CAPACITY);
         Socket clientSocket;
-        PrintWriter outputStream;
+        OutputStream outputStream;
 
         Sender(Socket clientSocket) throws IOException {
             this.clientSocket = clientSocket;
-            outputStream = new PrintWriter(clientSocket.getOutputStream());
+            outputStream = new BufferedOutputStream(clientSocket.getOutputStream());
         }
 
         public void send(String message){
-            messageLock.lock();
-            this.message = message;
-            messageSetCondition.signal();
-            messageLock.unlock();
+            send(message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void send(byte[] message){
+            messages.offer(message);
         }
 
         @Override
         public void run() {
             while(true){
-                messageLock.lock();
-                while(this.message == null){
-                    try {
-                        messageSetCondition.await();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
+                byte[] message;
+                try {
+                    message = messages.takeInterruptibly();
+                } catch (InterruptedException e) {
+                    // the connection was replaced
+                    return;
+                }
+                try {
+                    outputStream.write(message);
+                    outputStream.flush();
+                } catch (IOException e) {
+                    System.err.println("Python connector broken");
                 }
-                outputStream.write(message);
-                outputStream.flush();
-                this.message = null;
-                messageLock.unlock();
             }
         }
     }
@@ -74,63 +129,56 @@ public class PythonConnector implements Runnable{
      */
     private class Receiver implements Runnable {
         Socket clientSocket;
-        String message = null;
-        ReentrantLock messageLock = new ReentrantLock();
-        Condition messageSetCondition = messageLock.newCondition();
-        BufferedReader inputStream;
-        Util.UnblockingLineReader reader;
+        Util.LineReader reader;
 
-        public Receiver(Socket clientSocket) throws IOException {
+        public Receiver(Socket clientSocket, Util.LineReader reader) {
             this.clientSocket = clientSocket;
-            inputStream = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            reader = new Util.UnblockingLineReader(clientSocket.getInputStream());
+            this.reader = reader;
         }
 
         @Override
         public void run() {
-            while(true){
-                try {
+            try {
+                while(true){
                     String message = reader.readLine();
-                    if(message.isEmpty()){
-                        continue;
+                    if(message == null){
+                        System.err.println("Python connector closed");
+                        return;
                     }
-                    messageLock.lock();
-                    this.message = message;
-                    messageSetCondition.signal();
-                    messageLock.unlock();
-
-                    Thread.sleep(10);
-                } catch (IOException | InterruptedException e) {
-                    //e.printStackTrace();
-                    System.err.println("Python connector broken");
-                    try {
-                        Thread.sleep(5000);
-                    } catch (InterruptedException e1) {
-
+                    if(message.isEmpty() || handleTransportRequest(message)){
+                        continue;
                     }
+                    answers.offer(message);
                 }
+            } catch (IOException e) {
+                // the policy reconnects through the server socket
+                System.err.println("Python connector broken");
             }
         }
-
-        public String receive(){
-            String message;
-            messageLock.lock();
-            while(this.message == null){
-                try {
-                    messageSetCondition.await();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-            message = this.message;
-            this.message = null;
-            messageLock.unlock();
-            return message;
-        }
     }
 
+    /**
+     * Capacity of the message queues if messages are queued
+     */
+    static final int QUEUE_CAPACITY = 64;
+
+    /**
+     * Whether unconsumed messages are overwritten or queued
+     */
+    final SpscHandoff.Mode handoffMode;
+
     public PythonConnector(ServerSocket socket){
+        this(socket, SpscHandoff.Mode.OVERWRITE);
+    }
+
+    /**
+     * @param socket Socket to accept the controller on
+     * @param handoffMode Whether messages that were not sent or received yet are overwritten or queued
+     */
+    public PythonConnector(ServerSocket socket, SpscHandoff.Mode handoffMode){
         this.serverSocket = socket;
+        this.handoffMode = handoffMode;
+        this.answers = new SpscHandoff<>(handoffMode, QUEUE_CAPACITY);
     }
 
     public void stop(){
@@ -142,18 +190,99 @@ public class PythonConnector implements Runnable{
         while(running){
             try {
                 Socket newClient = serverSocket.accept();
-                receiver = new Receiver(newClient);
-                sender = new Sender(newClient);
-                Thread t = new Thread(receiver);
-                t.start();
-                t = new Thread(sender);
-                t.start();
+                closeConnection();
+
+                Util.LineReader reader = new Util.LineReader(newClient.getInputStream());
+                Sender newSender = new Sender(newClient);
+
+                // the transport is known before the first observation is sent
+                String firstAnswer = negotiateTransport(newClient, reader);
+                if(firstAnswer != null){
+                    answers.offer(firstAnswer);
+                } else {
+                    resendLastObservation(newSender);
+                }
+
+                receiver = new Receiver(newClient, reader);
+                sender = newSender;
+                receiverThread = new Thread(receiver);
+                receiverThread.start();
+                senderThread = new Thread(sender);
+                senderThread.start();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Stops the threads of the current connection, so the receiver
+     * of the next connection is the only one offering answers
+     */
+    void closeConnection(){
+        if(receiverThread == null){
+            return;
+        }
+
+        try {
+            receiver.clientSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        senderThread.interrupt();
+
+        try {
+            receiverThread.join();
+            senderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        receiverThread = null;
+        senderThread = null;
+    }
+
+    /**
+     * Waits for the transport request of a newly connected policy.
+     * Policies that do not request a transport within the handshake
+     * timeout receive text.
+     * @param clientSocket Newly connected socket
+     * @param reader Reader of the socket
+     * @return The first line, if it was an answer instead of a transport request
+     */
+    String negotiateTransport(Socket clientSocket, Util.LineReader reader) throws IOException {
+        transport = Transport.TEXT;
+
+        clientSocket.setSoTimeout(HANDSHAKE_TIMEOUT);
+        try {
+            String line = reader.readLine();
+            if(line != null && !line.isEmpty() && !handleTransportRequest(line)){
+                return line;
+            }
+        } catch (SocketTimeoutException e) {
+            // text policies do not request a transport
+        } finally {
+            clientSocket.setSoTimeout(0);
+        }
+        return null;
+    }
+
+    /**
+     * Resends the last observation if the policy connected while the
+     * controller was waiting for an answer, e.g. after the policy was
+     * restarted
+     * @param newSender Sender of the new connection, not used by the controller yet
+     */
+    void resendLastObservation(Sender newSender){
+        ObservationMessage message = lastObservation;
+        if(!awaitingAnswer || message == null){
+            return;
+        }
+
+        System.err.println("Python connector reconnected, resending last observation");
+        newSender.send(encode(message));
+    }
+
     /**
      * Sends a message to the connected socket by queuing
      * it in the sender
@@ -171,6 +300,72 @@ public class PythonConnector implements Runnable{
         sender.send(message);
     }
 
+    /**
+     * Sends an observation to the connected socket using the
+     * transport it requested
+     * @param message Message to send
+     */
+    public void sendMessage(ObservationMessage message){
+        lastObservation = message;
+        sendFrame(encode(message));
+    }
+
+    /**
+     * Encodes an observation for the transport requested by the connected socket
+     */
+    byte[] encode(ObservationMessage message){
+        switch (transport) {
+            case BINARY:
+                return message.toFrame();
+            case RING:
+                int slot = ring.write(message);
+                return slot != -1 ? FrameRing.slotFrame(slot) : message.toFrame();
+            default:
+                return message.toText().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Sends a binary frame to the connected socket
+     */
+    void sendFrame(byte[] frame){
+        while(sender == null){
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        sender.send(frame);
+    }
+
+    /**
+     * Switches the transport if the socket requested it
+     * @param message Line received from the socket
+     * @return Whether the line was a transport request
+     */
+    boolean handleTransportRequest(String message){
+        if(message.equals("BINARY")){
+            transport = Transport.BINARY;
+            return true;
+        }
+
+        if(message.startsWith("MMAP ")){
+            try {
+                ring = new FrameRing(message.substring("MMAP ".length()).trim());
+                transport = Transport.RING;
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.err.println("Could not create ring file, using binary frames.");
+                transport = Transport.BINARY;
+            }
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * Receives a message from the connected socket.
      * @return The received message
@@ -184,7 +379,12 @@ public class PythonConnector implements Runnable{
             }
         }
 
-        return receiver.receive();
+        awaitingAnswer = true;
+        try {
+            return answers.take();
+        } finally {
+            awaitingAnswer = false;
+        }
     }
 
     /**
@@ -55,7 +55,14 @@ public class RectangleHITArea {
      * @return Whether there is a HIT
      */
     public static boolean isHIT(State s, Pedestrian p){
-        return pedInArea(s.x, s.z, s.orientation, p, 0.5f, 0.5f);
+        return isHIT(s.x, s.z, s.orientation, p);
+    }
+
+    /**
+     * Checks if there is a HIT of the car at the given pose with the pedestrian p
+     */
+    public static boolean isHIT(double carX, double carZ, double carTheta, Pedestrian p){
+        return pedInArea(carX, carZ, carTheta, p, 0.5f, 0.5f);
     }
 
     /**
@@ -66,10 +73,18 @@ public class RectangleHITArea {
      * @return Whether there is a HIT
      */
     public static boolean isNearMiss(State s, Pedestrian p){
-        if(Math.abs(s.speed) <= 20){
-            return pedInArea(s.x, s.z, s.orientation, p, 1, 0.75f);
+        return isNearMiss(s.x, s.z, s.orientation, s.speed, p);
+    }
+
+    /**
+     * Checks if the pedestrian p is in the near-miss area of the car
+     * at the given pose and speed
+     */
+    public static boolean isNearMiss(double carX, double carZ, double carTheta, double speed, Pedestrian p){
+        if(Math.abs(speed) <= 20){
+            return pedInArea(carX, carZ, carTheta, p, 1, 0.75f);
         }else{
-            return pedInArea(s.x, s.z, s.orientation, p, 1.5f, 1.0f);
+            return pedInArea(carX, carZ, carTheta, p, 1.5f, 1.0f);
         }
     }
 
@@ -0,0 +1,161 @@
+package settingscontroller_client.src.Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free handoff of messages from exactly one producer thread to
+ * exactly one consumer thread. Waiting threads are parked and woken
+ * up directly by the other side.
+ * @param <T> Type of the messages
+ */
+public class SpscHandoff<T> {
+
+    /**
+     * What happens with messages that were not consumed yet
+     */
+    public enum Mode {
+        /** Only the latest message is kept **/
+        OVERWRITE,
+        /** Messages are queued, the producer waits if the queue is full **/
+        QUEUE
+    }
+
+    private final Mode mode;
+
+    /**
+     * Slot used in OVERWRITE mode
+     */
+    private final AtomicReference<T> slot = new AtomicReference<>();
+
+    /**
+     * Ring buffer used in QUEUE mode
+     */
+    private final AtomicReferenceArray<T> queue;
+    private final int mask;
+
+    /**
+     * Index of the next message to take, only advanced by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Index of the next message to offer, only advanced by the producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread waitingConsumer = null;
+    private volatile Thread waitingProducer = null;
+
+    /**
+     * @param mode How messages that were not consumed yet are handled
+     * @param capacity Capacity of the queue, rounded up to a power of two (ignored in OVERWRITE mode)
+     */
+    public SpscHandoff(Mode mode, int capacity) {
+        this.mode = mode;
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        queue = new AtomicReferenceArray<>(mode == Mode.QUEUE ? size : 0);
+        mask = size - 1;
+    }
+
+    /**
+     * Hands the message over to the consumer. Must only be called from the producer thread.
+     */
+    public void offer(T message) {
+        if (mode == Mode.OVERWRITE) {
+            slot.set(message);
+        } else {
+            long t = tail.get();
+            while (t - head.get() == queue.length()) {
+                waitingProducer = Thread.currentThread();
+                if (t - head.get() == queue.length()) {
+                    LockSupport.park(this);
+                }
+                waitingProducer = null;
+            }
+            queue.lazySet((int) (t & mask), message);
+            tail.set(t + 1);
+        }
+
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Takes the next message if one is available. Must only be called from the consumer thread.
+     * @return The message or null
+     */
+    public T poll() {
+        if (mode == Mode.OVERWRITE) {
+            return slot.getAndSet(null);
+        }
+
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+
+        int index = (int) (h & mask);
+        T message = queue.get(index);
+        queue.lazySet(index, null);
+        head.set(h + 1);
+
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return message;
+    }
+
+    /**
+     * Waits for the next message. Must only be called from the consumer thread.
+     * @return The message
+     */
+    public T take() {
+        T message = poll();
+        while (message == null) {
+            waitingConsumer = Thread.currentThread();
+            message = poll();
+            if (message == null) {
+                LockSupport.park(this);
+                message = poll();
+            }
+            waitingConsumer = null;
+        }
+        return message;
+    }
+
+    /**
+     * Waits for the next message until the consumer thread is interrupted.
+     * Must only be called from the consumer thread.
+     * @return The message
+     * @throws InterruptedException If the consumer thread was interrupted while waiting
+     */
+    public T takeInterruptibly() throws InterruptedException {
+        T message = poll();
+        while (message == null) {
+            waitingConsumer = Thread.currentThread();
+            try {
+                message = poll();
+                if (message == null) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    message = poll();
+                }
+            } finally {
+                waitingConsumer = null;
+            }
+        }
+        return message;
+    }
+}
@@ -7,6 +7,8 @@ import java.awt.geom.Ellipse2D;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
@@ -32,48 +34,58 @@ public class Util {
     }
 
     /**
-     * Reads a line from a socket without busy waiting.
+     * Reads lines from a socket with blocking reads into a reusable buffer.
      */
-    public static class UnblockingLineReader{
+    public static class LineReader{
         InputStream is;
-        String bufferString = "";
-        int timeout;
+        byte[] buffer = new byte[1024];
 
-        public UnblockingLineReader(InputStream is){
+        /**
+         * Start of the unread data in the buffer
+         */
+        int start = 0;
+
+        /**
+         * End of the unread data in the buffer
+         */
+        int end = 0;
+
+        public LineReader(InputStream is){
             this.is = is;
-            this.timeout = 10;
         }
 
+        /**
+         * Blocks until a complete line was received
+         * @return The line without line break or null if the stream was closed
+         */
         public String readLine() throws IOException {
-            byte[] buffer = new byte[1024];
+            int searchFrom = start;
 
-            while(!bufferString.contains("\n")){
-                int bytesAvailable = is.available();
-
-                if(bytesAvailable > 0){
-                    int bytesRead = is.read(buffer);
-                    if (bytesRead == -1){
-                        bufferString = "";
-                        return null;
-                    }else{
-                        bufferString += new String(buffer,0,bytesRead);
-                    }
-                }else{
-                    try {
-                        Thread.sleep(timeout);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
+            while(true){
+                for (int i = searchFrom; i < end; ++i) {
+                    if (buffer[i] == '\n') {
+                        String line = new String(buffer, start, i - start, StandardCharsets.UTF_8);
+                        start = i + 1;
+                        return line;
                     }
                 }
-            }
 
-            String[] tmp = bufferString.split("\n",2);
-            if(tmp.length == 2){
-                bufferString = tmp[1];
-            }else{
-                bufferString = "";
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                } else if (end == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                searchFrom = end;
+
+                int bytesRead = is.read(buffer, end, buffer.length - end);
+                if (bytesRead == -1) {
+                    start = end = 0;
+                    return null;
+                }
+                end += bytesRead;
             }
-            return tmp[0];
         }
     }
 